@@ -1,11 +1,10 @@
 package bg.tuvarna.sit;
 
 import bg.tuvarna.sit.wms.context.ApplicationContext;
-import bg.tuvarna.sit.wms.exceptions.CityCreationException;
-import bg.tuvarna.sit.wms.exceptions.CountryCreationException;
 import bg.tuvarna.sit.wms.exceptions.RegistrationException;
-import bg.tuvarna.sit.wms.exceptions.WarehouseDAOException;
 import bg.tuvarna.sit.wms.exceptions.WarehousePersistenceException;
+import bg.tuvarna.sit.wms.util.JpaUtil;
+import bg.tuvarna.sit.wms.util.QueryWarmUp;
 import bg.tuvarna.sit.wms.util.ViewLoaderUtil;
 import java.io.BufferedReader;
 import java.io.FileReader;
@@ -62,19 +61,42 @@ public class MainApp extends Application {
     initializeApplication();
   }
 
+  /**
+   * Stops the service executors and releases the persistence layer, including the pooled database connections,
+   * when the JavaFX application exits.
+   *
+   * @throws Exception if an error occurs during shutdown.
+   */
+  @Override
+  public void stop() throws Exception {
+    ApplicationContext.shutdown();
+    JpaUtil.close();
+    super.stop();
+  }
+
   /**
    * Performs application-wide initialization tasks.
-   * Specifically, it initializes administrators in the system.
+   * Specifically, it warms up the country and city caches, initializes administrators in the system and
+   * computes the agent ratings which are missing.
+   * Unless {@code WMS_QUERY_WARM_UP} is set to {@code false}, the named queries are warmed up in the background.
    */
   private void initializeApplication() {
 
+    if (!"false".equalsIgnoreCase(System.getenv("WMS_QUERY_WARM_UP"))) {
+      QueryWarmUp.warmUpInBackground(JpaUtil.getEntityManagerFactory());
+    }
+
+    ApplicationContext.getCOUNTRY_SERVICE().warmUpCache();
+    ApplicationContext.getCITY_SERVICE().warmUpCache();
+
     try {
       ApplicationContext.getUSER_SERVICE().loadUsersFromCSV("users.csv");
       ApplicationContext.getREVIEW_SERVICE().loadReviewsFromCSV("reviews.csv");
+      ApplicationContext.getAGENT_RATING_SERVICE().rebuildRatingsIfIncomplete();
       ApplicationContext.getWAREHOUSE_SERVICE()
               .loadWarehousesFromCSV(new BufferedReader(new FileReader(Paths.get("warehouses.csv").toFile())));
-    } catch (RegistrationException | InvalidKeySpecException | NoSuchAlgorithmException | WarehouseDAOException |
-             CityCreationException | CountryCreationException | IOException | WarehousePersistenceException e) {
+    } catch (RegistrationException | InvalidKeySpecException | NoSuchAlgorithmException | IOException |
+             WarehousePersistenceException e) {
       LOGGER.error("Error during application initialization: ", e);
     }
   }
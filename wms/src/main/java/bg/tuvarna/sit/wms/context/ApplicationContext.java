@@ -1,10 +1,15 @@
 package bg.tuvarna.sit.wms.context;
 
+import bg.tuvarna.sit.wms.controllers.ApplicationController;
 import bg.tuvarna.sit.wms.controllers.IncomingRequestsController;
+import bg.tuvarna.sit.wms.controllers.NotificationsController;
+import bg.tuvarna.sit.wms.controllers.ProfileController;
+import bg.tuvarna.sit.wms.controllers.base.BaseMenuController;
 import bg.tuvarna.sit.wms.controllers.WarehouseRentalController;
 import bg.tuvarna.sit.wms.controllers.WarehouseControlPanelController;
 import bg.tuvarna.sit.wms.dao.CityDAO;
 import bg.tuvarna.sit.wms.dao.CountryDAO;
+import bg.tuvarna.sit.wms.dao.NotificationDAO;
 import bg.tuvarna.sit.wms.dao.RentalAgreementDAO;
 import bg.tuvarna.sit.wms.controllers.MyReviewsController;
 import bg.tuvarna.sit.wms.controllers.RentalAgreementController;
@@ -16,16 +21,22 @@ import bg.tuvarna.sit.wms.controllers.HomeController;
 import bg.tuvarna.sit.wms.controllers.LoginController;
 import bg.tuvarna.sit.wms.controllers.RegistrationController;
 import bg.tuvarna.sit.wms.dao.UserDao;
+import bg.tuvarna.sit.wms.service.AgentRatingService;
 import bg.tuvarna.sit.wms.service.CityService;
 import bg.tuvarna.sit.wms.service.CountryService;
 import bg.tuvarna.sit.wms.service.CredentialManagerService;
 import bg.tuvarna.sit.wms.service.EncryptionService;
+import bg.tuvarna.sit.wms.service.NotificationService;
 import bg.tuvarna.sit.wms.service.PasswordHashingService;
 import bg.tuvarna.sit.wms.service.RentalRequestService;
 import bg.tuvarna.sit.wms.service.ReviewService;
 import bg.tuvarna.sit.wms.service.UserService;
+import bg.tuvarna.sit.wms.service.WarehouseSearchService;
 import bg.tuvarna.sit.wms.service.WarehouseService;
+import bg.tuvarna.sit.wms.util.AsyncTasks;
 import bg.tuvarna.sit.wms.util.JpaUtil;
+import bg.tuvarna.sit.wms.util.TransactionTemplate;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 import lombok.Getter;
@@ -37,6 +48,28 @@ import lombok.Getter;
  */
 public class ApplicationContext {
 
+  private static final int DEFAULT_SERVICE_THREADS = 4;
+  private static final int SERVICE_QUEUE_CAPACITY = 100;
+
+  /**
+   * Provides the executor on which the asynchronous service methods run, so database round-trips
+   * never block the JavaFX Application Thread. Its size can be set with {@code WMS_SERVICE_THREADS}.
+   */
+  @Getter
+  private static final ExecutorService SERVICE_EXECUTOR = AsyncTasks.newBoundedExecutor("wms-service",
+          getServiceThreads(), SERVICE_QUEUE_CAPACITY);
+
+  private static final ScheduledExecutorService SCHEDULED_EXECUTOR_SERVICE =
+          Executors.newSingleThreadScheduledExecutor();
+
+  /**
+   * Provides a singleton instance of TransactionTemplate, shared by all services
+   * that need several DAO calls to run in a single transaction.
+   */
+  @Getter
+  private static final TransactionTemplate TRANSACTION_TEMPLATE =
+          new TransactionTemplate(JpaUtil.getEntityManagerFactory());
+
   private static final UserDao USER_DAO =
           new UserDao(JpaUtil.getEntityManagerFactory());
 
@@ -48,7 +81,7 @@ public class ApplicationContext {
    */
   @Getter
   private static final UserService USER_SERVICE =
-          new UserService(USER_DAO, new PasswordHashingService());
+          new UserService(USER_DAO, new PasswordHashingService(), SERVICE_EXECUTOR);
 
   /**
    * Provides a singleton instance of EncryptionService.
@@ -77,27 +110,55 @@ public class ApplicationContext {
   private static final CountryService COUNTRY_SERVICE =
           new CountryService(new CountryDAO(JpaUtil.getEntityManagerFactory()));
 
+  private static final WarehouseDAO WAREHOUSE_DAO =
+          new WarehouseDAO(JpaUtil.getEntityManagerFactory());
+
+  /**
+   * Provides a singleton instance of WarehouseSearchService, which keeps the faceted warehouse index.
+   */
+  @Getter
+  private static final WarehouseSearchService WAREHOUSE_SEARCH_SERVICE =
+          new WarehouseSearchService(WAREHOUSE_DAO, SERVICE_EXECUTOR);
+
   /**
    * Provides a singleton instance of WarehouseService.
    */
   @Getter
   private static final WarehouseService WAREHOUSE_SERVICE =
-          new WarehouseService(new WarehouseDAO(JpaUtil.getEntityManagerFactory()),
-                  COUNTRY_SERVICE, CITY_SERVICE, USER_SERVICE);
+          new WarehouseService(WAREHOUSE_DAO, COUNTRY_SERVICE, CITY_SERVICE, USER_SERVICE, SERVICE_EXECUTOR,
+                  WAREHOUSE_SEARCH_SERVICE);
+
+  /**
+   * Provides a singleton instance of AgentRatingService, which keeps the agents ranked by their rating.
+   */
+  @Getter
+  private static final AgentRatingService AGENT_RATING_SERVICE =
+          new AgentRatingService(REVIEW_DAO, SERVICE_EXECUTOR);
 
   /**
    * Provides a singleton instance of ReviewService.
    */
   @Getter
   private static final ReviewService REVIEW_SERVICE =
-          new ReviewService(USER_DAO, REVIEW_DAO);
+          new ReviewService(USER_DAO, REVIEW_DAO, SERVICE_EXECUTOR, AGENT_RATING_SERVICE);
+
+  /**
+   * Provides a singleton instance of NotificationService, which writes the queued notifications
+   * on the scheduled executor.
+   */
+  @Getter
+  private static final NotificationService NOTIFICATION_SERVICE =
+          new NotificationService(new NotificationDAO(JpaUtil.getEntityManagerFactory()), SERVICE_EXECUTOR,
+                  SCHEDULED_EXECUTOR_SERVICE);
 
   /**
    * Provides a singleton instance of ControllerFactory.
    */
   @Getter
   private static final RentalRequestService RENTAL_REQUEST_SERVICE =
-          new RentalRequestService(new WarehouseRentalRequestDAO(JpaUtil.getEntityManagerFactory()), WAREHOUSE_SERVICE, new UserDao(JpaUtil.getEntityManagerFactory()));
+          new RentalRequestService(new WarehouseRentalRequestDAO(JpaUtil.getEntityManagerFactory()), WAREHOUSE_SERVICE,
+                  new UserDao(JpaUtil.getEntityManagerFactory()), TRANSACTION_TEMPLATE, SERVICE_EXECUTOR,
+                  NOTIFICATION_SERVICE);
 
   @Getter
   private static final RentalAgreementDAO RENTAL_AGREEMENT_DAO =
@@ -106,9 +167,6 @@ public class ApplicationContext {
   @Getter
   private static final ControllerFactory CONTROLLER_FACTORY = createControllerFactory();
 
-  private static final ScheduledExecutorService SCHEDULED_EXECUTOR_SERVICE =
-          Executors.newSingleThreadScheduledExecutor();
-
   /**
    * Creates and configures a ControllerFactory with specific controllers and their dependencies.
    *
@@ -120,12 +178,45 @@ public class ApplicationContext {
     factory.addController(LoginController.class, () -> new LoginController(USER_SERVICE, CREDENTIAL_MANAGER_SERVICE));
     factory.addController(HomeController.class, () -> new HomeController(USER_SERVICE, CREDENTIAL_MANAGER_SERVICE));
     factory.addController(RegistrationController.class, () -> new RegistrationController(USER_SERVICE));
-    factory.addController(WarehouseControlPanelController.class, () -> new WarehouseControlPanelController(WAREHOUSE_SERVICE));
-    factory.addController(WarehouseRentalController.class, () -> new WarehouseRentalController(RENTAL_REQUEST_SERVICE, WAREHOUSE_SERVICE));
-    factory.addController(IncomingRequestsController.class, () -> new IncomingRequestsController(RENTAL_REQUEST_SERVICE));
-    factory.addController(MyReviewsController.class, () -> new MyReviewsController(REVIEW_SERVICE, SCHEDULED_EXECUTOR_SERVICE));
-    factory.addController(RentalAgreementController.class, () -> new RentalAgreementController(WAREHOUSE_SERVICE, REVIEW_SERVICE));
+    factory.addController(ApplicationController.class, () -> withNotifications(new ApplicationController()));
+    factory.addController(ProfileController.class, () -> withNotifications(new ProfileController()));
+    factory.addController(WarehouseControlPanelController.class, () -> withNotifications(new WarehouseControlPanelController(WAREHOUSE_SERVICE)));
+    factory.addController(WarehouseRentalController.class, () -> withNotifications(new WarehouseRentalController(RENTAL_REQUEST_SERVICE, WAREHOUSE_SERVICE, AGENT_RATING_SERVICE)));
+    factory.addController(IncomingRequestsController.class, () -> withNotifications(new IncomingRequestsController(RENTAL_REQUEST_SERVICE)));
+    factory.addController(MyReviewsController.class, () -> withNotifications(new MyReviewsController(REVIEW_SERVICE, SCHEDULED_EXECUTOR_SERVICE)));
+    factory.addController(RentalAgreementController.class, () -> withNotifications(new RentalAgreementController(WAREHOUSE_SERVICE, REVIEW_SERVICE)));
+    factory.addController(NotificationsController.class, () -> withNotifications(new NotificationsController(NOTIFICATION_SERVICE)));
 
     return factory;
   }
+
+  /**
+   * Gives a controller with a side menu the notification service, so its menu shows the unread count badge.
+   *
+   * @param controller the controller
+   * @param <T>        the type of the controller
+   * @return the same controller
+   */
+  private static <T extends BaseMenuController> T withNotifications(T controller) {
+
+    controller.setNotificationService(NOTIFICATION_SERVICE);
+    return controller;
+  }
+
+  /**
+   * Writes the queued notifications and stops the background executors, letting the tasks which already
+   * started finish.
+   */
+  public static void shutdown() {
+
+    NOTIFICATION_SERVICE.flush();
+    SERVICE_EXECUTOR.shutdown();
+    SCHEDULED_EXECUTOR_SERVICE.shutdown();
+  }
+
+  private static int getServiceThreads() {
+
+    String value = System.getenv("WMS_SERVICE_THREADS");
+    return value == null || value.isBlank() ? DEFAULT_SERVICE_THREADS : Integer.parseInt(value.trim());
+  }
 }
@@ -0,0 +1,13 @@
+package bg.tuvarna.sit.wms.contracts;
+
+/**
+ * A piece of work that runs on a background thread and produces a result.
+ *
+ * @param <T> the type of the result
+ * @param <E> the type of the checked exception the work may throw
+ */
+@FunctionalInterface
+public interface BackgroundTask<T, E extends Exception> {
+
+  T call() throws E;
+}
@@ -0,0 +1,12 @@
+package bg.tuvarna.sit.wms.contracts;
+
+/**
+ * A piece of work that runs on a background thread without producing a result.
+ *
+ * @param <E> the type of the checked exception the work may throw
+ */
+@FunctionalInterface
+public interface BackgroundWork<E extends Exception> {
+
+  void run() throws E;
+}
@@ -0,0 +1,20 @@
+package bg.tuvarna.sit.wms.contracts;
+
+/**
+ * Receives the notifications raised by the services, such as a new rental request for an agent.
+ * Publishing must not block, as it is called at the end of service operations.
+ */
+@FunctionalInterface
+public interface NotificationPublisher {
+
+  void publish(Long userId, String message);
+
+  /**
+   * Returns a publisher which discards every notification, for services created without one.
+   *
+   * @return the publisher
+   */
+  static NotificationPublisher none() {
+    return (userId, message) -> { };
+  }
+}
@@ -0,0 +1,13 @@
+package bg.tuvarna.sit.wms.contracts;
+
+import bg.tuvarna.sit.wms.util.SqlExecution;
+
+/**
+ * Receives every SQL statement executed through an {@code InstrumentedDataSource}, once it is finished.
+ * Listeners are called on the thread which executed the statement, so they must be cheap.
+ */
+@FunctionalInterface
+public interface SqlExecutionListener {
+
+  void onExecution(SqlExecution execution);
+}
@@ -0,0 +1,16 @@
+package bg.tuvarna.sit.wms.contracts;
+
+import javax.persistence.EntityManager;
+
+/**
+ * A unit of work that runs against the entity manager of the current transaction
+ * and produces a result.
+ *
+ * @param <T> the type of the result
+ * @param <E> the type of the checked exception the work may throw
+ */
+@FunctionalInterface
+public interface TransactionCallback<T, E extends Exception> {
+
+  T doInTransaction(EntityManager entityManager) throws E;
+}
@@ -0,0 +1,15 @@
+package bg.tuvarna.sit.wms.contracts;
+
+import javax.persistence.EntityManager;
+
+/**
+ * A unit of work that runs against the entity manager of the current transaction
+ * without producing a result.
+ *
+ * @param <E> the type of the checked exception the work may throw
+ */
+@FunctionalInterface
+public interface TransactionWork<E extends Exception> {
+
+  void doInTransaction(EntityManager entityManager) throws E;
+}
@@ -0,0 +1,11 @@
+package bg.tuvarna.sit.wms.contracts;
+
+/**
+ * Receives the new number of unread notifications of a user whenever it changes.
+ * Listeners are called on the thread which changed the count, not on the JavaFX Application Thread.
+ */
+@FunctionalInterface
+public interface UnreadCountListener {
+
+  void onUnreadCountChanged(Long userId, long unreadCount);
+}
@@ -10,10 +10,11 @@ import bg.tuvarna.sit.wms.entities.Owner;
 import bg.tuvarna.sit.wms.entities.User;
 import bg.tuvarna.sit.wms.enums.RequestStatus;
 import bg.tuvarna.sit.wms.enums.Role;
-import bg.tuvarna.sit.wms.exceptions.RequestCreationException;
+import bg.tuvarna.sit.wms.exceptions.RequestConflictException;
 import bg.tuvarna.sit.wms.service.RentalAgreementService;
 import bg.tuvarna.sit.wms.service.RentalRequestService;
 import bg.tuvarna.sit.wms.session.UserSession;
+import bg.tuvarna.sit.wms.util.AsyncTasks;
 import de.jensd.fx.glyphs.fontawesome.FontAwesomeIcon;
 import de.jensd.fx.glyphs.fontawesome.FontAwesomeIconView;
 import javafx.beans.property.SimpleStringProperty;
@@ -32,6 +33,8 @@ import javafx.scene.layout.HBox;
 import javafx.util.Callback;
 
 import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 import static bg.tuvarna.sit.wms.util.DialogUtil.showConfirmationDialog;
 import static bg.tuvarna.sit.wms.util.DialogUtil.showDialog;
@@ -69,6 +72,7 @@ public class IncomingRequestsController extends BaseMenuController {
   private final RentalRequestService rentalRequestService;
   private Agent agent;
   private final ObservableList<RentalRequestDTO> rentalRequestDTOS = FXCollections.observableArrayList();
+  private long requestsGeneration;
 
   public IncomingRequestsController(RentalRequestService rentalRequestService) {
     this.rentalRequestService = rentalRequestService;
@@ -89,7 +93,6 @@ public class IncomingRequestsController extends BaseMenuController {
 
     agent = getAgentFromUserSession();
     newRequestsButton.setSelected(true);
-    rentalRequestDTOS.setAll(rentalRequestService.getIncomingRentalRequestsByAgent(agent));
 
     warehouseNameColumn.setCellValueFactory(request -> new SimpleStringProperty(request.getValue().getWarehouseDTO().getName()));
     ownerNamesColumn.setCellValueFactory(request -> new SimpleStringProperty(getOwnerFullName(request.getValue().getWarehouseDTO().getOwner())));
@@ -100,6 +103,7 @@ public class IncomingRequestsController extends BaseMenuController {
     actionColumn.setCellFactory(createActionsCellFactory());
 
     requestsTable.setItems(rentalRequestDTOS);
+    displayNewRequests();
   }
 
   /**
@@ -169,13 +173,11 @@ public class IncomingRequestsController extends BaseMenuController {
 
         acceptButton.setOnMouseClicked(event -> {
           RentalRequestDTO requestDTO = getTableRow().getItem();
-          try {
-            rentalRequestService.acceptRentalRequest(requestDTO);
-          } catch (RequestCreationException e) {
-            showAlert(Alert.AlertType.ERROR, "Unable to accept request", e.getMessage());
-          } finally {
-            refreshTable();
-          }
+          rentalRequestService.acceptRentalRequestAsync(requestDTO)
+              .whenCompleteAsync((ignored, error) -> {
+                showRequestError(error, "Unable to accept request");
+                refreshTable();
+              }, AsyncTasks.fxThread());
         });
 
         declineButton.setOnMouseClicked(event -> {
@@ -184,13 +186,11 @@ public class IncomingRequestsController extends BaseMenuController {
           boolean pressedOK = showConfirmationDialog("Decline request", "Do you want to decline this request?");
 
           if(pressedOK) {
-            try {
-              rentalRequestService.declineRentalRequest(requestDTO);
-            } catch (RequestCreationException e) {
-              showAlert(Alert.AlertType.ERROR, "Unable to decline the request", e.getMessage());
-            } finally {
-              refreshTable();
-            }
+            rentalRequestService.declineRentalRequestAsync(requestDTO)
+                .whenCompleteAsync((ignored, error) -> {
+                  showRequestError(error, "Unable to decline the request");
+                  refreshTable();
+                }, AsyncTasks.fxThread());
           }
         });
 
@@ -200,7 +200,9 @@ public class IncomingRequestsController extends BaseMenuController {
           RentalAgreementService service = new RentalAgreementService(
               ApplicationContext.getWAREHOUSE_SERVICE(),
               rentalRequestService,
-              ApplicationContext.getRENTAL_AGREEMENT_DAO());
+              ApplicationContext.getRENTAL_AGREEMENT_DAO(),
+              ApplicationContext.getTRANSACTION_TEMPLATE(),
+              ApplicationContext.getNOTIFICATION_SERVICE());
           DialogController controller = new RentalAgreementCreationController(rentalRequestDTO, service);
           try {
             showDialog("/views/rentalAgreementCreation.fxml", "Rent a warehouse", controller);
@@ -241,8 +243,7 @@ public class IncomingRequestsController extends BaseMenuController {
    */
   public void displayNewRequests() {
 
-    rentalRequestDTOS.setAll(rentalRequestService.getIncomingRentalRequestsByAgent(agent));
-    requestsTable.refresh();
+    showRequests(rentalRequestService.getIncomingRentalRequestsByAgentAsync(agent));
   }
 
   /**
@@ -251,8 +252,49 @@ public class IncomingRequestsController extends BaseMenuController {
    */
   public void displayAcceptedRequests() {
 
-    rentalRequestDTOS.setAll(rentalRequestService.getAcceptedRentalRequestsByAgent(agent));
-    requestsTable.refresh();
+    showRequests(rentalRequestService.getAcceptedRentalRequestsByAgentAsync(agent));
+  }
+
+  /**
+   * Shows the requests in the tableview once they are retrieved. Requests of a previously
+   * selected filter which arrive late are discarded.
+   *
+   * @param requests a future of the requests to show
+   */
+  private void showRequests(CompletableFuture<List<RentalRequestDTO>> requests) {
+
+    long generation = ++requestsGeneration;
+    requests.whenCompleteAsync((requestDTOS, error) -> {
+      if (generation != requestsGeneration) {
+        return;
+      }
+      if (error != null) {
+        showAlert(Alert.AlertType.ERROR, "Unable to retrieve requests", AsyncTasks.unwrap(error).getMessage());
+        return;
+      }
+      rentalRequestDTOS.setAll(requestDTOS);
+      requestsTable.refresh();
+    }, AsyncTasks.fxThread());
+  }
+
+  /**
+   * Shows an alert for the exception an accept or decline operation failed with, if any.
+   *
+   * @param error      the exception of the operation, or null if it succeeded
+   * @param errorTitle the title of the alert for unexpected errors
+   */
+  private void showRequestError(Throwable error, String errorTitle) {
+
+    if (error == null) {
+      return;
+    }
+
+    Throwable cause = AsyncTasks.unwrap(error);
+    if (cause instanceof RequestConflictException) {
+      showAlert(Alert.AlertType.WARNING, "Request was changed", cause.getMessage());
+    } else {
+      showAlert(Alert.AlertType.ERROR, errorTitle, cause.getMessage());
+    }
   }
 
   /**
@@ -4,10 +4,11 @@ import bg.tuvarna.sit.wms.controllers.base.BaseMenuController;
 import bg.tuvarna.sit.wms.dto.ViewReviewDto;
 import bg.tuvarna.sit.wms.service.ReviewService;
 import bg.tuvarna.sit.wms.session.UserSession;
-import java.util.List;
+import bg.tuvarna.sit.wms.util.AsyncTasks;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
-import javafx.application.Platform;
 import javafx.collections.FXCollections;
 import javafx.collections.ObservableList;
 import javafx.fxml.FXML;
@@ -17,9 +18,19 @@ import javafx.scene.control.cell.PropertyValueFactory;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
+/**
+ * A controller class which manages the reviews received by the logged-in agent.
+ * <p>
+ * The reviews are loaded once, after which only the reviews added since the newest one shown are
+ * fetched and appended. While no new reviews arrive, the polls are spaced out further and further.
+ * Polling stops once the view is closed.
+ * </p>
+ */
 public class MyReviewsController extends BaseMenuController {
 
   private static final Logger LOGGER = LogManager.getLogger(MyReviewsController.class);
+  private static final long MIN_REFRESH_SECONDS = 10;
+  private static final long MAX_REFRESH_SECONDS = 120;
 
   @FXML
   private TableView<ViewReviewDto> reviewsTable;
@@ -37,7 +48,11 @@ public class MyReviewsController extends BaseMenuController {
 
   private final ReviewService reviewService;
   private final ScheduledExecutorService scheduledExecutorService;
-
+  private Long userId;
+  private long lastSeenId;
+  private long refreshDelaySeconds = MIN_REFRESH_SECONDS;
+  private volatile boolean stopped;
+  private ScheduledFuture<?> refreshTask;
 
   public MyReviewsController(ReviewService reviewService, ScheduledExecutorService scheduledExecutorService) {
     this.reviewService = reviewService;
@@ -59,16 +74,77 @@ public class MyReviewsController extends BaseMenuController {
     startPeriodicRefresh();
   }
 
-  private void loadReviews() {
+  /**
+   * Loads the reviews added since the last poll and appends them to the table. The next poll is scheduled
+   * once this one completes, after {@value #MIN_REFRESH_SECONDS} seconds if there were new reviews, and after
+   * twice the previous delay, up to {@value #MAX_REFRESH_SECONDS} seconds, if there were none.
+   */
+  private void loadNewReviews() {
+
+    if (stopped) {
+      return;
+    }
+
+    reviewService.getNewReviewsForCurrentUserAsync(userId, lastSeenId)
+            .whenCompleteAsync((reviews, error) -> {
+              if (stopped) {
+                return;
+              }
+              if (error != null) {
+                Throwable cause = AsyncTasks.unwrap(error);
+                LOGGER.error("Exception occurred while loading reviews: {}", cause.getMessage(), cause);
+                scheduleNextRefresh(nextBackoff());
+                return;
+              }
+              if (reviews.isEmpty()) {
+                scheduleNextRefresh(nextBackoff());
+                return;
+              }
+
+              reviewList.addAll(reviews);
+              lastSeenId = reviews.get(reviews.size() - 1).getId();
+              adjustTableHeight(reviewList.size());
+              refreshDelaySeconds = MIN_REFRESH_SECONDS;
+              scheduleNextRefresh(reviews.size() == ReviewService.REVIEW_FEED_BATCH_SIZE ? 0 : refreshDelaySeconds);
+            }, AsyncTasks.fxThread());
+  }
+
+  private long nextBackoff() {
+
+    refreshDelaySeconds = Math.min(refreshDelaySeconds * 2, MAX_REFRESH_SECONDS);
+    return refreshDelaySeconds;
+  }
+
+  private void scheduleNextRefresh(long delaySeconds) {
 
     try {
-      List<ViewReviewDto> reviews =
-              reviewService.getReviewsForCurrentUser(UserSession.getInstance().getCurrentUser().getId());
-      reviewList.clear();
-      reviewList.addAll(reviews);
-      adjustTableHeight(reviews.size());
-    } catch (Exception e) {
-      LOGGER.error("Exception occurred while loading reviews: {}", e.getMessage(), e);
+      refreshTask = scheduledExecutorService.schedule(this::loadNewReviews, delaySeconds, TimeUnit.SECONDS);
+    } catch (RejectedExecutionException e) {
+      LOGGER.debug("Review refresh not scheduled, the application is shutting down");
+    }
+  }
+
+  /**
+   * Stops the refresh once the view is no longer shown, which happens when the stage moves to another scene.
+   */
+  private void stopRefreshWhenClosed() {
+
+    reviewsTable.sceneProperty().addListener((sceneProperty, oldScene, scene) -> {
+      if (scene != null) {
+        scene.windowProperty().addListener((windowProperty, oldWindow, window) -> {
+          if (window == null) {
+            stopRefresh();
+          }
+        });
+      }
+    });
+  }
+
+  private void stopRefresh() {
+
+    stopped = true;
+    if (refreshTask != null) {
+      refreshTask.cancel(false);
     }
   }
 
@@ -83,7 +159,8 @@ public class MyReviewsController extends BaseMenuController {
 
   private void startPeriodicRefresh() {
 
-    scheduledExecutorService.scheduleAtFixedRate(() ->
-            Platform.runLater(this::loadReviews), 0, 10, TimeUnit.SECONDS);
+    userId = UserSession.getInstance().getCurrentUser().getId();
+    stopRefreshWhenClosed();
+    loadNewReviews();
   }
 }
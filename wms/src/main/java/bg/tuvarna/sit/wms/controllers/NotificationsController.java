@@ -0,0 +1,112 @@
+package bg.tuvarna.sit.wms.controllers;
+
+import bg.tuvarna.sit.wms.controllers.base.BaseMenuController;
+import bg.tuvarna.sit.wms.dto.NotificationDTO;
+import bg.tuvarna.sit.wms.service.NotificationService;
+import bg.tuvarna.sit.wms.session.UserSession;
+import bg.tuvarna.sit.wms.util.AsyncTasks;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import javafx.beans.property.SimpleStringProperty;
+import javafx.collections.FXCollections;
+import javafx.collections.ObservableList;
+import javafx.fxml.FXML;
+import javafx.scene.control.Alert;
+import javafx.scene.control.SelectionMode;
+import javafx.scene.control.TableColumn;
+import javafx.scene.control.TableView;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import static bg.tuvarna.sit.wms.util.ViewLoaderUtil.showAlert;
+
+/**
+ * A controller class which manages the notification inbox.
+ * Displays the unread notifications of the logged-in user, newest first,
+ * and lets the user mark the selected or all of them as read.
+ */
+public class NotificationsController extends BaseMenuController {
+
+  private static final Logger LOGGER = LogManager.getLogger(NotificationsController.class);
+  private static final DateTimeFormatter DATE_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm");
+
+  @FXML
+  private TableView<NotificationDTO> notificationsTable;
+  @FXML
+  private TableColumn<NotificationDTO, String> dateColumn;
+  @FXML
+  private TableColumn<NotificationDTO, String> messageColumn;
+
+  private final NotificationService notificationService;
+  private final ObservableList<NotificationDTO> notifications = FXCollections.observableArrayList();
+  private Long userId;
+
+  public NotificationsController(NotificationService notificationService) {
+    this.notificationService = notificationService;
+  }
+
+  @Override
+  @FXML
+  protected void initialize() {
+
+    super.initialize();
+
+    userId = UserSession.getInstance().getCurrentUser().getId();
+    dateColumn.setCellValueFactory(notification ->
+        new SimpleStringProperty(notification.getValue().getDate().format(DATE_FORMAT)));
+    messageColumn.setCellValueFactory(notification -> new SimpleStringProperty(notification.getValue().getMessage()));
+    notificationsTable.getSelectionModel().setSelectionMode(SelectionMode.MULTIPLE);
+    notificationsTable.setItems(notifications);
+
+    loadNotifications();
+  }
+
+  /**
+   * Marks the selected notifications as read and removes them from the inbox.
+   */
+  @FXML
+  private void markSelectedAsRead() {
+
+    List<Long> ids = notificationsTable.getSelectionModel().getSelectedItems().stream()
+        .map(NotificationDTO::getId)
+        .toList();
+    if (!ids.isEmpty()) {
+      reloadAfter(notificationService.markAsReadAsync(userId, ids));
+    }
+  }
+
+  /**
+   * Marks all notifications as read and empties the inbox.
+   */
+  @FXML
+  private void markAllAsRead() {
+
+    reloadAfter(notificationService.markAllAsReadAsync(userId));
+  }
+
+  private void reloadAfter(CompletableFuture<Void> update) {
+
+    update.whenCompleteAsync((ignored, error) -> {
+      if (error != null) {
+        Throwable cause = AsyncTasks.unwrap(error);
+        LOGGER.error("Unable to mark notifications as read: {}", cause.getMessage(), cause);
+        showAlert(Alert.AlertType.ERROR, "Unable to mark notifications as read", cause.getMessage());
+      }
+      loadNotifications();
+    }, AsyncTasks.fxThread());
+  }
+
+  private void loadNotifications() {
+
+    notificationService.getUnreadNotificationsAsync(userId)
+        .whenCompleteAsync((unread, error) -> {
+          if (error != null) {
+            Throwable cause = AsyncTasks.unwrap(error);
+            LOGGER.error("Exception occurred while loading notifications: {}", cause.getMessage(), cause);
+            return;
+          }
+          notifications.setAll(unread);
+        }, AsyncTasks.fxThread());
+  }
+}
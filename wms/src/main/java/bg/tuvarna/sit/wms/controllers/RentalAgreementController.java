@@ -5,13 +5,13 @@ import bg.tuvarna.sit.wms.dto.WarehouseRentalAgreementDto;
 import bg.tuvarna.sit.wms.service.ReviewService;
 import bg.tuvarna.sit.wms.service.WarehouseService;
 import bg.tuvarna.sit.wms.session.UserSession;
+import bg.tuvarna.sit.wms.util.AsyncTasks;
 import bg.tuvarna.sit.wms.util.DialogUtil;
 import bg.tuvarna.sit.wms.util.ViewLoaderUtil;
 import static bg.tuvarna.sit.wms.util.ViewLoaderUtil.showAlert;
 import java.io.IOException;
 import java.math.BigDecimal;
 import java.text.SimpleDateFormat;
-import java.util.List;
 import javafx.beans.property.SimpleStringProperty;
 import javafx.collections.FXCollections;
 import javafx.collections.ObservableList;
@@ -129,15 +129,16 @@ public class RentalAgreementController extends BaseMenuController {
 
   private void loadRentalAgreements() {
 
-    try {
-      List<WarehouseRentalAgreementDto> rentalAgreements =
-              warehouseService.getWarehousesWithRentalAgreementsForOwner(UserSession.getInstance().getCurrentUser().getId());
-      rentalAgreementList.clear();
-      rentalAgreementList.addAll(rentalAgreements);
-      adjustTableHeight(rentalAgreements.size());
-    } catch (Exception e) {
-      LOGGER.error("Exception occurred while loading reviews: {}", e.getMessage(), e);
-    }
+    warehouseService.getWarehousesWithRentalAgreementsForOwnerAsync(UserSession.getInstance().getCurrentUser().getId())
+            .whenCompleteAsync((rentalAgreements, error) -> {
+              if (error != null) {
+                Throwable cause = AsyncTasks.unwrap(error);
+                LOGGER.error("Exception occurred while loading reviews: {}", cause.getMessage(), cause);
+                return;
+              }
+              rentalAgreementList.setAll(rentalAgreements);
+              adjustTableHeight(rentalAgreements.size());
+            }, AsyncTasks.fxThread());
   }
 
   private void adjustTableHeight(int numberOfReviews) {
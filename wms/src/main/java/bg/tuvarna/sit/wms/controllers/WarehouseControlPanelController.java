@@ -3,21 +3,27 @@ package bg.tuvarna.sit.wms.controllers;
 import bg.tuvarna.sit.wms.contracts.DialogController;
 import bg.tuvarna.sit.wms.controllers.base.BaseMenuController;
 import bg.tuvarna.sit.wms.dto.WarehouseDTO;
+import bg.tuvarna.sit.wms.dto.WarehousePage;
+import bg.tuvarna.sit.wms.dto.WarehousePageRequest;
 import bg.tuvarna.sit.wms.entities.Owner;
 import bg.tuvarna.sit.wms.entities.User;
 import bg.tuvarna.sit.wms.enums.Role;
+import bg.tuvarna.sit.wms.enums.WarehouseSortKey;
 import bg.tuvarna.sit.wms.enums.WarehouseStatus;
-import bg.tuvarna.sit.wms.exceptions.WarehouseServiceException;
 import bg.tuvarna.sit.wms.service.WarehouseService;
 import bg.tuvarna.sit.wms.session.UserSession;
+import bg.tuvarna.sit.wms.util.AsyncTasks;
 import de.jensd.fx.glyphs.fontawesome.FontAwesomeIcon;
 import de.jensd.fx.glyphs.fontawesome.FontAwesomeIconView;
 import javafx.beans.property.SimpleStringProperty;
 import javafx.collections.FXCollections;
 import javafx.collections.ObservableList;
 import javafx.fxml.FXML;
+import javafx.geometry.Orientation;
 import javafx.geometry.Pos;
+import javafx.scene.Node;
 import javafx.scene.control.Alert;
+import javafx.scene.control.ScrollBar;
 import javafx.scene.control.TableCell;
 import javafx.scene.control.TableColumn;
 import javafx.scene.control.TableView;
@@ -26,7 +32,7 @@ import javafx.scene.layout.HBox;
 import javafx.util.Callback;
 
 import java.io.IOException;
-import java.util.List;
+import java.util.Map;
 
 import static bg.tuvarna.sit.wms.util.DialogUtil.showDialog;
 import static bg.tuvarna.sit.wms.util.DialogUtil.showConfirmationDialog;
@@ -55,16 +61,27 @@ public class WarehouseControlPanelController extends BaseMenuController {
   @FXML
   private TableColumn<WarehouseDTO, String> actionColumn;
 
+  private static final int PAGE_SIZE = 50;
+  private static final double LOAD_NEXT_PAGE_THRESHOLD = 0.9;
+
   private final WarehouseService warehouseService;
   private Owner owner;
   private ObservableList<WarehouseDTO> observableData = FXCollections.observableArrayList();
+  private Map<TableColumn<WarehouseDTO, ?>, WarehouseSortKey> sortKeys;
+  private WarehouseSortKey sortKey = WarehouseSortKey.NAME;
+  private boolean ascending = true;
+  private WarehousePage lastPage;
+  private boolean loadingPage;
+  private long pageGeneration;
 
   public WarehouseControlPanelController(WarehouseService warehouseService) {
     this.warehouseService = warehouseService;
   }
 
   /**
-   * This method retrieves the warehouse data from the database, sets up the tableView and displays the retrieved warehouses.
+   * This method sets up the tableView and displays the first page of the owner's warehouses.
+   * Further pages are retrieved as the table is scrolled down, and sorting by name, city, size or status
+   * is performed by the database.
    */
   @FXML
   public void initialize() {
@@ -73,13 +90,6 @@ public class WarehouseControlPanelController extends BaseMenuController {
 
     owner = getOwnerFromUserSession();
 
-    try {
-      List<WarehouseDTO> warehouseDTOs = warehouseService.getAllWarehouseDTOsByOwner(owner);
-      observableData.addAll(warehouseDTOs);
-    } catch (WarehouseServiceException e) {
-      showAlert(Alert.AlertType.ERROR, "Unable to retrieve warehouse data", e.getMessage());
-    }
-
     nameColumn.setCellValueFactory(new PropertyValueFactory<>("name"));
     streetColumn.setCellValueFactory(new PropertyValueFactory<>("street"));
     cityColumn.setCellValueFactory(new PropertyValueFactory<>("cityName"));
@@ -89,7 +99,19 @@ public class WarehouseControlPanelController extends BaseMenuController {
 
     actionColumn.setCellFactory(createActionsCellFactory());
 
+    sortKeys = Map.of(nameColumn, WarehouseSortKey.NAME, cityColumn, WarehouseSortKey.CITY,
+            sizeColumn, WarehouseSortKey.SIZE, statusColumn, WarehouseSortKey.STATUS);
+    streetColumn.setSortable(false);
+    countryColumn.setSortable(false);
+    actionColumn.setSortable(false);
+    warehousesTable.setSortPolicy(table -> {
+      applySortOrder();
+      return true;
+    });
+    warehousesTable.skinProperty().addListener((observable, oldSkin, newSkin) -> attachScrollListener());
+
     warehousesTable.setItems(observableData);
+    loadFirstPage(PAGE_SIZE);
   }
 
   /**
@@ -129,13 +151,14 @@ public class WarehouseControlPanelController extends BaseMenuController {
           boolean pressedOK = showConfirmationDialog("Confirm warehouse deletion?", "Do you want to delete this warehouse?");
 
           if (pressedOK) {
-            try {
-              warehouseService.deleteWarehouse(warehouseDTO);
-            } catch (WarehouseServiceException e) {
-              showAlert(Alert.AlertType.ERROR, "Unable to delete warehouse", e.getMessage());
-            } finally {
-              refreshTable();
-            }
+            warehouseService.deleteWarehouseAsync(warehouseDTO)
+                    .whenCompleteAsync((ignored, error) -> {
+                      if (error != null) {
+                        showAlert(Alert.AlertType.ERROR, "Unable to delete warehouse",
+                                AsyncTasks.unwrap(error).getMessage());
+                      }
+                      refreshTable();
+                    }, AsyncTasks.fxThread());
           }
         });
 
@@ -190,16 +213,104 @@ public class WarehouseControlPanelController extends BaseMenuController {
 
   /**
    * Refreshes the data in the table view.
-   * This method retrieves the owner's warehouses and refreshes the table.
+   * This method retrieves again as many of the owner's warehouses as are currently loaded and refreshes the table.
    */
   public void refreshTable() {
 
-    try {
-      observableData.setAll(warehouseService.getAllWarehouseDTOsByOwner(owner));
-    } catch (WarehouseServiceException e) {
-      showAlert(Alert.AlertType.ERROR, "Unable to refresh warehouse data", e.getMessage());
+    loadFirstPage(Math.max(PAGE_SIZE, observableData.size()));
+  }
+
+  /**
+   * Replaces the rows of the table with the first page of warehouses in the current sort order.
+   * The page is retrieved in the background. Pages requested before this one are discarded when they arrive.
+   *
+   * @param pageSize the number of warehouses to retrieve
+   */
+  private void loadFirstPage(int pageSize) {
+
+    long generation = ++pageGeneration;
+    loadingPage = true;
+    warehouseService.getWarehouseDTOPageByOwnerAsync(owner, WarehousePageRequest.first(sortKey, ascending, pageSize))
+            .whenCompleteAsync((page, error) -> {
+              if (generation != pageGeneration) {
+                return;
+              }
+              loadingPage = false;
+              if (error != null) {
+                showAlert(Alert.AlertType.ERROR, "Unable to retrieve warehouse data",
+                        AsyncTasks.unwrap(error).getMessage());
+                return;
+              }
+              lastPage = page;
+              observableData.setAll(page.getItems());
+              warehousesTable.refresh();
+            }, AsyncTasks.fxThread());
+  }
+
+  /**
+   * Appends the next page of warehouses to the table in the background, if there is one.
+   */
+  private void loadNextPage() {
+
+    if (loadingPage || lastPage == null || !lastPage.isNextPageAvailable()) {
+      return;
+    }
+
+    long generation = pageGeneration;
+    loadingPage = true;
+    warehouseService.getWarehouseDTOPageByOwnerAsync(owner, lastPage.nextPageRequest(PAGE_SIZE))
+            .whenCompleteAsync((page, error) -> {
+              if (generation != pageGeneration) {
+                return;
+              }
+              loadingPage = false;
+              if (error != null) {
+                showAlert(Alert.AlertType.ERROR, "Unable to retrieve warehouse data",
+                        AsyncTasks.unwrap(error).getMessage());
+                return;
+              }
+              lastPage = page;
+              observableData.addAll(page.getItems());
+            }, AsyncTasks.fxThread());
+  }
+
+  /**
+   * Reloads the table from the first page when the user changes the sorted column or its direction.
+   * Only the first column of the sort order is used, since the database sorts by a single column.
+   */
+  private void applySortOrder() {
+
+    WarehouseSortKey newSortKey = WarehouseSortKey.NAME;
+    boolean newAscending = true;
+
+    if (!warehousesTable.getSortOrder().isEmpty()) {
+      TableColumn<WarehouseDTO, ?> column = warehousesTable.getSortOrder().get(0);
+      newSortKey = sortKeys.getOrDefault(column, WarehouseSortKey.NAME);
+      newAscending = column.getSortType() == TableColumn.SortType.ASCENDING;
+    }
+
+    if (newSortKey != sortKey || newAscending != ascending) {
+      sortKey = newSortKey;
+      ascending = newAscending;
+      loadFirstPage(PAGE_SIZE);
+      warehousesTable.scrollTo(0);
+    }
+  }
+
+  /**
+   * Loads the next page when the vertical scroll bar of the table gets close to its end.
+   */
+  private void attachScrollListener() {
+
+    for (Node node : warehousesTable.lookupAll(".scroll-bar")) {
+      if (node instanceof ScrollBar scrollBar && scrollBar.getOrientation() == Orientation.VERTICAL) {
+        scrollBar.valueProperty().addListener((observable, oldValue, newValue) -> {
+          if (newValue.doubleValue() >= scrollBar.getMax() * LOAD_NEXT_PAGE_THRESHOLD) {
+            loadNextPage();
+          }
+        });
+      }
     }
-    warehousesTable.refresh();
   }
 
   private Owner getOwnerFromUserSession() {
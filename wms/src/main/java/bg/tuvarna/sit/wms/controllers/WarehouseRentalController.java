@@ -7,28 +7,33 @@ import bg.tuvarna.sit.wms.dto.WarehouseDTO;
 import bg.tuvarna.sit.wms.entities.Owner;
 import bg.tuvarna.sit.wms.entities.User;
 import bg.tuvarna.sit.wms.enums.Role;
-import bg.tuvarna.sit.wms.exceptions.RequestCreationException;
-import bg.tuvarna.sit.wms.exceptions.WarehouseServiceException;
+import bg.tuvarna.sit.wms.service.AgentRatingService;
 import bg.tuvarna.sit.wms.service.RentalRequestService;
 import bg.tuvarna.sit.wms.service.WarehouseService;
 import bg.tuvarna.sit.wms.session.UserSession;
+import bg.tuvarna.sit.wms.util.AgentSearchIndex;
+import bg.tuvarna.sit.wms.util.AsyncTasks;
 import bg.tuvarna.sit.wms.validation.ValidatingComboBox;
 import bg.tuvarna.sit.wms.validation.ValidatingTextField;
+import javafx.animation.PauseTransition;
 import javafx.beans.binding.Bindings;
 import javafx.beans.property.SimpleStringProperty;
 import javafx.collections.FXCollections;
 import javafx.collections.ObservableList;
+import javafx.collections.ObservableSet;
 import javafx.fxml.FXML;
-import javafx.scene.Node;
 import javafx.scene.control.Alert;
 import javafx.scene.control.CheckBox;
 import javafx.scene.control.DatePicker;
 import javafx.scene.control.Label;
+import javafx.scene.control.ListCell;
 import javafx.scene.control.ListView;
 import javafx.scene.control.TextField;
 import javafx.scene.layout.HBox;
+import javafx.util.Duration;
 
 import java.math.BigDecimal;
+import java.util.LinkedHashSet;
 import java.util.List;
 
 import static bg.tuvarna.sit.wms.util.ValidationUtils.validateDatePickers;
@@ -39,10 +44,15 @@ import static bg.tuvarna.sit.wms.util.ViewLoaderUtil.showAlert;
  * Responsible for initializing and handling user interactions in the warehouse rental view.
  * Uses ValidatingComboBox, ValidatingTextField for input validation and display.
  * Utilizes RentalRequestService and WarehouseService for business logic.
+ * The agents are listed by their rating, best first, as ranked by the AgentRatingService.
+ * The agent filter is applied {@value #FILTER_DELAY_MS} ms after the last keystroke, through an
+ * {@link AgentSearchIndex}, and the list view only creates rows for the visible agents.
  *
  */
 public class WarehouseRentalController extends BaseMenuController {
 
+  private static final long FILTER_DELAY_MS = 200;
+
   @FXML
   private ValidatingComboBox<WarehouseDTO> warehousesComboBox;
   @FXML
@@ -54,20 +64,25 @@ public class WarehouseRentalController extends BaseMenuController {
   @FXML
   private TextField agentFilterField;
   @FXML
-  private ListView<HBox> agentsListView;
+  private ListView<AgentDTO> agentsListView;
   @FXML
   private Label selectedAgentsLabel;
 
   private final RentalRequestService rentalRequestService;
   private final WarehouseService warehouseService;
+  private final AgentRatingService agentRatingService;
   private Owner owner;
   private final ObservableList<WarehouseDTO> availableWarehouses = FXCollections.observableArrayList();
-  private final ObservableList<AgentDTO> allAgents = FXCollections.observableArrayList();
-  private final ObservableList<AgentDTO> selectedAgents = FXCollections.observableArrayList();
+  private final ObservableList<AgentDTO> visibleAgents = FXCollections.observableArrayList();
+  private final ObservableSet<AgentDTO> selectedAgents = FXCollections.observableSet(new LinkedHashSet<>());
+  private final PauseTransition filterDelay = new PauseTransition(Duration.millis(FILTER_DELAY_MS));
+  private AgentSearchIndex agentIndex = new AgentSearchIndex(List.of());
 
-  public WarehouseRentalController(RentalRequestService rentalRequestService, WarehouseService warehouseService) {
+  public WarehouseRentalController(RentalRequestService rentalRequestService, WarehouseService warehouseService,
+                                   AgentRatingService agentRatingService) {
     this.rentalRequestService = rentalRequestService;
     this.warehouseService = warehouseService;
+    this.agentRatingService = agentRatingService;
   }
 
   /**
@@ -78,51 +93,31 @@ public class WarehouseRentalController extends BaseMenuController {
 
     super.initialize();
     owner = getOwnerFromUserSession();
-    try {
-      availableWarehouses.setAll(warehouseService.getAvailableWarehouseDTOsByOwner(owner));
-    } catch (WarehouseServiceException e) {
-      showAlert(Alert.AlertType.ERROR, "Unable to retrieve warehouses", e.getMessage());
-    }
+    loadAvailableWarehouses("Unable to retrieve warehouses");
     warehousesComboBox.setItems(availableWarehouses);
     warehousesComboBox.setUp("You must select a warehouse");
     rentPriceField.setUp(value -> value.matches("^\\d{1,3}(,?\\d{3})*(\\.\\d{1,2})?$"), "Invalid money format");
-    allAgents.setAll(rentalRequestService.getAllAgentDTOs());
-    agentsListView.setItems(createRows(allAgents));
-    agentFilterField.setOnKeyTyped(e -> filterAgents());
+    agentsListView.setItems(visibleAgents);
+    agentsListView.setCellFactory(listView -> new AgentCell());
+    rentalRequestService.getAllAgentDTOsAsync()
+        .thenCompose(agentRatingService::rankAgentsAsync)
+        .thenApply(AgentSearchIndex::new)
+        .whenCompleteAsync((index, error) -> {
+          if (error != null) {
+            showAlert(Alert.AlertType.ERROR, "Unable to retrieve agents", AsyncTasks.unwrap(error).getMessage());
+            return;
+          }
+          agentIndex = index;
+          filterAgents();
+        }, AsyncTasks.fxThread());
+    filterDelay.setOnFinished(e -> filterAgents());
+    agentFilterField.textProperty().addListener((observable, oldText, newText) -> filterDelay.playFromStart());
 
     SimpleStringProperty selectedLabelText = new SimpleStringProperty();
     selectedLabelText.bind(Bindings.concat("Selected Agents: ",Bindings.size(selectedAgents)));
     selectedAgentsLabel.textProperty().bind(selectedLabelText);
   }
 
-  /**
-   * Creates an observable list with hboxes, each representing an agentDTO
-   * and a way to select the agent using a checkbox.
-   * @param agentDTOs the list of agents
-   * @return a list of hboxes containing the agent information and a checkbox
-   */
-  private ObservableList<HBox> createRows(List<AgentDTO> agentDTOs) {
-    return FXCollections.observableArrayList(
-        agentDTOs.stream().map(this::createSingleRow).toList()
-    );
-  }
-
-  /**
-   * Creates a single row for the agent listview. Adds a checkbox for selecting an agent
-   *
-   * @param agentDTO the agentDTO fro which to create a row
-   * @return hbox containing the agent details and a checkbox
-   */
-  private HBox createSingleRow(AgentDTO agentDTO) {
-    
-    CheckBox checkBox = new CheckBox();
-    checkBox.setOnAction(event -> handleCheckBoxAction(agentDTO, checkBox.isSelected()));
-    checkBox.setSelected(selectedAgents.contains(agentDTO));
-
-    Label label = new Label(agentDTO.toString());
-    return new HBox(16, checkBox, label);
-  }
-
   private void handleCheckBoxAction(AgentDTO agentDTO, boolean isSelected) {
     
     if (isSelected) {
@@ -134,26 +129,30 @@ public class WarehouseRentalController extends BaseMenuController {
 
   private void uncheckAllCheckboxes() {
 
-    agentsListView.getItems().forEach(item -> {
-      HBox row = item;
-      if (row != null && row.getChildren().size() >= 2) {
-        Node node = row.getChildren().get(0);
-        if (node instanceof CheckBox) {
-          CheckBox checkBox = (CheckBox) node;
-          checkBox.setSelected(false);
-        }
-      }
-    });
     selectedAgents.clear();
+    agentsListView.refresh();
+  }
+
+  /**
+   * Loads the available warehouses of the owner in the background and shows them once they arrive.
+   *
+   * @param errorTitle the title of the alert shown if the warehouses cannot be retrieved
+   */
+  private void loadAvailableWarehouses(String errorTitle) {
+
+    warehouseService.getAvailableWarehouseDTOsByOwnerAsync(owner)
+        .whenCompleteAsync((warehouses, error) -> {
+          if (error != null) {
+            showAlert(Alert.AlertType.ERROR, errorTitle, AsyncTasks.unwrap(error).getMessage());
+          } else {
+            availableWarehouses.setAll(warehouses);
+          }
+        }, AsyncTasks.fxThread());
   }
 
   private void reset() {
 
-    try {
-      availableWarehouses.setAll(warehouseService.getAvailableWarehouseDTOsByOwner(owner));
-    } catch (WarehouseServiceException e) {
-      showAlert(Alert.AlertType.ERROR, "Error", e.getMessage());
-    }
+    loadAvailableWarehouses("Error");
     rentPriceField.setUp(value -> value.matches("^.*$"), "");
     rentPriceField.clear();
     rentPriceField.setUp(value -> value.matches("^\\d{1,3}(,?\\d{3})*(\\.\\d{1,2})?$"), "Invalid money format");
@@ -163,13 +162,7 @@ public class WarehouseRentalController extends BaseMenuController {
 
   private void filterAgents() {
 
-    String filterText = agentFilterField.getText().toLowerCase();
-    List<HBox> filteredAgents = allAgents.stream()
-        .filter(agent -> agent.toString().toLowerCase().contains(filterText))
-        .map(this::createSingleRow)
-        .toList();
-
-    agentsListView.getItems().setAll(filteredAgents);
+    visibleAgents.setAll(agentIndex.search(agentFilterField.getText()));
   }
 
   /**
@@ -184,14 +177,15 @@ public class WarehouseRentalController extends BaseMenuController {
       return;
     }
 
-    try {
-      rentalRequestService.createRentalRequests(selectedAgents, createRequestDetailsDTO());
-      showAlert(Alert.AlertType.INFORMATION, "Success!", "Request is successfully send!");
-    } catch (RequestCreationException e) {
-      showAlert(Alert.AlertType.ERROR, "Unable to send requests", e.getMessage());
-    }
-
-    reset();
+    rentalRequestService.createRentalRequestsAsync(List.copyOf(selectedAgents), createRequestDetailsDTO())
+        .whenCompleteAsync((ignored, error) -> {
+          if (error == null) {
+            showAlert(Alert.AlertType.INFORMATION, "Success!", "Request is successfully send!");
+          } else {
+            showAlert(Alert.AlertType.ERROR, "Unable to send requests", AsyncTasks.unwrap(error).getMessage());
+          }
+          reset();
+        }, AsyncTasks.fxThread());
   }
 
   /**
@@ -225,4 +219,38 @@ public class WarehouseRentalController extends BaseMenuController {
     throw new IllegalStateException("Only owners are allowed to access this operation");
   }
 
+  /**
+   * A row of the agent list view: a checkbox for selecting the agent, its details and its rating.
+   * The list view reuses the cells for the agents scrolled into view, so their nodes are created only once.
+   */
+  private final class AgentCell extends ListCell<AgentDTO> {
+
+    private final CheckBox checkBox = new CheckBox();
+    private final Label detailsLabel = new Label();
+    private final Label ratingLabel = new Label();
+    private final HBox row = new HBox(16, checkBox, detailsLabel, ratingLabel);
+
+    private AgentCell() {
+
+      checkBox.setOnAction(event -> {
+        if (getItem() != null) {
+          handleCheckBoxAction(getItem(), checkBox.isSelected());
+        }
+      });
+    }
+
+    @Override
+    protected void updateItem(AgentDTO agentDTO, boolean empty) {
+
+      super.updateItem(agentDTO, empty);
+      if (empty || agentDTO == null) {
+        setGraphic(null);
+        return;
+      }
+      checkBox.setSelected(selectedAgents.contains(agentDTO));
+      detailsLabel.setText(agentDTO.toString());
+      ratingLabel.setText(agentDTO.getRatingText());
+      setGraphic(row);
+    }
+  }
 }
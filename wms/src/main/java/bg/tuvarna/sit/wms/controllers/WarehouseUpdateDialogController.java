@@ -2,6 +2,7 @@ package bg.tuvarna.sit.wms.controllers;
 
 import bg.tuvarna.sit.wms.controllers.base.BaseWarehouseDialogController;
 import bg.tuvarna.sit.wms.dto.WarehouseDTO;
+import bg.tuvarna.sit.wms.exceptions.WarehouseConflictException;
 import bg.tuvarna.sit.wms.exceptions.WarehouseServiceException;
 import bg.tuvarna.sit.wms.service.WarehouseService;
 import javafx.scene.control.Alert;
@@ -43,6 +44,7 @@ public class WarehouseUpdateDialogController extends BaseWarehouseDialogControll
     WarehouseDTO updatedWarehouseDTO = createWarehouseDTO();
     updatedWarehouseDTO.setId(warehouseDTO.getId());
     updatedWarehouseDTO.setStatus(warehouseDTO.getStatus());
+    updatedWarehouseDTO.setVersion(warehouseDTO.getVersion());
 
     if(!validate()){
       return;
@@ -50,6 +52,10 @@ public class WarehouseUpdateDialogController extends BaseWarehouseDialogControll
 
     try {
       warehouseService.updateWarehouse(updatedWarehouseDTO);
+    } catch (WarehouseConflictException e) {
+      showAlert(Alert.AlertType.WARNING, "Warehouse was changed", e.getMessage());
+      getDialogStage().close();
+      return;
     } catch (WarehouseServiceException e) {
       showAlert(Alert.AlertType.ERROR, "Unable to update warehouse data", e.getMessage());
       return;
@@ -1,14 +1,19 @@
 package bg.tuvarna.sit.wms.controllers.base;
 
+import bg.tuvarna.sit.wms.contracts.UnreadCountListener;
 import bg.tuvarna.sit.wms.entities.User;
 import bg.tuvarna.sit.wms.enums.Role;
+import bg.tuvarna.sit.wms.service.NotificationService;
 import bg.tuvarna.sit.wms.session.UserSession;
+import bg.tuvarna.sit.wms.util.AsyncTasks;
 import static bg.tuvarna.sit.wms.util.ViewLoaderUtil.loadView;
 import java.util.Optional;
 import java.util.function.Predicate;
+import javafx.application.Platform;
 import javafx.event.ActionEvent;
 import javafx.event.EventHandler;
 import javafx.fxml.FXML;
+import javafx.scene.control.ContentDisplay;
 import javafx.scene.control.Label;
 import javafx.scene.control.ToggleButton;
 import javafx.scene.control.ToggleGroup;
@@ -22,6 +27,12 @@ public class BaseMenuController {
   @FXML
   protected VBox sideMenu;
 
+  /**
+   * The service whose unread count is shown on the notifications button. Without it the button is not shown.
+   */
+  @Setter
+  private NotificationService notificationService;
+
   private final ToggleGroup toggleGroup = new ToggleGroup();
 
   protected BaseMenuController() {}
@@ -59,10 +70,61 @@ public class BaseMenuController {
     addToggleButtonToPane(createToggleButton( "Requests", e -> loadView("/views/incomingRequests.fxml", e)),
         sideMenu, isAgentPredicate);
 
+    addNotificationsButton();
+
     addToggleButtonToPane(createToggleButton("Logout", this::handleLogoutAction, Optional.of("logoutButton"),
             Optional.of("button-logout")), sideMenu);
   }
 
+  /**
+   * Adds the button of the notification inbox, with a badge showing the number of unread notifications.
+   * <p>
+   * The badge starts from the count read from the database, since the menu is built at login and on every
+   * change of view this also picks up the notifications written by other clients. Afterwards it follows the
+   * changes made by this client without polling. The listener is removed once the view is replaced.
+   * </p>
+   */
+  private void addNotificationsButton() {
+
+    User currentUser = UserSession.getInstance().getCurrentUser();
+    if (notificationService == null || currentUser == null) {
+      return;
+    }
+
+    Label badge = createLabel("", Optional.of("notificationBadge"), Optional.of("notification-badge"));
+    badge.setVisible(false);
+    ToggleButton button = createToggleButton("Notifications", e -> loadView("/views/notifications.fxml", e));
+    button.setGraphic(badge);
+    button.setContentDisplay(ContentDisplay.RIGHT);
+    addToggleButtonToPane(button, sideMenu);
+
+    Long userId = currentUser.getId();
+    UnreadCountListener listener = (changedUserId, unreadCount) -> {
+      if (userId.equals(changedUserId)) {
+        Platform.runLater(() -> showUnreadCount(badge, unreadCount));
+      }
+    };
+    notificationService.addUnreadCountListener(listener);
+    sideMenu.sceneProperty().addListener((sceneProperty, oldScene, scene) -> {
+      if (scene != null) {
+        scene.windowProperty().addListener((windowProperty, oldWindow, window) -> {
+          if (window == null) {
+            notificationService.removeUnreadCountListener(listener);
+          }
+        });
+      }
+    });
+
+    notificationService.refreshUnreadCountAsync(userId)
+        .thenAcceptAsync(unreadCount -> showUnreadCount(badge, unreadCount), AsyncTasks.fxThread());
+  }
+
+  private void showUnreadCount(Label badge, long unreadCount) {
+
+    badge.setText(unreadCount > 99 ? "99+" : String.valueOf(unreadCount));
+    badge.setVisible(unreadCount > 0);
+  }
+
   /**
    * Handles the logout action.
    * <p>
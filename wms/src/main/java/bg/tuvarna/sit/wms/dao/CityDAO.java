@@ -1,13 +1,16 @@
 package bg.tuvarna.sit.wms.dao;
 
+import bg.tuvarna.sit.wms.dao.base.BaseDAO;
 import bg.tuvarna.sit.wms.entities.City;
 import bg.tuvarna.sit.wms.entities.Country;
 import bg.tuvarna.sit.wms.exceptions.CityDAOException;
+import bg.tuvarna.sit.wms.util.CacheRegions;
+import bg.tuvarna.sit.wms.util.QueryNames;
+import org.hibernate.annotations.QueryHints;
 
-import javax.persistence.EntityManager;
 import javax.persistence.EntityManagerFactory;
-import javax.persistence.EntityTransaction;
 import javax.persistence.NoResultException;
+import javax.persistence.TypedQuery;
 import java.util.List;
 import java.util.Optional;
 
@@ -15,12 +18,10 @@ import java.util.Optional;
  * This class is the Data Access Object (DAO) for the City entity.
  * Provides methods for preforming CRUD operations to the database on the City entity.
  */
-public class CityDAO {
-
-  private final EntityManagerFactory entityManagerFactory;
+public class CityDAO extends BaseDAO {
 
   public CityDAO(EntityManagerFactory entityManagerFactory) {
-    this.entityManagerFactory = entityManagerFactory;
+    super(entityManagerFactory);
   }
 
   /**
@@ -32,17 +33,10 @@ public class CityDAO {
    */
   public void save(City city) throws CityDAOException {
 
-    EntityManager em = entityManagerFactory.createEntityManager();
-    EntityTransaction transaction = em.getTransaction();
-
     try {
-      transaction.begin();
-      em.persist(city);
-      transaction.commit();
+      runInTransaction(em -> em.persist(city));
     } catch (Exception e) {
-      throw handleExceptionAndRollback(transaction, "Error saving city entity", e);
-    } finally {
-      em.close();
+      throw new CityDAOException("Error saving city entity", e);
     }
   }
 
@@ -55,17 +49,10 @@ public class CityDAO {
    */
   public void update(City city) throws CityDAOException {
 
-    EntityManager em = entityManagerFactory.createEntityManager();
-    EntityTransaction transaction = em.getTransaction();
-
     try {
-      transaction.begin();
-      em.merge(city);
-      transaction.commit();
+      runInTransaction(em -> em.merge(city));
     } catch (Exception e) {
-      throw handleExceptionAndRollback(transaction, "Error updating city entity", e);
-    } finally {
-      em.close();
+      throw new CityDAOException("Error updating city entity", e);
     }
   }
 
@@ -78,21 +65,16 @@ public class CityDAO {
    */
   public void delete(City city) throws CityDAOException {
 
-    EntityManager em = entityManagerFactory.createEntityManager();
-    EntityTransaction transaction = em.getTransaction();
-
     try {
-      transaction.begin();
-      if (em.contains(city)) {
-        em.remove(city);
-      } else {
-        em.remove(em.merge(city));
-      }
-      transaction.commit();
+      runInTransaction(em -> {
+        if (em.contains(city)) {
+          em.remove(city);
+        } else {
+          em.remove(em.merge(city));
+        }
+      });
     } catch (Exception e) {
-      throw handleExceptionAndRollback(transaction, "Error deleting city entity", e);
-    } finally {
-      em.close();
+      throw new CityDAOException("Error deleting city entity", e);
     }
   }
 
@@ -106,24 +88,16 @@ public class CityDAO {
    */
   public Optional<City> getById(Long id) throws CityDAOException {
 
-    EntityManager em = entityManagerFactory.createEntityManager();
-    EntityTransaction transaction = em.getTransaction();
-
     try {
-      transaction.begin();
-      City city = em.find(City.class, id);
-      transaction.commit();
-
-      return Optional.ofNullable(city);
+      return Optional.ofNullable(executeInTransaction(em -> em.find(City.class, id)));
     } catch (Exception e) {
-      throw handleExceptionAndRollback(transaction, "Error retrieving city entity", e);
-    } finally {
-      em.close();
+      throw new CityDAOException("Error retrieving city entity", e);
     }
   }
 
   /**
-   * Retrieves a city entity by its name and country from the database within a transaction.
+   * Retrieves a city entity by its name, ignoring case, and country from the database within a transaction.
+   * The result of the query is kept in the query cache.
    * If an error occurs during the transaction it is rolled back.
    *
    * @param name the name of the city entity
@@ -133,22 +107,19 @@ public class CityDAO {
    */
   public Optional<City> getByNameAndCountry(String name, Country country) throws CityDAOException {
 
-    EntityManager em = entityManagerFactory.createEntityManager();
-    EntityTransaction transaction = em.getTransaction();
-
     try {
-      transaction.begin();
-      City city = em.createQuery("SELECT c FROM City c WHERE c.name = :name AND c.country = :country", City.class)
-          .setParameter("name", name).setParameter("country", country).getSingleResult();
-      transaction.commit();
+      City city = executeInTransaction(em -> {
+        TypedQuery<City> query = em.createNamedQuery(QueryNames.CITY_FIND_BY_NAME_AND_COUNTRY, City.class);
+        query.setHint(QueryHints.CACHEABLE, true);
+        query.setHint(QueryHints.CACHE_REGION, CacheRegions.CITY_BY_NAME_AND_COUNTRY_QUERY);
+        return query.setParameter("name", name).setParameter("country", country).getSingleResult();
+      });
 
       return Optional.ofNullable(city);
     } catch (NoResultException e) {
       return Optional.empty();
     } catch (Exception e) {
-      throw handleExceptionAndRollback(transaction, "Error retrieving city entity by name", e);
-    } finally {
-      em.close();
+      throw new CityDAOException("Error retrieving city entity by name", e);
     }
   }
 
@@ -161,35 +132,10 @@ public class CityDAO {
    */
   public List<City> getAll() throws CityDAOException {
 
-    EntityManager em = entityManagerFactory.createEntityManager();
-    EntityTransaction transaction = em.getTransaction();
     try {
-      transaction.begin();
-      List<City> cities = em.createQuery("SELECT c FROM City c", City.class).getResultList();
-      transaction.commit();
-
-      return cities;
+      return executeInTransaction(em -> em.createNamedQuery(QueryNames.CITY_FIND_ALL, City.class).getResultList());
     } catch (Exception e) {
-      throw handleExceptionAndRollback(transaction, "Error retrieving city entities", e);
-    } finally {
-      em.close();
-    }
-  }
-
-  /**
-   * Handles exceptions and rolls back the transaction.
-   * If an exception occurs during the transaction, the transaction is rolled back.
-   *
-   * @param transaction the transaction
-   * @param message the error message
-   * @param e the exception to propagate
-   * @return a new CityDAOException with the given message and cause
-   */
-  private CityDAOException handleExceptionAndRollback(EntityTransaction transaction, String message, Exception e) {
-
-    if (transaction.isActive()) {
-      transaction.rollback();
+      throw new CityDAOException("Error retrieving city entities", e);
     }
-    return new CityDAOException(message, e);
   }
 }
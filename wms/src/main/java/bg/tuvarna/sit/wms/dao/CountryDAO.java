@@ -1,12 +1,15 @@
 package bg.tuvarna.sit.wms.dao;
 
+import bg.tuvarna.sit.wms.dao.base.BaseDAO;
 import bg.tuvarna.sit.wms.entities.Country;
 import bg.tuvarna.sit.wms.exceptions.CountryDAOException;
+import bg.tuvarna.sit.wms.util.CacheRegions;
+import bg.tuvarna.sit.wms.util.QueryNames;
+import org.hibernate.annotations.QueryHints;
 
-import javax.persistence.EntityManager;
 import javax.persistence.EntityManagerFactory;
-import javax.persistence.EntityTransaction;
 import javax.persistence.NoResultException;
+import javax.persistence.TypedQuery;
 import java.util.List;
 import java.util.Optional;
 
@@ -14,12 +17,10 @@ import java.util.Optional;
  * This class is the Data Access Object (DAO) for the Country entity.
  * Provides methods for preforming CRUD operations to the database on the Country entity.
  */
-public class CountryDAO {
-
-  private final EntityManagerFactory entityManagerFactory;
+public class CountryDAO extends BaseDAO {
 
   public CountryDAO(EntityManagerFactory entityManagerFactory) {
-    this.entityManagerFactory = entityManagerFactory;
+    super(entityManagerFactory);
   }
 
   /**
@@ -31,17 +32,10 @@ public class CountryDAO {
    */
   public void save(Country country) throws CountryDAOException {
 
-    EntityManager em = entityManagerFactory.createEntityManager();
-    EntityTransaction transaction = em.getTransaction();
-
     try {
-      transaction.begin();
-      em.persist(country);
-      transaction.commit();
+      runInTransaction(em -> em.persist(country));
     } catch (Exception e) {
-      throw handleExceptionAndRollback(transaction,"Error saving country entity", e);
-    } finally {
-      em.close();
+      throw new CountryDAOException("Error saving country entity", e);
     }
   }
 
@@ -54,17 +48,10 @@ public class CountryDAO {
    */
   public void update(Country country) throws CountryDAOException {
 
-    EntityManager em = entityManagerFactory.createEntityManager();
-    EntityTransaction transaction = em.getTransaction();
-
     try {
-      transaction.begin();
-      em.merge(country);
-      transaction.commit();
+      runInTransaction(em -> em.merge(country));
     } catch (Exception e) {
-      throw handleExceptionAndRollback(transaction,"Error updating country entity", e);
-    } finally {
-      em.close();
+      throw new CountryDAOException("Error updating country entity", e);
     }
   }
 
@@ -77,21 +64,16 @@ public class CountryDAO {
    */
   public void delete(Country country) throws CountryDAOException {
 
-    EntityManager em = entityManagerFactory.createEntityManager();
-    EntityTransaction transaction = em.getTransaction();
-
     try {
-      transaction.begin();
-      if (em.contains(country)) {
-        em.remove(country);
-      } else {
-        em.remove(em.merge(country));
-      }
-      transaction.commit();
+      runInTransaction(em -> {
+        if (em.contains(country)) {
+          em.remove(country);
+        } else {
+          em.remove(em.merge(country));
+        }
+      });
     } catch (Exception e) {
-      throw handleExceptionAndRollback(transaction,"Error deleting country entity", e);
-    } finally {
-      em.close();
+      throw new CountryDAOException("Error deleting country entity", e);
     }
   }
 
@@ -105,24 +87,16 @@ public class CountryDAO {
    */
   public Optional<Country> getById(Long id) throws CountryDAOException {
 
-    EntityManager em = entityManagerFactory.createEntityManager();
-    EntityTransaction transaction = em.getTransaction();
-
     try {
-      transaction.begin();
-      Country country = em.find(Country.class, id);
-      transaction.commit();
-
-      return Optional.ofNullable(country);
+      return Optional.ofNullable(executeInTransaction(em -> em.find(Country.class, id)));
     } catch (Exception e) {
-      throw handleExceptionAndRollback(transaction,"Error retrieving country entity", e);
-    } finally {
-      em.close();
+      throw new CountryDAOException("Error retrieving country entity", e);
     }
   }
 
   /**
-   * Retrieves a country entity by its name from the database within a transaction.
+   * Retrieves a country entity by its name, ignoring case, from the database within a transaction.
+   * The result of the query is kept in the query cache.
    * If an error occurs during the transaction it is rolled back.
    *
    * @param name the name of the country entity
@@ -131,22 +105,19 @@ public class CountryDAO {
    */
   public Optional<Country> getByName(String name) throws CountryDAOException {
 
-    EntityManager em = entityManagerFactory.createEntityManager();
-    EntityTransaction transaction = em.getTransaction();
-
     try {
-      transaction.begin();
-      Country country = em.createQuery("SELECT c FROM Country c WHERE c.name = :name", Country.class)
-          .setParameter("name", name).getSingleResult();
-      transaction.commit();
+      Country country = executeInTransaction(em -> {
+        TypedQuery<Country> query = em.createNamedQuery(QueryNames.COUNTRY_FIND_BY_NAME, Country.class);
+        query.setHint(QueryHints.CACHEABLE, true);
+        query.setHint(QueryHints.CACHE_REGION, CacheRegions.COUNTRY_BY_NAME_QUERY);
+        return query.setParameter("name", name).getSingleResult();
+      });
 
       return Optional.ofNullable(country);
     } catch (NoResultException e) {
       return Optional.empty();
     } catch (Exception e) {
-      throw handleExceptionAndRollback(transaction, "Error retrieving country entity by name", e);
-    } finally {
-      em.close();
+      throw new CountryDAOException("Error retrieving country entity by name", e);
     }
   }
 
@@ -159,37 +130,11 @@ public class CountryDAO {
    */
   public List<Country> getAll() throws CountryDAOException {
 
-    EntityManager em = entityManagerFactory.createEntityManager();
-    EntityTransaction transaction = em.getTransaction();
-
     try {
-      transaction.begin();
-      List<Country> countries = em.createQuery("SELECT c FROM Country c", Country.class).getResultList();
-      transaction.commit();
-
-      return countries;
+      return executeInTransaction(em -> em.createNamedQuery(QueryNames.COUNTRY_FIND_ALL, Country.class).getResultList());
     } catch (Exception e) {
-      throw handleExceptionAndRollback(transaction, "Error retrieving country entities", e);
-    } finally {
-      em.close();
-    }
-  }
-
-  /**
-   * Handles exceptions and rolls back the transaction.
-   * If an exception occurs during the transaction, the transaction is rolled back.
-   *
-   * @param transaction the EntityTransaction instance
-   * @param message the error message
-   * @param e the exception to propagate
-   * @return a new CountryDAOException with the given message and cause
-   */
-  private CountryDAOException handleExceptionAndRollback(EntityTransaction transaction, String message, Exception e) {
-
-    if (transaction.isActive()) {
-      transaction.rollback();
+      throw new CountryDAOException("Error retrieving country entities", e);
     }
-    return new CountryDAOException(message, e);
   }
 }
 
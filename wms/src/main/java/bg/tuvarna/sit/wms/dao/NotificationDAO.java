@@ -0,0 +1,139 @@
+package bg.tuvarna.sit.wms.dao;
+
+import bg.tuvarna.sit.wms.dao.base.BaseDAO;
+import bg.tuvarna.sit.wms.dto.NotificationDTO;
+import bg.tuvarna.sit.wms.dto.NotificationImportDto;
+import bg.tuvarna.sit.wms.entities.Notification;
+import bg.tuvarna.sit.wms.entities.User;
+import bg.tuvarna.sit.wms.enums.NotificationStatus;
+import bg.tuvarna.sit.wms.exceptions.NotificationPersistenceException;
+import bg.tuvarna.sit.wms.util.QueryNames;
+import java.util.Collection;
+import java.util.List;
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.PersistenceException;
+
+/**
+ * Data Access Object (DAO) for notification operations.
+ * Provides an abstraction layer for database operations related to notification entities.
+ */
+public class NotificationDAO extends BaseDAO {
+
+  private static final int FLUSH_INTERVAL = 50;
+
+  public NotificationDAO(EntityManagerFactory entityManagerFactory) {
+    super(entityManagerFactory);
+  }
+
+  /**
+   * Persists the given notifications as unread within a single transaction. They are inserted in
+   * JDBC batches and their recipients are referenced by their IDs only, so the users are not loaded.
+   *
+   * @param notifications the notifications to persist
+   * @throws NotificationPersistenceException if there is a problem during the persistence process
+   */
+  public void saveAll(List<NotificationImportDto> notifications) throws NotificationPersistenceException {
+
+    try {
+      runInTransaction(entityManager -> {
+        int persisted = 0;
+        for (NotificationImportDto dto : notifications) {
+          Notification notification = new Notification();
+          notification.setUser(entityManager.getReference(User.class, dto.getUserId()));
+          notification.setMessage(dto.getMessage());
+          notification.setDate(dto.getDate());
+          notification.setStatus(NotificationStatus.UNREAD);
+          entityManager.persist(notification);
+
+          if (++persisted % FLUSH_INTERVAL == 0) {
+            entityManager.flush();
+            entityManager.clear();
+          }
+        }
+      });
+    } catch (PersistenceException e) {
+      throw new NotificationPersistenceException("Could not persist " + notifications.size() + " notifications.", e);
+    }
+  }
+
+  /**
+   * Retrieves the newest unread notifications of a user.
+   *
+   * @param userId     the ID of the user
+   * @param maxResults the maximum number of notifications to return
+   * @return the unread notifications, newest first
+   */
+  public List<NotificationDTO> getUnreadByUser(Long userId, int maxResults) {
+
+    return executeReadOnly(entityManager -> entityManager
+        .createNamedQuery(QueryNames.NOTIFICATION_FIND_DTOS_BY_USER_AND_STATUS, NotificationDTO.class)
+        .setParameter("userId", userId)
+        .setParameter("status", NotificationStatus.UNREAD)
+        .setMaxResults(maxResults)
+        .getResultList());
+  }
+
+  /**
+   * Counts the unread notifications of a user.
+   *
+   * @param userId the ID of the user
+   * @return the number of unread notifications
+   */
+  public long countUnreadByUser(Long userId) {
+
+    return executeReadOnly(entityManager -> entityManager
+        .createNamedQuery(QueryNames.NOTIFICATION_COUNT_BY_USER_AND_STATUS, Long.class)
+        .setParameter("userId", userId)
+        .setParameter("status", NotificationStatus.UNREAD)
+        .getSingleResult());
+  }
+
+  /**
+   * Marks the given unread notifications of a user as read with a single bulk update.
+   * Notifications of other users and notifications which are already read are left unchanged.
+   *
+   * @param userId          the ID of the user
+   * @param notificationIds the IDs of the notifications
+   * @return the number of notifications which were marked as read
+   * @throws NotificationPersistenceException if there is a problem during the update
+   */
+  public int markAsRead(Long userId, Collection<Long> notificationIds) throws NotificationPersistenceException {
+
+    if (notificationIds.isEmpty()) {
+      return 0;
+    }
+
+    try {
+      return executeInTransaction(entityManager -> entityManager
+          .createNamedQuery(QueryNames.NOTIFICATION_MARK_READ)
+          .setParameter("read", NotificationStatus.READ)
+          .setParameter("userId", userId)
+          .setParameter("unread", NotificationStatus.UNREAD)
+          .setParameter("ids", notificationIds)
+          .executeUpdate());
+    } catch (PersistenceException e) {
+      throw new NotificationPersistenceException("Could not mark the notifications of user " + userId + " as read.", e);
+    }
+  }
+
+  /**
+   * Marks all unread notifications of a user as read with a single bulk update.
+   *
+   * @param userId the ID of the user
+   * @return the number of notifications which were marked as read
+   * @throws NotificationPersistenceException if there is a problem during the update
+   */
+  public int markAllAsRead(Long userId) throws NotificationPersistenceException {
+
+    try {
+      return executeInTransaction(entityManager -> entityManager
+          .createNamedQuery(QueryNames.NOTIFICATION_MARK_ALL_READ)
+          .setParameter("read", NotificationStatus.READ)
+          .setParameter("userId", userId)
+          .setParameter("unread", NotificationStatus.UNREAD)
+          .executeUpdate());
+    } catch (PersistenceException e) {
+      throw new NotificationPersistenceException("Could not mark the notifications of user " + userId + " as read.", e);
+    }
+  }
+}
@@ -1,58 +1,130 @@
 package bg.tuvarna.sit.wms.dao;
 
+import bg.tuvarna.sit.wms.dao.base.BaseDAO;
+import bg.tuvarna.sit.wms.dto.AgentRatingDTO;
+import bg.tuvarna.sit.wms.dto.ReviewImportDto;
 import bg.tuvarna.sit.wms.dto.ViewReviewDto;
 import bg.tuvarna.sit.wms.entities.Agent;
+import bg.tuvarna.sit.wms.entities.AgentRating;
 import bg.tuvarna.sit.wms.entities.Review;
+import bg.tuvarna.sit.wms.entities.User;
 import bg.tuvarna.sit.wms.exceptions.ReviewPersistenceException;
+import bg.tuvarna.sit.wms.util.QueryNames;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeSet;
 import javax.persistence.EntityManager;
 import javax.persistence.EntityManagerFactory;
-import javax.persistence.EntityTransaction;
+import javax.persistence.LockModeType;
 import javax.persistence.PersistenceException;
 import javax.persistence.TypedQuery;
 
 /**
  * Data Access Object (DAO) for review operations.
  * Provides an abstraction layer for database operations related to review entities.
+ * <p>
+ * Every method which adds or removes reviews also updates the {@link AgentRating} aggregates of
+ * their agents in the same transaction, so the aggregates always match the reviews.
+ * </p>
  */
-public class ReviewDao {
+public class ReviewDao extends BaseDAO {
 
-  private final EntityManagerFactory entityManagerFactory;
+  private static final int IN_CLAUSE_CHUNK_SIZE = 1000;
+  private static final int FLUSH_INTERVAL = 50;
 
   public ReviewDao(EntityManagerFactory entityManagerFactory) {
-    this.entityManagerFactory = entityManagerFactory;
+    super(entityManagerFactory);
   }
 
   /**
-   * Deletes all reviews associated with a given agent.
+   * Deletes all reviews associated with a given agent, together with the agent's rating aggregate.
    *
    * @param agent The agent whose reviews are to be deleted.
    * @throws ReviewPersistenceException if there is a problem during the deletion process.
    */
   public void deleteAllReviewsForAgent(Agent agent) throws ReviewPersistenceException {
 
-    EntityManager entityManager = entityManagerFactory.createEntityManager();
-    EntityTransaction transaction = entityManager.getTransaction();
+    try {
+      runInTransaction(entityManager -> {
+        entityManager.createNamedQuery(QueryNames.REVIEW_DELETE_BY_RECEIVER)
+            .setParameter("agentId", agent.getId())
+            .executeUpdate();
+        entityManager.createNamedQuery(QueryNames.AGENT_RATING_DELETE_BY_AGENT)
+            .setParameter("agentId", agent.getId())
+            .executeUpdate();
+      });
+    } catch (PersistenceException e) {
+      throw new ReviewPersistenceException("Could not delete reviews for agent with ID: " + agent.getId(), e);
+    }
+  }
+
+  /**
+   * Replaces the reviews of the given agents within a single transaction. The existing reviews of all
+   * agents are removed with bulk deletes, after which the new reviews are inserted in JDBC batches.
+   * The rows of the agents are locked first, like in {@link #persistReview}, so no review of theirs is
+   * written in between. Senders are referenced by their IDs only, and the review collections of the agents
+   * are not loaded. The rating aggregates of the agents are replaced in the same way, with the aggregates
+   * counted from the new reviews.
+   *
+   * @param agentIds The IDs of the agents whose reviews are replaced.
+   * @param reviews  The new reviews, which must belong to the given agents.
+   * @throws ReviewPersistenceException if there is a problem during the replacement process.
+   */
+  public void replaceReviews(Collection<Long> agentIds, List<ReviewImportDto> reviews)
+      throws ReviewPersistenceException {
+
+    List<Long> distinctAgentIds = new TreeSet<>(agentIds).stream().toList();
 
     try {
-      transaction.begin();
-      entityManager.createQuery("DELETE FROM Review r WHERE r.receiver.id = :agentId")
-              .setParameter("agentId", agent.getId())
+      runInTransaction(entityManager -> {
+        for (int from = 0; from < distinctAgentIds.size(); from += IN_CLAUSE_CHUNK_SIZE) {
+          List<Long> chunk =
+              distinctAgentIds.subList(from, Math.min(from + IN_CLAUSE_CHUNK_SIZE, distinctAgentIds.size()));
+          entityManager.createNamedQuery(QueryNames.AGENT_FIND_BY_IDS)
+              .setParameter("agentIds", chunk)
+              .setLockMode(LockModeType.PESSIMISTIC_WRITE)
+              .getResultList();
+          entityManager.createNamedQuery(QueryNames.REVIEW_DELETE_BY_RECEIVERS)
+              .setParameter("agentIds", chunk)
+              .executeUpdate();
+          entityManager.createNamedQuery(QueryNames.AGENT_RATING_DELETE_BY_AGENTS)
+              .setParameter("agentIds", chunk)
               .executeUpdate();
-      transaction.commit();
+        }
+
+        Map<Long, AgentRating> ratings = new LinkedHashMap<>();
+        int persisted = 0;
+        for (ReviewImportDto dto : reviews) {
+          ratings.computeIfAbsent(dto.getAgentId(), AgentRating::new).add(dto.getAssessment());
+          Review review = new Review();
+          review.setAssessment(dto.getAssessment());
+          review.setDescription(dto.getDescription());
+          review.setSender(entityManager.getReference(User.class, dto.getSenderId()));
+          review.setReceiver(entityManager.getReference(User.class, dto.getAgentId()));
+          entityManager.persist(review);
+
+          if (++persisted % FLUSH_INTERVAL == 0) {
+            entityManager.flush();
+            entityManager.clear();
+          }
+        }
+        ratings.values().forEach(entityManager::persist);
+      });
     } catch (PersistenceException e) {
-      if (transaction.isActive()) {
-        transaction.rollback();
-      }
-      throw new ReviewPersistenceException("Could not delete reviews for agent with ID: " + agent.getId(), e);
-    } finally {
-      entityManager.close();
+      throw new ReviewPersistenceException("Could not replace the reviews of " + distinctAgentIds.size() + " agents.", e);
     }
   }
 
   /**
-   * Persists a new review in the database and associates it with an agent.
+   * Persists a new review in the database, associates it with an agent and adds it to the agent's
+   * rating aggregate. The row of the agent is locked first and held until the transaction commits,
+   * so concurrent reviews of the same agent are counted one after the other. This holds for the first
+   * review of an agent as well, whose aggregate row does not exist yet and can therefore not be locked.
+   * The review takes its ID while the lock is held, so the reviews of an agent commit in ID order.
    *
    * @param review  The review to persist.
    * @param agentId The ID of the agent to whom the review is associated.
@@ -60,49 +132,127 @@ public class ReviewDao {
    */
   public void persistReview(Review review, Long agentId) throws ReviewPersistenceException {
 
-    EntityManager entityManager = entityManagerFactory.createEntityManager();
-    EntityTransaction transaction = entityManager.getTransaction();
-
     try {
-      transaction.begin();
-      entityManager.persist(review);
-      Agent agent = entityManager.find(Agent.class, agentId);
-      agent.getReceivedReviews().add(review);
-      entityManager.merge(agent);
-      transaction.commit();
+      runInTransaction(entityManager -> {
+        Agent agent = entityManager.find(Agent.class, agentId, LockModeType.PESSIMISTIC_WRITE);
+        entityManager.persist(review);
+        agent.getReceivedReviews().add(review);
+        entityManager.merge(agent);
+        addToRating(entityManager, agentId, review.getAssessment());
+      });
     } catch (PersistenceException e) {
-      if (transaction.isActive()) {
-        transaction.rollback();
-      }
       throw new ReviewPersistenceException("Could not persist review.", e);
-    } finally {
-      entityManager.close();
     }
   }
 
   /**
    * Retrieves a list of reviews DTOs for the current user, assuming the user is an agent.
+   * The reviews are loaded read-only, since they are only mapped to DTOs.
    *
    * @param currentUserId The ID of the current user.
    * @return A list of {@link ViewReviewDto} objects representing the reviews.
    */
   public List<ViewReviewDto> getReviewsForCurrentUser(Long currentUserId) {
 
-    List<ViewReviewDto> reviewDtos = new ArrayList<>();
-    EntityManager entityManager = entityManagerFactory.createEntityManager();
-
-    try {
-      String jpql = "SELECT r FROM Review r JOIN r.receiver agent WHERE agent.id = :currentUserId ORDER BY r.id ASC";
-      TypedQuery<Review> query = entityManager.createQuery(jpql, Review.class);
+    return executeReadOnly(entityManager -> {
+      TypedQuery<Review> query = readOnly(entityManager.createNamedQuery(QueryNames.REVIEW_FIND_BY_RECEIVER, Review.class));
       query.setParameter("currentUserId", currentUserId);
 
+      List<ViewReviewDto> reviewDtos = new ArrayList<>();
       List<Review> reviews = query.getResultList();
       reviews.forEach(review -> reviewDtos.add(new ViewReviewDto(review)));
-    } finally {
-      entityManager.close();
-    }
 
-    return reviewDtos;
+      return reviewDtos;
+    });
+  }
+
+  /**
+   * Retrieves the reviews of the current user which were added after the given one, oldest first.
+   * The DTOs are projected directly by the query, so neither the reviews nor their senders are loaded,
+   * and the range scan on the receiver and review ID only touches the new rows. The reviews of an agent
+   * commit in ID order, so the given ID is a cursor which no later review falls behind.
+   *
+   * @param currentUserId The ID of the current user.
+   * @param lastSeenId    The ID of the newest review the caller already has, or 0 for all reviews.
+   * @param maxResults    The maximum number of reviews to return.
+   * @return A list of {@link ViewReviewDto} objects representing the new reviews.
+   */
+  public List<ViewReviewDto> getReviewsForCurrentUserAfter(Long currentUserId, long lastSeenId, int maxResults) {
+
+    return executeReadOnly(entityManager -> entityManager
+        .createNamedQuery(QueryNames.REVIEW_FIND_DTOS_BY_RECEIVER_AFTER, ViewReviewDto.class)
+        .setParameter("receiverId", currentUserId)
+        .setParameter("lastSeenId", lastSeenId)
+        .setMaxResults(maxResults)
+        .getResultList());
   }
 
+  /**
+   * Retrieves the rating aggregates of all agents with at least one review.
+   *
+   * @return the rating aggregates
+   */
+  public List<AgentRatingDTO> getAgentRatings() {
+
+    return executeReadOnly(entityManager -> readOnly(entityManager
+        .createNamedQuery(QueryNames.AGENT_RATING_FIND_ALL, AgentRating.class))
+        .getResultStream()
+        .map(AgentRatingDTO::new)
+        .toList());
+  }
+
+  /**
+   * Retrieves the rating aggregate of an agent.
+   *
+   * @param agentId The ID of the agent.
+   * @return an Optional of the aggregate, or an empty Optional if the agent has no reviews
+   */
+  public Optional<AgentRatingDTO> getAgentRating(Long agentId) {
+
+    return executeReadOnly(entityManager -> Optional.ofNullable(entityManager.find(AgentRating.class, agentId))
+        .filter(rating -> rating.getReviewCount() > 0)
+        .map(AgentRatingDTO::new));
+  }
+
+  /**
+   * Tells whether every agent with reviews has a rating aggregate, which is not the case for reviews
+   * written before the aggregates were introduced.
+   *
+   * @return true if the number of aggregates matches the number of reviewed agents
+   */
+  public boolean hasAllAgentRatings() {
+
+    return executeReadOnly(entityManager -> entityManager
+        .createNamedQuery(QueryNames.AGENT_RATING_COUNT, Long.class)
+        .getSingleResult()
+        .equals(entityManager.createNamedQuery(QueryNames.REVIEW_COUNT_RECEIVERS, Long.class).getSingleResult()));
+  }
+
+  /**
+   * Recomputes the rating aggregates of all agents from their reviews with a single insert-select.
+   *
+   * @return the number of agents with reviews
+   * @throws ReviewPersistenceException if there is a problem during the recomputation
+   */
+  public int rebuildAgentRatings() throws ReviewPersistenceException {
+
+    try {
+      return executeInTransaction(entityManager -> {
+        entityManager.createNamedQuery(QueryNames.AGENT_RATING_DELETE_ALL).executeUpdate();
+        return entityManager.createNamedQuery(QueryNames.AGENT_RATING_REBUILD).executeUpdate();
+      });
+    } catch (PersistenceException e) {
+      throw new ReviewPersistenceException("Could not rebuild the agent ratings.", e);
+    }
+  }
+
+  private void addToRating(EntityManager entityManager, Long agentId, int assessment) {
+
+    AgentRating rating = entityManager.find(AgentRating.class, agentId);
+    if (rating == null) {
+      rating = new AgentRating(agentId);
+      entityManager.persist(rating);
+    }
+    rating.add(assessment);
+  }
 }
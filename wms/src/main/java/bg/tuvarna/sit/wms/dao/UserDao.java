@@ -1,34 +1,35 @@
 package bg.tuvarna.sit.wms.dao;
 
+import bg.tuvarna.sit.wms.dao.base.BaseDAO;
 import bg.tuvarna.sit.wms.entities.Agent;
 import bg.tuvarna.sit.wms.entities.User;
 import bg.tuvarna.sit.wms.exceptions.UserPersistenceException;
+import bg.tuvarna.sit.wms.util.QueryNames;
 
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import bg.tuvarna.sit.wms.entities.Owner;
 import java.util.Optional;
-import javax.persistence.EntityManager;
+import java.util.Set;
 import javax.persistence.EntityManagerFactory;
 import javax.persistence.EntityNotFoundException;
-import javax.persistence.EntityTransaction;
 import javax.persistence.NoResultException;
 import javax.persistence.PersistenceException;
 import javax.persistence.TypedQuery;
-import org.apache.logging.log4j.LogManager;
-import org.apache.logging.log4j.Logger;
 
 /**
  * Data Access Object (DAO) for user operations.
  * Provides an abstraction layer for database operations related to user entities.
  */
-public class UserDao {
+public class UserDao extends BaseDAO {
 
-  private static final Logger LOGGER = LogManager.getLogger(UserDao.class);
-
-  private final EntityManagerFactory entityManagerFactory;
+  private static final int IN_CLAUSE_CHUNK_SIZE = 1000;
 
   public UserDao(EntityManagerFactory entityManagerFactory) {
-    this.entityManagerFactory = entityManagerFactory;
+    super(entityManagerFactory);
   }
 
   /**
@@ -40,26 +41,71 @@ public class UserDao {
    */
   public void saveUser(User user) throws UserPersistenceException {
 
-    EntityManager entityManager = entityManagerFactory.createEntityManager();
-    EntityTransaction entityTransaction = entityManager.getTransaction();
-
     try {
-      entityTransaction.begin();
-      entityManager.persist(user);
-      entityTransaction.commit();
+      runInTransaction(entityManager -> entityManager.persist(user));
     } catch (PersistenceException e) {
-      handleTransactionRollback(entityTransaction);
       throw new UserPersistenceException("Persistence error saving user", e);
     } catch (Exception e) {
-      handleTransactionRollback(entityTransaction);
       throw new UserPersistenceException("Unexpected error saving user", e);
-    } finally {
-      if (entityManager.isOpen()) {
-        entityManager.close();
-      }
     }
   }
 
+  /**
+   * Persists a batch of user entities to the database within a single transaction.
+   * If an error occurs, the transaction is rolled back and none of the users are saved.
+   *
+   * @param users The user entities to persist.
+   * @throws UserPersistenceException If there is a persistence error during the saving process.
+   */
+  public void saveUsers(List<User> users) throws UserPersistenceException {
+
+    try {
+      runInTransaction(entityManager -> users.forEach(entityManager::persist));
+    } catch (PersistenceException e) {
+      throw new UserPersistenceException("Persistence error saving users", e);
+    } catch (Exception e) {
+      throw new UserPersistenceException("Unexpected error saving users", e);
+    }
+  }
+
+  /**
+   * Retrieves the email addresses of all users with a single query.
+   *
+   * @return A set of the email addresses of all users.
+   */
+  public Set<String> getAllEmails() {
+
+    return new HashSet<>(executeWithEntityManager(entityManager -> entityManager
+        .createNamedQuery(QueryNames.USER_FIND_ALL_EMAILS, String.class)
+        .getResultList()));
+  }
+
+  /**
+   * Resolves the given email addresses to the IDs of their users, querying them in chunks
+   * of {@value #IN_CLAUSE_CHUNK_SIZE} emails. Unknown emails are not contained in the result.
+   *
+   * @param emails The email addresses to resolve.
+   * @return A map of user IDs by email address.
+   */
+  public Map<String, Long> findIdsByEmails(Collection<String> emails) {
+
+    List<String> distinctEmails = List.copyOf(new HashSet<>(emails));
+    Map<String, Long> idsByEmail = new HashMap<>();
+
+    executeWithEntityManager(entityManager -> {
+      for (int from = 0; from < distinctEmails.size(); from += IN_CLAUSE_CHUNK_SIZE) {
+        List<String> chunk = distinctEmails.subList(from, Math.min(from + IN_CLAUSE_CHUNK_SIZE, distinctEmails.size()));
+        entityManager.createNamedQuery(QueryNames.USER_FIND_IDS_BY_EMAILS, Object[].class)
+            .setParameter("emails", chunk)
+            .getResultList()
+            .forEach(row -> idsByEmail.put((String) row[0], (Long) row[1]));
+      }
+      return null;
+    });
+
+    return idsByEmail;
+  }
+
   /**
    * Finds a user by their email address.
    *
@@ -67,18 +113,17 @@ public class UserDao {
    * @return An Optional containing the User if found, or an empty Optional if no user is found with the given email.
    */
   public Optional<User> findByEmail(String email) {
-    EntityManager entityManager = entityManagerFactory.createEntityManager();
+
     try {
-      String jpql = "SELECT u FROM User u WHERE u.email = :email";
-      TypedQuery<User> query = entityManager.createQuery(jpql, User.class)
-              .setParameter("email", email);
-      User user = query.getSingleResult();
+      User user = executeWithEntityManager(entityManager -> {
+        TypedQuery<User> query = entityManager.createNamedQuery(QueryNames.USER_FIND_BY_EMAIL, User.class)
+                .setParameter("email", email);
+        return query.getSingleResult();
+      });
 
       return Optional.of(user);
     } catch (NoResultException e) {
       return Optional.empty();
-    } finally {
-      entityManager.close();
     }
   }
 
@@ -89,18 +134,17 @@ public class UserDao {
    * @return An Optional containing the User if found, or an empty Optional if no user is found with the given phone number.
    */
   public Optional<User> findByPhone(String phone) {
-    EntityManager entityManager = getEntityManager();
+
     try {
-      String jpql = "SELECT u FROM User u WHERE u.phone = :phone";
-      TypedQuery<User> query = entityManager.createQuery(jpql, User.class)
-              .setParameter("phone", phone);
-      User user = query.getSingleResult();
+      User user = executeWithEntityManager(entityManager -> {
+        TypedQuery<User> query = entityManager.createNamedQuery(QueryNames.USER_FIND_BY_PHONE, User.class)
+                .setParameter("phone", phone);
+        return query.getSingleResult();
+      });
 
       return Optional.of(user);
     } catch (NoResultException e) {
       return Optional.empty();
-    } finally {
-      entityManager.close();
     }
   }
 
@@ -112,95 +156,66 @@ public class UserDao {
    */
   public Optional<String> getUserPasswordById(Long userId) {
 
-    EntityManager entityManager = getEntityManager();
-
     try {
-      String jpql = "SELECT u.password FROM User u WHERE u.id = :userId";
-      String password = entityManager.createQuery(jpql, String.class)
+      String password = executeWithEntityManager(entityManager -> entityManager
+              .createNamedQuery(QueryNames.USER_FIND_PASSWORD_BY_ID, String.class)
               .setParameter("userId", userId)
-              .getSingleResult();
+              .getSingleResult());
       return Optional.ofNullable(password);
     } catch (NoResultException e) {
       return Optional.empty();
-    } finally {
-      entityManager.close();
     }
   }
 
+  /**
+   * Retrieves all agents within a read-only transaction.
+   *
+   * @return a list of all agents
+   */
   public List<Agent> getAllAgents() {
 
-    EntityManager entityManager = entityManagerFactory.createEntityManager();
-    EntityTransaction transaction = entityManager.getTransaction();
-
-    List<Agent> agents;
-    try {
-      transaction.begin();
-      agents = entityManager.createQuery("SELECT a FROM Agent a", Agent.class)
-          .getResultList();
-      transaction.commit();
-    } finally {
-      entityManager.close();
-    }
-
-    return agents;
+    return executeReadOnly(entityManager -> readOnly(entityManager.createNamedQuery(QueryNames.AGENT_FIND_ALL, Agent.class))
+        .getResultList());
   }
 
   public Owner findOwnerById(Long id) throws EntityNotFoundException {
 
-    EntityManager entityManager = getEntityManager();
-    try {
+    return executeWithEntityManager(entityManager -> {
       Owner owner = entityManager.find(Owner.class, id);
       if (owner == null) {
         throw new EntityNotFoundException("Owner with ID " + id + " not found.");
       }
       return owner;
-    } finally {
-      entityManager.close();
-    }
-  }
-
-  public Agent findAgentById(Long agentId) throws EntityNotFoundException {
-
-    EntityManager entityManager = getEntityManager();
-    try {
-      Agent agent = entityManager.find(Agent.class, agentId);
-      if (agent == null) {
-        throw new EntityNotFoundException("Agent with ID " + agentId + " not found.");
-      }
-      return agent;
-    } finally {
-      entityManager.close();
-    }
+    });
   }
 
   /**
-   * Handles the rollback of a transaction in case of an error.
-   * If the transaction is active, it attempts to roll back the transaction and logs any rollback failures.
+   * Retrieves the owners with the given email addresses in a single query.
+   * Email addresses that don't belong to an owner are ignored.
    *
-   * @param entityTransaction The entity transaction which needs to be rolled back.
+   * @param emails the email addresses of the owners to retrieve
+   * @return a list of the found owners
    */
-  private void handleTransactionRollback(EntityTransaction entityTransaction) {
+  public List<Owner> findOwnersByEmails(Collection<String> emails) {
 
-    try {
-      if (entityTransaction.isActive()) {
-        entityTransaction.rollback();
-      }
-    } catch (Exception e) {
-      LOGGER.error("Transaction rollback failed", e);
+    if (emails.isEmpty()) {
+      return List.of();
     }
+
+    return executeWithEntityManager(entityManager -> entityManager
+        .createNamedQuery(QueryNames.OWNER_FIND_BY_EMAILS, Owner.class)
+        .setParameter("emails", emails)
+        .getResultList());
   }
 
-  /**
-   * Creates and returns a new instance of EntityManager.
-   * <p>
-   * This method is a factory method for creating new EntityManager instances,
-   * which are used to interact with the persistence context.
-   *
-   * @return A new instance of EntityManager.
-   */
-  private EntityManager getEntityManager() {
+  public Agent findAgentById(Long agentId) throws EntityNotFoundException {
 
-    return entityManagerFactory.createEntityManager();
+    return executeWithEntityManager(entityManager -> {
+      Agent agent = entityManager.find(Agent.class, agentId);
+      if (agent == null) {
+        throw new EntityNotFoundException("Agent with ID " + agentId + " not found.");
+      }
+      return agent;
+    });
   }
-
 }
@@ -1,30 +1,35 @@
 package bg.tuvarna.sit.wms.dao;
 
+import bg.tuvarna.sit.wms.dao.base.BaseDAO;
+import bg.tuvarna.sit.wms.dto.WarehouseDTO;
+import bg.tuvarna.sit.wms.dto.WarehousePageRequest;
 import bg.tuvarna.sit.wms.dto.WarehouseRentalAgreementDto;
 import bg.tuvarna.sit.wms.entities.Owner;
 import bg.tuvarna.sit.wms.entities.User;
 import bg.tuvarna.sit.wms.entities.Warehouse;
 import bg.tuvarna.sit.wms.enums.WarehouseStatus;
 import bg.tuvarna.sit.wms.exceptions.WarehouseDAOException;
+import bg.tuvarna.sit.wms.util.QueryNames;
 
-import javax.persistence.EntityManager;
 import javax.persistence.EntityManagerFactory;
-import javax.persistence.EntityTransaction;
 import javax.persistence.NoResultException;
+import javax.persistence.Query;
+import java.util.Collection;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Optional;
+import java.util.Set;
 import javax.persistence.TypedQuery;
+import org.hibernate.annotations.QueryHints;
 
 /**
  * This class is the Data Access Object (DAO) for the Warehouse entity.
  * Provides methods for preforming CRUD operations to the database on the Warehouse entity.
  */
-public class WarehouseDAO {
-
-  private final EntityManagerFactory entityManagerFactory;
+public class WarehouseDAO extends BaseDAO {
 
   public WarehouseDAO(EntityManagerFactory entityManagerFactory) {
-    this.entityManagerFactory = entityManagerFactory;
+    super(entityManagerFactory);
   }
 
   /**
@@ -36,17 +41,26 @@ public class WarehouseDAO {
    */
   public void save(Warehouse warehouse) throws WarehouseDAOException {
 
-    EntityManager em = entityManagerFactory.createEntityManager();
-    EntityTransaction transaction = em.getTransaction();
+    try {
+      runInTransaction(em -> em.persist(warehouse));
+    } catch (Exception e) {
+      throw new WarehouseDAOException("Error saving warehouse entity", e);
+    }
+  }
+
+  /**
+   * Persists a batch of new warehouse entities to the database within a single transaction.
+   * If an error occurs during the transaction it is rolled back and none of the warehouses are saved.
+   *
+   * @param warehouses the warehouse entities to persist
+   * @throws WarehouseDAOException if an error occurs during the persistence of the entities
+   */
+  public void saveAll(List<Warehouse> warehouses) throws WarehouseDAOException {
 
     try {
-      transaction.begin();
-      em.persist(warehouse);
-      transaction.commit();
+      runInTransaction(em -> warehouses.forEach(em::persist));
     } catch (Exception e) {
-      throw handleExceptionAndRollback(transaction, "Error saving warehouse entity", e);
-    } finally {
-      em.close();
+      throw new WarehouseDAOException("Error saving warehouse entities", e);
     }
   }
 
@@ -59,17 +73,38 @@ public class WarehouseDAO {
    */
   public void update(Warehouse warehouse) throws WarehouseDAOException {
 
-    EntityManager em = entityManagerFactory.createEntityManager();
-    EntityTransaction transaction = em.getTransaction();
+    try {
+      runInTransaction(em -> em.merge(warehouse));
+    } catch (Exception e) {
+      throw new WarehouseDAOException("Error updating warehouse entity", e);
+    }
+  }
+
+  /**
+   * Atomically moves a warehouse from one status to another with a single compare-and-set update.
+   * The warehouse is neither read nor locked beforehand. The update only matches the warehouse while it
+   * still has the expected status, so of two concurrent transitions from the same status only one succeeds.
+   * The version of the warehouse is incremented, so stale copies of it can no longer be merged.
+   *
+   * @param warehouseId the id of the warehouse
+   * @param from        the status the warehouse is expected to have
+   * @param to          the new status of the warehouse
+   * @return true if the warehouse was moved, false if it no longer had the expected status or was deleted
+   * @throws WarehouseDAOException if an error occurs during the update
+   */
+  public boolean transitionStatus(Long warehouseId, WarehouseStatus from, WarehouseStatus to)
+          throws WarehouseDAOException {
 
     try {
-      em.getTransaction().begin();
-      em.merge(warehouse);
-      em.getTransaction().commit();
+      return executeInTransaction(em -> {
+        Query query = em.createNamedQuery(QueryNames.WAREHOUSE_TRANSITION_STATUS);
+        query.setParameter("to", to);
+        query.setParameter("id", warehouseId);
+        query.setParameter("from", from);
+        return query.executeUpdate() == 1;
+      });
     } catch (Exception e) {
-      throw handleExceptionAndRollback(transaction, "Error updating warehouse entity", e);
-    } finally {
-      em.close();
+      throw new WarehouseDAOException("Error changing warehouse status to " + to.name(), e);
     }
   }
 
@@ -82,18 +117,13 @@ public class WarehouseDAO {
    */
   public void softDelete(Warehouse warehouse) throws WarehouseDAOException {
 
-    EntityManager em = entityManagerFactory.createEntityManager();
-    EntityTransaction transaction = em.getTransaction();
-
     try {
-      transaction.begin();
-      warehouse.setDeleted(true);
-      em.merge(warehouse);
-      transaction.commit();
+      runInTransaction(em -> {
+        warehouse.setDeleted(true);
+        em.merge(warehouse);
+      });
     } catch (Exception e) {
-      throw handleExceptionAndRollback(transaction, "Error deleting warehouse entity", e);
-    } finally {
-      em.close();
+      throw new WarehouseDAOException("Error deleting warehouse entity", e);
     }
   }
 
@@ -107,56 +137,37 @@ public class WarehouseDAO {
    */
   public Optional<Warehouse> getById(Long id) throws WarehouseDAOException {
 
-    EntityManager em = entityManagerFactory.createEntityManager();
-    EntityTransaction transaction = em.getTransaction();
-
     try {
-      transaction.begin();
-      Warehouse warehouse = em.find(Warehouse.class, id);
-      transaction.commit();
+      Warehouse warehouse = executeInTransaction(em -> em.find(Warehouse.class, id));
 
       if (warehouse != null && warehouse.isDeleted()) {
         return Optional.empty();
       }
       return Optional.ofNullable(warehouse);
     } catch (Exception e) {
-      throw handleExceptionAndRollback(transaction, "Error retrieving warehouse", e);
-    } finally {
-      em.close();
+      throw new WarehouseDAOException("Error retrieving warehouse", e);
     }
   }
 
 
   /**
-   * Retrieves all warehouse entities from the database within a transaction.
-   * If an error occurs during the transaction it is rolled back.
+   * Retrieves all warehouse entities from the database within a read-only transaction.
    *
    * @return a list with all warehouses
    * @throws WarehouseDAOException if an error occurs during the retrieving process of the entities
    */
   public List<Warehouse> getAll() throws WarehouseDAOException {
 
-    EntityManager em = entityManagerFactory.createEntityManager();
-    EntityTransaction transaction = em.getTransaction();
-
     try {
-      transaction.begin();
-      List<Warehouse> warehouses = em
-              .createQuery("SELECT w FROM Warehouse w WHERE w.isDeleted = false", Warehouse.class)
-              .getResultList();
-      transaction.commit();
-
-      return warehouses;
+      return executeReadOnly(em -> readOnly(em.createNamedQuery(QueryNames.WAREHOUSE_FIND_ALL, Warehouse.class))
+              .getResultList());
     } catch (Exception e) {
-      throw handleExceptionAndRollback(transaction, "Error retrieving warehouse entities", e);
-    } finally {
-      em.close();
+      throw new WarehouseDAOException("Error retrieving warehouse entities", e);
     }
   }
 
   /**
-   * Retrieves all warehouse entities owned by an owner from the database within a transaction.
-   * If an error occurs during the transaction it is rolled back.
+   * Retrieves all warehouse entities owned by an owner from the database within a read-only transaction.
    *
    * @param owner the owner of the warehouses
    * @return a list of all warehouses owned by the owner
@@ -164,28 +175,149 @@ public class WarehouseDAO {
    */
   public List<Warehouse> getAllWarehousesByOwner(Owner owner) throws WarehouseDAOException {
 
-    EntityManager em = entityManagerFactory.createEntityManager();
-    EntityTransaction transaction = em.getTransaction();
+    try {
+      return executeReadOnly(em -> {
+        TypedQuery<Warehouse> query = readOnly(em.createNamedQuery(QueryNames.WAREHOUSE_FIND_BY_OWNER, Warehouse.class));
+        query.setParameter("owner", owner);
+        return query.getResultList();
+      });
+    } catch (Exception e) {
+      throw new WarehouseDAOException("Error retrieving warehouse entities", e);
+    }
+  }
+
+  /**
+   * Retrieves one page of the warehouses owned by an owner as DTOs, sorted by the column of the page request.
+   * <p>
+   * Pages are located with a keyset condition on the sort value and the ID of the last warehouse of the
+   * previous page rather than with an offset, so deep pages are as cheap as the first one. One extra row
+   * is fetched to tell whether a further page exists. The DTOs are projected directly in a single
+   * statement, without the owner, which the caller already knows.
+   * </p>
+   *
+   * @param owner       the owner of the warehouses
+   * @param pageRequest the sort order, page size and cursor of the page
+   * @return up to {@code pageSize + 1} warehouses following the cursor
+   * @throws WarehouseDAOException if an error occurs during the retrieving process
+   */
+  public List<WarehouseDTO> getWarehouseDTOPageByOwner(Owner owner, WarehousePageRequest pageRequest)
+          throws WarehouseDAOException {
+
+    String sortPath = pageRequest.getSortKey().getPath();
+    String direction = pageRequest.isAscending() ? "ASC" : "DESC";
+    String comparison = pageRequest.isAscending() ? ">" : "<";
+
+    StringBuilder jpql = new StringBuilder(Warehouse.DTO_BY_OWNER_QUERY);
+    if (pageRequest.hasCursor()) {
+      jpql.append(" AND (").append(sortPath).append(' ').append(comparison).append(" :lastSortValue")
+              .append(" OR (").append(sortPath).append(" = :lastSortValue AND w.id ").append(comparison)
+              .append(" :lastId))");
+    }
+    jpql.append(" ORDER BY ").append(sortPath).append(' ').append(direction)
+            .append(", w.id ").append(direction);
 
     try {
-      transaction.begin();
-      String jpql = "SELECT w FROM Warehouse w WHERE w.owner = :owner AND w.isDeleted = false";
-      List<Warehouse> warehouses = em.createQuery(jpql, Warehouse.class)
-              .setParameter("owner", owner)
-              .getResultList();
-      transaction.commit();
+      return executeWithEntityManager(em -> {
+        TypedQuery<WarehouseDTO> query = em.createQuery(jpql.toString(), WarehouseDTO.class);
+        query.setParameter("owner", owner);
+        if (pageRequest.hasCursor()) {
+          query.setParameter("lastSortValue", pageRequest.getLastSortValue());
+          query.setParameter("lastId", pageRequest.getLastId());
+        }
+        query.setMaxResults(pageRequest.getPageSize() + 1);
+        return query.getResultList();
+      });
+    } catch (Exception e) {
+      throw new WarehouseDAOException("Error retrieving a page of warehouses", e);
+    }
+  }
+
+  /**
+   * Retrieves all warehouses which are not deleted as DTOs, projected in a single statement.
+   * The owners of the DTOs are not set.
+   *
+   * @return a list of DTOs of all warehouses
+   * @throws WarehouseDAOException if an error occurs during the retrieving process
+   */
+  public List<WarehouseDTO> getAllWarehouseDTOs() throws WarehouseDAOException {
 
-      return warehouses;
+    try {
+      return executeWithEntityManager(em -> em
+          .createNamedQuery(QueryNames.WAREHOUSE_FIND_DTOS, WarehouseDTO.class)
+          .setHint(QueryHints.FETCH_SIZE, READ_FETCH_SIZE)
+          .getResultList());
     } catch (Exception e) {
-      throw handleExceptionAndRollback(transaction, "Error retrieving warehouse entities", e);
-    } finally {
-      em.close();
+      throw new WarehouseDAOException("Error retrieving warehouses", e);
     }
   }
 
   /**
-   * Retrieves all available warehouse entities owned by an owner from the database within a transaction.
-   * If an error occurs during the transaction it is rolled back.
+   * Retrieves a warehouse which is not deleted as a DTO, projected in a single statement.
+   * The owner of the DTO is not set.
+   *
+   * @param id the id of the warehouse
+   * @return an Optional of the DTO, or an empty Optional if the warehouse doesn't exist or is deleted
+   * @throws WarehouseDAOException if an error occurs during the retrieving process
+   */
+  public Optional<WarehouseDTO> getWarehouseDTOById(Long id) throws WarehouseDAOException {
+
+    try {
+      return executeWithEntityManager(em -> em
+          .createNamedQuery(QueryNames.WAREHOUSE_FIND_DTO_BY_ID, WarehouseDTO.class)
+          .setParameter("id", id)
+          .getResultStream()
+          .findFirst());
+    } catch (Exception e) {
+      throw new WarehouseDAOException("Error retrieving warehouse", e);
+    }
+  }
+
+  /**
+   * Retrieves all warehouses owned by an owner as DTOs, projected in a single statement.
+   * The owner of the DTOs is not set, since the caller already knows it.
+   *
+   * @param owner the owner of the warehouses
+   * @return a list of DTOs of all warehouses owned by the owner
+   * @throws WarehouseDAOException if an error occurs during the retrieving process
+   */
+  public List<WarehouseDTO> getWarehouseDTOsByOwner(Owner owner) throws WarehouseDAOException {
+
+    try {
+      return executeWithEntityManager(em -> {
+        TypedQuery<WarehouseDTO> query = em.createNamedQuery(QueryNames.WAREHOUSE_FIND_DTOS_BY_OWNER, WarehouseDTO.class);
+        query.setParameter("owner", owner);
+        return query.getResultList();
+      });
+    } catch (Exception e) {
+      throw new WarehouseDAOException("Error retrieving warehouses", e);
+    }
+  }
+
+  /**
+   * Retrieves all available warehouses owned by an owner as DTOs, projected in a single statement.
+   * The owner of the DTOs is not set, since the caller already knows it.
+   *
+   * @param owner the owner of the warehouses
+   * @return a list of DTOs of all available warehouses owned by the owner
+   * @throws WarehouseDAOException if an error occurs during the retrieving process
+   */
+  public List<WarehouseDTO> getAvailableWarehouseDTOsByOwner(Owner owner) throws WarehouseDAOException {
+
+    try {
+      return executeWithEntityManager(em -> {
+        TypedQuery<WarehouseDTO> query =
+                em.createNamedQuery(QueryNames.WAREHOUSE_FIND_AVAILABLE_DTOS_BY_OWNER, WarehouseDTO.class);
+        query.setParameter("owner", owner);
+        query.setParameter("available", WarehouseStatus.AVAILABLE);
+        return query.getResultList();
+      });
+    } catch (Exception e) {
+      throw new WarehouseDAOException("Error retrieving available warehouses", e);
+    }
+  }
+
+  /**
+   * Retrieves all available warehouse entities owned by an owner from the database within a read-only transaction.
    *
    * @param owner the owner of the warehouses
    * @return a list of all available warehouses owned by the owner
@@ -193,23 +325,16 @@ public class WarehouseDAO {
    */
   public List<Warehouse> getAvailableWarehousesByOwner(Owner owner) throws WarehouseDAOException {
 
-    EntityManager em = entityManagerFactory.createEntityManager();
-    EntityTransaction transaction = em.getTransaction();
-
     try {
-      transaction.begin();
-      String jpql = "SELECT w FROM Warehouse w WHERE w.owner = :owner AND w.status = :available AND w.isDeleted = false";
-      List<Warehouse> warehouses = em.createQuery(jpql, Warehouse.class)
-          .setParameter("owner", owner)
-          .setParameter("available", WarehouseStatus.AVAILABLE)
-          .getResultList();
-      transaction.commit();
-
-      return warehouses;
+      return executeReadOnly(em -> {
+        TypedQuery<Warehouse> query =
+                readOnly(em.createNamedQuery(QueryNames.WAREHOUSE_FIND_AVAILABLE_BY_OWNER, Warehouse.class));
+        query.setParameter("owner", owner);
+        query.setParameter("available", WarehouseStatus.AVAILABLE);
+        return query.getResultList();
+      });
     } catch (Exception e) {
-      throw handleExceptionAndRollback(transaction,"Error retrieving warehouse entities", e);
-    } finally {
-      em.close();
+      throw new WarehouseDAOException("Error retrieving warehouse entities", e);
     }
   }
 
@@ -223,23 +348,16 @@ public class WarehouseDAO {
    */
   public Optional<Warehouse> getWarehouseByNameAndOwner(String name, Owner owner) {
 
-    EntityManager em = entityManagerFactory.createEntityManager();
-    EntityTransaction transaction = em.getTransaction();
-
     try {
-      transaction.begin();
-      String jpql = "SELECT w FROM Warehouse w WHERE w.owner = :owner AND w.name = :name AND w.isDeleted = false";
-      Warehouse warehouse = em.createQuery(jpql, Warehouse.class)
+      Warehouse warehouse = executeInTransaction(em -> em
+              .createNamedQuery(QueryNames.WAREHOUSE_FIND_BY_NAME_AND_OWNER, Warehouse.class)
               .setParameter("name", name)
               .setParameter("owner", owner)
-              .getSingleResult();
-      transaction.commit();
+              .getSingleResult());
 
       return Optional.ofNullable(warehouse);
     } catch (NoResultException e) {
       return Optional.empty();
-    } finally {
-      em.close();
     }
   }
 
@@ -255,57 +373,48 @@ public class WarehouseDAO {
    */
   public List<WarehouseRentalAgreementDto> getWarehousesWithRentalAgreementsForOwner(Long ownerId) {
 
-    EntityManager entityManager = entityManagerFactory.createEntityManager();
-    try {
-      String jpql = "SELECT new bg.tuvarna.sit.wms.dto.WarehouseRentalAgreementDto(w.name, a.street, w.size, w.status, " +
-              "w.storageType.typeName, w.climateCondition, ra.startDate, ra.endDate, ra.pricePerMonth, " +
-              "agent.firstName, agent.email, agent.id) " +
-              "FROM Warehouse w " +
-              "JOIN w.owner owner " +
-              "JOIN w.rentalAgreements ra " +
-              "JOIN ra.agent agent " +
-              "JOIN w.address a " +
-              "WHERE owner.id = :ownerId AND w.isDeleted = false";
-
-      TypedQuery<WarehouseRentalAgreementDto> query = entityManager.createQuery(jpql, WarehouseRentalAgreementDto.class);
+    return executeWithEntityManager(entityManager -> {
+      TypedQuery<WarehouseRentalAgreementDto> query = entityManager.createNamedQuery(
+              QueryNames.WAREHOUSE_FIND_RENTAL_AGREEMENT_DTOS_BY_OWNER, WarehouseRentalAgreementDto.class);
       query.setParameter("ownerId", ownerId);
       return query.getResultList();
-    } finally {
-      entityManager.close();
+    });
+  }
+
+  /**
+   * Retrieves which of the given warehouse names are already used, with a single query.
+   *
+   * @param names the warehouse names to check
+   * @return the subset of the names that belong to existing warehouses
+   * @throws WarehouseDAOException if an error occurs during the retrieving process
+   */
+  public Set<String> findExistingNames(Collection<String> names) throws WarehouseDAOException {
+
+    if (names.isEmpty()) {
+      return Set.of();
+    }
+
+    try {
+      return new HashSet<>(executeWithEntityManager(entityManager -> entityManager
+              .createNamedQuery(QueryNames.WAREHOUSE_FIND_EXISTING_NAMES, String.class)
+              .setParameter("names", names)
+              .getResultList()));
+    } catch (Exception e) {
+      throw new WarehouseDAOException("Error retrieving existing warehouse names", e);
     }
   }
 
   public Optional<Warehouse> findByName(String name) {
 
-    EntityManager entityManager = entityManagerFactory.createEntityManager();
     try {
-      String jpql = "SELECT w FROM Warehouse w WHERE w.name = :name";
-      TypedQuery<Warehouse> query = entityManager.createQuery(jpql, Warehouse.class)
-              .setParameter("name", name);
-      Warehouse warehouse = query.getSingleResult();
+      Warehouse warehouse = executeWithEntityManager(entityManager -> entityManager
+              .createNamedQuery(QueryNames.WAREHOUSE_FIND_BY_NAME, Warehouse.class)
+              .setParameter("name", name)
+              .getSingleResult());
 
       return Optional.of(warehouse);
     } catch (NoResultException e) {
       return Optional.empty();
-    } finally {
-      entityManager.close();
-    }
-  }
-
-  /**
-   * Handles exceptions and rolls back the transaction.
-   * If an exception occurs during the transaction, the transaction is rolled back.
-   *
-   * @param transaction the EntityTransaction instance
-   * @param message     the error message
-   * @param e           the exception to propagate
-   * @return a new WarehouseDAOException with the given message and cause
-   */
-  private WarehouseDAOException handleExceptionAndRollback(EntityTransaction transaction, String message, Exception e) {
-
-    if (transaction.isActive()) {
-      transaction.rollback();
     }
-    return new WarehouseDAOException(message, e);
   }
 }
@@ -1,16 +1,20 @@
 package bg.tuvarna.sit.wms.dao;
 
 
+import bg.tuvarna.sit.wms.dao.base.BaseDAO;
 import bg.tuvarna.sit.wms.entities.Agent;
 import bg.tuvarna.sit.wms.entities.RequestDetails;
 import bg.tuvarna.sit.wms.entities.Warehouse;
 import bg.tuvarna.sit.wms.entities.WarehouseRentalRequest;
 import bg.tuvarna.sit.wms.enums.RequestStatus;
 import bg.tuvarna.sit.wms.exceptions.RentalRequestDAOException;
+import bg.tuvarna.sit.wms.util.QueryNames;
 
-import javax.persistence.EntityManager;
 import javax.persistence.EntityManagerFactory;
-import javax.persistence.EntityTransaction;
+import javax.persistence.LockModeType;
+import javax.persistence.Query;
+import javax.persistence.TypedQuery;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -18,12 +22,12 @@ import java.util.Optional;
  * A DAO class for the WarehouseRentalRequest entity.
  * Provides methods for performing CRUD operations to the database.
  */
-public class WarehouseRentalRequestDAO {
+public class WarehouseRentalRequestDAO extends BaseDAO {
 
-  private final EntityManagerFactory entityManagerFactory;
+  private static final int FLUSH_INTERVAL = 50;
 
   public WarehouseRentalRequestDAO(EntityManagerFactory entityManagerFactory) {
-    this.entityManagerFactory = entityManagerFactory;
+    super(entityManagerFactory);
   }
 
   /**
@@ -35,53 +39,106 @@ public class WarehouseRentalRequestDAO {
    */
   public void save(WarehouseRentalRequest warehouseRentalRequest) throws RentalRequestDAOException {
 
-    EntityManager em = entityManagerFactory.createEntityManager();
-    EntityTransaction transaction = em.getTransaction();
+    try {
+      runInTransaction(em -> {
+        RequestDetails requestDetails = warehouseRentalRequest.getRequestDetails();
+        if (requestDetails.getId() == null) {
+          em.persist(requestDetails);
+        }
+        em.persist(warehouseRentalRequest);
+      });
+    } catch (Exception e) {
+      throw new RentalRequestDAOException("Error saving WarehouseRentalRequest entity", e);
+    }
+  }
+
+  /**
+   * Persists the shared request details once, followed by a pending rental request to every given agent,
+   * within a single transaction. The requests are inserted in JDBC batches and the agents are referenced
+   * by their IDs only, so they are not loaded.
+   * If an error occurs during the transaction it is rolled back.
+   *
+   * @param requestDetails the details shared by all requests
+   * @param agentIds       the IDs of the agents who will receive a request
+   * @throws RentalRequestDAOException if an error occurs while persisting the entities
+   */
+  public void saveRequestsForAgents(RequestDetails requestDetails, Collection<Long> agentIds)
+      throws RentalRequestDAOException {
 
     try {
-      transaction.begin();
-      RequestDetails requestDetails = warehouseRentalRequest.getRequestDetails();
-      if (requestDetails.getId() == null) {
-        em.persist(requestDetails);
-      }
-      em.persist(warehouseRentalRequest);
-      transaction.commit();
+      runInTransaction(em -> {
+        if (requestDetails.getId() == null) {
+          em.persist(requestDetails);
+        }
+
+        int persisted = 0;
+        for (Long agentId : agentIds) {
+          WarehouseRentalRequest request = new WarehouseRentalRequest();
+          request.setAgent(em.getReference(Agent.class, agentId));
+          request.setRequestDetails(requestDetails);
+          request.setStatus(RequestStatus.PENDING);
+          em.persist(request);
+
+          if (++persisted % FLUSH_INTERVAL == 0) {
+            em.flush();
+          }
+        }
+      });
+    } catch (Exception e) {
+      throw new RentalRequestDAOException("Error saving WarehouseRentalRequest entities for " + agentIds.size()
+          + " agents", e);
+    }
+  }
+
+  /**
+   * Atomically moves a valid rental request from one status to another with a single compare-and-set update.
+   * The request is neither read nor locked beforehand. The update only matches the request while it still
+   * has the expected status, so of two concurrent transitions from the same status only one succeeds.
+   * Moving a request to a status which does not keep it valid also invalidates it.
+   *
+   * @param requestId the id of the request
+   * @param from      the status the request is expected to have
+   * @param to        the new status of the request
+   * @return true if the request was moved, false if it no longer had the expected status or was invalidated
+   * @throws IllegalArgumentException  if the transition is not allowed by {@link RequestStatus}
+   * @throws RentalRequestDAOException if an error occurs during the update
+   */
+  public boolean transitionStatus(Long requestId, RequestStatus from, RequestStatus to) throws RentalRequestDAOException {
+
+    if (!from.canTransitionTo(to)) {
+      throw new IllegalArgumentException("Rental request status cannot change from " + from + " to " + to);
+    }
 
+    try {
+      return executeInTransaction(em -> {
+        Query query = em.createNamedQuery(QueryNames.REQUEST_TRANSITION_STATUS);
+        query.setParameter("to", to);
+        query.setParameter("invalid", !to.keepsRequestValid());
+        query.setParameter("id", requestId);
+        query.setParameter("from", from);
+        return query.executeUpdate() == 1;
+      });
     } catch (Exception e) {
-      throw handleExceptionAndRollback(transaction, "Error saving WarehouseRentalRequest entity", e);
-    } finally {
-      em.close();
+      throw new RentalRequestDAOException("Error changing rental request status to " + to.name(), e);
     }
   }
 
   /**
    * Changes the status of a WarehouseRentalRequest entity to that of the given request status object.
-   * If an error occurs during the transaction it is rolled back.
+   * The change is applied with {@link #transitionStatus}, expecting the request to still have the status
+   * of the given entity. The given entity itself is left unchanged.
    *
    * @param warehouseRentalRequest the WarehouseRentalRequest entity whose status is to be changed
    * @param requestStatus          the new status to set for the entity
-   * @throws RentalRequestDAOException if an error occurs while changing the status
+   * @throws RentalRequestDAOException if the request no longer has the expected status
+   *                                   or an error occurs while changing the status
    */
   public void changeStatus(WarehouseRentalRequest warehouseRentalRequest, RequestStatus requestStatus) throws RentalRequestDAOException {
 
-    EntityManager em = entityManagerFactory.createEntityManager();
-    EntityTransaction transaction = em.getTransaction();
-
-    try {
-      transaction.begin();
-      Optional<WarehouseRentalRequest> refreshedRequestOptional = getById(warehouseRentalRequest.getId());
-      if (refreshedRequestOptional.isEmpty()) {
-        throw new RentalRequestDAOException("Error changing rental request status: Entity does not exist");
-      }
-      WarehouseRentalRequest refreshedRequest = refreshedRequestOptional.get();
-
-      refreshedRequest.setStatus(requestStatus);
-      em.merge(refreshedRequest);
-      transaction.commit();
-    } catch (Exception e) {
-      throw handleExceptionAndRollback(transaction, "Error changing rental request status to " + requestStatus.name(), e);
-    } finally {
-      em.close();
+    RequestStatus currentStatus = warehouseRentalRequest.getStatus();
+    if (!transitionStatus(warehouseRentalRequest.getId(), currentStatus, requestStatus)) {
+      throw new RentalRequestDAOException("Error changing rental request status: the request is no longer "
+          + currentStatus.name() + " or does not exist");
     }
   }
 
@@ -94,114 +151,116 @@ public class WarehouseRentalRequestDAO {
    */
   public void invalidateRequest(WarehouseRentalRequest warehouseRentalRequest) throws RentalRequestDAOException {
 
-    EntityManager em = entityManagerFactory.createEntityManager();
-    EntityTransaction transaction = em.getTransaction();
-
     try {
-      transaction.begin();
-      warehouseRentalRequest.setInvalid(true);
-      em.merge(warehouseRentalRequest);
-      transaction.commit();
+      runInTransaction(em -> {
+        warehouseRentalRequest.setInvalid(true);
+        em.merge(warehouseRentalRequest);
+      });
     } catch (Exception e) {
-      throw handleExceptionAndRollback(transaction, "Error invalidating WarehouseRentalRequest entity", e);
-    } finally {
-      em.close();
+      throw new RentalRequestDAOException("Error invalidating WarehouseRentalRequest entity", e);
     }
   }
 
   /**
-   * Retrieves a request entity from the database within a transaction.
+   * Locks the row of the given warehouse until the end of the current transaction, so the transactions which
+   * change the requests of one warehouse run one after the other. Taking this lock before touching any request
+   * keeps two such transactions from each holding a request which the other one needs next.
+   * Outside of a bound transaction the lock is released right away.
    *
-   * @param id the id of the WarehouseRentalRequest entity
-   * @return an Optional of the retrieved request, or an empty Optional if the request doesn't exist/is invalidated
+   * @param warehouseId the id of the warehouse
+   * @throws RentalRequestDAOException if the lock cannot be acquired
    */
-  public Optional<WarehouseRentalRequest> getById(Long id) {
-
-    EntityManager em = entityManagerFactory.createEntityManager();
-    EntityTransaction transaction = em.getTransaction();
+  public void lockWarehouse(Long warehouseId) throws RentalRequestDAOException {
 
     try {
-      transaction.begin();
-      WarehouseRentalRequest result = em.find(WarehouseRentalRequest.class, id);
-      transaction.commit();
-
-      if (result != null && result.isInvalid()) {
-        return Optional.empty();
-      }
-
-      return Optional.ofNullable(result);
-    } finally {
-      em.close();
+      runInTransaction(em -> em.find(Warehouse.class, warehouseId, LockModeType.PESSIMISTIC_WRITE));
+    } catch (Exception e) {
+      throw new RentalRequestDAOException("Error locking the warehouse of the rental requests", e);
     }
   }
 
   /**
-   * Retrieves all requests for a given warehouse entity within a transaction.
+   * Invalidates all pending requests for the given warehouse, except the request with the given id,
+   * with a single bulk update within a transaction.
+   * The number of statements does not depend on how many agents were invited for the warehouse.
+   * The versions of the invalidated requests are incremented, so stale copies of them can no longer be saved.
    *
-   * @param warehouse the warehouse for the wanted rental requests
-   * @return a list containing all rental requests of the warehouse entity
+   * @param warehouseId       the id of the warehouse whose competing requests are to be invalidated
+   * @param acceptedRequestId the id of the request which stays valid
+   * @return the number of invalidated requests
+   * @throws RentalRequestDAOException if an error occurs during the update
    */
-  public List<WarehouseRentalRequest> getAllByWarehouse(Warehouse warehouse) {
-
-    EntityManager em = entityManagerFactory.createEntityManager();
-    EntityTransaction transaction = em.getTransaction();
+  public int invalidateOtherPendingRequests(Long warehouseId, Long acceptedRequestId)
+      throws RentalRequestDAOException {
 
-    List<WarehouseRentalRequest> warehouseRentalRequests;
     try {
-      transaction.begin();
-      String jpql = "SELECT r FROM WarehouseRentalRequest r WHERE requestDetails.warehouse = :warehouse AND isInvalid = false";
-      warehouseRentalRequests = em.createQuery(jpql, WarehouseRentalRequest.class)
-          .setParameter("warehouse", warehouse)
-          .getResultList();
-      transaction.commit();
-      return warehouseRentalRequests;
-    } finally {
-      em.close();
+      return executeInTransaction(em -> {
+        Query query = em.createNamedQuery(QueryNames.REQUEST_INVALIDATE_OTHER_PENDING);
+        query.setParameter("warehouseId", warehouseId);
+        query.setParameter("acceptedRequestId", acceptedRequestId);
+        query.setParameter("pending", RequestStatus.PENDING);
+        return query.executeUpdate();
+      });
+    } catch (Exception e) {
+      throw new RentalRequestDAOException("Error invalidating competing WarehouseRentalRequest entities", e);
     }
   }
 
   /**
-   * Retrieves all rental requests, with a certain status, which are directed to the given agent within a transaction.
+   * Retrieves a request entity from the database within a transaction.
    *
-   * @param requestStatus the status of the wanted rental requests
-   * @param agent         the agent, to which all requests are addressed to
-   * @return
+   * @param id the id of the WarehouseRentalRequest entity
+   * @return an Optional of the retrieved request, or an empty Optional if the request doesn't exist/is invalidated
    */
-  public List<WarehouseRentalRequest> getAllByStatusAndAgent(RequestStatus requestStatus, Agent agent) {
+  public Optional<WarehouseRentalRequest> getById(Long id) {
 
-    EntityManager em = entityManagerFactory.createEntityManager();
-    EntityTransaction transaction = em.getTransaction();
+    WarehouseRentalRequest result = executeInTransaction(em -> em.find(WarehouseRentalRequest.class, id));
 
-    List<WarehouseRentalRequest> warehouseRentalRequests;
-    try {
-      transaction.begin();
-      String jpql = "SELECT r FROM WarehouseRentalRequest r WHERE r.status = :status AND r.agent = :agent AND isInvalid = false";
-      warehouseRentalRequests = em.createQuery(jpql, WarehouseRentalRequest.class)
-          .setParameter("status", requestStatus)
-          .setParameter("agent", agent)
-          .getResultList();
-      transaction.commit();
-      return warehouseRentalRequests;
-    } finally {
-      em.close();
+    if (result != null && result.isInvalid()) {
+      return Optional.empty();
     }
+
+    return Optional.ofNullable(result);
   }
 
+  /**
+   * Retrieves all valid requests for a given warehouse entity within a read-only transaction,
+   * or within the current transaction if there is one.
+   *
+   * @param warehouse the warehouse for the wanted rental requests
+   * @return a list containing all rental requests of the warehouse entity
+   */
+  public List<WarehouseRentalRequest> getAllByWarehouse(Warehouse warehouse) {
+
+    return executeReadOnly(em -> {
+      TypedQuery<WarehouseRentalRequest> query =
+          readOnly(em.createNamedQuery(QueryNames.REQUEST_FIND_VALID_BY_WAREHOUSE, WarehouseRentalRequest.class));
+      query.setParameter("warehouse", warehouse);
+      return query.getResultList();
+    });
+  }
 
   /**
-   * Handles exceptions and rolls back the transaction.
-   * If an exception occurs during the transaction, the transaction is rolled back.
+   * Retrieves all rental requests, with a certain status, which are directed to the given agent
+   * within a read-only transaction.
+   * <p>
+   * The request details, the warehouse with its owner, address, city, country and storage type, as well as
+   * the agent are fetched with the requests, so the whole inbox is loaded with a single statement,
+   * regardless of its size.
+   * </p>
    *
-   * @param transaction the EntityTransaction instance
-   * @param message     the error message
-   * @param e           the exception to propagate
-   * @return a new RentalRequestDAOException with the given message and cause
+   * @param requestStatus the status of the wanted rental requests
+   * @param agent         the agent, to which all requests are addressed to
+   * @return a list containing the matching rental requests with their associations initialized
    */
-  private RentalRequestDAOException handleExceptionAndRollback(EntityTransaction transaction, String message, Exception e) {
+  public List<WarehouseRentalRequest> getAllByStatusAndAgent(RequestStatus requestStatus, Agent agent) {
 
-    if (transaction.isActive()) {
-      transaction.rollback();
-    }
-    return new RentalRequestDAOException(message, e);
+    return executeReadOnly(em -> {
+      TypedQuery<WarehouseRentalRequest> query =
+          readOnly(em.createNamedQuery(QueryNames.REQUEST_FIND_BY_STATUS_AND_AGENT, WarehouseRentalRequest.class));
+      query.setParameter("status", requestStatus);
+      query.setParameter("agent", agent);
+      return query.getResultList();
+    });
   }
 }
@@ -0,0 +1,132 @@
+package bg.tuvarna.sit.wms.dao.base;
+
+import bg.tuvarna.sit.wms.contracts.TransactionCallback;
+import bg.tuvarna.sit.wms.contracts.TransactionWork;
+import bg.tuvarna.sit.wms.util.TransactionTemplate;
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.TypedQuery;
+import org.hibernate.annotations.QueryHints;
+
+/**
+ * Base class for the DAOs of the application.
+ * <p>
+ * Every DAO operation runs through a {@link TransactionTemplate}. When it is called outside of
+ * a unit of work, the operation opens, commits and closes its own transaction as before. When it
+ * is called from inside {@link TransactionTemplate#inTransaction}, it joins the outer transaction,
+ * so all DAO calls of a service operation share one entity manager and one commit.
+ * </p>
+ * <p>
+ * Listings whose results are only mapped to DTOs run through {@link #executeReadOnly} and mark their
+ * queries with {@link #readOnly(TypedQuery)}, so the loaded entities are neither snapshotted nor flushed.
+ * Entities which callers may change and merge back must not be loaded this way.
+ * </p>
+ */
+public abstract class BaseDAO {
+
+  /**
+   * The number of rows fetched per round-trip by read-only listings, on drivers which honour it.
+   */
+  protected static final int READ_FETCH_SIZE = 100;
+
+  private final TransactionTemplate transactionTemplate;
+
+  protected BaseDAO(EntityManagerFactory entityManagerFactory) {
+    this.transactionTemplate = new TransactionTemplate(entityManagerFactory);
+  }
+
+  /**
+   * Executes the callback in a new or in the current transaction and returns its result.
+   * If the DAO owns the transaction and the callback fails, the transaction is rolled back.
+   *
+   * @param callback the database work
+   * @param <T>      the type of the result
+   * @param <E>      the type of the checked exception the callback may throw
+   * @return the result of the callback
+   * @throws E if the callback fails
+   */
+  protected <T, E extends Exception> T executeInTransaction(TransactionCallback<T, E> callback) throws E {
+
+    return transactionTemplate.inTransaction(callback);
+  }
+
+  /**
+   * Executes the work in a new or in the current transaction.
+   * If the DAO owns the transaction and the work fails, the transaction is rolled back.
+   *
+   * @param work the database work
+   * @param <E>  the type of the checked exception the work may throw
+   * @throws E if the work fails
+   */
+  protected <E extends Exception> void runInTransaction(TransactionWork<E> work) throws E {
+
+    transactionTemplate.runInTransaction(work);
+  }
+
+  /**
+   * Runs the action once the transaction bound to the current thread has committed, or right away
+   * outside of a transaction. Lets the services update in-memory state only for changes which were stored.
+   *
+   * @param action the action to run
+   * @see TransactionTemplate#afterCommit
+   */
+  public void afterCommit(Runnable action) {
+
+    transactionTemplate.afterCommit(action);
+  }
+
+  /**
+   * Tells whether the current thread is running inside a transaction which the next DAO call joins.
+   *
+   * @return true if a transaction is bound to the current thread
+   * @see TransactionTemplate#isInTransaction
+   */
+  public boolean isInTransaction() {
+
+    return transactionTemplate.isInTransaction();
+  }
+
+  /**
+   * Executes the callback without starting a transaction, reusing the entity manager
+   * of the current transaction if there is one.
+   *
+   * @param callback the database work
+   * @param <T>      the type of the result
+   * @param <E>      the type of the checked exception the callback may throw
+   * @return the result of the callback
+   * @throws E if the callback fails
+   */
+  protected <T, E extends Exception> T executeWithEntityManager(TransactionCallback<T, E> callback) throws E {
+
+    return transactionTemplate.withEntityManager(callback);
+  }
+
+  /**
+   * Executes the callback in a read-only unit of work, or in the current transaction if there is one.
+   *
+   * @param callback the database work, which must not change the entities it loads
+   * @param <T>      the type of the result
+   * @param <E>      the type of the checked exception the callback may throw
+   * @return the result of the callback
+   * @throws E if the callback fails
+   * @see TransactionTemplate#readOnly
+   */
+  protected <T, E extends Exception> T executeReadOnly(TransactionCallback<T, E> callback) throws E {
+
+    return transactionTemplate.readOnly(callback);
+  }
+
+  /**
+   * Marks a query as read-only and sets its fetch size. The entities it loads are not snapshotted
+   * for dirty checking, even when the query runs inside a transaction which may write.
+   *
+   * @param query the query to mark
+   * @param <T>   the type of the query results
+   * @return the same query
+   */
+  protected static <T> TypedQuery<T> readOnly(TypedQuery<T> query) {
+
+    query.setHint(QueryHints.READ_ONLY, true);
+    query.setHint(QueryHints.FETCH_SIZE, READ_FETCH_SIZE);
+    return query;
+  }
+}
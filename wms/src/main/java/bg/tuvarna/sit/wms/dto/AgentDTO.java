@@ -16,6 +16,18 @@ public class AgentDTO {
   private String fullName;
   private String phone;
   private String email;
+  private AgentRatingDTO rating;
+
+  /**
+   * Returns the average rating of the agent and the number of reviews it is based on, for display.
+   *
+   * @return the rating, such as {@code "4.3 (12 reviews)"}, or {@code "No reviews"}
+   */
+  public String getRatingText() {
+    return rating == null ? "No reviews"
+        : String.format("%.1f (%d %s)", rating.getAverage(), rating.getReviewCount(),
+            rating.getReviewCount() == 1 ? "review" : "reviews");
+  }
 
   @Override
   public String toString() {
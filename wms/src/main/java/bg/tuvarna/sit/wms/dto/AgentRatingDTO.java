@@ -0,0 +1,49 @@
+package bg.tuvarna.sit.wms.dto;
+
+import bg.tuvarna.sit.wms.entities.AgentRating;
+import lombok.Getter;
+
+/**
+ * An immutable snapshot of the rating aggregate of an agent.
+ */
+@Getter
+public class AgentRatingDTO {
+
+  private final Long agentId;
+  private final long reviewCount;
+  private final long assessmentSum;
+  private final long[] histogram;
+
+  public AgentRatingDTO(AgentRating rating) {
+    this.agentId = rating.getAgentId();
+    this.reviewCount = rating.getReviewCount();
+    this.assessmentSum = rating.getAssessmentSum();
+    this.histogram = new long[5];
+    for (int assessment = 1; assessment <= 5; assessment++) {
+      histogram[assessment - 1] = rating.getCount(assessment);
+    }
+  }
+
+  /**
+   * Returns the average assessment of the agent.
+   *
+   * @return the average assessment, or 0 if the agent has no reviews
+   */
+  public double getAverage() {
+    return reviewCount == 0 ? 0 : (double) assessmentSum / reviewCount;
+  }
+
+  /**
+   * Returns the number of reviews with the given assessment.
+   *
+   * @param assessment the assessment, from 1 to 5
+   * @return the number of reviews which gave it
+   */
+  public long getCount(int assessment) {
+    return histogram[assessment - 1];
+  }
+
+  public long[] getHistogram() {
+    return histogram.clone();
+  }
+}
@@ -0,0 +1,17 @@
+package bg.tuvarna.sit.wms.dto;
+
+import java.time.LocalDateTime;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * A notification as listed in the notification inbox.
+ */
+@AllArgsConstructor
+@Getter
+public class NotificationDTO {
+
+  private Long id;
+  private String message;
+  private LocalDateTime date;
+}
@@ -0,0 +1,18 @@
+package bg.tuvarna.sit.wms.dto;
+
+import java.time.LocalDateTime;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * Represents a notification waiting to be written, with its recipient resolved to their ID
+ * and the time of the event it reports.
+ */
+@AllArgsConstructor
+@Getter
+public class NotificationImportDto {
+
+  private Long userId;
+  private String message;
+  private LocalDateTime date;
+}
@@ -0,0 +1,18 @@
+package bg.tuvarna.sit.wms.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * Represents a review read from the reviews CSV file, with its agent and sender
+ * already resolved to their IDs.
+ */
+@AllArgsConstructor
+@Getter
+public class ReviewImportDto {
+
+  private Long agentId;
+  private Long senderId;
+  private Integer assessment;
+  private String description;
+}
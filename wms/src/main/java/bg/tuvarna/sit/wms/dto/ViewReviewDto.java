@@ -8,14 +8,24 @@ import lombok.Setter;
 @Getter
 public class ViewReviewDto {
 
+  private Long id;
   private Integer assessment;
   private String description;
   private String senderName;
 
   public ViewReviewDto(Review review) {
+    this.id = review.getId();
     this.assessment = review.getAssessment();
     this.description = review.getDescription();
     this.senderName = review.getSender().getFirstName() + " " + review.getSender().getLastName();
   }
 
+  public ViewReviewDto(Long id, Integer assessment, String description, String senderFirstName,
+                       String senderLastName) {
+    this.id = id;
+    this.assessment = assessment;
+    this.description = description;
+    this.senderName = senderFirstName + " " + senderLastName;
+  }
+
 }
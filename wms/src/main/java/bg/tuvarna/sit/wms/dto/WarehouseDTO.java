@@ -27,6 +27,28 @@ public class WarehouseDTO {
   private WarehouseStatus status;
   private ClimateCondition climateCondition;
   private Owner owner;
+  private long version;
+
+  /**
+   * Creates a DTO with all warehouse details except the owner.
+   * It is used by the JPQL constructor expressions which project warehouse listings directly into DTOs.
+   */
+  public WarehouseDTO(Long id, String name, String street, String cityName, String countryName, String zipCode,
+                      String storageType, String storageTypeDescription, Double size, WarehouseStatus status,
+                      ClimateCondition climateCondition, long version) {
+    this.id = id;
+    this.name = name;
+    this.street = street;
+    this.cityName = cityName;
+    this.countryName = countryName;
+    this.zipCode = zipCode;
+    this.storageType = storageType;
+    this.storageTypeDescription = storageTypeDescription;
+    this.size = size;
+    this.status = status;
+    this.climateCondition = climateCondition;
+    this.version = version;
+  }
 
   @Override
   public String toString() {
@@ -0,0 +1,47 @@
+package bg.tuvarna.sit.wms.dto;
+
+import java.time.Duration;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * Summarizes a warehouse CSV import: how many rows were read, imported, skipped or rejected,
+ * and how much time was spent in each stage of the import pipeline.
+ * <p>
+ * The parse time is summed over all parser threads, so it can exceed the total elapsed time.
+ * </p>
+ */
+@Getter
+@AllArgsConstructor
+public class WarehouseImportReport {
+
+  private long rowsRead;
+  private long rowsImported;
+  private long rowsSkipped;
+  private long rowsRejected;
+  private Duration elapsed;
+  private Duration readTime;
+  private Duration parseTime;
+  private Duration resolveTime;
+  private Duration writeTime;
+
+  /**
+   * Returns the import throughput in rows read per second.
+   *
+   * @return the number of rows processed per second of elapsed time
+   */
+  public double getRowsPerSecond() {
+
+    long millis = Math.max(1, elapsed.toMillis());
+    return rowsRead * 1000.0 / millis;
+  }
+
+  @Override
+  public String toString() {
+
+    return String.format("%d rows read, %d imported, %d skipped, %d rejected in %d ms (%.0f rows/sec); "
+            + "read %d ms, parse %d ms, resolve %d ms, write %d ms",
+        rowsRead, rowsImported, rowsSkipped, rowsRejected, elapsed.toMillis(), getRowsPerSecond(),
+        readTime.toMillis(), parseTime.toMillis(), resolveTime.toMillis(), writeTime.toMillis());
+  }
+}
@@ -0,0 +1,32 @@
+package bg.tuvarna.sit.wms.dto;
+
+import java.util.List;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * Represents a page of warehouses retrieved with a {@link WarehousePageRequest}.
+ */
+@Getter
+@AllArgsConstructor
+public class WarehousePage {
+
+  private final List<WarehouseDTO> items;
+  private final WarehousePageRequest request;
+  private final boolean nextPageAvailable;
+
+  /**
+   * Creates the request for the page following this one.
+   *
+   * @param pageSize the maximum number of warehouses on the next page
+   * @return the request for the next page
+   * @throws IllegalStateException if this is the last page
+   */
+  public WarehousePageRequest nextPageRequest(int pageSize) {
+
+    if (!nextPageAvailable || items.isEmpty()) {
+      throw new IllegalStateException("There is no page after the last one");
+    }
+    return request.after(items.get(items.size() - 1), pageSize);
+  }
+}
@@ -0,0 +1,66 @@
+package bg.tuvarna.sit.wms.dto;
+
+import bg.tuvarna.sit.wms.enums.WarehouseSortKey;
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * Describes a page of warehouses to retrieve with keyset pagination.
+ * <p>
+ * Instead of an offset, a page after the first one carries the sort value and the ID of the last
+ * warehouse of the previous page, so the database can seek directly to the next row no matter how
+ * deep the page is. The warehouse ID breaks ties between equal sort values.
+ * </p>
+ */
+@Getter
+@AllArgsConstructor(access = AccessLevel.PRIVATE)
+public class WarehousePageRequest {
+
+  private final WarehouseSortKey sortKey;
+  private final boolean ascending;
+  private final int pageSize;
+  private final Object lastSortValue;
+  private final Long lastId;
+
+  /**
+   * Creates a request for the first page.
+   *
+   * @param sortKey   the column to sort by
+   * @param ascending true to sort in ascending order, false for descending order
+   * @param pageSize  the maximum number of warehouses on the page
+   * @return the page request
+   */
+  public static WarehousePageRequest first(WarehouseSortKey sortKey, boolean ascending, int pageSize) {
+
+    if (pageSize < 1) {
+      throw new IllegalArgumentException("Page size must be positive");
+    }
+    return new WarehousePageRequest(sortKey, ascending, pageSize, null, null);
+  }
+
+  /**
+   * Creates a request for the page following the given warehouse, with the same sort order.
+   *
+   * @param lastWarehouse the last warehouse of the previous page
+   * @param pageSize      the maximum number of warehouses on the page
+   * @return the page request
+   */
+  public WarehousePageRequest after(WarehouseDTO lastWarehouse, int pageSize) {
+
+    if (pageSize < 1) {
+      throw new IllegalArgumentException("Page size must be positive");
+    }
+    return new WarehousePageRequest(sortKey, ascending, pageSize, sortKey.getValue(lastWarehouse), lastWarehouse.getId());
+  }
+
+  /**
+   * Checks whether this request continues after a previous page.
+   *
+   * @return true if the request has a keyset cursor, false for the first page
+   */
+  public boolean hasCursor() {
+
+    return lastId != null;
+  }
+}
@@ -0,0 +1,34 @@
+package bg.tuvarna.sit.wms.dto;
+
+import bg.tuvarna.sit.wms.enums.ClimateCondition;
+import bg.tuvarna.sit.wms.enums.WarehouseStatus;
+import java.util.EnumSet;
+import java.util.HashSet;
+import java.util.Set;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+/**
+ * The filters of a warehouse search.
+ * <p>
+ * A warehouse matches if it has one of the selected values of every facet with a selection, and its size is
+ * within the range. A facet without selected values and a missing size bound do not restrict the search.
+ * </p>
+ */
+@Getter
+@Setter
+@NoArgsConstructor
+public class WarehouseSearchQuery {
+
+  public static final int DEFAULT_LIMIT = 100;
+
+  private Set<ClimateCondition> climateConditions = EnumSet.noneOf(ClimateCondition.class);
+  private Set<WarehouseStatus> statuses = EnumSet.noneOf(WarehouseStatus.class);
+  private Set<String> cityNames = new HashSet<>();
+  private Set<String> countryNames = new HashSet<>();
+  private Set<String> storageTypes = new HashSet<>();
+  private Double minSize;
+  private Double maxSize;
+  private int limit = DEFAULT_LIMIT;
+}
@@ -0,0 +1,30 @@
+package bg.tuvarna.sit.wms.dto;
+
+import bg.tuvarna.sit.wms.enums.ClimateCondition;
+import bg.tuvarna.sit.wms.enums.WarehouseStatus;
+import java.util.List;
+import java.util.Map;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * The result of a warehouse search: the first matching warehouses, the number of all matches and the
+ * facet counts.
+ * <p>
+ * The count of a facet value is the number of warehouses which would match if that value were the
+ * only selection of its facet, with the filters of all other facets and the size range applied.
+ * Values without matching warehouses are left out.
+ * </p>
+ */
+@AllArgsConstructor
+@Getter
+public class WarehouseSearchResult {
+
+  private List<WarehouseDTO> warehouses;
+  private int totalCount;
+  private Map<ClimateCondition, Integer> climateConditionCounts;
+  private Map<WarehouseStatus, Integer> statusCounts;
+  private Map<String, Integer> cityCounts;
+  private Map<String, Integer> countryCounts;
+  private Map<String, Integer> storageTypeCounts;
+}
@@ -1,8 +1,11 @@
 package bg.tuvarna.sit.wms.entities;
 
+import bg.tuvarna.sit.wms.util.QueryNames;
 import java.util.Set;
 import javax.persistence.CascadeType;
 import javax.persistence.Entity;
+import javax.persistence.NamedQueries;
+import javax.persistence.NamedQuery;
 import javax.persistence.OneToMany;
 import javax.persistence.Table;
 import lombok.Getter;
@@ -22,6 +25,12 @@ import lombok.Setter;
  * @see User
  */
 @Entity
+@NamedQueries({
+    @NamedQuery(name = QueryNames.AGENT_FIND_ALL,
+        query = "SELECT a FROM Agent a"),
+    @NamedQuery(name = QueryNames.AGENT_FIND_BY_IDS,
+        query = "SELECT a FROM Agent a WHERE a.id IN :agentIds ORDER BY a.id")
+})
 @Table(name = "agents")
 @Getter
 @Setter
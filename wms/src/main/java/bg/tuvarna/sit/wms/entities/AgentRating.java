@@ -0,0 +1,113 @@
+package bg.tuvarna.sit.wms.entities;
+
+import bg.tuvarna.sit.wms.util.QueryNames;
+import java.io.Serializable;
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.Id;
+import javax.persistence.NamedQueries;
+import javax.persistence.NamedQuery;
+import javax.persistence.Table;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+
+/**
+ * The rating aggregate of an agent: the number of reviews the agent received, the sum of their
+ * assessments and how many of them gave each assessment from 1 to 5.
+ * <p>
+ * The aggregate is kept up to date by the {@code ReviewDao} in the same transaction as the reviews
+ * it counts, so the average rating of an agent is read from a single row instead of being computed
+ * from all of the agent's reviews. It is keyed by the ID of the agent.
+ * </p>
+ */
+@Entity
+@NamedQueries({
+    @NamedQuery(name = QueryNames.AGENT_RATING_FIND_ALL,
+        query = "SELECT r FROM AgentRating r WHERE r.reviewCount > 0"),
+    @NamedQuery(name = QueryNames.AGENT_RATING_COUNT,
+        query = "SELECT COUNT(r) FROM AgentRating r"),
+    @NamedQuery(name = QueryNames.AGENT_RATING_DELETE_BY_AGENT,
+        query = "DELETE FROM AgentRating r WHERE r.agentId = :agentId"),
+    @NamedQuery(name = QueryNames.AGENT_RATING_DELETE_BY_AGENTS,
+        query = "DELETE FROM AgentRating r WHERE r.agentId IN :agentIds"),
+    @NamedQuery(name = QueryNames.AGENT_RATING_DELETE_ALL,
+        query = "DELETE FROM AgentRating r"),
+    @NamedQuery(name = QueryNames.AGENT_RATING_REBUILD,
+        query = "INSERT INTO AgentRating (agentId, reviewCount, assessmentSum, oneStarCount, twoStarCount, "
+            + "threeStarCount, fourStarCount, fiveStarCount) "
+            + "SELECT r.receiver.id, COUNT(r), SUM(r.assessment), "
+            + "SUM(CASE WHEN r.assessment = 1 THEN 1 ELSE 0 END), SUM(CASE WHEN r.assessment = 2 THEN 1 ELSE 0 END), "
+            + "SUM(CASE WHEN r.assessment = 3 THEN 1 ELSE 0 END), SUM(CASE WHEN r.assessment = 4 THEN 1 ELSE 0 END), "
+            + "SUM(CASE WHEN r.assessment = 5 THEN 1 ELSE 0 END) FROM Review r GROUP BY r.receiver.id")
+})
+@Table(name = "agent_ratings")
+@Getter
+@NoArgsConstructor
+public class AgentRating implements Serializable {
+
+  @Id
+  @Column(name = "agent_id")
+  private Long agentId;
+
+  @Column(name = "review_count", nullable = false)
+  private long reviewCount;
+
+  @Column(name = "assessment_sum", nullable = false)
+  private long assessmentSum;
+
+  @Column(name = "one_star_count", nullable = false)
+  private long oneStarCount;
+
+  @Column(name = "two_star_count", nullable = false)
+  private long twoStarCount;
+
+  @Column(name = "three_star_count", nullable = false)
+  private long threeStarCount;
+
+  @Column(name = "four_star_count", nullable = false)
+  private long fourStarCount;
+
+  @Column(name = "five_star_count", nullable = false)
+  private long fiveStarCount;
+
+  public AgentRating(Long agentId) {
+    this.agentId = agentId;
+  }
+
+  /**
+   * Counts a review with the given assessment.
+   *
+   * @param assessment the assessment of the review, from 1 to 5
+   */
+  public void add(int assessment) {
+
+    switch (assessment) {
+      case 1 -> oneStarCount++;
+      case 2 -> twoStarCount++;
+      case 3 -> threeStarCount++;
+      case 4 -> fourStarCount++;
+      case 5 -> fiveStarCount++;
+      default -> throw new IllegalArgumentException("Assessment must be between 1 and 5.");
+    }
+    reviewCount++;
+    assessmentSum += assessment;
+  }
+
+  /**
+   * Returns the number of reviews with the given assessment.
+   *
+   * @param assessment the assessment, from 1 to 5
+   * @return the number of reviews which gave it
+   */
+  public long getCount(int assessment) {
+
+    return switch (assessment) {
+      case 1 -> oneStarCount;
+      case 2 -> twoStarCount;
+      case 3 -> threeStarCount;
+      case 4 -> fourStarCount;
+      case 5 -> fiveStarCount;
+      default -> throw new IllegalArgumentException("Assessment must be between 1 and 5.");
+    };
+  }
+}
@@ -1,13 +1,20 @@
 package bg.tuvarna.sit.wms.entities;
 
 import bg.tuvarna.sit.wms.entities.base.BaseEntity;
+import bg.tuvarna.sit.wms.util.CacheRegions;
+import bg.tuvarna.sit.wms.util.QueryNames;
 import lombok.Getter;
 import lombok.Setter;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 
+import javax.persistence.Cacheable;
 import javax.persistence.Column;
 import javax.persistence.Entity;
 import javax.persistence.JoinColumn;
 import javax.persistence.ManyToOne;
+import javax.persistence.NamedQueries;
+import javax.persistence.NamedQuery;
 import javax.persistence.Table;
 
 /**
@@ -22,6 +29,14 @@ import javax.persistence.Table;
  * @since 1.0.0
  */
 @Entity
+@NamedQueries({
+    @NamedQuery(name = QueryNames.CITY_FIND_ALL,
+        query = "SELECT c FROM City c"),
+    @NamedQuery(name = QueryNames.CITY_FIND_BY_NAME_AND_COUNTRY,
+        query = "SELECT c FROM City c WHERE LOWER(c.name) = LOWER(:name) AND c.country = :country")
+})
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = CacheRegions.CITY)
 @Table(name = "cities")
 @Getter
 @Setter
@@ -1,11 +1,18 @@
 package bg.tuvarna.sit.wms.entities;
 
 import bg.tuvarna.sit.wms.entities.base.BaseEntity;
+import bg.tuvarna.sit.wms.util.CacheRegions;
+import bg.tuvarna.sit.wms.util.QueryNames;
 import lombok.Getter;
 import lombok.Setter;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 
+import javax.persistence.Cacheable;
 import javax.persistence.Column;
 import javax.persistence.Entity;
+import javax.persistence.NamedQueries;
+import javax.persistence.NamedQuery;
 import javax.persistence.Table;
 
 /**
@@ -17,6 +24,14 @@ import javax.persistence.Table;
  * @since 1.0.0
  */
 @Entity
+@NamedQueries({
+    @NamedQuery(name = QueryNames.COUNTRY_FIND_ALL,
+        query = "SELECT c FROM Country c"),
+    @NamedQuery(name = QueryNames.COUNTRY_FIND_BY_NAME,
+        query = "SELECT c FROM Country c WHERE LOWER(c.name) = LOWER(:name)")
+})
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = CacheRegions.COUNTRY)
 @Table(name = "countries")
 @Getter
 @Setter
@@ -2,20 +2,46 @@ package bg.tuvarna.sit.wms.entities;
 
 import bg.tuvarna.sit.wms.entities.base.BaseEntity;
 import bg.tuvarna.sit.wms.enums.NotificationStatus;
+import bg.tuvarna.sit.wms.util.QueryNames;
 import java.time.LocalDateTime;
 import javax.persistence.Column;
 import javax.persistence.Entity;
 import javax.persistence.EnumType;
 import javax.persistence.Enumerated;
+import javax.persistence.FetchType;
+import javax.persistence.Index;
 import javax.persistence.JoinColumn;
 import javax.persistence.ManyToOne;
+import javax.persistence.NamedQueries;
+import javax.persistence.NamedQuery;
 import javax.persistence.PrePersist;
 import javax.persistence.Table;
 import lombok.Getter;
 import lombok.Setter;
 
+/**
+ * A message shown to a user in the notification inbox, such as a new rental request for an agent
+ * or an accepted request for an owner.
+ * <p>
+ * The inbox lists the unread notifications of a user, newest first, and the menu shows their count.
+ * Both are served by the index on {@code (user_id, status, date)}, so neither scans the table.
+ * </p>
+ */
 @Entity
-@Table(name = "notifications")
+@NamedQueries({
+    @NamedQuery(name = QueryNames.NOTIFICATION_FIND_DTOS_BY_USER_AND_STATUS,
+        query = "SELECT new bg.tuvarna.sit.wms.dto.NotificationDTO(n.id, n.message, n.date) FROM Notification n "
+            + "WHERE n.user.id = :userId AND n.status = :status ORDER BY n.date DESC"),
+    @NamedQuery(name = QueryNames.NOTIFICATION_COUNT_BY_USER_AND_STATUS,
+        query = "SELECT COUNT(n) FROM Notification n WHERE n.user.id = :userId AND n.status = :status"),
+    @NamedQuery(name = QueryNames.NOTIFICATION_MARK_READ,
+        query = "UPDATE Notification n SET n.status = :read "
+            + "WHERE n.user.id = :userId AND n.status = :unread AND n.id IN :ids"),
+    @NamedQuery(name = QueryNames.NOTIFICATION_MARK_ALL_READ,
+        query = "UPDATE Notification n SET n.status = :read WHERE n.user.id = :userId AND n.status = :unread")
+})
+@Table(name = "notifications", indexes = @Index(name = "idx_notifications_user_status_date",
+    columnList = "user_id, status, date"))
 @Getter
 @Setter
 public class Notification extends BaseEntity {
@@ -30,12 +56,14 @@ public class Notification extends BaseEntity {
   @Column(name = "status", nullable = false)
   private NotificationStatus status;
 
-  @ManyToOne
+  @ManyToOne(fetch = FetchType.LAZY)
   @JoinColumn(name = "user_id", nullable = false)
   private User user;
 
   @PrePersist
   protected void onCreate() {
-    date = LocalDateTime.now();
+    if (date == null) {
+      date = LocalDateTime.now();
+    }
   }
 }
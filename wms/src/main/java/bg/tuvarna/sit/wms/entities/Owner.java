@@ -1,8 +1,11 @@
 package bg.tuvarna.sit.wms.entities;
 
+import bg.tuvarna.sit.wms.util.QueryNames;
 import java.util.Set;
 import javax.persistence.CascadeType;
 import javax.persistence.Entity;
+import javax.persistence.NamedQueries;
+import javax.persistence.NamedQuery;
 import javax.persistence.OneToMany;
 import javax.persistence.Table;
 import lombok.Getter;
@@ -22,6 +25,10 @@ import lombok.Setter;
  * @see User
  */
 @Entity
+@NamedQueries({
+    @NamedQuery(name = QueryNames.OWNER_FIND_BY_EMAILS,
+        query = "SELECT o FROM Owner o WHERE o.email IN :emails")
+})
 @Table(name = "owners")
 @Getter
 @Setter
@@ -1,13 +1,24 @@
 package bg.tuvarna.sit.wms.entities;
 
 import bg.tuvarna.sit.wms.entities.base.BaseEntity;
+import bg.tuvarna.sit.wms.util.QueryNames;
+import java.io.Serializable;
 import javax.persistence.Column;
 import javax.persistence.Entity;
+import javax.persistence.GeneratedValue;
+import javax.persistence.GenerationType;
+import javax.persistence.Id;
+import javax.persistence.Index;
 import javax.persistence.JoinColumn;
 import javax.persistence.ManyToOne;
+import javax.persistence.NamedQueries;
+import javax.persistence.NamedQuery;
 import javax.persistence.Table;
 import lombok.Getter;
 import lombok.Setter;
+import org.hibernate.annotations.GenericGenerator;
+import org.hibernate.annotations.Parameter;
+import org.hibernate.id.enhanced.SequenceStyleGenerator;
 
 /**
  * Represents the foundational attributes of a review, serving as a base
@@ -17,15 +28,51 @@ import lombok.Setter;
  * as an entity itself, but its attributes will be inherited by its subclasses
  * which represent concrete review entities.
  * </p>
+ * <p>
+ * Unlike the entities based on {@link BaseEntity}, a review takes every ID from the sequence itself
+ * instead of from a block reserved in advance, so the IDs grow in the order in which they are handed out.
+ * Reviews take their ID while the row of their agent is locked, see
+ * {@link bg.tuvarna.sit.wms.dao.ReviewDao#persistReview}, so the reviews of one agent also commit in ID
+ * order and the review feed can use the ID as its cursor.
+ * </p>
  *
  * @author Yavor Chamov
  * @since 1.0.0
  */
 @Entity
-@Table(name = "reviews")
+@NamedQueries({
+    @NamedQuery(name = QueryNames.REVIEW_FIND_BY_RECEIVER,
+        query = "SELECT r FROM Review r JOIN r.receiver agent WHERE agent.id = :currentUserId ORDER BY r.id ASC"),
+    @NamedQuery(name = QueryNames.REVIEW_FIND_DTOS_BY_RECEIVER_AFTER,
+        query = "SELECT new bg.tuvarna.sit.wms.dto.ViewReviewDto(r.id, r.assessment, r.description, "
+            + "sender.firstName, sender.lastName) FROM Review r JOIN r.sender sender "
+            + "WHERE r.receiver.id = :receiverId AND r.id > :lastSeenId ORDER BY r.id ASC"),
+    @NamedQuery(name = QueryNames.REVIEW_DELETE_BY_RECEIVER,
+        query = "DELETE FROM Review r WHERE r.receiver.id = :agentId"),
+    @NamedQuery(name = QueryNames.REVIEW_DELETE_BY_RECEIVERS,
+        query = "DELETE FROM Review r WHERE r.receiver.id IN :agentIds"),
+    @NamedQuery(name = QueryNames.REVIEW_COUNT_RECEIVERS,
+        query = "SELECT COUNT(DISTINCT r.receiver.id) FROM Review r")
+})
+@Table(name = "reviews", indexes = @Index(name = "idx_reviews_receiver_id", columnList = "receiver_id, id"))
 @Getter
 @Setter
-public class Review extends BaseEntity {
+public class Review implements Serializable {
+
+  private static final String ID_GENERATOR = "review-sequence";
+
+  @Id
+  @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = ID_GENERATOR)
+  @GenericGenerator(
+      name = ID_GENERATOR,
+      strategy = "org.hibernate.id.enhanced.SequenceStyleGenerator",
+      parameters = {
+          @Parameter(name = SequenceStyleGenerator.CONFIG_PREFER_SEQUENCE_PER_ENTITY, value = "true"),
+          @Parameter(name = SequenceStyleGenerator.INITIAL_PARAM, value = "" + BaseEntity.ID_INITIAL_VALUE),
+          @Parameter(name = SequenceStyleGenerator.INCREMENT_PARAM, value = "1"),
+          @Parameter(name = SequenceStyleGenerator.OPT_PARAM, value = "none")
+      })
+  private Long id;
 
   @Column(name = "assessment", nullable = false)
   private Integer assessment;
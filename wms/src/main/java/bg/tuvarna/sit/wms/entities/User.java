@@ -2,6 +2,7 @@ package bg.tuvarna.sit.wms.entities;
 
 import bg.tuvarna.sit.wms.entities.base.BaseEntity;
 import bg.tuvarna.sit.wms.enums.Role;
+import bg.tuvarna.sit.wms.util.QueryNames;
 import java.util.Set;
 import javax.persistence.CascadeType;
 import javax.persistence.Entity;
@@ -10,12 +11,26 @@ import javax.persistence.Enumerated;
 import javax.persistence.Inheritance;
 import javax.persistence.InheritanceType;
 import javax.persistence.Column;
+import javax.persistence.NamedQueries;
+import javax.persistence.NamedQuery;
 import javax.persistence.OneToMany;
 import javax.persistence.Table;
 import lombok.Getter;
 import lombok.Setter;
 
 @Entity
+@NamedQueries({
+    @NamedQuery(name = QueryNames.USER_FIND_ALL_EMAILS,
+        query = "SELECT u.email FROM User u"),
+    @NamedQuery(name = QueryNames.USER_FIND_IDS_BY_EMAILS,
+        query = "SELECT u.email, u.id FROM User u WHERE u.email IN :emails"),
+    @NamedQuery(name = QueryNames.USER_FIND_BY_EMAIL,
+        query = "SELECT u FROM User u WHERE u.email = :email"),
+    @NamedQuery(name = QueryNames.USER_FIND_BY_PHONE,
+        query = "SELECT u FROM User u WHERE u.phone = :phone"),
+    @NamedQuery(name = QueryNames.USER_FIND_PASSWORD_BY_ID,
+        query = "SELECT u.password FROM User u WHERE u.id = :userId")
+})
 @Table(name = "users")
 @Inheritance(strategy = InheritanceType.JOINED)
 @Getter
@@ -3,6 +3,7 @@ package bg.tuvarna.sit.wms.entities;
 import bg.tuvarna.sit.wms.entities.base.BaseEntity;
 import bg.tuvarna.sit.wms.enums.ClimateCondition;
 import bg.tuvarna.sit.wms.enums.WarehouseStatus;
+import bg.tuvarna.sit.wms.util.QueryNames;
 import lombok.Getter;
 import lombok.Setter;
 
@@ -13,9 +14,12 @@ import javax.persistence.EnumType;
 import javax.persistence.Enumerated;
 import javax.persistence.JoinColumn;
 import javax.persistence.ManyToOne;
+import javax.persistence.NamedQueries;
+import javax.persistence.NamedQuery;
 import javax.persistence.OneToMany;
 import javax.persistence.Table;
 import javax.persistence.UniqueConstraint;
+import javax.persistence.Version;
 import java.util.Set;
 
 /**
@@ -25,16 +29,68 @@ import java.util.Set;
  * and configurations. Every warehouse has only one owner. The status
  * attribute describes the warehouse's current rental status.
  * </p>
+ * <p>
+ * Concurrent edits are detected with optimistic locking on the version column,
+ * so a stale update fails instead of overwriting a newer one.
+ * </p>
  *
  * @author Viktor Denchev
  * @since 1.0.0
  */
 @Entity
+@NamedQueries({
+    @NamedQuery(name = QueryNames.WAREHOUSE_FIND_ALL,
+        query = "SELECT w FROM Warehouse w WHERE w.isDeleted = false"),
+    @NamedQuery(name = QueryNames.WAREHOUSE_FIND_BY_OWNER,
+        query = "SELECT w FROM Warehouse w WHERE w.owner = :owner AND w.isDeleted = false"),
+    @NamedQuery(name = QueryNames.WAREHOUSE_FIND_AVAILABLE_BY_OWNER,
+        query = "SELECT w FROM Warehouse w "
+            + "WHERE w.owner = :owner AND w.status = :available AND w.isDeleted = false"),
+    @NamedQuery(name = QueryNames.WAREHOUSE_FIND_DTOS,
+        query = Warehouse.DTO_QUERY),
+    @NamedQuery(name = QueryNames.WAREHOUSE_FIND_DTO_BY_ID,
+        query = Warehouse.DTO_QUERY + " AND w.id = :id"),
+    @NamedQuery(name = QueryNames.WAREHOUSE_FIND_DTOS_BY_OWNER,
+        query = Warehouse.DTO_BY_OWNER_QUERY),
+    @NamedQuery(name = QueryNames.WAREHOUSE_FIND_AVAILABLE_DTOS_BY_OWNER,
+        query = Warehouse.DTO_BY_OWNER_QUERY + " AND w.status = :available"),
+    @NamedQuery(name = QueryNames.WAREHOUSE_FIND_BY_NAME_AND_OWNER,
+        query = "SELECT w FROM Warehouse w "
+            + "WHERE w.owner = :owner AND w.name = :name AND w.isDeleted = false"),
+    @NamedQuery(name = QueryNames.WAREHOUSE_FIND_BY_NAME,
+        query = "SELECT w FROM Warehouse w WHERE w.name = :name"),
+    @NamedQuery(name = QueryNames.WAREHOUSE_FIND_EXISTING_NAMES,
+        query = "SELECT w.name FROM Warehouse w WHERE w.name IN :names"),
+    @NamedQuery(name = QueryNames.WAREHOUSE_FIND_RENTAL_AGREEMENT_DTOS_BY_OWNER,
+        query = "SELECT new bg.tuvarna.sit.wms.dto.WarehouseRentalAgreementDto(w.name, a.street, w.size, w.status, "
+            + "w.storageType.typeName, w.climateCondition, ra.startDate, ra.endDate, ra.pricePerMonth, "
+            + "agent.firstName, agent.email, agent.id) "
+            + "FROM Warehouse w JOIN w.owner owner JOIN w.rentalAgreements ra JOIN ra.agent agent JOIN w.address a "
+            + "WHERE owner.id = :ownerId AND w.isDeleted = false"),
+    @NamedQuery(name = QueryNames.WAREHOUSE_TRANSITION_STATUS,
+        query = "UPDATE Warehouse w SET w.status = :to, w.version = w.version + 1 "
+            + "WHERE w.id = :id AND w.status = :from AND w.isDeleted = false")
+})
 @Table(name = "warehouses")
 @Getter
 @Setter
 public class Warehouse extends BaseEntity {
 
+  /**
+   * Projects the warehouses which are not deleted directly into {@code WarehouseDTO}s, without the owner.
+   */
+  public static final String DTO_QUERY = "SELECT new bg.tuvarna.sit.wms.dto.WarehouseDTO(w.id, w.name, "
+          + "a.street, c.name, co.name, a.zipCode, st.typeName, st.description, w.size, w.status, w.climateCondition, "
+          + "w.version) "
+          + "FROM Warehouse w JOIN w.address a JOIN a.city c JOIN c.country co JOIN w.storageType st "
+          + "WHERE w.isDeleted = false";
+
+  /**
+   * Projects the warehouses of an owner directly into {@code WarehouseDTO}s, without the owner.
+   * Shared by the named DTO queries and the dynamically sorted warehouse pages.
+   */
+  public static final String DTO_BY_OWNER_QUERY = DTO_QUERY + " AND w.owner = :owner";
+
   @Column(name="name", nullable = false)
   private String name;
 
@@ -66,6 +122,10 @@ public class Warehouse extends BaseEntity {
 
   @OneToMany(mappedBy = "warehouse", cascade = CascadeType.ALL)
   private Set<RentalAgreement> rentalAgreements;
+
+  @Version
+  @Column(name = "version", nullable = false)
+  private long version;
 }
 
 
@@ -2,6 +2,7 @@ package bg.tuvarna.sit.wms.entities;
 
 import bg.tuvarna.sit.wms.entities.base.BaseEntity;
 import bg.tuvarna.sit.wms.enums.RequestStatus;
+import bg.tuvarna.sit.wms.util.QueryNames;
 import lombok.Getter;
 import lombok.Setter;
 
@@ -12,7 +13,10 @@ import javax.persistence.EnumType;
 import javax.persistence.Enumerated;
 import javax.persistence.JoinColumn;
 import javax.persistence.ManyToOne;
+import javax.persistence.NamedQueries;
+import javax.persistence.NamedQuery;
 import javax.persistence.Table;
+import javax.persistence.Version;
 
 /**
  * Represents a rental request for a warehouse.
@@ -25,6 +29,23 @@ import javax.persistence.Table;
  * @since 1.0.0
  */
 @Entity
+@NamedQueries({
+    @NamedQuery(name = QueryNames.REQUEST_FIND_BY_STATUS_AND_AGENT,
+        query = "SELECT r FROM WarehouseRentalRequest r "
+            + "JOIN FETCH r.agent JOIN FETCH r.requestDetails d JOIN FETCH d.warehouse w JOIN FETCH w.owner "
+            + "JOIN FETCH w.address a JOIN FETCH a.city c JOIN FETCH c.country JOIN FETCH w.storageType "
+            + "WHERE r.status = :status AND r.agent = :agent AND r.isInvalid = false"),
+    @NamedQuery(name = QueryNames.REQUEST_FIND_VALID_BY_WAREHOUSE,
+        query = "SELECT r FROM WarehouseRentalRequest r "
+            + "WHERE r.requestDetails.warehouse = :warehouse AND r.isInvalid = false"),
+    @NamedQuery(name = QueryNames.REQUEST_TRANSITION_STATUS,
+        query = "UPDATE WarehouseRentalRequest r SET r.status = :to, r.isInvalid = :invalid, r.version = r.version + 1 "
+            + "WHERE r.id = :id AND r.status = :from AND r.isInvalid = false"),
+    @NamedQuery(name = QueryNames.REQUEST_INVALIDATE_OTHER_PENDING,
+        query = "UPDATE WarehouseRentalRequest r SET r.isInvalid = true, r.version = r.version + 1 "
+            + "WHERE r.requestDetails IN (SELECT d FROM RequestDetails d WHERE d.warehouse.id = :warehouseId) "
+            + "AND r.id <> :acceptedRequestId AND r.status = :pending AND r.isInvalid = false")
+})
 @Table(name = "warehouse_rental_requests")
 @Getter
 @Setter
@@ -45,4 +66,8 @@ public class WarehouseRentalRequest extends BaseEntity {
   @Column(name = "is_invalid", nullable = false)
   private boolean isInvalid;
 
+  @Version
+  @Column(name = "version", nullable = false)
+  private long version;
+
 }
@@ -7,14 +7,24 @@ import javax.persistence.Id;
 import javax.persistence.MappedSuperclass;
 import lombok.Getter;
 import lombok.Setter;
+import org.hibernate.annotations.GenericGenerator;
+import org.hibernate.annotations.Parameter;
+import org.hibernate.id.enhanced.SequenceStyleGenerator;
 
 /**
  * Represents a base entity class that provides common properties
  * for all entities in the system. This class serves as a foundation
  * for entity inheritance and ensures that all entities have a unique ID.
  * <p>
- * Entities inheriting from this class will inherit the ID property,
- * which is auto-generated and has a database identity strategy.
+ * Entities inheriting from this class will inherit the ID property, which is generated
+ * from a per-entity sequence using the pooled-lo optimizer. Every sequence call reserves a block
+ * of {@value #ID_BLOCK_SIZE} IDs which are then handed out in memory, so inserts no longer
+ * need a round-trip to learn their ID and can be sent in JDBC batches. Databases without
+ * sequence support, such as MySQL, use a single-row table per entity instead.
+ * </p>
+ * <p>
+ * The sequences start at {@value #ID_INITIAL_VALUE}. Existing rows keep their IDs: at startup every
+ * sequence is moved above the highest ID of its entity by {@link bg.tuvarna.sit.wms.util.IdSequences}.
  * </p>
  *
  * @author Yavor Chamov
@@ -25,11 +35,25 @@ import lombok.Setter;
 @Setter
 public abstract class BaseEntity implements Serializable {
 
+  public static final int ID_BLOCK_SIZE = 50;
+  public static final int ID_INITIAL_VALUE = 1;
+
+  private static final String ID_GENERATOR = "pooled-lo";
+
   /**
    * Represents the unique identifier for each entity instance.
-   * It's auto-generated by the database using an identity strategy.
+   * It's generated from the entity's sequence in blocks of {@value #ID_BLOCK_SIZE}.
    */
   @Id
-  @GeneratedValue(strategy = GenerationType.IDENTITY)
+  @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = ID_GENERATOR)
+  @GenericGenerator(
+      name = ID_GENERATOR,
+      strategy = "org.hibernate.id.enhanced.SequenceStyleGenerator",
+      parameters = {
+          @Parameter(name = SequenceStyleGenerator.CONFIG_PREFER_SEQUENCE_PER_ENTITY, value = "true"),
+          @Parameter(name = SequenceStyleGenerator.INITIAL_PARAM, value = "" + ID_INITIAL_VALUE),
+          @Parameter(name = SequenceStyleGenerator.INCREMENT_PARAM, value = "" + ID_BLOCK_SIZE),
+          @Parameter(name = SequenceStyleGenerator.OPT_PARAM, value = "pooled-lo")
+      })
   private Long id;
 }
@@ -1,5 +1,8 @@
 package bg.tuvarna.sit.wms.enums;
 
+import java.util.EnumSet;
+import java.util.Set;
+
 /**
  * Enum representing the status of a rental request. A rental request can be in one of the following states:
  * <ul>
@@ -9,10 +12,48 @@ package bg.tuvarna.sit.wms.enums;
  *
  *   <li>{@code DECLINED}: Indicates that the rental request has been declined</li>
  * </ul>
+ * <p>
+ * A pending request can be either accepted or declined, after which its status no longer changes.
+ * Declining a request also invalidates it.
+ * </p>
  */
 public enum RequestStatus {
 
   PENDING,
   ACCEPTED,
-  DECLINED
+  DECLINED;
+
+  /**
+   * Tells whether a request with this status can be moved to the given status.
+   *
+   * @param target the status to move to
+   * @return true if the transition is allowed
+   */
+  public boolean canTransitionTo(RequestStatus target) {
+
+    return getTargets().contains(target);
+  }
+
+  /**
+   * Returns the statuses to which a request with this status can be moved.
+   *
+   * @return the allowed target statuses, empty for final statuses
+   */
+  public Set<RequestStatus> getTargets() {
+
+    return switch (this) {
+      case PENDING -> EnumSet.of(ACCEPTED, DECLINED);
+      case ACCEPTED, DECLINED -> EnumSet.noneOf(RequestStatus.class);
+    };
+  }
+
+  /**
+   * Tells whether a request stays valid after being moved to this status.
+   *
+   * @return false if moving a request to this status invalidates it
+   */
+  public boolean keepsRequestValid() {
+
+    return this != DECLINED;
+  }
 }
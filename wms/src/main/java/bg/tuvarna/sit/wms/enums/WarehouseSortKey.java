@@ -0,0 +1,39 @@
+package bg.tuvarna.sit.wms.enums;
+
+import bg.tuvarna.sit.wms.dto.WarehouseDTO;
+import java.util.function.Function;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * This enum represents the columns by which a page of warehouses can be sorted on the server.
+ * <p>
+ * Every key knows the JPQL path of its column, relative to the aliases {@code w} for the warehouse
+ * and {@code c} for its city, and how to read the same value from a {@link WarehouseDTO}, which
+ * is used as the keyset cursor of the following page.
+ * </p>
+ */
+@Getter
+@RequiredArgsConstructor
+public enum WarehouseSortKey {
+
+  NAME("w.name", WarehouseDTO::getName),
+  CITY("c.name", WarehouseDTO::getCityName),
+  SIZE("w.size", WarehouseDTO::getSize),
+  STATUS("w.status", WarehouseDTO::getStatus),
+  ;
+
+  private final String path;
+  private final Function<WarehouseDTO, Object> valueExtractor;
+
+  /**
+   * Reads the value of this sort key from a warehouse DTO.
+   *
+   * @param warehouseDTO the DTO to read the value from
+   * @return the value of the sorted column
+   */
+  public Object getValue(WarehouseDTO warehouseDTO) {
+
+    return valueExtractor.apply(warehouseDTO);
+  }
+}
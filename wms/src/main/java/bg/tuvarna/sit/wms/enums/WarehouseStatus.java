@@ -3,6 +3,9 @@ package bg.tuvarna.sit.wms.enums;
 import lombok.Getter;
 import lombok.RequiredArgsConstructor;
 
+import java.util.EnumSet;
+import java.util.Set;
+
 /**
  * This enum represents the rental status of a warehouse.
  * <p>
@@ -11,6 +14,11 @@ import lombok.RequiredArgsConstructor;
  * insures that a warehouse cannot be concurrently at the same time by
  * multiple tenants.
  * </p>
+ * <p>
+ * An available warehouse becomes pending once rental requests are sent for it. A pending warehouse
+ * is either rented, or becomes available again if all of its requests are declined. A rented
+ * warehouse becomes available again when its rental ends.
+ * </p>
  *
  * @author Viktor Denchev
  * @since 1.0.0
@@ -25,4 +33,29 @@ public enum WarehouseStatus {
   ;
 
   private final String description;
+
+  /**
+   * Tells whether a warehouse with this status can be moved to the given status.
+   *
+   * @param target the status to move to
+   * @return true if the transition is allowed
+   */
+  public boolean canTransitionTo(WarehouseStatus target) {
+
+    return getTargets().contains(target);
+  }
+
+  /**
+   * Returns the statuses to which a warehouse with this status can be moved.
+   *
+   * @return the allowed target statuses
+   */
+  public Set<WarehouseStatus> getTargets() {
+
+    return switch (this) {
+      case AVAILABLE -> EnumSet.of(PENDING_RENTAL);
+      case PENDING_RENTAL -> EnumSet.of(AVAILABLE, RENTED);
+      case RENTED -> EnumSet.of(AVAILABLE);
+    };
+  }
 }
@@ -0,0 +1,14 @@
+package bg.tuvarna.sit.wms.exceptions;
+
+/**
+ * Exception thrown to indicate an error during the persistence operations of Notification entities.
+ */
+public class NotificationPersistenceException extends Exception {
+  public NotificationPersistenceException(String message, Throwable cause) {
+    super(message, cause);
+  }
+
+  public NotificationPersistenceException(String message) {
+    super(message);
+  }
+}
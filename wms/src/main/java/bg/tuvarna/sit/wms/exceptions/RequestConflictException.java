@@ -0,0 +1,17 @@
+package bg.tuvarna.sit.wms.exceptions;
+
+/**
+ * Thrown when a rental request was changed concurrently: another agent took or changed the request first,
+ * or the operation kept conflicting with concurrent changes of the same request or warehouse, even after
+ * it was retried.
+ */
+public class RequestConflictException extends RequestCreationException {
+
+  public RequestConflictException(String message) {
+    super(message);
+  }
+
+  public RequestConflictException(String message, Throwable cause) {
+    super(message, cause);
+  }
+}
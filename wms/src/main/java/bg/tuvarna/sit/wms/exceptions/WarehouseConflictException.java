@@ -0,0 +1,16 @@
+package bg.tuvarna.sit.wms.exceptions;
+
+/**
+ * Thrown when a warehouse could not be updated, because it was changed concurrently
+ * after it had been loaded, or no longer has the status a status change expected.
+ */
+public class WarehouseConflictException extends WarehouseServiceException {
+
+  public WarehouseConflictException(String message) {
+    super(message);
+  }
+
+  public WarehouseConflictException(String message, Throwable cause) {
+    super(message, cause);
+  }
+}
@@ -0,0 +1,121 @@
+package bg.tuvarna.sit.wms.service;
+
+import bg.tuvarna.sit.wms.dao.ReviewDao;
+import bg.tuvarna.sit.wms.dto.AgentDTO;
+import bg.tuvarna.sit.wms.dto.AgentRatingDTO;
+import bg.tuvarna.sit.wms.exceptions.ReviewPersistenceException;
+import bg.tuvarna.sit.wms.util.AsyncTasks;
+import bg.tuvarna.sit.wms.util.RatingLeaderboard;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Service class for the ratings of the agents.
+ * <p>
+ * The ratings are read from the rating aggregates, which the {@link ReviewDao} maintains together with the
+ * reviews, and kept in a {@link RatingLeaderboard}. The leaderboard is loaded on first use and then updated
+ * one agent at a time, whenever the {@link ReviewService} changes the reviews of an agent.
+ * </p>
+ */
+public class AgentRatingService {
+
+  private static final Logger LOGGER = LogManager.getLogger(AgentRatingService.class);
+
+  private final ReviewDao reviewDao;
+  private final Executor executor;
+  private final RatingLeaderboard leaderboard = new RatingLeaderboard();
+  private volatile boolean loaded;
+
+  public AgentRatingService(ReviewDao reviewDao, Executor executor) {
+    this.reviewDao = reviewDao;
+    this.executor = executor;
+  }
+
+  /**
+   * Recomputes the rating aggregates from the reviews if some agents with reviews have none, which is the case
+   * for the reviews written before the aggregates were introduced.
+   */
+  public void rebuildRatingsIfIncomplete() {
+
+    if (reviewDao.hasAllAgentRatings()) {
+      return;
+    }
+    try {
+      int agents = reviewDao.rebuildAgentRatings();
+      LOGGER.info("Rebuilt the ratings of {} agents", agents);
+      reload();
+    } catch (ReviewPersistenceException e) {
+      LOGGER.error("Error rebuilding agent ratings: {}", e.getMessage(), e);
+    }
+  }
+
+  /**
+   * Reads the current rating of an agent into the leaderboard after its reviews have changed.
+   *
+   * @param agentId the ID of the agent
+   */
+  public synchronized void refreshAgent(Long agentId) {
+
+    if (!loaded) {
+      return;
+    }
+    reviewDao.getAgentRating(agentId).ifPresentOrElse(leaderboard::update, () -> leaderboard.remove(agentId));
+  }
+
+  /**
+   * Drops the leaderboard, so it is read again from the rating aggregates on next use.
+   * Used after the reviews of many agents have changed at once.
+   */
+  public synchronized void reload() {
+
+    loaded = false;
+    leaderboard.clear();
+  }
+
+  /**
+   * Returns the best rated agents.
+   *
+   * @param limit the maximum number of agents to return
+   * @return the ratings of the best agents, best first
+   */
+  public List<AgentRatingDTO> getTopAgents(int limit) {
+
+    return loadedLeaderboard().top(limit);
+  }
+
+  /**
+   * Sets the rating of each agent and sorts them by rating, best first. Agents without reviews come last.
+   *
+   * @param agents the agents
+   * @return a new list of the agents, sorted by rating
+   */
+  public List<AgentDTO> rankAgents(List<AgentDTO> agents) {
+
+    RatingLeaderboard ratings = loadedLeaderboard();
+    agents.forEach(agent -> agent.setRating(ratings.get(agent.getId()).orElse(null)));
+    return ratings.sort(agents, AgentDTO::getId);
+  }
+
+  /**
+   * Sets the ratings of the agents and sorts them on the service executor, see {@link #rankAgents}.
+   *
+   * @param agents the agents
+   * @return a future of the sorted agents
+   */
+  public CompletableFuture<List<AgentDTO>> rankAgentsAsync(List<AgentDTO> agents) {
+
+    return AsyncTasks.supply(() -> rankAgents(agents), executor);
+  }
+
+  private synchronized RatingLeaderboard loadedLeaderboard() {
+
+    if (!loaded) {
+      reviewDao.getAgentRatings().forEach(leaderboard::update);
+      loaded = true;
+    }
+    return leaderboard;
+  }
+}
@@ -5,18 +5,23 @@ import bg.tuvarna.sit.wms.entities.City;
 import bg.tuvarna.sit.wms.entities.Country;
 import bg.tuvarna.sit.wms.exceptions.CityCreationException;
 import bg.tuvarna.sit.wms.exceptions.CityDAOException;
+import bg.tuvarna.sit.wms.util.SingleFlightCache;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
+import java.util.Locale;
 import java.util.Optional;
 
 /**
  * A service class for the City entity.
  * It provides a method for persisting a city entity or retrieving it if it already exists in the database.
+ * City names are trimmed and compared ignoring case. Resolved cities are kept in an in-memory cache keyed by
+ * their normalized name and the id of their country, which only holds cities whose insert has been committed.
  */
 public class CityService {
 
   private final CityDAO cityDAO;
+  private final SingleFlightCache<CityKey, City> cityCache = new SingleFlightCache<>();
   private static final Logger LOGGER = LogManager.getLogger(CityService.class);
 
   public CityService(CityDAO cityDAO) {
@@ -24,8 +29,10 @@ public class CityService {
   }
 
   /**
-   * Retrieves a city entity by its name and country from the database or creates a new City entity,
-   * if it doesn't exist and persists it
+   * Retrieves a city entity by its name and country from the cache, the database or creates a new City entity,
+   * if it doesn't exist and persists it. Concurrent calls for the same city result in a single
+   * database lookup and at most one new entity. Cities of countries which are not persisted yet are not cached.
+   * Inside a bound transaction the city is only added to the cache once the transaction commits.
    *
    * @param cityName the name of the city entity
    * @param country the country of the city entity
@@ -34,6 +41,42 @@ public class CityService {
    */
   public City getOrCreateCity(String cityName, Country country) throws CityCreationException {
 
+    String name = cityName.trim();
+    if (country.getId() == null) {
+      return loadOrCreateCity(name, country);
+    }
+
+    CityKey key = new CityKey(normalize(name), country.getId());
+    if (!cityDAO.isInTransaction()) {
+      return cityCache.get(key, () -> loadOrCreateCity(name, country));
+    }
+
+    City cached = cityCache.getIfPresent(key);
+    if (cached != null) {
+      return cached;
+    }
+    City city = loadOrCreateCity(name, country);
+    cityDAO.afterCommit(() -> cityCache.put(key, city));
+    return city;
+  }
+
+  /**
+   * Loads all cities from the database into the cache, so that later lookups don't need
+   * a database round-trip. A failure is only logged, since the cache is also filled on demand.
+   */
+  public void warmUpCache() {
+
+    try {
+      cityDAO.getAll().forEach(city ->
+          cityCache.put(new CityKey(normalize(city.getName()), city.getCountry().getId()), city));
+      LOGGER.info("City cache warmed up with {} entries", cityCache.size());
+    } catch (CityDAOException e) {
+      LOGGER.warn("Error warming up the city cache", e);
+    }
+  }
+
+  private City loadOrCreateCity(String cityName, Country country) throws CityCreationException {
+
     Optional<City> cityOptional;
     try {
       cityOptional = cityDAO.getByNameAndCountry(cityName, country);
@@ -60,4 +103,12 @@ public class CityService {
 
     return cityOptional.get();
   }
+
+  private String normalize(String cityName) {
+
+    return cityName.trim().toLowerCase(Locale.ROOT);
+  }
+
+  private record CityKey(String name, Long countryId) {
+  }
 }
@@ -4,18 +4,23 @@ import bg.tuvarna.sit.wms.dao.CountryDAO;
 import bg.tuvarna.sit.wms.entities.Country;
 import bg.tuvarna.sit.wms.exceptions.CountryCreationException;
 import bg.tuvarna.sit.wms.exceptions.CountryDAOException;
+import bg.tuvarna.sit.wms.util.SingleFlightCache;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
+import java.util.Locale;
 import java.util.Optional;
 
 /**
  * A service class for the Country entity.
  * It provides a method for persisting a country entity or retrieving it if it already exists in the database.
+ * Country names are trimmed and compared ignoring case. Resolved countries are kept in an in-memory cache
+ * keyed by their normalized name, which only holds countries whose insert has been committed.
  */
 public class CountryService {
 
   private final CountryDAO countryDAO;
+  private final SingleFlightCache<String, Country> countryCache = new SingleFlightCache<>();
   private static final Logger LOGGER = LogManager.getLogger(CountryService.class);
 
   public CountryService(CountryDAO countryDAO) {
@@ -23,8 +28,10 @@ public class CountryService {
   }
 
   /**
-   * Retrieves a country entity by its name from the database or creates a new Country entity,
-   * if it doesn't exist and persists it
+   * Retrieves a country entity by its name from the cache, the database or creates a new Country entity,
+   * if it doesn't exist and persists it. Concurrent calls for the same name result in a single
+   * database lookup and at most one new entity. Inside a bound transaction the country is only
+   * added to the cache once the transaction commits, since its insert may still be rolled back.
    *
    * @param countryName the name of the country entity
    * @return a newly created country entity if the country doesn't already exist or the existing country entity
@@ -32,6 +39,37 @@ public class CountryService {
    */
   public Country getOrCreateCountry(String countryName) throws CountryCreationException {
 
+    String name = countryName.trim();
+    String key = normalize(name);
+    if (!countryDAO.isInTransaction()) {
+      return countryCache.get(key, () -> loadOrCreateCountry(name));
+    }
+
+    Country cached = countryCache.getIfPresent(key);
+    if (cached != null) {
+      return cached;
+    }
+    Country country = loadOrCreateCountry(name);
+    countryDAO.afterCommit(() -> countryCache.put(key, country));
+    return country;
+  }
+
+  /**
+   * Loads all countries from the database into the cache, so that later lookups don't need
+   * a database round-trip. A failure is only logged, since the cache is also filled on demand.
+   */
+  public void warmUpCache() {
+
+    try {
+      countryDAO.getAll().forEach(country -> countryCache.put(normalize(country.getName()), country));
+      LOGGER.info("Country cache warmed up with {} entries", countryCache.size());
+    } catch (CountryDAOException e) {
+      LOGGER.warn("Error warming up the country cache", e);
+    }
+  }
+
+  private Country loadOrCreateCountry(String countryName) throws CountryCreationException {
+
     Optional<Country> countryOptional;
     try {
       countryOptional = countryDAO.getByName(countryName);
@@ -57,4 +95,9 @@ public class CountryService {
 
     return countryOptional.get();
   }
+
+  private String normalize(String countryName) {
+
+    return countryName.trim().toLowerCase(Locale.ROOT);
+  }
 }
@@ -0,0 +1,283 @@
+package bg.tuvarna.sit.wms.service;
+
+import bg.tuvarna.sit.wms.contracts.NotificationPublisher;
+import bg.tuvarna.sit.wms.contracts.UnreadCountListener;
+import bg.tuvarna.sit.wms.dao.NotificationDAO;
+import bg.tuvarna.sit.wms.dto.NotificationDTO;
+import bg.tuvarna.sit.wms.dto.NotificationImportDto;
+import bg.tuvarna.sit.wms.exceptions.NotificationPersistenceException;
+import bg.tuvarna.sit.wms.util.AsyncTasks;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Service class for the in-process notifications of the users.
+ * <p>
+ * The other services publish their events with {@link #publish}, which only queues the notification. The queue
+ * is written by the scheduler {@value #FLUSH_DELAY_MS} ms after the first queued notification, in batches of up
+ * to {@value #BATCH_SIZE}, so the services and the JavaFX Application Thread never wait for it.
+ * </p>
+ * <p>
+ * The number of unread notifications of a user is read from the database with {@link #refreshUnreadCount},
+ * which the menu calls every time it is built, so notifications written by other clients are picked up at
+ * login and on every change of view. Between two refreshes the count is kept up to date in memory as this
+ * client writes notifications and marks them as read. Every change is passed to the
+ * {@link UnreadCountListener}s, which keep the menu badge current without polling. Loading the inbox
+ * resynchronises the count with the database as well.
+ * </p>
+ */
+public class NotificationService implements NotificationPublisher {
+
+  static final int BATCH_SIZE = 100;
+  static final long FLUSH_DELAY_MS = 500;
+  static final int INBOX_SIZE = 100;
+  static final int MAX_MESSAGE_LENGTH = 128;
+
+  private static final Logger LOGGER = LogManager.getLogger(NotificationService.class);
+
+  private final NotificationDAO notificationDAO;
+  private final Executor executor;
+  private final ScheduledExecutorService scheduler;
+  private final Queue<NotificationImportDto> pending = new ConcurrentLinkedQueue<>();
+  private final AtomicBoolean flushScheduled = new AtomicBoolean();
+  private final Map<Long, AtomicLong> unreadCounts = new ConcurrentHashMap<>();
+  private final List<UnreadCountListener> listeners = new CopyOnWriteArrayList<>();
+
+  public NotificationService(NotificationDAO notificationDAO, Executor executor, ScheduledExecutorService scheduler) {
+    this.notificationDAO = notificationDAO;
+    this.executor = executor;
+    this.scheduler = scheduler;
+  }
+
+  /**
+   * Queues a notification for the given user. Messages longer than {@value #MAX_MESSAGE_LENGTH} characters
+   * are shortened.
+   *
+   * @param userId  the ID of the user to notify
+   * @param message the message of the notification
+   */
+  @Override
+  public void publish(Long userId, String message) {
+
+    if (userId == null || message == null) {
+      return;
+    }
+
+    String text = message.length() > MAX_MESSAGE_LENGTH ? message.substring(0, MAX_MESSAGE_LENGTH) : message;
+    pending.add(new NotificationImportDto(userId, text, LocalDateTime.now()));
+    scheduleFlush();
+  }
+
+  /**
+   * Writes all queued notifications in batches and updates the unread counts of their users.
+   * A batch which cannot be written is logged and dropped.
+   */
+  public synchronized void flush() {
+
+    List<NotificationImportDto> batch = drainBatch();
+    while (!batch.isEmpty()) {
+      try {
+        notificationDAO.saveAll(batch);
+        Map<Long, Long> perUser = new HashMap<>();
+        batch.forEach(notification -> perUser.merge(notification.getUserId(), 1L, Long::sum));
+        perUser.forEach(this::adjustUnreadCount);
+      } catch (NotificationPersistenceException e) {
+        LOGGER.error("Dropping {} notifications: {}", batch.size(), e.getMessage(), e);
+      }
+      batch = drainBatch();
+    }
+  }
+
+  /**
+   * Reads the number of unread notifications of a user from the database and replaces the count held in
+   * memory, which may miss the notifications written or read by other clients.
+   *
+   * @param userId the ID of the user
+   * @return the number of unread notifications
+   */
+  public long refreshUnreadCount(Long userId) {
+
+    long unreadCount = notificationDAO.countUnreadByUser(userId);
+    setUnreadCount(userId, unreadCount);
+    return unreadCount;
+  }
+
+  /**
+   * Returns the number of unread notifications of a user held in memory, reading it from the database only
+   * if there is none yet. Use {@link #refreshUnreadCount} to pick up the changes of other clients.
+   *
+   * @param userId the ID of the user
+   * @return the number of unread notifications
+   */
+  public long getUnreadCount(Long userId) {
+
+    AtomicLong count = unreadCounts.get(userId);
+    if (count == null) {
+      long loaded = notificationDAO.countUnreadByUser(userId);
+      count = unreadCounts.computeIfAbsent(userId, id -> new AtomicLong(loaded));
+    }
+    return count.get();
+  }
+
+  /**
+   * Retrieves the newest {@value #INBOX_SIZE} unread notifications of a user. If there are fewer,
+   * the unread count of the user is set to their number.
+   *
+   * @param userId the ID of the user
+   * @return the unread notifications, newest first
+   */
+  public List<NotificationDTO> getUnreadNotifications(Long userId) {
+
+    List<NotificationDTO> notifications = notificationDAO.getUnreadByUser(userId, INBOX_SIZE);
+    if (notifications.size() < INBOX_SIZE) {
+      setUnreadCount(userId, notifications.size());
+    }
+    return notifications;
+  }
+
+  /**
+   * Marks the given notifications of a user as read.
+   *
+   * @param userId          the ID of the user
+   * @param notificationIds the IDs of the notifications
+   * @throws NotificationPersistenceException if the notifications cannot be updated
+   */
+  public void markAsRead(Long userId, Collection<Long> notificationIds) throws NotificationPersistenceException {
+
+    int marked = notificationDAO.markAsRead(userId, notificationIds);
+    adjustUnreadCount(userId, -marked);
+  }
+
+  /**
+   * Marks all notifications of a user as read.
+   *
+   * @param userId the ID of the user
+   * @throws NotificationPersistenceException if the notifications cannot be updated
+   */
+  public void markAllAsRead(Long userId) throws NotificationPersistenceException {
+
+    notificationDAO.markAllAsRead(userId);
+    setUnreadCount(userId, 0);
+  }
+
+  /**
+   * Reads the number of unread notifications of a user on the service executor, see {@link #refreshUnreadCount}.
+   *
+   * @param userId the ID of the user
+   * @return a future of the number of unread notifications
+   */
+  public CompletableFuture<Long> refreshUnreadCountAsync(Long userId) {
+
+    return AsyncTasks.supply(() -> refreshUnreadCount(userId), executor);
+  }
+
+  /**
+   * Retrieves the unread notifications of a user on the service executor, see {@link #getUnreadNotifications}.
+   *
+   * @param userId the ID of the user
+   * @return a future of the unread notifications
+   */
+  public CompletableFuture<List<NotificationDTO>> getUnreadNotificationsAsync(Long userId) {
+
+    return AsyncTasks.supply(() -> getUnreadNotifications(userId), executor);
+  }
+
+  /**
+   * Marks the given notifications of a user as read on the service executor.
+   *
+   * @param userId          the ID of the user
+   * @param notificationIds the IDs of the notifications
+   * @return a future which fails with a {@link NotificationPersistenceException} if the update fails
+   */
+  public CompletableFuture<Void> markAsReadAsync(Long userId, Collection<Long> notificationIds) {
+
+    return AsyncTasks.run(() -> markAsRead(userId, notificationIds), executor);
+  }
+
+  /**
+   * Marks all notifications of a user as read on the service executor.
+   *
+   * @param userId the ID of the user
+   * @return a future which fails with a {@link NotificationPersistenceException} if the update fails
+   */
+  public CompletableFuture<Void> markAllAsReadAsync(Long userId) {
+
+    return AsyncTasks.run(() -> markAllAsRead(userId), executor);
+  }
+
+  public void addUnreadCountListener(UnreadCountListener listener) {
+    listeners.add(listener);
+  }
+
+  public void removeUnreadCountListener(UnreadCountListener listener) {
+    listeners.remove(listener);
+  }
+
+  private void scheduleFlush() {
+
+    if (!flushScheduled.compareAndSet(false, true)) {
+      return;
+    }
+    try {
+      scheduler.schedule(() -> {
+        flushScheduled.set(false);
+        flush();
+      }, FLUSH_DELAY_MS, TimeUnit.MILLISECONDS);
+    } catch (RejectedExecutionException e) {
+      flushScheduled.set(false);
+      LOGGER.warn("Notification flush could not be scheduled, {} notifications are waiting", pending.size());
+    }
+  }
+
+  private List<NotificationImportDto> drainBatch() {
+
+    List<NotificationImportDto> batch = new ArrayList<>();
+    NotificationImportDto notification;
+    while (batch.size() < BATCH_SIZE && (notification = pending.poll()) != null) {
+      batch.add(notification);
+    }
+    return batch;
+  }
+
+  private void adjustUnreadCount(Long userId, long delta) {
+
+    AtomicLong count = unreadCounts.get(userId);
+    if (count != null && delta != 0) {
+      fireUnreadCountChanged(userId, count.updateAndGet(value -> Math.max(0, value + delta)));
+    }
+  }
+
+  private void setUnreadCount(Long userId, long unreadCount) {
+
+    unreadCounts.computeIfAbsent(userId, id -> new AtomicLong()).set(unreadCount);
+    fireUnreadCountChanged(userId, unreadCount);
+  }
+
+  private void fireUnreadCountChanged(Long userId, long unreadCount) {
+
+    for (UnreadCountListener listener : listeners) {
+      try {
+        listener.onUnreadCountChanged(userId, unreadCount);
+      } catch (RuntimeException e) {
+        LOGGER.warn("Unread count listener failed", e);
+      }
+    }
+  }
+}
@@ -1,7 +1,9 @@
 package bg.tuvarna.sit.wms.service;
 
+import bg.tuvarna.sit.wms.contracts.NotificationPublisher;
 import bg.tuvarna.sit.wms.dao.RentalAgreementDAO;
 import bg.tuvarna.sit.wms.dto.RentalAgreementCreationDTO;
+import bg.tuvarna.sit.wms.dto.WarehouseDTO;
 import bg.tuvarna.sit.wms.entities.Agent;
 import bg.tuvarna.sit.wms.entities.RentalAgreement;
 import bg.tuvarna.sit.wms.entities.Tenant;
@@ -11,11 +13,13 @@ import bg.tuvarna.sit.wms.exceptions.RentalAgreementCreationException;
 import bg.tuvarna.sit.wms.exceptions.RentalAgreementDAOException;
 import bg.tuvarna.sit.wms.exceptions.RequestCreationException;
 import bg.tuvarna.sit.wms.exceptions.WarehouseServiceException;
+import bg.tuvarna.sit.wms.util.TransactionTemplate;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
 import java.time.ZoneId;
 import java.util.Date;
+import javax.persistence.PersistenceException;
 
 /**
  * Service class for handling the creation process of rental agreements.
@@ -27,18 +31,31 @@ public class RentalAgreementService {
   private final WarehouseService warehouseService;
   private final RentalRequestService rentalRequestService;
   private final RentalAgreementDAO rentalAgreementDAO;
+  private final TransactionTemplate transactionTemplate;
+  private final NotificationPublisher notificationPublisher;
   private static final Logger LOGGER = LogManager.getLogger(RentalRequestService.class);
 
-  public RentalAgreementService(WarehouseService warehouseService, RentalRequestService rentalRequestService, RentalAgreementDAO rentalAgreementDAO) {
+  public RentalAgreementService(WarehouseService warehouseService, RentalRequestService rentalRequestService,
+                                RentalAgreementDAO rentalAgreementDAO, TransactionTemplate transactionTemplate) {
+    this(warehouseService, rentalRequestService, rentalAgreementDAO, transactionTemplate,
+        NotificationPublisher.none());
+  }
+
+  public RentalAgreementService(WarehouseService warehouseService, RentalRequestService rentalRequestService,
+                                RentalAgreementDAO rentalAgreementDAO, TransactionTemplate transactionTemplate,
+                                NotificationPublisher notificationPublisher) {
     this.warehouseService = warehouseService;
     this.rentalRequestService = rentalRequestService;
     this.rentalAgreementDAO = rentalAgreementDAO;
+    this.transactionTemplate = transactionTemplate;
+    this.notificationPublisher = notificationPublisher;
   }
 
   /**
    * Creates a new rental agreement based on the provided DTO.
    * Persists the rental agreement entity, invalidates the associated rental request,
-   * and updates the status of the corresponding warehouse.
+   * and updates the status of the corresponding warehouse. All steps are performed in a single transaction,
+   * after which the owner of the warehouse is notified.
    *
    * @param rentalAgreementCreationDTO the DTO containing information for creating a rental agreement
    * @throws RentalAgreementCreationException if an error occurs during the creation process
@@ -48,23 +65,36 @@ public class RentalAgreementService {
     RentalAgreement rentalAgreement = mapDTOToEntity(rentalAgreementCreationDTO);
 
     try {
-      rentalAgreementDAO.save(rentalAgreement);
-      rentalRequestService.invalidateRentalRequest(rentalAgreementCreationDTO.getRentalRequestDTO());
-      warehouseService.changeWarehouseStatus(rentalAgreementCreationDTO.getWarehouseDTO(), WarehouseStatus.RENTED);
-    } catch (RentalAgreementDAOException e) {
-      String errorMessage = "Error during rental agreement creation process";
-      LOGGER.error(errorMessage, e);
-      throw new RentalAgreementCreationException(errorMessage, e);
-    } catch (WarehouseServiceException e) {
-      String errorMessage = "Error changing warehouse status during rental agreement creation process";
-      LOGGER.error(errorMessage, e);
-      throw new RentalAgreementCreationException(errorMessage, e);
-    } catch (RequestCreationException e) {
-      String errorMessage = "Error invalidating rental request during rental agreement creation process";
+      transactionTemplate.runInTransaction(em -> {
+        try {
+          rentalAgreementDAO.save(rentalAgreement);
+          rentalRequestService.invalidateRentalRequest(rentalAgreementCreationDTO.getRentalRequestDTO());
+          warehouseService.changeWarehouseStatus(rentalAgreementCreationDTO.getWarehouseDTO(), WarehouseStatus.RENTED);
+        } catch (RentalAgreementDAOException e) {
+          String errorMessage = "Error during rental agreement creation process";
+          LOGGER.error(errorMessage, e);
+          throw new RentalAgreementCreationException(errorMessage, e);
+        } catch (WarehouseServiceException e) {
+          String errorMessage = "Error changing warehouse status during rental agreement creation process";
+          LOGGER.error(errorMessage, e);
+          throw new RentalAgreementCreationException(errorMessage, e);
+        } catch (RequestCreationException e) {
+          String errorMessage = "Error invalidating rental request during rental agreement creation process";
+          LOGGER.error(errorMessage, e);
+          throw new RentalAgreementCreationException(errorMessage, e);
+        }
+      });
+    } catch (PersistenceException e) {
+      String errorMessage = "Error committing the rental agreement creation";
       LOGGER.error(errorMessage, e);
       throw new RentalAgreementCreationException(errorMessage, e);
     }
 
+    WarehouseDTO warehouseDTO = rentalAgreementCreationDTO.getWarehouseDTO();
+    if (warehouseDTO.getOwner() != null) {
+      notificationPublisher.publish(warehouseDTO.getOwner().getId(), "Warehouse " + warehouseDTO.getName()
+          + " was rented to " + rentalAgreementCreationDTO.getCompanyName());
+    }
   }
 
   public RentalAgreement mapDTOToEntity(RentalAgreementCreationDTO dto) {
@@ -1,5 +1,7 @@
 package bg.tuvarna.sit.wms.service;
 
+import bg.tuvarna.sit.wms.contracts.NotificationPublisher;
+import bg.tuvarna.sit.wms.contracts.TransactionWork;
 import bg.tuvarna.sit.wms.dao.UserDao;
 import bg.tuvarna.sit.wms.dao.WarehouseRentalRequestDAO;
 import bg.tuvarna.sit.wms.dto.AgentDTO;
@@ -13,34 +15,65 @@ import bg.tuvarna.sit.wms.entities.WarehouseRentalRequest;
 import bg.tuvarna.sit.wms.enums.RequestStatus;
 import bg.tuvarna.sit.wms.enums.WarehouseStatus;
 import bg.tuvarna.sit.wms.exceptions.RentalRequestDAOException;
+import bg.tuvarna.sit.wms.exceptions.RequestConflictException;
 import bg.tuvarna.sit.wms.exceptions.RequestCreationException;
 import bg.tuvarna.sit.wms.exceptions.WarehouseServiceException;
+import bg.tuvarna.sit.wms.util.AsyncTasks;
+import bg.tuvarna.sit.wms.util.OptimisticLocking;
+import bg.tuvarna.sit.wms.util.TransactionTemplate;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
 import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
 import java.util.stream.Collectors;
+import javax.persistence.PersistenceException;
 
 /**
  * Service class for managing rental requests.
  * Handles the creation, accepting and declining of requests.
+ * Once a change is committed, the agents of new requests and the owners of accepted or declined ones are notified.
  */
 public class RentalRequestService {
 
   private final WarehouseRentalRequestDAO warehouseRentalRequestDAO;
   private final WarehouseService warehouseService;
   private final UserDao userDao;
+  private final TransactionTemplate transactionTemplate;
+  private final Executor executor;
+  private final NotificationPublisher notificationPublisher;
   private static final Logger LOGGER = LogManager.getLogger(RentalRequestService.class);
+  private static final int CONFLICT_ATTEMPTS = 3;
 
-  public RentalRequestService(WarehouseRentalRequestDAO warehouseRentalRequestDAO, WarehouseService warehouseService, UserDao userDao) {
+  public RentalRequestService(WarehouseRentalRequestDAO warehouseRentalRequestDAO, WarehouseService warehouseService,
+                              UserDao userDao, TransactionTemplate transactionTemplate) {
+    this(warehouseRentalRequestDAO, warehouseService, userDao, transactionTemplate, ForkJoinPool.commonPool());
+  }
+
+  public RentalRequestService(WarehouseRentalRequestDAO warehouseRentalRequestDAO, WarehouseService warehouseService,
+                              UserDao userDao, TransactionTemplate transactionTemplate, Executor executor) {
+    this(warehouseRentalRequestDAO, warehouseService, userDao, transactionTemplate, executor,
+        NotificationPublisher.none());
+  }
+
+  public RentalRequestService(WarehouseRentalRequestDAO warehouseRentalRequestDAO, WarehouseService warehouseService,
+                              UserDao userDao, TransactionTemplate transactionTemplate, Executor executor,
+                              NotificationPublisher notificationPublisher) {
     this.warehouseRentalRequestDAO = warehouseRentalRequestDAO;
     this.warehouseService = warehouseService;
     this.userDao = userDao;
+    this.transactionTemplate = transactionTemplate;
+    this.executor = executor;
+    this.notificationPublisher = notificationPublisher;
   }
 
   /**
    * Creates rental requests to a list of agents for a given warehouse.
+   * The shared request details, the requests, which are inserted in JDBC batches, and the
+   * warehouse status change are persisted in a single transaction. Every agent is notified of the new request.
    *
    * @param agentDTOS the agents who will receive the rental request
    * @param requestDetailsDTO a dto, containing rental details
@@ -53,98 +86,123 @@ public class RentalRequestService {
       throw new RequestCreationException("Error creating rental request: Only warehouses with available status allowed");
     }
 
-    RequestDetails requestDetails = mapRequestDetailsDTOToEntity(requestDetailsDTO);
-    for (AgentDTO agentDTO : agentDTOS) {
-      WarehouseRentalRequest request = new WarehouseRentalRequest();
-      request.setAgent(mapAgentDTOToEntity(agentDTO));
-      request.setRequestDetails(requestDetails);
-      request.setStatus(RequestStatus.PENDING);
+    List<Long> agentIds = agentDTOS.stream()
+        .map(AgentDTO::getId)
+        .distinct()
+        .toList();
+
+    runInTransaction("Error committing warehouse rental requests", em -> {
+      RequestDetails requestDetails = mapRequestDetailsDTOToEntity(requestDetailsDTO);
 
       try {
-        warehouseRentalRequestDAO.save(request);
+        warehouseRentalRequestDAO.saveRequestsForAgents(requestDetails, agentIds);
       } catch (RentalRequestDAOException e) {
-        String errorMessage = "Error creating warehouse rental request";
+        String errorMessage = "Error creating warehouse rental requests";
         LOGGER.error(errorMessage, e);
         throw new RequestCreationException(errorMessage, e);
       }
-    }
 
-    try {
-      warehouseService.changeWarehouseStatus(requestDetailsDTO.getWarehouseDTO(), WarehouseStatus.PENDING_RENTAL);
-    } catch (WarehouseServiceException e) {
-      String errorMessage = "Error updating warehouse status during rental request creation";
-      LOGGER.error(errorMessage, e);
-      throw new RequestCreationException(errorMessage, e);
-    }
+      try {
+        warehouseService.changeWarehouseStatus(requestDetailsDTO.getWarehouseDTO(), WarehouseStatus.PENDING_RENTAL);
+      } catch (WarehouseServiceException e) {
+        String errorMessage = "Error updating warehouse status during rental request creation";
+        LOGGER.error(errorMessage, e);
+        throw new RequestCreationException(errorMessage, e);
+      }
+    });
+
+    String message = "New rental request for warehouse " + requestDetailsDTO.getWarehouseDTO().getName();
+    agentIds.forEach(agentId -> notificationPublisher.publish(agentId, message));
   }
 
   /**
-   * Handles the process of accepting a rental request, by invalidating requests
-   * from other agents for the same warehouse, and then changing the status of the accepted request.
+   * Handles the process of accepting a rental request, by changing the status of the accepted request,
+   * and then invalidating the pending requests from other agents for the same warehouse.
+   * The competing requests are invalidated with a single bulk update, so the number of statements
+   * does not grow with the number of invited agents. All steps are performed in a single transaction.
+   * <p>
+   * The transaction first locks the row of the warehouse, so acceptances of requests for the same warehouse
+   * run one after the other instead of each locking a request the other one needs. The request is not loaded.
+   * Its status is moved from 'pending' to 'accepted' with a compare-and-set update, which fails if another
+   * agent's acceptance already invalidated it. Of two agents accepting concurrently, the second one waits for
+   * the first one to commit and then finds its own request invalidated. A deadlock or lock timeout reported by
+   * the database is retried like any other conflict. The owner of the warehouse is notified once the acceptance
+   * is committed.
+   * </p>
    *
    * @param rentalRequestDTO the request to be accepted
+   * @throws RequestConflictException if the request is no longer pending, because another agent took it
    * @throws RequestCreationException if an error occurs during any of the steps
    */
   public void acceptRentalRequest(RentalRequestDTO rentalRequestDTO) throws RequestCreationException {
 
-    Warehouse warehouse = warehouseService.mapDTOToEntity(rentalRequestDTO.getWarehouseDTO());
-    Agent agent = mapAgentDTOToEntity(rentalRequestDTO.getAgentDTO());
-    List<WarehouseRentalRequest> otherAgentRequests = warehouseRentalRequestDAO.getAllByWarehouse(warehouse).stream()
-        .filter(request -> !request.getAgent().getId().equals(agent.getId()))
-        .toList();
+    runInTransaction("Error committing the accepted rental request", em -> {
+      Long warehouseId = rentalRequestDTO.getWarehouseDTO().getId();
+      lockWarehouse(warehouseId);
 
-    for (WarehouseRentalRequest rentalRequest : otherAgentRequests) {
+      boolean accepted;
       try {
-        warehouseRentalRequestDAO.invalidateRequest(rentalRequest);
+        accepted = warehouseRentalRequestDAO.transitionStatus(
+            rentalRequestDTO.getId(), RequestStatus.PENDING, RequestStatus.ACCEPTED);
       } catch (RentalRequestDAOException e) {
-        String errorMessage = "Error invalidating rental requests";
+        String errorMessage = "Error while changing the rental request status to 'accepted'";
         LOGGER.error(errorMessage, e);
         throw new RequestCreationException(errorMessage, e);
       }
-    }
 
-    try {
-      Optional<WarehouseRentalRequest> requestOptional = warehouseRentalRequestDAO.getById(rentalRequestDTO.getId());
-      if (requestOptional.isEmpty()) {
-        throw new RequestCreationException("Request was taken by another agent");
+      if (!accepted) {
+        throw new RequestConflictException("Request was taken by another agent");
       }
-      WarehouseRentalRequest request = requestOptional.get();
-      warehouseRentalRequestDAO.changeStatus(request, RequestStatus.ACCEPTED);
-    } catch (RentalRequestDAOException e) {
-      String errorMessage = "Error while changing the rental request status to 'accepted'";
-      LOGGER.error(errorMessage, e);
-      throw new RequestCreationException(errorMessage, e);
-    }
+
+      try {
+        int invalidatedRequests =
+            warehouseRentalRequestDAO.invalidateOtherPendingRequests(warehouseId, rentalRequestDTO.getId());
+        LOGGER.debug("Invalidated {} competing rental requests", invalidatedRequests);
+      } catch (RentalRequestDAOException e) {
+        String errorMessage = "Error invalidating rental requests";
+        LOGGER.error(errorMessage, e);
+        throw new RequestCreationException(errorMessage, e);
+      }
+    });
+
+    notifyOwner(rentalRequestDTO, "accepted");
   }
 
   /**
-   * Handles rental request declining, by setting its status to 'Declined' and invalidates the request.
+   * Handles rental request declining, by setting its status to 'Declined', which also invalidates the request.
+   * The status is changed with a compare-and-set update, so a request which is no longer pending is left unchanged.
    * Sets the warehouse status to 'Available' if all requests for the warehouse are invalidated.
+   * All steps are performed in a single transaction, which locks the warehouse first like
+   * {@link #acceptRentalRequest}, after which the owner of the warehouse is notified.
    *
    * @param rentalRequestDTO the request to be declined
+   * @throws RequestConflictException if the request is no longer pending, because it was changed concurrently
    * @throws RequestCreationException if an error occurs during the process
    */
   public void declineRentalRequest(RentalRequestDTO rentalRequestDTO) throws RequestCreationException {
 
-    try {
-      Optional<WarehouseRentalRequest> requestOptional = warehouseRentalRequestDAO.getById(rentalRequestDTO.getId());
-      if (requestOptional.isEmpty()) {
-        throw new RequestCreationException("Rental request chosen to be declined not found ");
+    runInTransaction("Error committing the declined rental request", em -> {
+      lockWarehouse(rentalRequestDTO.getWarehouseDTO().getId());
+      try {
+        boolean declined = warehouseRentalRequestDAO.transitionStatus(
+            rentalRequestDTO.getId(), RequestStatus.PENDING, RequestStatus.DECLINED);
+        if (!declined) {
+          throw new RequestConflictException("Rental request chosen to be declined is no longer pending");
+        }
+
+        Warehouse warehouse = warehouseService.mapDTOToEntity(rentalRequestDTO.getWarehouseDTO());
+        List<WarehouseRentalRequest> requests = warehouseRentalRequestDAO.getAllByWarehouse(warehouse);
+        if(requests.isEmpty()) {
+          warehouseService.changeWarehouseStatus(rentalRequestDTO.getWarehouseDTO(), WarehouseStatus.AVAILABLE);
+        }
+      } catch (RentalRequestDAOException | WarehouseServiceException e) {
+        String errorMessage = "Error while changing the rental request status to 'declined'";
+        LOGGER.error(errorMessage, e);
+        throw new RequestCreationException(errorMessage, e);
       }
-      WarehouseRentalRequest request = requestOptional.get();
-      warehouseRentalRequestDAO.changeStatus(request, RequestStatus.DECLINED);
-      warehouseRentalRequestDAO.invalidateRequest(request);
+    });
 
-      Warehouse warehouse = warehouseService.mapDTOToEntity(rentalRequestDTO.getWarehouseDTO());
-      List<WarehouseRentalRequest> requests = warehouseRentalRequestDAO.getAllByWarehouse(warehouse);
-      if(requests.isEmpty()) {
-        warehouseService.changeWarehouseStatus(rentalRequestDTO.getWarehouseDTO(), WarehouseStatus.AVAILABLE);
-      }
-    } catch (RentalRequestDAOException | WarehouseServiceException e) {
-      String errorMessage = "Error while changing the rental request status to 'declined'";
-      LOGGER.error(errorMessage, e);
-      throw new RequestCreationException(errorMessage, e);
-    }
+    notifyOwner(rentalRequestDTO, "declined");
   }
 
   /**
@@ -156,19 +214,21 @@ public class RentalRequestService {
    */
   public void invalidateRentalRequest(RentalRequestDTO rentalRequestDTO) throws RequestCreationException {
 
-    Optional<WarehouseRentalRequest> requestOptional = warehouseRentalRequestDAO.getById(rentalRequestDTO.getId());
-    if (requestOptional.isEmpty()) {
-      throw new RequestCreationException("Rental request chosen to be declined not found ");
-    }
+    runInTransaction("Error committing the invalidated rental request", em -> {
+      Optional<WarehouseRentalRequest> requestOptional = warehouseRentalRequestDAO.getById(rentalRequestDTO.getId());
+      if (requestOptional.isEmpty()) {
+        throw new RequestCreationException("Rental request chosen to be declined not found ");
+      }
 
-    WarehouseRentalRequest request = requestOptional.get();
-    try {
-      warehouseRentalRequestDAO.invalidateRequest(request);
-    } catch (RentalRequestDAOException e) {
-      String errorMessage = "Error while invalidating rental request";
-      LOGGER.error(errorMessage, e);
-      throw new RequestCreationException(errorMessage, e);
-    }
+      WarehouseRentalRequest request = requestOptional.get();
+      try {
+        warehouseRentalRequestDAO.invalidateRequest(request);
+      } catch (RentalRequestDAOException e) {
+        String errorMessage = "Error while invalidating rental request";
+        LOGGER.error(errorMessage, e);
+        throw new RequestCreationException(errorMessage, e);
+      }
+    });
   }
 
   /**
@@ -203,6 +263,75 @@ public class RentalRequestService {
     return agents.stream().map(this::mapAgentEntityToDTO).toList();
   }
 
+  /**
+   * Creates rental requests to a list of agents on the service executor, see {@link #createRentalRequests}.
+   *
+   * @param agentDTOS         the agents who will receive the rental request
+   * @param requestDetailsDTO a dto, containing rental details
+   * @return a future which fails with a {@link RequestCreationException} if the creation fails
+   */
+  public CompletableFuture<Void> createRentalRequestsAsync(List<AgentDTO> agentDTOS,
+                                                          RequestDetailsDTO requestDetailsDTO) {
+
+    return AsyncTasks.run(() -> createRentalRequests(agentDTOS, requestDetailsDTO), executor);
+  }
+
+  /**
+   * Accepts a rental request on the service executor, see {@link #acceptRentalRequest}.
+   *
+   * @param rentalRequestDTO the request to accept
+   * @return a future which fails with a {@link RequestConflictException} if the request was taken,
+   *         or with a {@link RequestCreationException} if accepting it fails
+   */
+  public CompletableFuture<Void> acceptRentalRequestAsync(RentalRequestDTO rentalRequestDTO) {
+
+    return AsyncTasks.run(() -> acceptRentalRequest(rentalRequestDTO), executor);
+  }
+
+  /**
+   * Declines a rental request on the service executor, see {@link #declineRentalRequest}.
+   *
+   * @param rentalRequestDTO the request to decline
+   * @return a future which fails with a {@link RequestConflictException} if the request was changed,
+   *         or with a {@link RequestCreationException} if declining it fails
+   */
+  public CompletableFuture<Void> declineRentalRequestAsync(RentalRequestDTO rentalRequestDTO) {
+
+    return AsyncTasks.run(() -> declineRentalRequest(rentalRequestDTO), executor);
+  }
+
+  /**
+   * Retrieves the pending requests of an agent on the service executor.
+   *
+   * @param agent the agent for whom the requests are for
+   * @return a future of the request DTOs
+   */
+  public CompletableFuture<List<RentalRequestDTO>> getIncomingRentalRequestsByAgentAsync(Agent agent) {
+
+    return AsyncTasks.supply(() -> getIncomingRentalRequestsByAgent(agent), executor);
+  }
+
+  /**
+   * Retrieves the accepted requests of an agent on the service executor.
+   *
+   * @param agent the agent for whom the requests are for
+   * @return a future of the request DTOs
+   */
+  public CompletableFuture<List<RentalRequestDTO>> getAcceptedRentalRequestsByAgentAsync(Agent agent) {
+
+    return AsyncTasks.supply(() -> getAcceptedRentalRequestsByAgent(agent), executor);
+  }
+
+  /**
+   * Retrieves all agents as DTOs on the service executor.
+   *
+   * @return a future of the agent DTOs
+   */
+  public CompletableFuture<List<AgentDTO>> getAllAgentDTOsAsync() {
+
+    return AsyncTasks.supply(this::getAllAgentDTOs, executor);
+  }
+
   public RentalRequestDTO mapWarehouseRentalRequestToDTO(WarehouseRentalRequest requestEntity) {
 
     RentalRequestDTO dto = new RentalRequestDTO();
@@ -256,4 +385,71 @@ public class RentalRequestService {
     return requestDetails;
   }
 
+  private void lockWarehouse(Long warehouseId) throws RequestCreationException {
+
+    try {
+      warehouseRentalRequestDAO.lockWarehouse(warehouseId);
+    } catch (RentalRequestDAOException e) {
+      String errorMessage = "Error locking the warehouse of the rental request";
+      LOGGER.error(errorMessage, e);
+      throw new RequestCreationException(errorMessage, e);
+    }
+  }
+
+  private void notifyOwner(RentalRequestDTO rentalRequestDTO, String action) {
+
+    WarehouseDTO warehouseDTO = rentalRequestDTO.getWarehouseDTO();
+    if (warehouseDTO.getOwner() == null) {
+      return;
+    }
+
+    AgentDTO agentDTO = rentalRequestDTO.getAgentDTO();
+    String agentName = agentDTO == null ? "An agent" : agentDTO.getFullName();
+    notificationPublisher.publish(warehouseDTO.getOwner().getId(),
+        agentName + " " + action + " the rental request for warehouse " + warehouseDTO.getName());
+  }
+
+  /**
+   * Runs the given work in a single transaction, translating failures of the commit itself
+   * into a RequestCreationException.
+   * <p>
+   * If the transaction conflicts with a concurrent change of one of the versioned entities it touches,
+   * it is rolled back and run again from the start. When the work joins an outer transaction, it is
+   * not retried, as only the owner of the outer transaction can roll it back.
+   * </p>
+   *
+   * @param errorMessage the message used if the transaction cannot be committed
+   * @param work         the work to be executed
+   * @throws RequestConflictException if the work keeps conflicting with concurrent changes
+   * @throws RequestCreationException if the work fails or the transaction cannot be committed
+   */
+  private void runInTransaction(String errorMessage, TransactionWork<RequestCreationException> work)
+      throws RequestCreationException {
+
+    int attempts = transactionTemplate.isInTransaction() ? 1 : CONFLICT_ATTEMPTS;
+    try {
+      OptimisticLocking.retryOnConflict(attempts, () -> {
+        transactionTemplate.runInTransaction(work);
+        return null;
+      });
+    } catch (RequestCreationException e) {
+      if (OptimisticLocking.isConflict(e) && !(e instanceof RequestConflictException)) {
+        throw conflict(e);
+      }
+      throw e;
+    } catch (PersistenceException e) {
+      if (OptimisticLocking.isConflict(e)) {
+        throw conflict(e);
+      }
+      LOGGER.error(errorMessage, e);
+      throw new RequestCreationException(errorMessage, e);
+    }
+  }
+
+  private RequestConflictException conflict(Exception cause) {
+
+    String conflictMessage = "The request was changed by someone else in the meantime. Reload it and try again";
+    LOGGER.warn(conflictMessage);
+    return new RequestConflictException(conflictMessage, cause);
+  }
 }
@@ -3,16 +3,27 @@ package bg.tuvarna.sit.wms.service;
 import bg.tuvarna.sit.wms.dao.ReviewDao;
 import bg.tuvarna.sit.wms.dao.UserDao;
 import bg.tuvarna.sit.wms.dto.AddReviewDto;
+import bg.tuvarna.sit.wms.dto.ReviewImportDto;
 import bg.tuvarna.sit.wms.dto.ViewReviewDto;
 import bg.tuvarna.sit.wms.entities.Agent;
 import bg.tuvarna.sit.wms.entities.Review;
 import bg.tuvarna.sit.wms.entities.User;
 import bg.tuvarna.sit.wms.exceptions.ReviewPersistenceException;
+import bg.tuvarna.sit.wms.util.AsyncTasks;
 import java.io.BufferedReader;
 import java.io.FileReader;
 import java.io.IOException;
 import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
 import javax.persistence.EntityNotFoundException;
 import lombok.Getter;
 import lombok.Setter;
@@ -24,20 +35,39 @@ public class ReviewService {
 
   private static final Logger LOGGER = LogManager.getLogger(ReviewService.class);
 
+  /**
+   * The maximum number of reviews returned by one call of {@link #getNewReviewsForCurrentUser}.
+   */
+  public static final int REVIEW_FEED_BATCH_SIZE = 500;
+
   private final UserDao userDao;
   private final ReviewDao reviewDao;
+  private final Executor executor;
+  private final AgentRatingService agentRatingService;
 
   @Setter
   @Getter
   private Long agentId;
 
   public ReviewService(UserDao userDao, ReviewDao reviewDao) {
+    this(userDao, reviewDao, ForkJoinPool.commonPool());
+  }
+
+  public ReviewService(UserDao userDao, ReviewDao reviewDao, Executor executor) {
+    this(userDao, reviewDao, executor, new AgentRatingService(reviewDao, executor));
+  }
+
+  public ReviewService(UserDao userDao, ReviewDao reviewDao, Executor executor,
+                       AgentRatingService agentRatingService) {
     this.userDao = userDao;
     this.reviewDao = reviewDao;
+    this.executor = executor;
+    this.agentRatingService = agentRatingService;
   }
 
   /**
-   * Creates a new review and persists it to the database along with updating the associated agent.
+   * Creates a new review and persists it to the database along with updating the associated agent
+   * and the agent's rating.
    *
    * @param agentId      The ID of the agent who will receive the review.
    * @param sender       The user who sends the review.
@@ -50,6 +80,7 @@ public class ReviewService {
       Review review = createReview(agent, sender, addReviewDto.getAssessment(),
               addReviewDto.getDescription());
       reviewDao.persistReview(review, agentId);
+      agentRatingService.refreshAgent(agentId);
     } catch (EntityNotFoundException e) {
       LOGGER.error("Agent not found with ID: {}", agentId, e);
     } catch (ReviewPersistenceException e) {
@@ -57,8 +88,21 @@ public class ReviewService {
     }
   }
 
+  /**
+   * Imports reviews from a CSV file, replacing all existing reviews of every agent that appears in it.
+   * <p>
+   * The agent and sender emails of all rows are resolved with batched queries, after which the reviews
+   * of all agents are replaced in a single transaction with bulk deletes and batched inserts. Rows with
+   * an unknown email or an invalid assessment are skipped.
+   * </p>
+   *
+   * @param csvFilePath the path of the CSV file
+   * @throws IOException if reading the file fails
+   */
   public void loadReviewsFromCSV(String csvFilePath) throws IOException {
 
+    List<String[]> rows = new ArrayList<>();
+    Set<String> emails = new HashSet<>();
     try (BufferedReader br = new BufferedReader(new FileReader(Paths.get(csvFilePath).toFile()))) {
       String line;
       boolean header = true;
@@ -67,17 +111,32 @@ public class ReviewService {
           header = false;
           continue; // Skip header line
         }
-        String[] values = line.split(",");
-        Agent agent = (Agent) userDao.findByEmail(values[0]).orElseThrow(
-                () -> new IllegalStateException("Agent not found"));
-        User owner = userDao.findByEmail(values[1]).orElseThrow(
-                () -> new IllegalStateException("Owner not found"));
-        deleteAllReviewsForAgent(agent);
-        createAndPersistReview(agent.getId(), owner, new AddReviewDto(Integer.parseInt(values[2]),
-                values[3]));
-        LOGGER.info("Successfully initialized reviews for agent {}", agent.getEmail());
+        String[] values = line.split(",", 4);
+        rows.add(values);
+        emails.add(values[0]);
+        emails.add(values[1]);
       }
     }
+
+    Map<String, Long> idsByEmail = userDao.findIdsByEmails(emails);
+    Map<Long, List<ReviewImportDto>> reviewsByAgent = new LinkedHashMap<>();
+    for (String[] values : rows) {
+      toImportDto(values, idsByEmail).ifPresent(review ->
+              reviewsByAgent.computeIfAbsent(review.getAgentId(), id -> new ArrayList<>()).add(review));
+    }
+
+    if (reviewsByAgent.isEmpty()) {
+      return;
+    }
+
+    try {
+      reviewDao.replaceReviews(reviewsByAgent.keySet(),
+              reviewsByAgent.values().stream().flatMap(List::stream).toList());
+      LOGGER.info("Successfully initialized reviews for {} agents", reviewsByAgent.size());
+      agentRatingService.reload();
+    } catch (ReviewPersistenceException e) {
+      LOGGER.error("Error importing reviews: {}", e.getMessage(), e);
+    }
   }
 
   public List<ViewReviewDto> getReviewsForCurrentUser(Long currentUserId) {
@@ -85,6 +144,60 @@ public class ReviewService {
     return reviewDao.getReviewsForCurrentUser(currentUserId);
   }
 
+  /**
+   * Retrieves the reviews of the current user on the service executor.
+   *
+   * @param currentUserId the ID of the current user
+   * @return a future of the review DTOs
+   */
+  public CompletableFuture<List<ViewReviewDto>> getReviewsForCurrentUserAsync(Long currentUserId) {
+
+    return AsyncTasks.supply(() -> getReviewsForCurrentUser(currentUserId), executor);
+  }
+
+  /**
+   * Retrieves up to {@value #REVIEW_FEED_BATCH_SIZE} reviews of the current user which were added after the given
+   * one, oldest first. Callers keep the ID of the last returned review and pass it on the next call, so every
+   * review is read only once.
+   * <p>
+   * This relies on the reviews of an agent committing in ID order, see {@link Review}: a review which is not
+   * committed yet can never get a lower ID than a review of the same agent which the caller has already seen.
+   * </p>
+   *
+   * @param currentUserId the ID of the current user
+   * @param lastSeenId    the ID of the newest review the caller already has, or 0 for the first call
+   * @return the new reviews, or an empty list if there are none
+   */
+  public List<ViewReviewDto> getNewReviewsForCurrentUser(Long currentUserId, long lastSeenId) {
+
+    return reviewDao.getReviewsForCurrentUserAfter(currentUserId, lastSeenId, REVIEW_FEED_BATCH_SIZE);
+  }
+
+  /**
+   * Retrieves the new reviews of the current user on the service executor, see {@link #getNewReviewsForCurrentUser}.
+   *
+   * @param currentUserId the ID of the current user
+   * @param lastSeenId    the ID of the newest review the caller already has
+   * @return a future of the new review DTOs
+   */
+  public CompletableFuture<List<ViewReviewDto>> getNewReviewsForCurrentUserAsync(Long currentUserId, long lastSeenId) {
+
+    return AsyncTasks.supply(() -> getNewReviewsForCurrentUser(currentUserId, lastSeenId), executor);
+  }
+
+  /**
+   * Creates and persists a review on the service executor, see {@link #createAndPersistReview}.
+   *
+   * @param agentId      The ID of the agent who will receive the review.
+   * @param sender       The user who sends the review.
+   * @param addReviewDto The DTO used to create new review.
+   * @return a future which completes once the review is persisted
+   */
+  public CompletableFuture<Void> createAndPersistReviewAsync(Long agentId, User sender, AddReviewDto addReviewDto) {
+
+    return AsyncTasks.run(() -> createAndPersistReview(agentId, sender, addReviewDto), executor);
+  }
+
   private Review createReview(Agent agent, User sender, Integer assessment, String description) {
 
     Review review = new Review();
@@ -97,16 +210,38 @@ public class ReviewService {
   }
 
   /**
-   * Deletes all reviews associated with a given agent.
+   * Converts a row of the reviews CSV file to an import DTO, resolving its emails to user IDs.
    *
-   * @param agent The agent whose reviews are to be deleted.
+   * @param values     the values of the row: agent email, sender email, assessment and description
+   * @param idsByEmail the IDs of the known users by their emails
+   * @return an Optional of the DTO, or an empty Optional if the row is invalid
    */
-  private void deleteAllReviewsForAgent(Agent agent) {
+  private Optional<ReviewImportDto> toImportDto(String[] values, Map<String, Long> idsByEmail) {
 
+    if (values.length < 3) {
+      LOGGER.warn("Skipping review with missing values: {}", String.join(",", values));
+      return Optional.empty();
+    }
+
+    Long agentId = idsByEmail.get(values[0]);
+    Long senderId = idsByEmail.get(values[1]);
+    if (agentId == null || senderId == null) {
+      LOGGER.warn("Skipping review from {} for {}: user not found", values[1], values[0]);
+      return Optional.empty();
+    }
+
+    int assessment;
     try {
-      reviewDao.deleteAllReviewsForAgent(agent);
-    } catch (ReviewPersistenceException e) {
-      LOGGER.error("Exception occurred while deleting reviews for agent: {}", e.getMessage(), e);
+      assessment = Integer.parseInt(values[2].trim());
+    } catch (NumberFormatException e) {
+      assessment = 0;
+    }
+    if (assessment < 1 || assessment > 5) {
+      LOGGER.warn("Skipping review from {} for {}: invalid assessment {}", values[1], values[0], values[2]);
+      return Optional.empty();
     }
+
+    String description = values.length > 3 ? values[3] : null;
+    return Optional.of(new ReviewImportDto(agentId, senderId, assessment, description));
   }
 }
@@ -10,13 +10,29 @@ import bg.tuvarna.sit.wms.enums.Role;
 import bg.tuvarna.sit.wms.exceptions.RegistrationException;
 import bg.tuvarna.sit.wms.exceptions.UserPersistenceException;
 import bg.tuvarna.sit.wms.session.UserSession;
+import bg.tuvarna.sit.wms.util.AsyncTasks;
 import java.io.BufferedReader;
 import java.io.FileReader;
 import java.io.IOException;
 import java.nio.file.Paths;
 import java.security.NoSuchAlgorithmException;
 import java.security.spec.InvalidKeySpecException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
@@ -28,14 +44,22 @@ import org.apache.logging.log4j.Logger;
 public class UserService {
 
   private static final Logger LOGGER = LogManager.getLogger(UserService.class);
+  private static final int IMPORT_BATCH_SIZE = 500;
 
   private final UserDao userDao;
   private final PasswordHashingService passwordHashingService;
+  private final Executor executor;
 
   public UserService(UserDao userDao, PasswordHashingService passwordHashingService) {
 
+    this(userDao, passwordHashingService, ForkJoinPool.commonPool());
+  }
+
+  public UserService(UserDao userDao, PasswordHashingService passwordHashingService, Executor executor) {
+
     this.userDao = userDao;
     this.passwordHashingService = passwordHashingService;
+    this.executor = executor;
   }
 
   /**
@@ -61,8 +85,63 @@ public class UserService {
     saveUser(user);
   }
 
+  /**
+   * Imports users from a CSV file, skipping the header line and every user whose email already exists.
+   * <p>
+   * The existing emails are loaded with a single query. The passwords are hashed in parallel on a pool
+   * with one thread per available processor, while the users whose passwords are already hashed are
+   * saved in batches of {@value #IMPORT_BATCH_SIZE}, each in a single transaction.
+   * </p>
+   *
+   * @param csvFilePath the path of the CSV file
+   * @throws IOException              if reading the file fails
+   * @throws RegistrationException    if a user has no role or saving the users fails
+   * @throws InvalidKeySpecException  if hashing a password fails
+   * @throws NoSuchAlgorithmException if the hashing algorithm is not available
+   */
   public void loadUsersFromCSV(String csvFilePath) throws IOException, RegistrationException, InvalidKeySpecException, NoSuchAlgorithmException {
 
+    List<String[]> newUsers = readNewUsers(csvFilePath);
+    ExecutorService hashingPool = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+
+    try {
+      List<Future<User>> hashedUsers = new ArrayList<>(newUsers.size());
+      for (String[] values : newUsers) {
+        hashedUsers.add(hashingPool.submit(() -> createUser(values[0], values[1], values[2], values[3],
+                values[4], Role.valueOf(values[5]))));
+      }
+
+      List<User> batch = new ArrayList<>(IMPORT_BATCH_SIZE);
+      for (Future<User> hashedUser : hashedUsers) {
+        batch.add(awaitHashedUser(hashedUser));
+        if (batch.size() == IMPORT_BATCH_SIZE) {
+          saveUsers(batch);
+          batch.clear();
+        }
+      }
+      if (!batch.isEmpty()) {
+        saveUsers(batch);
+      }
+    } finally {
+      hashingPool.shutdownNow();
+    }
+
+    LOGGER.info("Successfully initialized {} users from {}", newUsers.size(), csvFilePath);
+  }
+
+  /**
+   * Reads the rows of the users CSV file whose email is neither in the database
+   * nor on an earlier row of the file.
+   *
+   * @param csvFilePath the path of the CSV file
+   * @return the values of the rows of the new users
+   * @throws IOException if reading the file fails
+   */
+  private List<String[]> readNewUsers(String csvFilePath) throws IOException {
+
+    Set<String> knownEmails = new HashSet<>(userDao.getAllEmails());
+    List<String[]> newUsers = new ArrayList<>();
+
     try (BufferedReader br = new BufferedReader(new FileReader(Paths.get(csvFilePath).toFile()))) {
       String line;
       boolean header = true;
@@ -73,14 +152,49 @@ public class UserService {
         }
         String[] values = line.split(",");
 
-        if (userDao.findByEmail(values[3]).isEmpty()) {
-          saveUser(
-                  createUser(values[0], values[1], values[2], values[3],
-                          values[4], Role.valueOf(values[5])));
+        if (knownEmails.add(values[3])) {
+          newUsers.add(values);
+        } else {
+          LOGGER.info("User with email {} already exists. Skipping.", values[3]);
         }
+      }
+    }
+
+    return newUsers;
+  }
+
+  /**
+   * Waits for a user whose password is being hashed on the hashing pool.
+   *
+   * @param hashedUser the pending user
+   * @return the user with its hashed password
+   * @throws RegistrationException    if the user has no role or the import is interrupted
+   * @throws InvalidKeySpecException  if hashing the password failed
+   * @throws NoSuchAlgorithmException if the hashing algorithm is not available
+   */
+  private User awaitHashedUser(Future<User> hashedUser)
+          throws RegistrationException, InvalidKeySpecException, NoSuchAlgorithmException {
 
-        LOGGER.info("Successfully initialized user with email: {}", values[3]);
+    try {
+      return hashedUser.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new RegistrationException("User import was interrupted.", e);
+    } catch (ExecutionException e) {
+      Throwable cause = e.getCause();
+      if (cause instanceof RegistrationException registrationException) {
+        throw registrationException;
+      }
+      if (cause instanceof InvalidKeySpecException invalidKeySpecException) {
+        throw invalidKeySpecException;
+      }
+      if (cause instanceof NoSuchAlgorithmException noSuchAlgorithmException) {
+        throw noSuchAlgorithmException;
       }
+      if (cause instanceof RuntimeException runtimeException) {
+        throw runtimeException;
+      }
+      throw new RegistrationException("Unexpected error hashing the password of an imported user.", cause);
     }
   }
 
@@ -110,11 +224,47 @@ public class UserService {
     }
   }
 
+  /**
+   * Registers a new user on the service executor, see {@link #registerUser}.
+   * Hashing the password is deliberately slow, so this keeps the form responsive.
+   *
+   * @param registrationDto Data Transfer Object containing user registration details.
+   * @return a future which fails with a {@link RegistrationException} if the registration fails
+   */
+  public CompletableFuture<Void> registerUserAsync(UserRegistrationDto registrationDto) {
+
+    return AsyncTasks.run(() -> registerUser(registrationDto), executor);
+  }
+
+  /**
+   * Attempts to log in a user on the service executor, see {@link #login}.
+   *
+   * @param email    The email of the user trying to log in.
+   * @param password The password of the user.
+   * @return a future of true if the login is successful, false otherwise
+   */
+  public CompletableFuture<Boolean> loginAsync(String email, String password) {
+
+    return AsyncTasks.supply(() -> login(email, password), executor);
+  }
+
   public Owner findOwnerById(Long id) {
 
     return userDao.findOwnerById(id);
   }
 
+  /**
+   * Retrieves the owners with the given email addresses with a single database lookup.
+   *
+   * @param emails the email addresses of the owners to retrieve
+   * @return a map of the found owners by their email addresses, which doesn't contain unknown addresses
+   */
+  public Map<String, Owner> findOwnersByEmails(Collection<String> emails) {
+
+    return userDao.findOwnersByEmails(emails).stream()
+        .collect(Collectors.toMap(Owner::getEmail, Function.identity()));
+  }
+
   /**
    * Creates a User entity from a UserRegistrationDto.
    *
@@ -191,6 +341,24 @@ public class UserService {
     }
   }
 
+  /**
+   * Saves a batch of imported users to the database in a single transaction.
+   *
+   * @param users The user entities to save.
+   * @throws RegistrationException if there is an error while persisting the users.
+   */
+  private void saveUsers(List<User> users) throws RegistrationException {
+
+    try {
+      userDao.saveUsers(users);
+      LOGGER.debug("Saved a batch of {} users", users.size());
+    } catch (UserPersistenceException e) {
+      String errorMessage = "Error persisting users during import.";
+      LOGGER.error(errorMessage, e);
+      throw new RegistrationException(errorMessage, e);
+    }
+  }
+
   /**
    * Retrieves a user entity based on the specified role.
    *
@@ -0,0 +1,396 @@
+package bg.tuvarna.sit.wms.service;
+
+import bg.tuvarna.sit.wms.dao.WarehouseDAO;
+import bg.tuvarna.sit.wms.dto.WarehouseImportReport;
+import bg.tuvarna.sit.wms.entities.Address;
+import bg.tuvarna.sit.wms.entities.City;
+import bg.tuvarna.sit.wms.entities.Country;
+import bg.tuvarna.sit.wms.entities.Owner;
+import bg.tuvarna.sit.wms.entities.StorageType;
+import bg.tuvarna.sit.wms.entities.Warehouse;
+import bg.tuvarna.sit.wms.enums.ClimateCondition;
+import bg.tuvarna.sit.wms.enums.WarehouseStatus;
+import bg.tuvarna.sit.wms.exceptions.CityCreationException;
+import bg.tuvarna.sit.wms.exceptions.CountryCreationException;
+import bg.tuvarna.sit.wms.exceptions.WarehouseDAOException;
+import bg.tuvarna.sit.wms.exceptions.WarehousePersistenceException;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Imports warehouses from a CSV file through a staged, multi-threaded pipeline.
+ * <p>
+ * A reader thread pushes the lines of the file into a bounded queue. A pool of parser threads
+ * turns them into validated rows and pushes those into a second bounded queue, from which the
+ * calling thread collects batches. For every batch the owners are loaded by their emails with a single query,
+ * countries and cities are resolved once per distinct name, warehouses whose names already exist
+ * are skipped and the remaining warehouses are saved in one transaction. Since both queues are
+ * bounded, a slow writer blocks the parsers and the reader instead of buffering the whole file.
+ * </p>
+ * <p>
+ * Rows which cannot be parsed, or which reference an unknown owner, are rejected and logged
+ * without stopping the import. Rows are not necessarily imported in file order.
+ * </p>
+ */
+public class WarehouseCsvImporter {
+
+  private static final Logger LOGGER = LogManager.getLogger(WarehouseCsvImporter.class);
+
+  private static final int COLUMN_COUNT = 11;
+  private static final CsvLine END_OF_LINES = new CsvLine(-1, null);
+  private static final WarehouseCsvRow END_OF_ROWS =
+      new WarehouseCsvRow(-1, null, 0, null, null, null, null, null, null, null, null, null);
+
+  private final WarehouseDAO warehouseDAO;
+  private final CountryService countryService;
+  private final CityService cityService;
+  private final UserService userService;
+  private final ImportSettings settings;
+
+  public WarehouseCsvImporter(WarehouseDAO warehouseDAO, CountryService countryService, CityService cityService,
+                              UserService userService, ImportSettings settings) {
+    this.warehouseDAO = warehouseDAO;
+    this.countryService = countryService;
+    this.cityService = cityService;
+    this.userService = userService;
+    this.settings = settings;
+  }
+
+  /**
+   * Tuning parameters of the import pipeline.
+   *
+   * @param parallelism   the number of parser threads
+   * @param batchSize     the number of rows saved per transaction
+   * @param queueCapacity the capacity of each of the queues between the stages
+   */
+  public record ImportSettings(int parallelism, int batchSize, int queueCapacity) {
+
+    private static final int DEFAULT_BATCH_SIZE = 500;
+    private static final int DEFAULT_QUEUE_CAPACITY = 10_000;
+
+    public ImportSettings {
+      if (parallelism < 1 || batchSize < 1 || queueCapacity < 1) {
+        throw new IllegalArgumentException("Import settings must be positive");
+      }
+    }
+
+    /**
+     * Creates the settings from the {@code WMS_IMPORT_PARALLELISM}, {@code WMS_IMPORT_BATCH_SIZE}
+     * and {@code WMS_IMPORT_QUEUE_CAPACITY} environment variables. The parallelism defaults to
+     * the number of available processors.
+     *
+     * @return the import settings
+     */
+    public static ImportSettings fromEnvironment() {
+
+      Map<String, String> env = System.getenv();
+      return new ImportSettings(
+          getInt(env, "WMS_IMPORT_PARALLELISM", Runtime.getRuntime().availableProcessors()),
+          getInt(env, "WMS_IMPORT_BATCH_SIZE", DEFAULT_BATCH_SIZE),
+          getInt(env, "WMS_IMPORT_QUEUE_CAPACITY", DEFAULT_QUEUE_CAPACITY));
+    }
+
+    private static int getInt(Map<String, String> env, String key, int defaultValue) {
+
+      String value = env.get(key);
+      return value == null || value.isBlank() ? defaultValue : Integer.parseInt(value.trim());
+    }
+  }
+
+  /**
+   * Imports the warehouses from the given CSV reader, skipping its header line.
+   * The reader is closed once it is fully read.
+   *
+   * @param reader the reader of the CSV data
+   * @return a report of the import
+   * @throws IOException                   if reading the CSV data fails
+   * @throws WarehousePersistenceException if resolving the references or saving the warehouses fails
+   */
+  public WarehouseImportReport importWarehouses(BufferedReader reader)
+      throws IOException, WarehousePersistenceException {
+
+    long start = System.nanoTime();
+    ImportProgress progress = new ImportProgress();
+    BlockingQueue<CsvLine> lines = new ArrayBlockingQueue<>(settings.queueCapacity());
+    BlockingQueue<WarehouseCsvRow> rows = new ArrayBlockingQueue<>(settings.queueCapacity());
+    ExecutorService executor = Executors.newFixedThreadPool(settings.parallelism() + 1, createThreadFactory());
+
+    try {
+      Future<?> readerTask = executor.submit(() -> {
+        readLines(reader, lines, progress);
+        return null;
+      });
+      for (int i = 0; i < settings.parallelism(); i++) {
+        executor.submit(() -> parseLines(lines, rows, progress));
+      }
+
+      writeRows(rows, progress);
+      readerTask.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new WarehousePersistenceException("Warehouse import was interrupted", e);
+    } catch (ExecutionException e) {
+      if (e.getCause() instanceof IOException ioException) {
+        throw ioException;
+      }
+      throw new WarehousePersistenceException("Unexpected error reading warehouses", e.getCause());
+    } finally {
+      executor.shutdownNow();
+    }
+
+    WarehouseImportReport report = progress.toReport(System.nanoTime() - start);
+    LOGGER.info("Warehouse import finished: {}", report);
+    return report;
+  }
+
+  private void readLines(BufferedReader reader, BlockingQueue<CsvLine> lines, ImportProgress progress)
+      throws IOException, InterruptedException {
+
+    try (reader) {
+      long lineNumber = 0;
+      long readStart = System.nanoTime();
+      String line = reader.readLine();
+      while (line != null) {
+        lineNumber++;
+        if (lineNumber > 1 && !line.isBlank()) {
+          progress.rowsRead.increment();
+          progress.readNanos.add(System.nanoTime() - readStart);
+          lines.put(new CsvLine(lineNumber, line));
+          readStart = System.nanoTime();
+        }
+        line = reader.readLine();
+      }
+      progress.readNanos.add(System.nanoTime() - readStart);
+    } finally {
+      for (int i = 0; i < settings.parallelism(); i++) {
+        lines.put(END_OF_LINES);
+      }
+    }
+  }
+
+  private void parseLines(BlockingQueue<CsvLine> lines, BlockingQueue<WarehouseCsvRow> rows, ImportProgress progress) {
+
+    try {
+      try {
+        CsvLine line = lines.take();
+        while (line != END_OF_LINES) {
+          long parseStart = System.nanoTime();
+          WarehouseCsvRow row = parse(line, progress);
+          progress.parseNanos.add(System.nanoTime() - parseStart);
+          if (row != null) {
+            rows.put(row);
+          }
+          line = lines.take();
+        }
+      } finally {
+        rows.put(END_OF_ROWS);
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  private WarehouseCsvRow parse(CsvLine line, ImportProgress progress) {
+
+    try {
+      String[] values = line.text().split(",");
+      if (values.length != COLUMN_COUNT) {
+        throw new IllegalArgumentException("expected " + COLUMN_COUNT + " columns, found " + values.length);
+      }
+
+      String name = values[0].trim();
+      if (name.isEmpty()) {
+        throw new IllegalArgumentException("the warehouse name is empty");
+      }
+
+      return new WarehouseCsvRow(line.number(), name, Double.parseDouble(values[1]), values[2].trim(),
+          values[3], values[4], values[5], values[6], WarehouseStatus.valueOf(values[7]),
+          ClimateCondition.valueOf(values[8]), values[9], values[10]);
+    } catch (RuntimeException e) {
+      progress.rowsRejected.increment();
+      LOGGER.warn("Rejected warehouse on line {}: {}", line.number(), e.getMessage());
+      return null;
+    }
+  }
+
+  private void writeRows(BlockingQueue<WarehouseCsvRow> rows, ImportProgress progress)
+      throws InterruptedException, WarehousePersistenceException {
+
+    Set<String> seenNames = new HashSet<>();
+    Map<String, Owner> owners = new HashMap<>();
+    List<WarehouseCsvRow> batch = new ArrayList<>(settings.batchSize());
+    int finishedParsers = 0;
+
+    while (finishedParsers < settings.parallelism()) {
+      WarehouseCsvRow row = rows.take();
+      if (row == END_OF_ROWS) {
+        finishedParsers++;
+      } else if (!seenNames.add(row.name())) {
+        progress.rowsSkipped.increment();
+        LOGGER.info("Warehouse with name '{}' appears more than once in the file. Skipping.", row.name());
+      } else {
+        batch.add(row);
+        if (batch.size() == settings.batchSize()) {
+          writeBatch(batch, owners, progress);
+          batch.clear();
+        }
+      }
+    }
+
+    if (!batch.isEmpty()) {
+      writeBatch(batch, owners, progress);
+    }
+  }
+
+  private void writeBatch(List<WarehouseCsvRow> batch, Map<String, Owner> owners, ImportProgress progress)
+      throws WarehousePersistenceException {
+
+    long resolveStart = System.nanoTime();
+    List<Warehouse> warehouses = new ArrayList<>(batch.size());
+
+    try {
+      Set<String> existingNames = warehouseDAO.findExistingNames(batch.stream().map(WarehouseCsvRow::name).toList());
+      loadMissingOwners(batch, owners);
+
+      for (WarehouseCsvRow row : batch) {
+        Owner owner = owners.get(row.ownerEmail());
+        if (existingNames.contains(row.name())) {
+          progress.rowsSkipped.increment();
+          LOGGER.info("Warehouse with name '{}' already exists. Skipping.", row.name());
+        } else if (owner == null) {
+          progress.rowsRejected.increment();
+          LOGGER.warn("Rejected warehouse on line {}: owner with email {} not found", row.lineNumber(),
+              row.ownerEmail());
+        } else {
+          warehouses.add(createWarehouse(row, owner));
+        }
+      }
+    } catch (WarehouseDAOException e) {
+      throw new WarehousePersistenceException("Error checking for existing warehouses during import", e);
+    } catch (CountryCreationException | CityCreationException e) {
+      throw new WarehousePersistenceException("Error resolving the address of an imported warehouse", e);
+    } finally {
+      progress.resolveNanos.add(System.nanoTime() - resolveStart);
+    }
+
+    if (warehouses.isEmpty()) {
+      return;
+    }
+
+    long writeStart = System.nanoTime();
+    try {
+      warehouseDAO.saveAll(warehouses);
+      progress.rowsImported.add(warehouses.size());
+      LOGGER.debug("Saved a batch of {} warehouses", warehouses.size());
+    } catch (WarehouseDAOException e) {
+      throw new WarehousePersistenceException("Error saving a batch of imported warehouses", e);
+    } finally {
+      progress.writeNanos.add(System.nanoTime() - writeStart);
+    }
+  }
+
+  /**
+   * Loads the owners of the batch which haven't been loaded by a previous batch.
+   * Unknown owner emails are remembered with a null value, so they are not looked up again.
+   */
+  private void loadMissingOwners(List<WarehouseCsvRow> batch, Map<String, Owner> owners) {
+
+    Set<String> missingEmails = new HashSet<>();
+    for (WarehouseCsvRow row : batch) {
+      if (!owners.containsKey(row.ownerEmail())) {
+        missingEmails.add(row.ownerEmail());
+      }
+    }
+
+    if (!missingEmails.isEmpty()) {
+      Map<String, Owner> loadedOwners = userService.findOwnersByEmails(missingEmails);
+      missingEmails.forEach(email -> owners.put(email, loadedOwners.get(email)));
+    }
+  }
+
+  private Warehouse createWarehouse(WarehouseCsvRow row, Owner owner)
+      throws CountryCreationException, CityCreationException {
+
+    Country country = countryService.getOrCreateCountry(row.countryName());
+    City city = cityService.getOrCreateCity(row.cityName(), country);
+
+    Address address = new Address();
+    address.setCity(city);
+    address.setStreet(row.street());
+    address.setZipCode(row.zipCode());
+
+    StorageType storageType = new StorageType();
+    storageType.setTypeName(row.storageTypeName());
+    storageType.setDescription(row.storageTypeDescription());
+
+    Warehouse warehouse = new Warehouse();
+    warehouse.setName(row.name());
+    warehouse.setSize(row.size());
+    warehouse.setOwner(owner);
+    warehouse.setAddress(address);
+    warehouse.setStatus(row.status());
+    warehouse.setClimateCondition(row.climate());
+    warehouse.setStorageType(storageType);
+    warehouse.setDeleted(false);
+
+    return warehouse;
+  }
+
+  private static ThreadFactory createThreadFactory() {
+
+    AtomicInteger threadNumber = new AtomicInteger();
+    return runnable -> {
+      Thread thread = new Thread(runnable, "warehouse-import-" + threadNumber.incrementAndGet());
+      thread.setDaemon(true);
+      return thread;
+    };
+  }
+
+  private record CsvLine(long number, String text) {
+  }
+
+  private record WarehouseCsvRow(long lineNumber, String name, double size, String ownerEmail, String street,
+                                 String zipCode, String cityName, String countryName, WarehouseStatus status,
+                                 ClimateCondition climate, String storageTypeName, String storageTypeDescription) {
+  }
+
+  /**
+   * Counters shared by the stages of one import.
+   */
+  private static class ImportProgress {
+
+    private final LongAdder rowsRead = new LongAdder();
+    private final LongAdder rowsImported = new LongAdder();
+    private final LongAdder rowsSkipped = new LongAdder();
+    private final LongAdder rowsRejected = new LongAdder();
+    private final LongAdder readNanos = new LongAdder();
+    private final LongAdder parseNanos = new LongAdder();
+    private final LongAdder resolveNanos = new LongAdder();
+    private final LongAdder writeNanos = new LongAdder();
+
+    private WarehouseImportReport toReport(long elapsedNanos) {
+
+      return new WarehouseImportReport(rowsRead.sum(), rowsImported.sum(), rowsSkipped.sum(), rowsRejected.sum(),
+          Duration.ofNanos(elapsedNanos), Duration.ofNanos(readNanos.sum()), Duration.ofNanos(parseNanos.sum()),
+          Duration.ofNanos(resolveNanos.sum()), Duration.ofNanos(writeNanos.sum()));
+    }
+  }
+}
@@ -0,0 +1,132 @@
+package bg.tuvarna.sit.wms.service;
+
+import bg.tuvarna.sit.wms.dao.WarehouseDAO;
+import bg.tuvarna.sit.wms.dto.WarehouseSearchQuery;
+import bg.tuvarna.sit.wms.dto.WarehouseSearchResult;
+import bg.tuvarna.sit.wms.enums.WarehouseStatus;
+import bg.tuvarna.sit.wms.exceptions.WarehouseDAOException;
+import bg.tuvarna.sit.wms.exceptions.WarehouseServiceException;
+import bg.tuvarna.sit.wms.util.AsyncTasks;
+import bg.tuvarna.sit.wms.util.WarehouseSearchIndex;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Service class for searching all warehouses by their facets.
+ * <p>
+ * The warehouses are loaded into a {@link WarehouseSearchIndex} on the first search. From then on the
+ * {@link WarehouseService} keeps the index up to date, one warehouse at a time, after every save, update,
+ * status change and deletion has been committed. If a warehouse cannot be re-read, the whole index is
+ * loaded again on the next search.
+ * </p>
+ */
+public class WarehouseSearchService {
+
+  private static final Logger LOGGER = LogManager.getLogger(WarehouseSearchService.class);
+
+  private final WarehouseDAO warehouseDAO;
+  private final Executor executor;
+  private final WarehouseSearchIndex index = new WarehouseSearchIndex();
+  private volatile boolean loaded;
+
+  public WarehouseSearchService(WarehouseDAO warehouseDAO, Executor executor) {
+    this.warehouseDAO = warehouseDAO;
+    this.executor = executor;
+  }
+
+  /**
+   * Finds the warehouses matching the query and counts the values of every facet.
+   *
+   * @param query the filters of the search
+   * @return the matching warehouses, their number and the facet counts
+   * @throws WarehouseServiceException if the warehouses cannot be loaded
+   */
+  public WarehouseSearchResult search(WarehouseSearchQuery query) throws WarehouseServiceException {
+
+    return loadedIndex().search(query);
+  }
+
+  /**
+   * Searches the warehouses on the service executor, see {@link #search}.
+   *
+   * @param query the filters of the search
+   * @return a future of the search result
+   */
+  public CompletableFuture<WarehouseSearchResult> searchAsync(WarehouseSearchQuery query) {
+
+    return AsyncTasks.supply(() -> search(query), executor);
+  }
+
+  /**
+   * Reads a saved or updated warehouse into the index.
+   *
+   * @param warehouseId the ID of the warehouse
+   */
+  public synchronized void refreshWarehouse(Long warehouseId) {
+
+    if (!loaded) {
+      return;
+    }
+    try {
+      warehouseDAO.getWarehouseDTOById(warehouseId)
+          .ifPresentOrElse(index::put, () -> index.remove(warehouseId));
+    } catch (WarehouseDAOException e) {
+      LOGGER.warn("Could not refresh warehouse {} in the search index, reloading it on next use", warehouseId, e);
+      reload();
+    }
+  }
+
+  /**
+   * Moves a warehouse of the index to another status.
+   *
+   * @param warehouseId the ID of the warehouse
+   * @param status      the new status of the warehouse
+   */
+  public synchronized void changeStatus(Long warehouseId, WarehouseStatus status) {
+
+    if (loaded && !index.updateStatus(warehouseId, status)) {
+      refreshWarehouse(warehouseId);
+    }
+  }
+
+  /**
+   * Removes a deleted warehouse from the index.
+   *
+   * @param warehouseId the ID of the warehouse
+   */
+  public synchronized void removeWarehouse(Long warehouseId) {
+
+    index.remove(warehouseId);
+  }
+
+  /**
+   * Drops the index, so it is loaded again on the next search. Used after many warehouses have changed at once.
+   */
+  public synchronized void reload() {
+
+    loaded = false;
+    index.clear();
+  }
+
+  private WarehouseSearchIndex loadedIndex() throws WarehouseServiceException {
+
+    if (!loaded) {
+      synchronized (this) {
+        if (!loaded) {
+          try {
+            index.putAll(warehouseDAO.getAllWarehouseDTOs());
+          } catch (WarehouseDAOException e) {
+            String errorMessage = "Error loading the warehouse search index";
+            LOGGER.error(errorMessage, e);
+            throw new WarehouseServiceException(errorMessage, e);
+          }
+          loaded = true;
+          LOGGER.info("Loaded {} warehouses into the search index", index.size());
+        }
+      }
+    }
+    return index;
+  }
+}
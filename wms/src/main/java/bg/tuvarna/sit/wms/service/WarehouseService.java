@@ -2,6 +2,9 @@ package bg.tuvarna.sit.wms.service;
 
 import bg.tuvarna.sit.wms.dao.WarehouseDAO;
 import bg.tuvarna.sit.wms.dto.WarehouseDTO;
+import bg.tuvarna.sit.wms.dto.WarehouseImportReport;
+import bg.tuvarna.sit.wms.dto.WarehousePage;
+import bg.tuvarna.sit.wms.dto.WarehousePageRequest;
 import bg.tuvarna.sit.wms.dto.WarehouseRentalAgreementDto;
 import bg.tuvarna.sit.wms.entities.Address;
 import bg.tuvarna.sit.wms.entities.City;
@@ -9,27 +12,31 @@ import bg.tuvarna.sit.wms.entities.Country;
 import bg.tuvarna.sit.wms.entities.Owner;
 import bg.tuvarna.sit.wms.entities.StorageType;
 import bg.tuvarna.sit.wms.entities.Warehouse;
-import bg.tuvarna.sit.wms.enums.ClimateCondition;
 import bg.tuvarna.sit.wms.enums.WarehouseStatus;
 import bg.tuvarna.sit.wms.exceptions.CityCreationException;
 import bg.tuvarna.sit.wms.exceptions.CountryCreationException;
+import bg.tuvarna.sit.wms.exceptions.WarehouseConflictException;
 import bg.tuvarna.sit.wms.exceptions.WarehouseDAOException;
 import bg.tuvarna.sit.wms.exceptions.WarehousePersistenceException;
 import bg.tuvarna.sit.wms.exceptions.WarehouseServiceException;
+import bg.tuvarna.sit.wms.util.AsyncTasks;
+import bg.tuvarna.sit.wms.util.OptimisticLocking;
 import java.io.BufferedReader;
-import java.io.FileReader;
 import java.io.IOException;
-import java.nio.file.Paths;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
 import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
 
 /**
  * This class provides services related to warehouse operations.
  * It includes methods for saving, updating, retrieving, and deleting warehouses.
  * It also includes methods for checking the uniqueness of a warehouse name and mapping between DTO and entity objects.
+ * Every committed change of a warehouse is passed on to the {@link WarehouseSearchService}.
  */
 public class WarehouseService {
 
@@ -37,13 +44,31 @@ public class WarehouseService {
   private final CountryService countryService;
   private final CityService cityService;
   private final UserService userService;
+  private final WarehouseCsvImporter csvImporter;
+  private final Executor executor;
+  private final WarehouseSearchService searchService;
   private static final Logger LOGGER = LogManager.getLogger(WarehouseService.class);
 
   public WarehouseService(WarehouseDAO warehouseDAO, CountryService countryService, CityService cityService, UserService userService) {
+    this(warehouseDAO, countryService, cityService, userService, ForkJoinPool.commonPool());
+  }
+
+  public WarehouseService(WarehouseDAO warehouseDAO, CountryService countryService, CityService cityService,
+                          UserService userService, Executor executor) {
+    this(warehouseDAO, countryService, cityService, userService, executor,
+            new WarehouseSearchService(warehouseDAO, executor));
+  }
+
+  public WarehouseService(WarehouseDAO warehouseDAO, CountryService countryService, CityService cityService,
+                          UserService userService, Executor executor, WarehouseSearchService searchService) {
     this.warehouseDAO = warehouseDAO;
     this.countryService = countryService;
     this.cityService = cityService;
     this.userService = userService;
+    this.csvImporter = new WarehouseCsvImporter(warehouseDAO, countryService, cityService, userService,
+            WarehouseCsvImporter.ImportSettings.fromEnvironment());
+    this.executor = executor;
+    this.searchService = searchService;
   }
 
   /**
@@ -86,12 +111,16 @@ public class WarehouseService {
       LOGGER.error(errorMessage, e);
       throw new WarehouseServiceException(errorMessage, e);
     }
+    Long warehouseId = warehouse.getId();
+    warehouseDAO.afterCommit(() -> searchService.refreshWarehouse(warehouseId));
   }
 
   /**
    * Updates the details of an existing warehouse.
+   * The update only succeeds if the warehouse was not changed since the DTO was loaded.
    *
    * @param warehouseDTO the DTO containing the updated details of a warehouse
+   * @throws WarehouseConflictException if the warehouse was changed concurrently after the DTO was loaded
    * @throws WarehouseServiceException if an error occurs during the the updating process
    *                                   or if the warehouse name matches that of an existing warehouse for an owner
    */
@@ -129,31 +158,63 @@ public class WarehouseService {
     try {
       warehouseDAO.update(warehouse);
     } catch (WarehouseDAOException e) {
-      String errorMessage = "Error during the warehouse updating process";
-      LOGGER.error(errorMessage, e);
-      throw new WarehouseServiceException(errorMessage, e);
+      throw toServiceException("Error during the warehouse updating process", e);
     }
+    warehouseDAO.afterCommit(() -> searchService.refreshWarehouse(warehouseDTO.getId()));
   }
 
+  /**
+   * Changes the status of a warehouse with a compare-and-set update, expecting the warehouse to still
+   * have the status of the given DTO. The warehouse is not reloaded: if it was moved to another status
+   * in the meantime, nothing is changed and the caller is told with a {@link WarehouseConflictException}.
+   *
+   * @param warehouseDTO the warehouse whose status is changed, holding its expected current status
+   * @param status       the new status of the warehouse
+   * @throws WarehouseConflictException if the warehouse no longer has the expected status
+   * @throws WarehouseServiceException  if the transition is not allowed or an error occurs during the update
+   */
   public void changeWarehouseStatus(WarehouseDTO warehouseDTO, WarehouseStatus status) throws WarehouseServiceException {
 
     if (status == null) {
       throw new WarehouseServiceException("Status cannot be null");
     }
 
+    WarehouseStatus currentStatus = warehouseDTO.getStatus();
+    if (currentStatus == null || !currentStatus.canTransitionTo(status)) {
+      String errorMessage = "Warehouse status cannot change from " + currentStatus + " to " + status;
+      LOGGER.error(errorMessage);
+      throw new WarehouseServiceException(errorMessage);
+    }
+
+    boolean changed;
     try {
-      Optional<Warehouse> warehouseOptional = warehouseDAO.getById(warehouseDTO.getId());
-      if (warehouseOptional.isEmpty()) {
-        throw new WarehouseServiceException("Warehouse not found");
-      }
-      Warehouse warehouse = warehouseOptional.get();
-      warehouse.setStatus(status);
-      warehouseDAO.update(warehouse);
+      changed = warehouseDAO.transitionStatus(warehouseDTO.getId(), currentStatus, status);
     } catch (WarehouseDAOException e) {
-      String errorMessage = "Error during the warehouse status changing process";
-      LOGGER.error(errorMessage, e);
-      throw new WarehouseServiceException(errorMessage, e);
+      throw toServiceException("Error during the warehouse status changing process", e);
+    }
+
+    if (!changed) {
+      String conflictMessage = "The warehouse is no longer " + currentStatus + ". Reload it and try again";
+      LOGGER.warn(conflictMessage);
+      throw new WarehouseConflictException(conflictMessage);
     }
+    warehouseDAO.afterCommit(() -> searchService.changeStatus(warehouseDTO.getId(), status));
+  }
+
+  /**
+   * Converts a DAO exception to a service exception, reporting optimistic lock failures
+   * with a {@link WarehouseConflictException}.
+   */
+  private WarehouseServiceException toServiceException(String errorMessage, WarehouseDAOException e) {
+
+    if (OptimisticLocking.isConflict(e)) {
+      String conflictMessage = "The warehouse was changed by someone else in the meantime. Reload it and try again";
+      LOGGER.warn(conflictMessage);
+      return new WarehouseConflictException(conflictMessage, e);
+    }
+
+    LOGGER.error(errorMessage, e);
+    return new WarehouseServiceException(errorMessage, e);
   }
 
   /**
@@ -165,15 +226,45 @@ public class WarehouseService {
    */
   public List<WarehouseDTO> getAllWarehouseDTOsByOwner(Owner owner) throws WarehouseServiceException {
 
-    List<Warehouse> ownerWarehouses;
+    List<WarehouseDTO> ownerWarehouses;
     try {
-      ownerWarehouses = warehouseDAO.getAllWarehousesByOwner(owner);
+      ownerWarehouses = warehouseDAO.getWarehouseDTOsByOwner(owner);
     } catch (WarehouseDAOException e) {
       String errorMessage = "Error during retrieval of owner warehouses";
       LOGGER.error(errorMessage);
       throw new WarehouseServiceException(errorMessage, e);
     }
-    return ownerWarehouses.stream().map(this::mapEntityToDTO).toList();
+    ownerWarehouses.forEach(warehouseDTO -> warehouseDTO.setOwner(owner));
+    return ownerWarehouses;
+  }
+
+  /**
+   * Retrieves one page of the warehouses owned by a given owner, sorted on the server.
+   *
+   * @param owner       the owner of the warehouses to be retrieved
+   * @param pageRequest the sort order, page size and cursor of the page
+   * @return the page of warehouse DTOs, which tells whether a further page exists
+   * @throws WarehouseServiceException if there is an error during the retrieval process
+   */
+  public WarehousePage getWarehouseDTOPageByOwner(Owner owner, WarehousePageRequest pageRequest)
+          throws WarehouseServiceException {
+
+    List<WarehouseDTO> warehouses;
+    try {
+      warehouses = warehouseDAO.getWarehouseDTOPageByOwner(owner, pageRequest);
+    } catch (WarehouseDAOException e) {
+      String errorMessage = "Error during retrieval of a page of owner warehouses";
+      LOGGER.error(errorMessage, e);
+      throw new WarehouseServiceException(errorMessage, e);
+    }
+
+    boolean nextPageAvailable = warehouses.size() > pageRequest.getPageSize();
+    List<WarehouseDTO> items = warehouses.stream()
+            .limit(pageRequest.getPageSize())
+            .toList();
+    items.forEach(warehouseDTO -> warehouseDTO.setOwner(owner));
+
+    return new WarehousePage(items, pageRequest, nextPageAvailable);
   }
 
   /**
@@ -185,15 +276,16 @@ public class WarehouseService {
    */
   public List<WarehouseDTO> getAvailableWarehouseDTOsByOwner(Owner owner) throws WarehouseServiceException {
 
-    List<Warehouse> availableWarehouses;
+    List<WarehouseDTO> availableWarehouses;
     try {
-      availableWarehouses = warehouseDAO.getAvailableWarehousesByOwner(owner);
+      availableWarehouses = warehouseDAO.getAvailableWarehouseDTOsByOwner(owner);
     } catch (WarehouseDAOException e) {
       String errorMessage = "Error during retrieval of available warehouses by owner";
       LOGGER.error(errorMessage);
       throw new WarehouseServiceException(errorMessage, e);
     }
-    return availableWarehouses.stream().map(this::mapEntityToDTO).toList();
+    availableWarehouses.forEach(warehouseDTO -> warehouseDTO.setOwner(owner));
+    return availableWarehouses;
   }
 
   /**
@@ -234,6 +326,7 @@ public class WarehouseService {
       LOGGER.error(errorMessage, e);
       throw new WarehouseServiceException(errorMessage, e);
     }
+    warehouseDAO.afterCommit(() -> searchService.removeWarehouse(warehouse.getId()));
   }
 
   /**
@@ -252,78 +345,73 @@ public class WarehouseService {
       throw new WarehouseServiceException("Error retrieving warehouses with rental agreements for owner.", e);
     }
   }
-  private Warehouse createWarehouse(String name, double size, Long ownerId, String street, String zipCode, String cityName,
-                                    String countryName, WarehouseStatus status, ClimateCondition climate,
-                                    String storageTypeName, String storageTypeDescription)
-          throws CityCreationException, CountryCreationException {
-
-    Country country = countryService.getOrCreateCountry(countryName);
-    City city = cityService.getOrCreateCity(cityName, country);
+  /**
+   * Retrieves one page of the warehouses owned by a given owner on the service executor,
+   * see {@link #getWarehouseDTOPageByOwner}.
+   *
+   * @param owner       the owner of the warehouses to be retrieved
+   * @param pageRequest the sort order, page size and cursor of the page
+   * @return a future of the page, which fails with a {@link WarehouseServiceException} if the retrieval fails
+   */
+  public CompletableFuture<WarehousePage> getWarehouseDTOPageByOwnerAsync(Owner owner, WarehousePageRequest pageRequest) {
 
-    Address address = new Address();
-    address.setCity(city);
-    address.setStreet(street);
-    address.setZipCode(zipCode);
+    return AsyncTasks.supply(() -> getWarehouseDTOPageByOwner(owner, pageRequest), executor);
+  }
 
-    StorageType storageType = new StorageType();
-    storageType.setDescription(storageTypeDescription);
-    storageType.setTypeName(storageTypeName);
+  /**
+   * Retrieves all available warehouses of a given owner on the service executor,
+   * see {@link #getAvailableWarehouseDTOsByOwner}.
+   *
+   * @param owner the owner of the warehouses to be retrieved
+   * @return a future of the warehouse DTOs, which fails with a {@link WarehouseServiceException}
+   *         if the retrieval fails
+   */
+  public CompletableFuture<List<WarehouseDTO>> getAvailableWarehouseDTOsByOwnerAsync(Owner owner) {
 
-    Owner owner = userService.findOwnerById(ownerId);
+    return AsyncTasks.supply(() -> getAvailableWarehouseDTOsByOwner(owner), executor);
+  }
 
-    Warehouse warehouse = new Warehouse();
-    warehouse.setName(name);
-    warehouse.setSize(size);
-    warehouse.setOwner(owner);
-    warehouse.setAddress(address);
-    warehouse.setStatus(status);
-    warehouse.setClimateCondition(climate);
-    warehouse.setStorageType(storageType);
-    warehouse.setDeleted(false);
+  /**
+   * Deletes a warehouse on the service executor, see {@link #deleteWarehouse}.
+   *
+   * @param warehouseDTO a DTO containing warehouse information to be deleted
+   * @return a future which fails with a {@link WarehouseServiceException} if the deletion fails
+   */
+  public CompletableFuture<Void> deleteWarehouseAsync(WarehouseDTO warehouseDTO) {
 
-    return warehouse;
+    return AsyncTasks.run(() -> deleteWarehouse(warehouseDTO), executor);
   }
 
-  public void loadWarehousesFromCSV(BufferedReader reader)
-          throws IOException, WarehousePersistenceException, WarehouseDAOException,
-          CityCreationException, CountryCreationException {
+  /**
+   * Retrieves the warehouses with rental agreements of an owner on the service executor,
+   * see {@link #getWarehousesWithRentalAgreementsForOwner}.
+   *
+   * @param ownerId the ID of the owner
+   * @return a future of the DTOs, which fails with a {@link WarehouseServiceException} if the retrieval fails
+   */
+  public CompletableFuture<List<WarehouseRentalAgreementDto>> getWarehousesWithRentalAgreementsForOwnerAsync(
+          Long ownerId) {
 
-    String line;
-    boolean header = true;
-    while ((line = reader.readLine()) != null) {
-      if (header) {
-        header = false;
-        continue;
-      }
-      String[] values = line.split(",");
-      Warehouse warehouse = createWarehouseFromCSV(values);
-      if (warehouseDAO.findByName(warehouse.getName()).isEmpty()) {
-        warehouseDAO.save(warehouse);
-        LOGGER.info("Warehouse with name '{}' is saved in the database.", warehouse.getName());
-      } else {
-        LOGGER.info("Warehouse with name '{}' already exists. Skipping.", warehouse.getName());
-      }
-    }
-    reader.close();
+    return AsyncTasks.supply(() -> getWarehousesWithRentalAgreementsForOwner(ownerId), executor);
   }
 
-  private Warehouse createWarehouseFromCSV(String[] values) throws CityCreationException, CountryCreationException {
-
-    String name = values[0];
-    double size = Double.parseDouble(values[1]);
-    Long ownerId = Long.parseLong(values[2]);
-    String street = values[3];
-    String zipCode = values[4];
-    String cityName = values[5];
-    String countryName = values[6];
-    WarehouseStatus status = WarehouseStatus.valueOf(values[7]);
-    ClimateCondition climate = ClimateCondition.valueOf(values[8]);
-    String storageTypeName = values[9];
-    String storageTypeDescription = values[10];
-
-    return createWarehouse(name, size, ownerId, street, zipCode, cityName, countryName, status, climate, storageTypeName, storageTypeDescription);
-  }
+  /**
+   * Imports warehouses from CSV data, skipping the header line and any warehouse whose name already exists.
+   * The data is processed by a parallel, batched {@link WarehouseCsvImporter}, after which the search
+   * index is reloaded.
+   *
+   * @param reader the reader of the CSV data, which is closed once it is fully read
+   * @return a report with the row counts and the time spent in each stage of the import
+   * @throws IOException                   if reading the CSV data fails
+   * @throws WarehousePersistenceException if resolving the references or saving the warehouses fails
+   */
+  public WarehouseImportReport loadWarehousesFromCSV(BufferedReader reader)
+          throws IOException, WarehousePersistenceException {
 
+    WarehouseImportReport report = csvImporter.importWarehouses(reader);
+    searchService.reload();
+    return report;
+  }
 
   /**
    * Checks if the name of a warehouse is unique for its owner.
@@ -384,6 +472,7 @@ public class WarehouseService {
     warehouse.setStatus(warehouseDTO.getStatus());
     warehouse.setClimateCondition(warehouseDTO.getClimateCondition());
     warehouse.setOwner(warehouseDTO.getOwner());
+    warehouse.setVersion(warehouseDTO.getVersion());
 
     return warehouse;
   }
@@ -410,6 +499,7 @@ public class WarehouseService {
     warehouseDTO.setSize(warehouse.getSize());
     warehouseDTO.setOwner(warehouse.getOwner());
     warehouseDTO.setStatus(warehouse.getStatus());
+    warehouseDTO.setVersion(warehouse.getVersion());
 
     return warehouseDTO;
   }
@@ -0,0 +1,129 @@
+package bg.tuvarna.sit.wms.util;
+
+import bg.tuvarna.sit.wms.dto.AgentDTO;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * An immutable index for searching agents by any part of their name, email or phone.
+ * <p>
+ * Every agent is indexed by the {@value #GRAM_LENGTH}-character substrings of its lower-cased details.
+ * A query is looked up through the rarest of its own substrings, so only the agents which contain that
+ * substring are checked instead of all agents. Queries shorter than {@value #GRAM_LENGTH} characters,
+ * which match most agents anyway, are checked against the pre-computed details of every agent.
+ * The results keep the order in which the agents were indexed.
+ * </p>
+ */
+public class AgentSearchIndex {
+
+  static final int GRAM_LENGTH = 3;
+
+  private final List<AgentDTO> agents;
+  private final String[] details;
+  private final Map<String, int[]> postings;
+
+  /**
+   * Indexes the given agents.
+   *
+   * @param agents the agents, in the order in which they are returned by the searches
+   */
+  public AgentSearchIndex(List<AgentDTO> agents) {
+
+    this.agents = List.copyOf(agents);
+    this.details = new String[this.agents.size()];
+
+    Map<String, IntList> grams = new HashMap<>();
+    for (int i = 0; i < details.length; i++) {
+      details[i] = normalize(this.agents.get(i).toString());
+      for (int start = 0; start + GRAM_LENGTH <= details[i].length(); start++) {
+        grams.computeIfAbsent(details[i].substring(start, start + GRAM_LENGTH), gram -> new IntList()).add(i);
+      }
+    }
+
+    this.postings = new HashMap<>(grams.size() * 4 / 3 + 1);
+    grams.forEach((gram, positions) -> postings.put(gram, positions.toArray()));
+  }
+
+  /**
+   * Finds the agents whose name, email or phone contain the query, ignoring case.
+   *
+   * @param query the text to search for
+   * @return the matching agents in index order, or all agents for a blank query
+   */
+  public List<AgentDTO> search(String query) {
+
+    String text = query == null ? "" : normalize(query.strip());
+    if (text.isEmpty()) {
+      return agents;
+    }
+    if (text.length() < GRAM_LENGTH) {
+      return scan(text);
+    }
+
+    int[] candidates = null;
+    for (int start = 0; start + GRAM_LENGTH <= text.length(); start++) {
+      int[] positions = postings.get(text.substring(start, start + GRAM_LENGTH));
+      if (positions == null) {
+        return List.of();
+      }
+      if (candidates == null || positions.length < candidates.length) {
+        candidates = positions;
+      }
+    }
+
+    List<AgentDTO> matches = new ArrayList<>();
+    for (int position : candidates) {
+      if (details[position].contains(text)) {
+        matches.add(agents.get(position));
+      }
+    }
+    return matches;
+  }
+
+  public int size() {
+    return agents.size();
+  }
+
+  private List<AgentDTO> scan(String text) {
+
+    List<AgentDTO> matches = new ArrayList<>();
+    for (int i = 0; i < details.length; i++) {
+      if (details[i].contains(text)) {
+        matches.add(agents.get(i));
+      }
+    }
+    return matches;
+  }
+
+  private static String normalize(String text) {
+    return text.toLowerCase(Locale.ROOT);
+  }
+
+  /**
+   * A growable list of the ascending positions of the agents containing one substring.
+   */
+  private static final class IntList {
+
+    private int[] values = new int[4];
+    private int size;
+
+    void add(int value) {
+
+      if (size > 0 && values[size - 1] == value) {
+        return;
+      }
+      if (size == values.length) {
+        values = Arrays.copyOf(values, size * 2);
+      }
+      values[size++] = value;
+    }
+
+    int[] toArray() {
+      return Arrays.copyOf(values, size);
+    }
+  }
+}
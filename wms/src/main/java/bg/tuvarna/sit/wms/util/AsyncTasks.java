@@ -0,0 +1,124 @@
+package bg.tuvarna.sit.wms.util;
+
+import bg.tuvarna.sit.wms.contracts.BackgroundTask;
+import bg.tuvarna.sit.wms.contracts.BackgroundWork;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import javafx.application.Platform;
+
+/**
+ * Utility class for running service calls off the JavaFX Application Thread.
+ * <p>
+ * The asynchronous service methods submit their work with {@link #supply} or {@link #run} to the
+ * executor created by {@link #newBoundedExecutor}. Controllers continue on {@link #fxThread()}, so the
+ * table and dialog updates happen on the JavaFX Application Thread again, once the database round-trip
+ * is over.
+ * </p>
+ */
+public final class AsyncTasks {
+
+  private static final long KEEP_ALIVE_SECONDS = 30;
+
+  private AsyncTasks() {
+  }
+
+  /**
+   * Creates an executor with a bounded number of daemon threads and a bounded queue. When both are full,
+   * further submissions are rejected, and the futures of {@link #supply} and {@link #run} fail instead of
+   * piling up work.
+   *
+   * @param namePrefix    the prefix of the thread names
+   * @param threads       the maximum number of threads
+   * @param queueCapacity the maximum number of waiting tasks
+   * @return the executor
+   */
+  public static ExecutorService newBoundedExecutor(String namePrefix, int threads, int queueCapacity) {
+
+    AtomicInteger threadNumber = new AtomicInteger();
+    ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads, KEEP_ALIVE_SECONDS, TimeUnit.SECONDS,
+        new ArrayBlockingQueue<>(queueCapacity), runnable -> {
+          Thread thread = new Thread(runnable, namePrefix + "-" + threadNumber.incrementAndGet());
+          thread.setDaemon(true);
+          return thread;
+        });
+    executor.allowCoreThreadTimeOut(true);
+    return executor;
+  }
+
+  /**
+   * Runs the task on the executor. A checked exception thrown by the task completes the future
+   * exceptionally with that exception, which {@link #unwrap} recovers.
+   *
+   * @param task     the task to run
+   * @param executor the executor to run the task on
+   * @param <T>      the type of the result
+   * @param <E>      the type of the checked exception the task may throw
+   * @return a future of the result of the task
+   */
+  public static <T, E extends Exception> CompletableFuture<T> supply(BackgroundTask<T, E> task, Executor executor) {
+
+    try {
+      return CompletableFuture.supplyAsync(() -> {
+        try {
+          return task.call();
+        } catch (RuntimeException e) {
+          throw e;
+        } catch (Exception e) {
+          throw new CompletionException(e);
+        }
+      }, executor);
+    } catch (RejectedExecutionException e) {
+      return CompletableFuture.failedFuture(e);
+    }
+  }
+
+  /**
+   * Runs the work on the executor, see {@link #supply}.
+   *
+   * @param work     the work to run
+   * @param executor the executor to run the work on
+   * @param <E>      the type of the checked exception the work may throw
+   * @return a future which completes when the work is done
+   */
+  public static <E extends Exception> CompletableFuture<Void> run(BackgroundWork<E> work, Executor executor) {
+
+    return supply(() -> {
+      work.run();
+      return null;
+    }, executor);
+  }
+
+  /**
+   * Returns an executor which runs the continuations of a future on the JavaFX Application Thread
+   * with {@link Platform#runLater}.
+   *
+   * @return the executor of the JavaFX Application Thread
+   */
+  public static Executor fxThread() {
+
+    return Platform::runLater;
+  }
+
+  /**
+   * Returns the exception that a task failed with, stripping the wrappers added by {@link CompletableFuture}.
+   *
+   * @param throwable the exception a future was completed with
+   * @return the original exception
+   */
+  public static Throwable unwrap(Throwable throwable) {
+
+    Throwable cause = throwable;
+    while ((cause instanceof CompletionException || cause instanceof ExecutionException) && cause.getCause() != null) {
+      cause = cause.getCause();
+    }
+    return cause;
+  }
+}
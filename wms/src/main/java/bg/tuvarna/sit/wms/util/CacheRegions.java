@@ -0,0 +1,31 @@
+package bg.tuvarna.sit.wms.util;
+
+import java.util.List;
+
+/**
+ * Names of the second-level cache regions used by the application.
+ * <p>
+ * Each region is configured with its own size and time-to-live in {@code application.conf}.
+ * Hibernate fails on startup if a region used by an entity or query is missing there.
+ * </p>
+ */
+public final class CacheRegions {
+
+  public static final String COUNTRY = "country";
+  public static final String CITY = "city";
+  public static final String COUNTRY_BY_NAME_QUERY = "country-by-name";
+  public static final String CITY_BY_NAME_AND_COUNTRY_QUERY = "city-by-name-and-country";
+
+  /**
+   * The regions holding cached entities.
+   */
+  public static final List<String> ENTITY_REGIONS = List.of(COUNTRY, CITY);
+
+  /**
+   * The regions holding cached query results.
+   */
+  public static final List<String> QUERY_REGIONS = List.of(COUNTRY_BY_NAME_QUERY, CITY_BY_NAME_AND_COUNTRY_QUERY);
+
+  private CacheRegions() {
+  }
+}
@@ -0,0 +1,100 @@
+package bg.tuvarna.sit.wms.util;
+
+import bg.tuvarna.sit.wms.entities.base.BaseEntity;
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.hibernate.dialect.Dialect;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.id.enhanced.DatabaseStructure;
+import org.hibernate.id.enhanced.SequenceStyleGenerator;
+import org.hibernate.persister.entity.EntityPersister;
+
+/**
+ * Moves the ID sequences of the entities above the IDs which are already stored.
+ * <p>
+ * The entities take their IDs from one sequence per entity hierarchy, see {@link BaseEntity}. Rows written
+ * before a sequence existed, by the former identity columns or by hand, may hold IDs which the sequence
+ * would hand out again. At startup every sequence whose next value is not above the highest stored ID of
+ * its entity is restarted at that ID plus one. Sequences are only ever moved forward, so several clients
+ * may align them at the same time. Reading the next value of a real sequence takes a block of IDs, which is
+ * then left unused.
+ * </p>
+ * <p>
+ * On databases without sequences, such as MySQL, the sequence is a single-row table, which is moved with
+ * one conditional update.
+ * </p>
+ */
+public final class IdSequences {
+
+  private static final Logger LOGGER = LogManager.getLogger(IdSequences.class);
+
+  /**
+   * The value column of the single-row tables which stand in for sequences, as created by Hibernate.
+   */
+  private static final String TABLE_VALUE_COLUMN = "next_val";
+
+  private IdSequences() {
+  }
+
+  /**
+   * Restarts every ID sequence which is behind the IDs of its entity, one entity hierarchy per transaction.
+   *
+   * @param entityManagerFactory the factory whose entities are aligned
+   */
+  public static void alignWithExistingIds(EntityManagerFactory entityManagerFactory) {
+
+    SessionFactoryImplementor sessionFactory = entityManagerFactory.unwrap(SessionFactoryImplementor.class);
+    Dialect dialect = sessionFactory.getJdbcServices().getDialect();
+    EntityManager entityManager = entityManagerFactory.createEntityManager();
+
+    try {
+      for (EntityPersister persister : sessionFactory.getMetamodel().entityPersisters().values()) {
+        if (persister.getEntityName().equals(persister.getRootEntityName())
+            && persister.getIdentifierGenerator() instanceof SequenceStyleGenerator generator) {
+          entityManager.getTransaction().begin();
+          align(entityManager, dialect, persister, generator.getDatabaseStructure());
+          entityManager.getTransaction().commit();
+        }
+      }
+    } catch (RuntimeException e) {
+      if (entityManager.getTransaction().isActive()) {
+        entityManager.getTransaction().rollback();
+      }
+      throw e;
+    } finally {
+      entityManager.close();
+    }
+  }
+
+  private static void align(EntityManager entityManager, Dialect dialect, EntityPersister persister,
+                            DatabaseStructure sequence) {
+
+    Long maxId = entityManager.createQuery("SELECT MAX(e." + persister.getIdentifierPropertyName() + ") FROM "
+        + persister.getEntityName() + " e", Long.class).getSingleResult();
+    if (maxId == null) {
+      return;
+    }
+    long nextId = maxId + 1;
+
+    if (sequence.isPhysicalSequence()) {
+      long nextValue = ((Number) entityManager
+          .createNativeQuery(dialect.getSequenceNextValString(sequence.getName()))
+          .getSingleResult()).longValue();
+      if (nextValue < nextId) {
+        entityManager.createNativeQuery("ALTER SEQUENCE " + sequence.getName() + " RESTART WITH " + nextId)
+            .executeUpdate();
+        LOGGER.info("Restarted the ID sequence {} at {}", sequence.getName(), nextId);
+      }
+    } else {
+      int moved = entityManager.createNativeQuery("UPDATE " + sequence.getName() + " SET " + TABLE_VALUE_COLUMN
+              + " = :nextId WHERE " + TABLE_VALUE_COLUMN + " < :nextId")
+          .setParameter("nextId", nextId)
+          .executeUpdate();
+      if (moved > 0) {
+        LOGGER.info("Moved the ID table {} to {}", sequence.getName(), nextId);
+      }
+    }
+  }
+}
@@ -0,0 +1,272 @@
+package bg.tuvarna.sit.wms.util;
+
+import bg.tuvarna.sit.wms.contracts.SqlExecutionListener;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.CallableStatement;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import javax.sql.DataSource;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Wraps a {@link DataSource}, so every statement executed through its connections is timed and reported
+ * to the given {@link SqlExecutionListener}s.
+ * <p>
+ * Connections, statements and result sets are wrapped in JDK proxies which delegate every call. The
+ * execution time of a statement is measured around its {@code execute*} call. For queries, the reported
+ * row count is the number of rows read, so the execution is reported once its result set or the statement
+ * is closed. Updates are reported right after they are executed. The values bound to a prepared statement
+ * are captured with the {@code set*} calls and reported along with the execution.
+ * </p>
+ */
+public final class InstrumentedDataSource {
+
+  private static final Logger LOGGER = LogManager.getLogger(InstrumentedDataSource.class);
+
+  private static final Set<String> EXECUTE_METHODS = Set.of("execute", "executeQuery", "executeUpdate",
+      "executeLargeUpdate", "executeBatch", "executeLargeBatch");
+
+  private InstrumentedDataSource() {
+  }
+
+  /**
+   * Wraps the data source.
+   *
+   * @param dataSource the data source to wrap
+   * @param listeners  the listeners to report the executed statements to
+   * @return a data source which reports every executed statement
+   */
+  public static DataSource wrap(DataSource dataSource, List<SqlExecutionListener> listeners) {
+
+    List<SqlExecutionListener> listenersCopy = List.copyOf(listeners);
+    return proxy(DataSource.class, dataSource, (target, method, args) -> {
+      Object result = invoke(target, method, args);
+      if (result instanceof Connection connection) {
+        return wrapConnection(connection, listenersCopy);
+      }
+      return result;
+    });
+  }
+
+  private static Connection wrapConnection(Connection connection, List<SqlExecutionListener> listeners) {
+
+    return proxy(Connection.class, connection, (target, method, args) -> {
+      Object result = invoke(target, method, args);
+      String sql = args != null && args.length > 0 && args[0] instanceof String text ? text : null;
+      if (result instanceof CallableStatement statement) {
+        return new StatementHandler(statement, sql, listeners).proxy(CallableStatement.class);
+      }
+      if (result instanceof PreparedStatement statement) {
+        return new StatementHandler(statement, sql, listeners).proxy(PreparedStatement.class);
+      }
+      if (result instanceof Statement statement) {
+        return new StatementHandler(statement, null, listeners).proxy(Statement.class);
+      }
+      return result;
+    });
+  }
+
+  /**
+   * Tracks the executions of a single statement.
+   */
+  private static final class StatementHandler {
+
+    private final Statement statement;
+    private final String preparedSql;
+    private final List<SqlExecutionListener> listeners;
+    private final List<Object> parameters = new ArrayList<>();
+    private PendingExecution pending;
+
+    private StatementHandler(Statement statement, String preparedSql, List<SqlExecutionListener> listeners) {
+      this.statement = statement;
+      this.preparedSql = preparedSql;
+      this.listeners = listeners;
+    }
+
+    private <T extends Statement> T proxy(Class<T> type) {
+
+      return InstrumentedDataSource.proxy(type, statement, this::handle);
+    }
+
+    private Object handle(Object target, Method method, Object[] args) throws Throwable {
+
+      String name = method.getName();
+      if (name.equals("close")) {
+        finishPending();
+        return invoke(target, method, args);
+      }
+      if (!EXECUTE_METHODS.contains(name)) {
+        Object result = invoke(target, method, args);
+        captureParameter(name, args);
+        return result;
+      }
+
+      finishPending();
+      String sql = args != null && args.length > 0 && args[0] instanceof String text ? text : preparedSql;
+      long start = System.nanoTime();
+      Object result;
+      try {
+        result = invoke(target, method, args);
+      } catch (Throwable e) {
+        report(sql, boundParameters(), System.nanoTime() - start, 0, true);
+        throw e;
+      }
+      long elapsed = System.nanoTime() - start;
+
+      if (result instanceof ResultSet resultSet) {
+        pending = new PendingExecution(sql, boundParameters(), elapsed);
+        return proxyResultSet(resultSet, pending);
+      }
+      report(sql, boundParameters(), elapsed, changedRows(result), false);
+      return result;
+    }
+
+    private void captureParameter(String name, Object[] args) {
+
+      if (preparedSql == null) {
+        return;
+      }
+      if (name.equals("clearParameters")) {
+        parameters.clear();
+      } else if (name.startsWith("set") && args != null && args.length >= 2 && args[0] instanceof Integer index
+          && index > 0) {
+        while (parameters.size() < index) {
+          parameters.add(null);
+        }
+        parameters.set(index - 1, name.equals("setNull") ? null : args[1]);
+      }
+    }
+
+    private List<Object> boundParameters() {
+
+      return parameters.isEmpty() ? List.of() : Collections.unmodifiableList(new ArrayList<>(parameters));
+    }
+
+    private ResultSet proxyResultSet(ResultSet resultSet, PendingExecution execution) {
+
+      return InstrumentedDataSource.proxy(ResultSet.class, resultSet, (target, method, args) -> {
+        Object result = invoke(target, method, args);
+        if (method.getName().equals("next") && Boolean.TRUE.equals(result)) {
+          execution.rows++;
+        } else if (method.getName().equals("close") && execution == pending) {
+          finishPending();
+        }
+        return result;
+      });
+    }
+
+    private void finishPending() {
+
+      if (pending != null) {
+        PendingExecution execution = pending;
+        pending = null;
+        report(execution.sql, execution.parameters, execution.elapsedNanos, execution.rows, false);
+      }
+    }
+
+    private void report(String sql, List<Object> parameters, long elapsedNanos, long rows, boolean failed) {
+
+      SqlExecution execution = new SqlExecution(sql, parameters, SqlStatementInspector.tagOf(sql), typeOf(sql),
+          elapsedNanos, rows, failed);
+      for (SqlExecutionListener listener : listeners) {
+        try {
+          listener.onExecution(execution);
+        } catch (RuntimeException e) {
+          LOGGER.warn("SQL execution listener failed", e);
+        }
+      }
+    }
+  }
+
+  private static final class PendingExecution {
+
+    private final String sql;
+    private final List<Object> parameters;
+    private final long elapsedNanos;
+    private long rows;
+
+    private PendingExecution(String sql, List<Object> parameters, long elapsedNanos) {
+      this.sql = sql;
+      this.parameters = parameters;
+      this.elapsedNanos = elapsedNanos;
+    }
+  }
+
+  private static long changedRows(Object result) {
+
+    if (result instanceof Number number) {
+      return Math.max(number.longValue(), 0);
+    }
+    long rows = 0;
+    if (result instanceof int[] counts) {
+      for (int count : counts) {
+        rows += Math.max(count, 0);
+      }
+    } else if (result instanceof long[] counts) {
+      for (long count : counts) {
+        rows += Math.max(count, 0);
+      }
+    }
+    return rows;
+  }
+
+  /**
+   * Returns the kind of the statement, skipping the tag of {@link SqlStatementInspector}.
+   *
+   * @param sql the SQL of the statement
+   * @return the first keyword of the statement in lower case, such as {@code select}, or {@code other}
+   */
+  static String typeOf(String sql) {
+
+    if (sql == null) {
+      return "other";
+    }
+    String text = sql.strip();
+    if (text.startsWith("/*")) {
+      int end = text.indexOf("*/");
+      text = end < 0 ? "" : text.substring(end + 2).strip();
+    }
+    int end = 0;
+    while (end < text.length() && Character.isLetter(text.charAt(end))) {
+      end++;
+    }
+    return end == 0 ? "other" : text.substring(0, end).toLowerCase(Locale.ROOT);
+  }
+
+  private static <T> T proxy(Class<T> type, Object target, ProxyHandler handler) {
+
+    InvocationHandler invocationHandler = (proxy, method, args) -> switch (method.getName()) {
+      case "equals" -> args != null && args.length == 1 ? proxy == args[0] : handler.handle(target, method, args);
+      case "hashCode" -> args == null ? System.identityHashCode(proxy) : handler.handle(target, method, args);
+      default -> handler.handle(target, method, args);
+    };
+    return type.cast(Proxy.newProxyInstance(InstrumentedDataSource.class.getClassLoader(),
+        new Class<?>[] {type}, invocationHandler));
+  }
+
+  private static Object invoke(Object target, Method method, Object[] args) throws Throwable {
+
+    try {
+      return method.invoke(target, args);
+    } catch (InvocationTargetException e) {
+      throw e.getCause();
+    }
+  }
+
+  @FunctionalInterface
+  private interface ProxyHandler {
+
+    Object handle(Object target, Method method, Object[] args) throws Throwable;
+  }
+}
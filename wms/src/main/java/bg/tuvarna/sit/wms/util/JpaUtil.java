@@ -1,8 +1,14 @@
 package bg.tuvarna.sit.wms.util;
 
+import bg.tuvarna.sit.wms.contracts.SqlExecutionListener;
+import com.zaxxer.hikari.HikariConfig;
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.metrics.micrometer.MicrometerMetricsTrackerFactory;
 import javax.persistence.EntityManagerFactory;
 import javax.persistence.Persistence;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import lombok.Getter;
 
@@ -13,24 +19,60 @@ import lombok.Getter;
  * derived from environment variables. It provides a static method to obtain EntityManager
  * instances for interacting with the persistence context.
  * </p>
+ * <p>
+ * Connections are served by a HikariCP pool, whose size, acquire timeout, leak detection and
+ * statement caching can be tuned with the {@code DB_POOL_*} environment variables. Pool gauges
+ * and the connection acquire time histogram are published to {@link MetricsUtil#getMeterRegistry()},
+ * together with the hit and miss counts of the second-level cache.
+ * </p>
+ * <p>
+ * Every executed statement is timed and counted per DAO method by {@link SqlMetrics}. The statements are
+ * tagged with their DAO method by {@link SqlStatementInspector} and reach the pool through an
+ * {@link InstrumentedDataSource}. Statements slower than {@code DB_SLOW_QUERY_THRESHOLD_MS} are
+ * written to the slow query log, sampled by {@code DB_SLOW_QUERY_SAMPLE_RATE}, see {@link SlowQueryLog}.
+ * </p>
+ * <p>
+ * On MySQL the driver is told to rewrite the JDBC batches issued by Hibernate into multi-row
+ * statements, so a batch of inserts costs a single round-trip.
+ * </p>
+ * <p>
+ * Before the factory is handed out, the ID sequences are moved above the IDs already stored,
+ * see {@link IdSequences}.
+ * </p>
  *
  * @author Yavor Chamov
  * @version 1.0.0
  */
 public class JpaUtil {
 
+  private static final String POOL_NAME = "wms-pool";
+  private static final int DEFAULT_MIN_IDLE = 2;
+  private static final int DEFAULT_MAX_POOL_SIZE = 10;
+  private static final long DEFAULT_ACQUIRE_TIMEOUT_MS = 5_000;
+  private static final long DEFAULT_LEAK_DETECTION_MS = 20_000;
+  private static final int DEFAULT_STATEMENT_CACHE_SIZE = 250;
+  private static final long DEFAULT_SLOW_QUERY_THRESHOLD_MS = 500;
+  private static final double DEFAULT_SLOW_QUERY_SAMPLE_RATE = 1.0;
+
+  @Getter
+  private static final HikariDataSource dataSource;
+
   @Getter
   private static final EntityManagerFactory entityManagerFactory;
 
   static {
 
     Map<String, String> env = System.getenv();
+    dataSource = new HikariDataSource(createPoolConfig(env));
+
     Map<String, Object> configOverrides = new HashMap<>();
-    configOverrides.put("hibernate.connection.url", env.get("DB_CONNECTION_URL"));
-    configOverrides.put("hibernate.connection.username", env.get("DB_USERNAME"));
-    configOverrides.put("hibernate.connection.password", env.get("DB_PASSWORD"));
+    configOverrides.put("hibernate.connection.datasource",
+            InstrumentedDataSource.wrap(dataSource, createSqlExecutionListeners(env)));
 
     entityManagerFactory = Persistence.createEntityManagerFactory(env.get("PERSISTENCE_NAME"), configOverrides);
+    IdSequences.alignWithExistingIds(entityManagerFactory);
+    MetricsUtil.bindCacheStatistics(entityManagerFactory);
+    MetricsUtil.bindSessionStatistics(entityManagerFactory);
   }
 
   /**
@@ -41,5 +83,80 @@ public class JpaUtil {
     if (entityManagerFactory != null) {
       entityManagerFactory.close();
     }
+    if (dataSource != null) {
+      dataSource.close();
+    }
+  }
+
+  /**
+   * Builds the connection pool configuration from the environment.
+   *
+   * @param env the environment variables
+   * @return the pool configuration
+   */
+  private static HikariConfig createPoolConfig(Map<String, String> env) {
+
+    String url = env.get("DB_CONNECTION_URL");
+
+    HikariConfig config = new HikariConfig();
+    config.setPoolName(POOL_NAME);
+    config.setJdbcUrl(url);
+    config.setUsername(env.get("DB_USERNAME"));
+    config.setPassword(env.get("DB_PASSWORD"));
+    config.setMinimumIdle(getInt(env, "DB_POOL_MIN_IDLE", DEFAULT_MIN_IDLE));
+    config.setMaximumPoolSize(getInt(env, "DB_POOL_MAX_SIZE", DEFAULT_MAX_POOL_SIZE));
+    config.setConnectionTimeout(getLong(env, "DB_POOL_ACQUIRE_TIMEOUT_MS", DEFAULT_ACQUIRE_TIMEOUT_MS));
+    config.setLeakDetectionThreshold(getLong(env, "DB_POOL_LEAK_DETECTION_MS", DEFAULT_LEAK_DETECTION_MS));
+    config.setRegisterMbeans(true);
+    config.setMetricsTrackerFactory(new MicrometerMetricsTrackerFactory(MetricsUtil.getMeterRegistry()));
+
+    if (url != null && url.startsWith("jdbc:mysql:")) {
+      config.addDataSourceProperty("cachePrepStmts", "true");
+      config.addDataSourceProperty("useServerPrepStmts", "true");
+      config.addDataSourceProperty("prepStmtCacheSize",
+              getInt(env, "DB_POOL_STATEMENT_CACHE_SIZE", DEFAULT_STATEMENT_CACHE_SIZE));
+      config.addDataSourceProperty("prepStmtCacheSqlLimit", "2048");
+      config.addDataSourceProperty("rewriteBatchedStatements", "true");
+    }
+
+    return config;
+  }
+
+  /**
+   * Creates the listeners of the executed statements: the per DAO method metrics and, unless
+   * {@code DB_SLOW_QUERY_THRESHOLD_MS} is negative, the slow query log.
+   *
+   * @param env the environment variables
+   * @return the listeners
+   */
+  private static List<SqlExecutionListener> createSqlExecutionListeners(Map<String, String> env) {
+
+    List<SqlExecutionListener> listeners = new ArrayList<>();
+    listeners.add(new SqlMetrics(MetricsUtil.getMeterRegistry()));
+
+    long slowQueryThreshold = getLong(env, "DB_SLOW_QUERY_THRESHOLD_MS", DEFAULT_SLOW_QUERY_THRESHOLD_MS);
+    if (slowQueryThreshold >= 0) {
+      double sampleRate = getDouble(env, "DB_SLOW_QUERY_SAMPLE_RATE", DEFAULT_SLOW_QUERY_SAMPLE_RATE);
+      listeners.add(new SlowQueryLog(slowQueryThreshold, sampleRate, MetricsUtil.getMeterRegistry()));
+    }
+    return listeners;
+  }
+
+  private static int getInt(Map<String, String> env, String key, int defaultValue) {
+
+    String value = env.get(key);
+    return value == null || value.isBlank() ? defaultValue : Integer.parseInt(value.trim());
+  }
+
+  private static long getLong(Map<String, String> env, String key, long defaultValue) {
+
+    String value = env.get(key);
+    return value == null || value.isBlank() ? defaultValue : Long.parseLong(value.trim());
+  }
+
+  private static double getDouble(Map<String, String> env, String key, double defaultValue) {
+
+    String value = env.get(key);
+    return value == null || value.isBlank() ? defaultValue : Double.parseDouble(value.trim());
   }
 }
@@ -0,0 +1,140 @@
+package bg.tuvarna.sit.wms.util;
+
+import io.micrometer.core.instrument.Clock;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Meter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.TimeGauge;
+import io.micrometer.core.instrument.config.MeterFilter;
+import io.micrometer.core.instrument.distribution.DistributionStatisticConfig;
+import io.micrometer.jmx.JmxConfig;
+import io.micrometer.jmx.JmxMeterRegistry;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.function.ToLongFunction;
+import javax.persistence.EntityManagerFactory;
+import lombok.Getter;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.CacheRegionStatistics;
+import org.hibernate.stat.Statistics;
+
+/**
+ * Utility class holding the application-wide metrics registry.
+ * <p>
+ * All meters registered here are exported over JMX under the {@code wms} domain, so they can be
+ * inspected with JConsole or VisualVM while the application is running.
+ * </p>
+ */
+public class MetricsUtil {
+
+  private static final String JMX_DOMAIN = "wms";
+
+  @Getter
+  private static final MeterRegistry meterRegistry = createMeterRegistry();
+
+  /**
+   * Publishes the hit, miss and put counts of the second-level cache regions listed in
+   * {@link CacheRegions} as {@code hibernate.cache.*} counters tagged with the region name.
+   *
+   * @param entityManagerFactory the factory whose statistics are published
+   */
+  public static void bindCacheStatistics(EntityManagerFactory entityManagerFactory) {
+
+    Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+
+    for (String region : CacheRegions.ENTITY_REGIONS) {
+      bindRegionStatistics(statistics, region, s -> s.getDomainDataRegionStatistics(region));
+    }
+    for (String region : CacheRegions.QUERY_REGIONS) {
+      bindRegionStatistics(statistics, region, s -> s.getQueryRegionStatistics(region));
+    }
+  }
+
+  /**
+   * Publishes the session factory wide statement, query, load, flush and transaction counts of Hibernate
+   * as {@code hibernate.*} meters, complementing the per DAO method meters of {@link SqlMetrics}.
+   *
+   * @param entityManagerFactory the factory whose statistics are published
+   */
+  public static void bindSessionStatistics(EntityManagerFactory entityManagerFactory) {
+
+    Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+
+    bindCounter("hibernate.statements.prepared", statistics, Statistics::getPrepareStatementCount);
+    bindCounter("hibernate.queries.executed", statistics, Statistics::getQueryExecutionCount);
+    bindCounter("hibernate.entities.loaded", statistics, Statistics::getEntityLoadCount);
+    bindCounter("hibernate.entities.fetched", statistics, Statistics::getEntityFetchCount);
+    bindCounter("hibernate.collections.fetched", statistics, Statistics::getCollectionFetchCount);
+    bindCounter("hibernate.flushes", statistics, Statistics::getFlushCount);
+    bindCounter("hibernate.transactions", statistics, Statistics::getTransactionCount);
+    TimeGauge.builder("hibernate.queries.max.time", statistics, TimeUnit.MILLISECONDS,
+                    Statistics::getQueryExecutionMaxTime)
+            .register(meterRegistry);
+  }
+
+  private static void bindCounter(String name, Statistics statistics, ToLongFunction<Statistics> count) {
+
+    FunctionCounter.builder(name, statistics, s -> count.applyAsLong(s))
+            .register(meterRegistry);
+  }
+
+  private static void bindRegionStatistics(Statistics statistics, String region,
+                                           Function<Statistics, CacheRegionStatistics> regionStatistics) {
+
+    bindRegionCounter("hibernate.cache.hits", statistics, region, regionStatistics, CacheRegionStatistics::getHitCount);
+    bindRegionCounter("hibernate.cache.misses", statistics, region, regionStatistics, CacheRegionStatistics::getMissCount);
+    bindRegionCounter("hibernate.cache.puts", statistics, region, regionStatistics, CacheRegionStatistics::getPutCount);
+  }
+
+  private static void bindRegionCounter(String name, Statistics statistics, String region,
+                                        Function<Statistics, CacheRegionStatistics> regionStatistics,
+                                        ToLongFunction<CacheRegionStatistics> count) {
+
+    FunctionCounter.builder(name, statistics, s -> {
+              CacheRegionStatistics stats = regionStatistics.apply(s);
+              return stats == null ? 0 : count.applyAsLong(stats);
+            })
+            .tag("region", region)
+            .register(meterRegistry);
+  }
+
+  /**
+   * Creates the JMX backed registry and enables percentile histograms for connection acquire times,
+   * which are the main indicator of pool starvation. The execution times of SQL statements also publish
+   * percentiles here, while their histogram buckets are declared by {@link SqlMetrics} itself.
+   *
+   * @return the configured meter registry
+   */
+  private static MeterRegistry createMeterRegistry() {
+
+    JmxConfig jmxConfig = new JmxConfig() {
+      @Override
+      public String get(String key) {
+        return null;
+      }
+
+      @Override
+      public String domain() {
+        return JMX_DOMAIN;
+      }
+    };
+
+    MeterRegistry registry = new JmxMeterRegistry(jmxConfig, Clock.SYSTEM);
+    registry.config().meterFilter(new MeterFilter() {
+      @Override
+      public DistributionStatisticConfig configure(Meter.Id id, DistributionStatisticConfig config) {
+
+        if (id.getName().startsWith("hikaricp.connections.acquire") || id.getName().equals(SqlMetrics.STATEMENTS)) {
+          return DistributionStatisticConfig.builder()
+                  .percentiles(0.5, 0.95, 0.99)
+                  .percentilesHistogram(true)
+                  .build()
+                  .merge(config);
+        }
+        return config;
+      }
+    });
+
+    return registry;
+  }
+}
@@ -0,0 +1,95 @@
+package bg.tuvarna.sit.wms.util;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.hibernate.StaleStateException;
+import org.hibernate.exception.LockAcquisitionException;
+
+import javax.persistence.LockTimeoutException;
+import javax.persistence.OptimisticLockException;
+import javax.persistence.PessimisticLockException;
+import java.sql.SQLTransactionRollbackException;
+
+/**
+ * Helpers for working with versioned entities.
+ * <p>
+ * A versioned entity is updated without locks. If another transaction changed the row first,
+ * the update fails with an optimistic lock failure. Callers can either report the conflict or,
+ * when the change does not depend on what the other transaction wrote, simply run it again
+ * against the fresh state with {@link #retryOnConflict}.
+ * </p>
+ * <p>
+ * A transaction which was chosen as the victim of a deadlock, or gave up waiting for a row lock, lost
+ * the same race and is rolled back by the database. Such failures are treated as conflicts as well.
+ * </p>
+ */
+public final class OptimisticLocking {
+
+  private static final Logger LOGGER = LogManager.getLogger(OptimisticLocking.class);
+
+  private OptimisticLocking() {
+  }
+
+  /**
+   * A piece of work which reloads the state it changes on every attempt.
+   *
+   * @param <T> the type of the result
+   * @param <E> the type of the checked exception the work may throw
+   */
+  @FunctionalInterface
+  public interface Attempt<T, E extends Exception> {
+
+    T run() throws E;
+  }
+
+  /**
+   * Tells whether an exception, or any of its causes, is an optimistic lock failure, a deadlock or a lock
+   * which could not be acquired.
+   *
+   * @param throwable the exception to inspect
+   * @return true if the exception was caused by a concurrent modification of the same rows
+   */
+  public static boolean isConflict(Throwable throwable) {
+
+    for (Throwable current = throwable; current != null; current = current.getCause()) {
+      if (current instanceof OptimisticLockException || current instanceof StaleStateException
+          || current instanceof PessimisticLockException || current instanceof LockTimeoutException
+          || current instanceof LockAcquisitionException || current instanceof SQLTransactionRollbackException) {
+        return true;
+      }
+      if (current.getCause() == current) {
+        break;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Runs the work, running it again if it fails with an optimistic lock failure.
+   * Every other failure, and the conflict of the last attempt, is propagated to the caller.
+   *
+   * @param maxAttempts the maximum number of times the work is run, at least one
+   * @param attempt     the work, which must reload the state it changes
+   * @param <T>         the type of the result
+   * @param <E>         the type of the checked exception the work may throw
+   * @return the result of the first successful attempt
+   * @throws E if the work fails with anything but a conflict, or the last attempt conflicts
+   */
+  public static <T, E extends Exception> T retryOnConflict(int maxAttempts, Attempt<T, E> attempt) throws E {
+
+    if (maxAttempts < 1) {
+      throw new IllegalArgumentException("maxAttempts must be at least 1");
+    }
+
+    for (int attemptNumber = 1; ; attemptNumber++) {
+      try {
+        return attempt.run();
+      } catch (Exception e) {
+        if (attemptNumber >= maxAttempts || !isConflict(e)) {
+          throw e;
+        }
+        LOGGER.debug("Optimistic lock conflict on attempt {} of {}, retrying", attemptNumber, maxAttempts);
+      }
+    }
+  }
+}
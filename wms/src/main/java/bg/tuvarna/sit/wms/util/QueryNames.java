@@ -0,0 +1,95 @@
+package bg.tuvarna.sit.wms.util;
+
+import java.util.List;
+
+/**
+ * Names of the named queries used by the DAOs.
+ * <p>
+ * The queries themselves are declared on the entities they select from. Hibernate parses and
+ * validates all of them when the {@code EntityManagerFactory} is built, so a broken query fails the
+ * startup instead of the first click on a screen, and their query plans are cached from then on.
+ * </p>
+ */
+public final class QueryNames {
+
+  public static final String CITY_FIND_ALL = "City.findAll";
+  public static final String CITY_FIND_BY_NAME_AND_COUNTRY = "City.findByNameAndCountry";
+
+  public static final String COUNTRY_FIND_ALL = "Country.findAll";
+  public static final String COUNTRY_FIND_BY_NAME = "Country.findByName";
+
+  public static final String USER_FIND_ALL_EMAILS = "User.findAllEmails";
+  public static final String USER_FIND_IDS_BY_EMAILS = "User.findIdsByEmails";
+  public static final String USER_FIND_BY_EMAIL = "User.findByEmail";
+  public static final String USER_FIND_BY_PHONE = "User.findByPhone";
+  public static final String USER_FIND_PASSWORD_BY_ID = "User.findPasswordById";
+  public static final String AGENT_FIND_ALL = "Agent.findAll";
+  public static final String AGENT_FIND_BY_IDS = "Agent.findByIds";
+  public static final String OWNER_FIND_BY_EMAILS = "Owner.findByEmails";
+
+  public static final String REVIEW_FIND_BY_RECEIVER = "Review.findByReceiver";
+  public static final String REVIEW_FIND_DTOS_BY_RECEIVER_AFTER = "Review.findDTOsByReceiverAfter";
+  public static final String REVIEW_DELETE_BY_RECEIVER = "Review.deleteByReceiver";
+  public static final String REVIEW_DELETE_BY_RECEIVERS = "Review.deleteByReceivers";
+  public static final String REVIEW_COUNT_RECEIVERS = "Review.countReceivers";
+
+  public static final String AGENT_RATING_FIND_ALL = "AgentRating.findAll";
+  public static final String AGENT_RATING_COUNT = "AgentRating.count";
+  public static final String AGENT_RATING_DELETE_BY_AGENT = "AgentRating.deleteByAgent";
+  public static final String AGENT_RATING_DELETE_BY_AGENTS = "AgentRating.deleteByAgents";
+  public static final String AGENT_RATING_DELETE_ALL = "AgentRating.deleteAll";
+  public static final String AGENT_RATING_REBUILD = "AgentRating.rebuild";
+
+  public static final String WAREHOUSE_FIND_ALL = "Warehouse.findAll";
+  public static final String WAREHOUSE_FIND_BY_OWNER = "Warehouse.findByOwner";
+  public static final String WAREHOUSE_FIND_AVAILABLE_BY_OWNER = "Warehouse.findAvailableByOwner";
+  public static final String WAREHOUSE_FIND_DTOS = "Warehouse.findDTOs";
+  public static final String WAREHOUSE_FIND_DTO_BY_ID = "Warehouse.findDTOById";
+  public static final String WAREHOUSE_FIND_DTOS_BY_OWNER = "Warehouse.findDTOsByOwner";
+  public static final String WAREHOUSE_FIND_AVAILABLE_DTOS_BY_OWNER = "Warehouse.findAvailableDTOsByOwner";
+  public static final String WAREHOUSE_FIND_BY_NAME_AND_OWNER = "Warehouse.findByNameAndOwner";
+  public static final String WAREHOUSE_FIND_BY_NAME = "Warehouse.findByName";
+  public static final String WAREHOUSE_FIND_EXISTING_NAMES = "Warehouse.findExistingNames";
+  public static final String WAREHOUSE_FIND_RENTAL_AGREEMENT_DTOS_BY_OWNER = "Warehouse.findRentalAgreementDTOsByOwner";
+  public static final String WAREHOUSE_TRANSITION_STATUS = "Warehouse.transitionStatus";
+
+  public static final String REQUEST_FIND_BY_STATUS_AND_AGENT = "WarehouseRentalRequest.findByStatusAndAgent";
+  public static final String REQUEST_FIND_VALID_BY_WAREHOUSE = "WarehouseRentalRequest.findValidByWarehouse";
+  public static final String REQUEST_TRANSITION_STATUS = "WarehouseRentalRequest.transitionStatus";
+  public static final String REQUEST_INVALIDATE_OTHER_PENDING = "WarehouseRentalRequest.invalidateOtherPending";
+
+  public static final String NOTIFICATION_FIND_DTOS_BY_USER_AND_STATUS = "Notification.findDTOsByUserAndStatus";
+  public static final String NOTIFICATION_COUNT_BY_USER_AND_STATUS = "Notification.countByUserAndStatus";
+  public static final String NOTIFICATION_MARK_READ = "Notification.markRead";
+  public static final String NOTIFICATION_MARK_ALL_READ = "Notification.markAllRead";
+
+  /**
+   * The queries which only read, and can therefore be run by the startup warm-up.
+   */
+  public static final List<String> SELECT_QUERIES = List.of(
+      CITY_FIND_ALL, CITY_FIND_BY_NAME_AND_COUNTRY,
+      COUNTRY_FIND_ALL, COUNTRY_FIND_BY_NAME,
+      USER_FIND_ALL_EMAILS, USER_FIND_IDS_BY_EMAILS, USER_FIND_BY_EMAIL, USER_FIND_BY_PHONE, USER_FIND_PASSWORD_BY_ID,
+      AGENT_FIND_ALL, AGENT_FIND_BY_IDS, OWNER_FIND_BY_EMAILS,
+      REVIEW_FIND_BY_RECEIVER, REVIEW_FIND_DTOS_BY_RECEIVER_AFTER, REVIEW_COUNT_RECEIVERS,
+      AGENT_RATING_FIND_ALL, AGENT_RATING_COUNT,
+      WAREHOUSE_FIND_ALL, WAREHOUSE_FIND_BY_OWNER, WAREHOUSE_FIND_AVAILABLE_BY_OWNER, WAREHOUSE_FIND_DTOS,
+      WAREHOUSE_FIND_DTO_BY_ID, WAREHOUSE_FIND_DTOS_BY_OWNER,
+      WAREHOUSE_FIND_AVAILABLE_DTOS_BY_OWNER, WAREHOUSE_FIND_BY_NAME_AND_OWNER, WAREHOUSE_FIND_BY_NAME,
+      WAREHOUSE_FIND_EXISTING_NAMES, WAREHOUSE_FIND_RENTAL_AGREEMENT_DTOS_BY_OWNER,
+      REQUEST_FIND_BY_STATUS_AND_AGENT, REQUEST_FIND_VALID_BY_WAREHOUSE,
+      NOTIFICATION_FIND_DTOS_BY_USER_AND_STATUS, NOTIFICATION_COUNT_BY_USER_AND_STATUS);
+
+  /**
+   * The bulk updates and deletes, which are only validated at startup.
+   */
+  public static final List<String> UPDATE_QUERIES = List.of(
+      REVIEW_DELETE_BY_RECEIVER, REVIEW_DELETE_BY_RECEIVERS,
+      AGENT_RATING_DELETE_BY_AGENT, AGENT_RATING_DELETE_BY_AGENTS, AGENT_RATING_DELETE_ALL, AGENT_RATING_REBUILD,
+      WAREHOUSE_TRANSITION_STATUS,
+      REQUEST_TRANSITION_STATUS, REQUEST_INVALIDATE_OTHER_PENDING,
+      NOTIFICATION_MARK_READ, NOTIFICATION_MARK_ALL_READ);
+
+  private QueryNames() {
+  }
+}
@@ -0,0 +1,82 @@
+package bg.tuvarna.sit.wms.util;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.Parameter;
+import javax.persistence.Query;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Executes every read-only named query once, so the first call of each screen does not pay for
+ * generating its SQL, preparing its statement and warming up the pooled connections.
+ * <p>
+ * Every parameter is bound to {@code null} and at most one row is requested, so the queries match
+ * nothing and stay cheap. Each query runs in its own transaction, which is always rolled back.
+ * The bulk updates from {@link QueryNames#UPDATE_QUERIES} are never executed.
+ * </p>
+ */
+public final class QueryWarmUp {
+
+  private static final Logger LOGGER = LogManager.getLogger(QueryWarmUp.class);
+
+  private QueryWarmUp() {
+  }
+
+  /**
+   * Executes each of the {@link QueryNames#SELECT_QUERIES} once. A query which fails is logged and skipped.
+   *
+   * @param entityManagerFactory the factory whose named queries are warmed up
+   * @return the number of queries which were executed successfully
+   */
+  public static int warmUp(EntityManagerFactory entityManagerFactory) {
+
+    long start = System.nanoTime();
+    int warmed = 0;
+
+    for (String name : QueryNames.SELECT_QUERIES) {
+      if (execute(entityManagerFactory, name)) {
+        warmed++;
+      }
+    }
+
+    LOGGER.info("Warmed up {} of {} named queries in {} ms", warmed, QueryNames.SELECT_QUERIES.size(),
+        (System.nanoTime() - start) / 1_000_000);
+    return warmed;
+  }
+
+  /**
+   * Starts {@link #warmUp} on a daemon thread, so it neither delays nor blocks the shutdown of the application.
+   *
+   * @param entityManagerFactory the factory whose named queries are warmed up
+   */
+  public static void warmUpInBackground(EntityManagerFactory entityManagerFactory) {
+
+    Thread thread = new Thread(() -> warmUp(entityManagerFactory), "query-warm-up");
+    thread.setDaemon(true);
+    thread.start();
+  }
+
+  private static boolean execute(EntityManagerFactory entityManagerFactory, String name) {
+
+    EntityManager entityManager = entityManagerFactory.createEntityManager();
+    try {
+      entityManager.getTransaction().begin();
+      Query query = entityManager.createNamedQuery(name);
+      for (Parameter<?> parameter : query.getParameters()) {
+        query.setParameter(parameter.getName(), null);
+      }
+      query.setMaxResults(1);
+      query.getResultList();
+      return true;
+    } catch (RuntimeException e) {
+      LOGGER.debug("Could not warm up named query {}", name, e);
+      return false;
+    } finally {
+      if (entityManager.getTransaction().isActive()) {
+        entityManager.getTransaction().rollback();
+      }
+      entityManager.close();
+    }
+  }
+}
@@ -0,0 +1,116 @@
+package bg.tuvarna.sit.wms.util;
+
+import bg.tuvarna.sit.wms.dto.AgentRatingDTO;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.Optional;
+import java.util.TreeSet;
+import java.util.function.Function;
+
+/**
+ * The agents ranked by their rating: the highest average first, then the most reviews, then the lowest agent ID.
+ * <p>
+ * The ranking is a sorted set indexed by agent, so updating or removing the rating of one agent takes
+ * O(log n) and the agents never have to be sorted again as a whole. The leaderboard is thread-safe.
+ * </p>
+ */
+public class RatingLeaderboard {
+
+  private static final Comparator<AgentRatingDTO> RANKING = Comparator
+      .comparingDouble(AgentRatingDTO::getAverage).reversed()
+      .thenComparing(Comparator.comparingLong(AgentRatingDTO::getReviewCount).reversed())
+      .thenComparing(AgentRatingDTO::getAgentId);
+
+  private final NavigableSet<AgentRatingDTO> ranking = new TreeSet<>(RANKING);
+  private final Map<Long, AgentRatingDTO> ratingsByAgent = new HashMap<>();
+
+  /**
+   * Adds the rating of an agent or replaces its previous one. A rating without reviews removes the agent.
+   *
+   * @param rating the current rating of the agent
+   */
+  public synchronized void update(AgentRatingDTO rating) {
+
+    AgentRatingDTO previous = rating.getReviewCount() > 0
+        ? ratingsByAgent.put(rating.getAgentId(), rating)
+        : ratingsByAgent.remove(rating.getAgentId());
+    if (previous != null) {
+      ranking.remove(previous);
+    }
+    if (rating.getReviewCount() > 0) {
+      ranking.add(rating);
+    }
+  }
+
+  /**
+   * Removes an agent from the leaderboard.
+   *
+   * @param agentId the ID of the agent
+   */
+  public synchronized void remove(Long agentId) {
+
+    AgentRatingDTO previous = ratingsByAgent.remove(agentId);
+    if (previous != null) {
+      ranking.remove(previous);
+    }
+  }
+
+  public synchronized void clear() {
+
+    ranking.clear();
+    ratingsByAgent.clear();
+  }
+
+  public synchronized Optional<AgentRatingDTO> get(Long agentId) {
+    return Optional.ofNullable(ratingsByAgent.get(agentId));
+  }
+
+  public synchronized int size() {
+    return ratingsByAgent.size();
+  }
+
+  /**
+   * Returns the best rated agents.
+   *
+   * @param limit the maximum number of agents to return
+   * @return the ratings of the best agents, best first
+   */
+  public synchronized List<AgentRatingDTO> top(int limit) {
+
+    List<AgentRatingDTO> top = new ArrayList<>(Math.min(limit, ranking.size()));
+    for (AgentRatingDTO rating : ranking) {
+      if (top.size() >= limit) {
+        break;
+      }
+      top.add(rating);
+    }
+    return top;
+  }
+
+  /**
+   * Sorts items which belong to agents by the rank of their agents. Agents without a rating come last,
+   * in their original order.
+   *
+   * @param items   the items to sort
+   * @param agentId the function which returns the ID of the agent of an item
+   * @param <T>     the type of the items
+   * @return a new list of the items, best rated agent first
+   */
+  public <T> List<T> sort(Collection<T> items, Function<T, Long> agentId) {
+
+    Map<Long, AgentRatingDTO> snapshot;
+    synchronized (this) {
+      snapshot = new HashMap<>(ratingsByAgent);
+    }
+
+    List<T> sorted = new ArrayList<>(items);
+    sorted.sort(Comparator.comparing(item -> snapshot.get(agentId.apply(item)),
+        Comparator.nullsLast(RANKING)));
+    return sorted;
+  }
+}
@@ -0,0 +1,133 @@
+package bg.tuvarna.sit.wms.util;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * A concurrent in-memory cache in which concurrent misses for the same key are collapsed
+ * into a single load.
+ * <p>
+ * The first caller that misses a key runs the loader, while the other callers for that key wait
+ * for its result. If the loader fails, the key is removed again, the failure is propagated to the
+ * caller that ran it and every waiting caller retries the load itself.
+ * </p>
+ * <p>
+ * Entries are never expired, so the cache is only meant for small sets of reference data. Values which
+ * are only stored once a transaction commits must not be loaded through {@link #get} inside of that
+ * transaction; look them up with {@link #getIfPresent} and {@link #put} them after the commit instead.
+ * </p>
+ *
+ * @param <K> the type of the keys
+ * @param <V> the type of the cached values
+ */
+public class SingleFlightCache<K, V> {
+
+  private final ConcurrentMap<K, CompletableFuture<V>> entries = new ConcurrentHashMap<>();
+
+  /**
+   * Loads the value for a key that is not in the cache yet.
+   *
+   * @param <T> the type of the value
+   * @param <E> the type of the checked exception the loader may throw
+   */
+  @FunctionalInterface
+  public interface Loader<T, E extends Exception> {
+
+    T load() throws E;
+  }
+
+  /**
+   * Returns the cached value for the key, loading it with the given loader on a miss.
+   *
+   * @param key    the key of the value
+   * @param loader the loader used if the value is not cached yet, must not return null
+   * @param <E>    the type of the checked exception the loader may throw
+   * @return the cached or newly loaded value
+   * @throws E if the loader fails
+   */
+  public <E extends Exception> V get(K key, Loader<V, E> loader) throws E {
+
+    while (true) {
+      CompletableFuture<V> flight = new CompletableFuture<>();
+      CompletableFuture<V> existing = entries.putIfAbsent(key, flight);
+
+      if (existing == null) {
+        return load(key, flight, loader);
+      }
+
+      try {
+        return existing.join();
+      } catch (CompletionException | CancellationException e) {
+        // the caller which owned the load failed and removed the key, so try again
+      }
+    }
+  }
+
+  /**
+   * Returns the cached value for the key, without loading it and without waiting for a running load.
+   *
+   * @param key the key of the value
+   * @return the cached value, or null if it is not cached or still being loaded
+   */
+  public V getIfPresent(K key) {
+
+    CompletableFuture<V> entry = entries.get(key);
+    return entry != null && entry.isDone() && !entry.isCompletedExceptionally() ? entry.join() : null;
+  }
+
+  /**
+   * Adds a value to the cache, unless the key is already cached or being loaded.
+   *
+   * @param key   the key of the value
+   * @param value the value to cache
+   */
+  public void put(K key, V value) {
+
+    entries.putIfAbsent(key, CompletableFuture.completedFuture(value));
+  }
+
+  /**
+   * Removes the value for the given key from the cache.
+   *
+   * @param key the key to remove
+   */
+  public void invalidate(K key) {
+
+    entries.remove(key);
+  }
+
+  /**
+   * Removes all values from the cache.
+   */
+  public void clear() {
+
+    entries.clear();
+  }
+
+  /**
+   * Returns the number of cached and currently loading keys.
+   *
+   * @return the size of the cache
+   */
+  public int size() {
+
+    return entries.size();
+  }
+
+  private <E extends Exception> V load(K key, CompletableFuture<V> flight, Loader<V, E> loader) throws E {
+
+    try {
+      V value = loader.load();
+      flight.complete(value);
+      return value;
+    } finally {
+      if (!flight.isDone()) {
+        entries.remove(key, flight);
+        flight.cancel(false);
+      }
+    }
+  }
+}
@@ -0,0 +1,148 @@
+package bg.tuvarna.sit.wms.util;
+
+import bg.tuvarna.sit.wms.contracts.SqlExecutionListener;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Logs the SQL statements whose execution takes longer than a threshold.
+ * <p>
+ * Every slow statement is counted in {@value #SLOW_STATEMENTS}, tagged with its DAO method. A sample of
+ * them is written to this class' logger, which log4j2 routes to the {@code logs/slow-queries.log} rolling
+ * file, together with the bound parameters, the row count and the service method the statement was
+ * issued from. The values bound to the {@code password} column of the {@code users} table are redacted.
+ * </p>
+ */
+public class SlowQueryLog implements SqlExecutionListener {
+
+  public static final String SLOW_STATEMENTS = "wms.sql.slow";
+
+  static final String REDACTED = "<redacted>";
+
+  private static final Logger LOGGER = LogManager.getLogger(SlowQueryLog.class);
+
+  private static final String SERVICE_PACKAGE = "bg.tuvarna.sit.wms.service.";
+  private static final int MAX_PARAMETER_LENGTH = 100;
+  private static final Pattern USERS_TABLE = Pattern.compile("\\busers\\b", Pattern.CASE_INSENSITIVE);
+  private static final Pattern INSERT_COLUMNS =
+      Pattern.compile("\\binsert\\s+into\\s+\\S+\\s*\\(([^)]*)\\)", Pattern.CASE_INSENSITIVE);
+  private static final Pattern COMPARED_COLUMN =
+      Pattern.compile("([\\w.]+)\\s*(?:=|<>|!=|<=|>=|<|>|\\blike)\\s*$", Pattern.CASE_INSENSITIVE);
+  private static final String SECRET_COLUMN = "password";
+
+  private final long thresholdNanos;
+  private final double sampleRate;
+  private final MeterRegistry meterRegistry;
+
+  /**
+   * Creates the slow query log.
+   *
+   * @param thresholdMillis the execution time above which a statement is considered slow
+   * @param sampleRate      the share of the slow statements which are written to the log, from 0 to 1
+   * @param meterRegistry   the registry in which the slow statements are counted
+   */
+  public SlowQueryLog(long thresholdMillis, double sampleRate, MeterRegistry meterRegistry) {
+
+    this.thresholdNanos = TimeUnit.MILLISECONDS.toNanos(thresholdMillis);
+    this.sampleRate = sampleRate;
+    this.meterRegistry = meterRegistry;
+  }
+
+  @Override
+  public void onExecution(SqlExecution execution) {
+
+    if (execution.elapsedNanos() < thresholdNanos) {
+      return;
+    }
+
+    Counter.builder(SLOW_STATEMENTS)
+        .description("SQL statements which exceeded the slow query threshold")
+        .tag("dao", execution.tag())
+        .register(meterRegistry)
+        .increment();
+
+    if (isSampled() && LOGGER.isWarnEnabled()) {
+      LOGGER.warn("Slow SQL {} ms, rows={}, failed={}, dao={}, service={}, sql=[{}], parameters={}",
+          TimeUnit.NANOSECONDS.toMillis(execution.elapsedNanos()), execution.rows(), execution.failed(),
+          execution.tag(), SqlStatementInspector.findCaller(SERVICE_PACKAGE).orElse("-"), execution.sql(),
+          redact(execution.sql(), execution.parameters()));
+    }
+  }
+
+  /**
+   * Tells whether a slow statement is written to the log.
+   *
+   * @return true for the share of the calls given by the sample rate
+   */
+  boolean isSampled() {
+
+    return sampleRate >= 1 || sampleRate > 0 && ThreadLocalRandom.current().nextDouble() < sampleRate;
+  }
+
+  /**
+   * Formats the parameters bound to a statement for the log, replacing the values bound to
+   * {@code users.password} and shortening long values.
+   *
+   * @param sql        the SQL of the statement
+   * @param parameters the values bound to its parameters, in order
+   * @return the printable values, in order
+   */
+  static List<String> redact(String sql, List<Object> parameters) {
+
+    List<String> columns = USERS_TABLE.matcher(sql).find() ? boundColumns(sql) : List.of();
+    List<String> printable = new ArrayList<>(parameters.size());
+    for (int i = 0; i < parameters.size(); i++) {
+      boolean secret = i < columns.size() && SECRET_COLUMN.equalsIgnoreCase(columns.get(i));
+      printable.add(secret ? REDACTED : format(parameters.get(i)));
+    }
+    return printable;
+  }
+
+  /**
+   * Finds the column each parameter of the statement is bound to, from the column list of an insert or
+   * from the column a placeholder is compared with or assigned to.
+   *
+   * @param sql the SQL of the statement
+   * @return the unqualified column of each placeholder, in order, or an empty string where it is unknown
+   */
+  private static List<String> boundColumns(String sql) {
+
+    List<String> columns = new ArrayList<>();
+    Matcher insert = INSERT_COLUMNS.matcher(sql);
+    if (insert.find()) {
+      for (String column : insert.group(1).split(",")) {
+        columns.add(column.strip());
+      }
+      return columns;
+    }
+
+    int start = 0;
+    for (int placeholder = sql.indexOf('?'); placeholder >= 0; placeholder = sql.indexOf('?', placeholder + 1)) {
+      Matcher compared = COMPARED_COLUMN.matcher(sql.substring(start, placeholder));
+      String column = compared.find() ? compared.group(1) : "";
+      columns.add(column.substring(column.lastIndexOf('.') + 1));
+      start = placeholder + 1;
+    }
+    return columns;
+  }
+
+  private static String format(Object value) {
+
+    if (value == null) {
+      return "null";
+    }
+    if (value instanceof byte[] bytes) {
+      return "<" + bytes.length + " bytes>";
+    }
+    String text = value instanceof String ? "'" + value + "'" : String.valueOf(value);
+    return text.length() > MAX_PARAMETER_LENGTH ? text.substring(0, MAX_PARAMETER_LENGTH) + "..." : text;
+  }
+}
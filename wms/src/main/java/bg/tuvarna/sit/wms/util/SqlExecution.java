@@ -0,0 +1,18 @@
+package bg.tuvarna.sit.wms.util;
+
+import java.util.List;
+
+/**
+ * A finished execution of a SQL statement.
+ *
+ * @param sql          the SQL of the statement, including the tag added by {@link SqlStatementInspector}
+ * @param parameters   the values bound to the parameters of a prepared statement, in order, with
+ *                     {@code null} for parameters bound to SQL NULL or not bound at all
+ * @param tag          the DAO method which issued the statement, or {@value SqlStatementInspector#UNTAGGED}
+ * @param type         the kind of statement, such as {@code select} or {@code update}
+ * @param elapsedNanos the time spent executing the statement, without reading its results
+ * @param rows         the number of rows read from the result, or the number of rows changed by an update
+ * @param failed       whether the execution threw an exception
+ */
+public record SqlExecution(String sql, List<Object> parameters, String tag, String type, long elapsedNanos, long rows, boolean failed) {
+}
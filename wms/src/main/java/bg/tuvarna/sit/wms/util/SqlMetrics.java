@@ -0,0 +1,67 @@
+package bg.tuvarna.sit.wms.util;
+
+import bg.tuvarna.sit.wms.contracts.SqlExecutionListener;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Records every executed SQL statement in the metrics registry, tagged with the DAO method which issued it.
+ * <p>
+ * {@value #STATEMENTS} is a timer of the execution time, whose count is the number of executed statements.
+ * It publishes a percentile histogram between {@link #MIN_EXPECTED_TIME} and {@link #MAX_EXPECTED_TIME} and
+ * a cumulative count for each of the {@link #SLO_BOUNDARIES}, so the latency distribution of a DAO method is
+ * exported rather than only its total and maximum. {@value #ROWS} is a distribution of the rows read or changed per statement. Both are tagged with
+ * {@code dao}, {@code type} and {@code outcome}, and are exported over JMX by {@link MetricsUtil}.
+ * </p>
+ */
+public class SqlMetrics implements SqlExecutionListener {
+
+  public static final String STATEMENTS = "wms.sql.statements";
+  public static final String ROWS = "wms.sql.rows";
+
+  /**
+   * The execution times whose counts are always exported, from an index lookup to a slow report query.
+   */
+  static final Duration[] SLO_BOUNDARIES = {
+      Duration.ofMillis(1), Duration.ofMillis(5), Duration.ofMillis(10), Duration.ofMillis(50),
+      Duration.ofMillis(100), Duration.ofMillis(500), Duration.ofSeconds(1)
+  };
+  static final Duration MIN_EXPECTED_TIME = Duration.ofNanos(100_000);
+  static final Duration MAX_EXPECTED_TIME = Duration.ofSeconds(10);
+
+  private final MeterRegistry meterRegistry;
+
+  public SqlMetrics(MeterRegistry meterRegistry) {
+    this.meterRegistry = meterRegistry;
+  }
+
+  @Override
+  public void onExecution(SqlExecution execution) {
+
+    String outcome = execution.failed() ? "error" : "success";
+
+    Timer.builder(STATEMENTS)
+        .description("Execution time of the SQL statements issued by a DAO method")
+        .tag("dao", execution.tag())
+        .tag("type", execution.type())
+        .tag("outcome", outcome)
+        .publishPercentileHistogram()
+        .serviceLevelObjectives(SLO_BOUNDARIES)
+        .minimumExpectedValue(MIN_EXPECTED_TIME)
+        .maximumExpectedValue(MAX_EXPECTED_TIME)
+        .register(meterRegistry)
+        .record(execution.elapsedNanos(), TimeUnit.NANOSECONDS);
+
+    DistributionSummary.builder(ROWS)
+        .description("Rows read or changed by the SQL statements issued by a DAO method")
+        .baseUnit("rows")
+        .tag("dao", execution.tag())
+        .tag("type", execution.type())
+        .tag("outcome", outcome)
+        .register(meterRegistry)
+        .record(execution.rows());
+  }
+}
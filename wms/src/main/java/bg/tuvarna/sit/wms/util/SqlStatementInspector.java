@@ -0,0 +1,85 @@
+package bg.tuvarna.sit.wms.util;
+
+import java.util.Optional;
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+
+/**
+ * Tags every SQL statement prepared by Hibernate with the DAO method it originates from.
+ * <p>
+ * The tag, for example {@code WarehouseDAO.getAll}, is prepended to the statement as a SQL comment,
+ * so it also shows up in the process list and the slow query log of the database. The
+ * {@link InstrumentedDataSource} reads it back to label the statement metrics. Statements which are not
+ * issued from a DAO, such as schema updates, are left unchanged.
+ * </p>
+ * <p>
+ * Registered with the {@code hibernate.session_factory.statement_inspector} property.
+ * </p>
+ */
+public class SqlStatementInspector implements StatementInspector {
+
+  /**
+   * The tag of statements which were not issued from a DAO.
+   */
+  public static final String UNTAGGED = "untagged";
+
+  private static final String DAO_PACKAGE = "bg.tuvarna.sit.wms.dao.";
+  private static final String DAO_BASE_PACKAGE = "bg.tuvarna.sit.wms.dao.base.";
+  private static final String TAG_START = "/* ";
+  private static final String TAG_END = " */ ";
+  private static final StackWalker STACK_WALKER = StackWalker.getInstance();
+
+  @Override
+  public String inspect(String sql) {
+
+    return findCaller(DAO_PACKAGE)
+        .map(caller -> TAG_START + caller + TAG_END + sql)
+        .orElse(sql);
+  }
+
+  /**
+   * Returns the tag which {@link #inspect} prepended to the given SQL.
+   *
+   * @param sql the SQL of a statement
+   * @return the DAO method which issued the statement, or {@value #UNTAGGED}
+   */
+  public static String tagOf(String sql) {
+
+    if (sql == null || !sql.startsWith(TAG_START)) {
+      return UNTAGGED;
+    }
+    int end = sql.indexOf(TAG_END, TAG_START.length());
+    return end < 0 ? UNTAGGED : sql.substring(TAG_START.length(), end);
+  }
+
+  /**
+   * Finds the innermost method of the current call stack which belongs to a class in the given package.
+   * Lambdas are reported as the method they are declared in.
+   *
+   * @param packagePrefix the package of the wanted caller, ending with a dot
+   * @return the caller as {@code SimpleClassName.method}, or an empty Optional if there is none
+   */
+  public static Optional<String> findCaller(String packagePrefix) {
+
+    return STACK_WALKER.walk(frames -> frames
+        .filter(frame -> frame.getClassName().startsWith(packagePrefix)
+            && !frame.getClassName().startsWith(DAO_BASE_PACKAGE))
+        .findFirst()
+        .map(frame -> simpleClassName(frame.getClassName()) + "." + methodName(frame.getMethodName())));
+  }
+
+  private static String simpleClassName(String className) {
+
+    String simpleName = className.substring(className.lastIndexOf('.') + 1);
+    int nested = simpleName.indexOf('$');
+    return nested < 0 ? simpleName : simpleName.substring(0, nested);
+  }
+
+  private static String methodName(String methodName) {
+
+    if (methodName.startsWith("lambda$")) {
+      int end = methodName.indexOf('$', "lambda$".length());
+      return end < 0 ? methodName : methodName.substring("lambda$".length(), end);
+    }
+    return methodName;
+  }
+}
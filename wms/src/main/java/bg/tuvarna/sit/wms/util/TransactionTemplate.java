@@ -0,0 +1,275 @@
+package bg.tuvarna.sit.wms.util;
+
+import bg.tuvarna.sit.wms.contracts.TransactionCallback;
+import bg.tuvarna.sit.wms.contracts.TransactionWork;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.EntityTransaction;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.hibernate.FlushMode;
+import org.hibernate.Session;
+
+/**
+ * Runs units of work inside a single resource-local transaction.
+ * <p>
+ * The entity manager of the outermost transaction is bound to the current thread for its whole
+ * duration. Nested calls on the same thread, including the DAOs extending
+ * {@link bg.tuvarna.sit.wms.dao.base.BaseDAO}, join that entity manager instead of opening their own,
+ * so a whole service operation is served by one connection checkout and one commit.
+ * </p>
+ * <p>
+ * Only the outermost call begins, commits and rolls back the transaction. Exceptions thrown by
+ * the unit of work are propagated unchanged after the rollback.
+ * </p>
+ * <p>
+ * Actions registered with {@link #afterCommit} run once the outermost transaction has committed,
+ * and are discarded if it is rolled back.
+ * </p>
+ */
+public class TransactionTemplate {
+
+  private static final Logger LOGGER = LogManager.getLogger(TransactionTemplate.class);
+
+  private static final ThreadLocal<Map<EntityManagerFactory, EntityManager>> BOUND_ENTITY_MANAGERS =
+          ThreadLocal.withInitial(IdentityHashMap::new);
+  private static final ThreadLocal<Map<EntityManagerFactory, List<Runnable>>> AFTER_COMMIT_ACTIONS =
+          ThreadLocal.withInitial(IdentityHashMap::new);
+
+  private final EntityManagerFactory entityManagerFactory;
+
+  public TransactionTemplate(EntityManagerFactory entityManagerFactory) {
+    this.entityManagerFactory = entityManagerFactory;
+  }
+
+  /**
+   * Returns the entity manager bound to the current thread for the given factory, if the thread
+   * is currently running inside a transaction started by a {@code TransactionTemplate}.
+   *
+   * @param entityManagerFactory the factory the entity manager was created from
+   * @return an Optional of the bound entity manager, or an empty Optional outside of a transaction
+   */
+  public static Optional<EntityManager> getBoundEntityManager(EntityManagerFactory entityManagerFactory) {
+
+    return Optional.ofNullable(BOUND_ENTITY_MANAGERS.get().get(entityManagerFactory));
+  }
+
+  /**
+   * Tells whether the current thread is running inside a transaction of this template's factory,
+   * in which case the next call joins it instead of starting its own.
+   *
+   * @return true if a transaction is bound to the current thread
+   */
+  public boolean isInTransaction() {
+
+    return getBoundEntityManager(entityManagerFactory).isPresent();
+  }
+
+  /**
+   * Executes the given callback inside a transaction and returns its result.
+   * Joins the transaction already bound to the current thread, if there is one.
+   *
+   * @param callback the unit of work to execute
+   * @param <T>      the type of the result
+   * @param <E>      the type of the checked exception the callback may throw
+   * @return the result of the callback
+   * @throws E if the callback fails, after the transaction has been rolled back
+   */
+  public <T, E extends Exception> T inTransaction(TransactionCallback<T, E> callback) throws E {
+
+    Optional<EntityManager> boundEntityManager = getBoundEntityManager(entityManagerFactory);
+    if (boundEntityManager.isPresent()) {
+      return callback.doInTransaction(boundEntityManager.get());
+    }
+
+    EntityManager em = entityManagerFactory.createEntityManager();
+    EntityTransaction transaction = em.getTransaction();
+    Map<EntityManagerFactory, EntityManager> boundEntityManagers = BOUND_ENTITY_MANAGERS.get();
+    List<Runnable> afterCommitActions = List.of();
+    T result;
+
+    try {
+      boundEntityManagers.put(entityManagerFactory, em);
+      transaction.begin();
+      result = callback.doInTransaction(em);
+      transaction.commit();
+    } catch (Exception e) {
+      rollback(transaction);
+      throw e;
+    } finally {
+      boundEntityManagers.remove(entityManagerFactory);
+      if (boundEntityManagers.isEmpty()) {
+        BOUND_ENTITY_MANAGERS.remove();
+      }
+      afterCommitActions = takeAfterCommitActions();
+      em.close();
+    }
+
+    afterCommitActions.forEach(TransactionTemplate::runAfterCommit);
+    return result;
+  }
+
+  /**
+   * Runs the given action once the transaction bound to the current thread has committed, or right away
+   * if the thread is not running inside a transaction. The action is discarded if the transaction is
+   * rolled back. A failing action is logged and does not affect the other actions.
+   *
+   * @param action the action to run
+   */
+  public void afterCommit(Runnable action) {
+
+    if (isInTransaction()) {
+      AFTER_COMMIT_ACTIONS.get().computeIfAbsent(entityManagerFactory, factory -> new ArrayList<>()).add(action);
+    } else {
+      runAfterCommit(action);
+    }
+  }
+
+  /**
+   * Executes the given work inside a transaction.
+   * Joins the transaction already bound to the current thread, if there is one.
+   *
+   * @param work the unit of work to execute
+   * @param <E>  the type of the checked exception the work may throw
+   * @throws E if the work fails, after the transaction has been rolled back
+   */
+  public <E extends Exception> void runInTransaction(TransactionWork<E> work) throws E {
+
+    inTransaction(em -> {
+      work.doInTransaction(em);
+      return null;
+    });
+  }
+
+  /**
+   * Executes the given callback with an entity manager, but without starting a transaction.
+   * Reuses the entity manager bound to the current thread, if there is one, and otherwise
+   * creates a new one which is closed once the callback completes.
+   *
+   * @param callback the unit of work to execute
+   * @param <T>      the type of the result
+   * @param <E>      the type of the checked exception the callback may throw
+   * @return the result of the callback
+   * @throws E if the callback fails
+   */
+  public <T, E extends Exception> T withEntityManager(TransactionCallback<T, E> callback) throws E {
+
+    Optional<EntityManager> boundEntityManager = getBoundEntityManager(entityManagerFactory);
+    if (boundEntityManager.isPresent()) {
+      return callback.doInTransaction(boundEntityManager.get());
+    }
+
+    EntityManager em = entityManagerFactory.createEntityManager();
+    try {
+      return callback.doInTransaction(em);
+    } finally {
+      em.close();
+    }
+  }
+
+  /**
+   * Executes the given callback in a read-only unit of work and returns its result.
+   * <p>
+   * Outside of a transaction a new entity manager is opened whose session loads every entity read-only,
+   * so no snapshots are kept for dirty checking, and never flushes. Its connection is flagged read-only
+   * for the duration of the transaction where the driver allows it, and reset before it is released.
+   * The entity manager is not bound to the thread, so DAO calls made from the callback never write
+   * through it. Inside a transaction the callback joins it, since the outer unit of work may still write.
+   * </p>
+   *
+   * @param callback the unit of work to execute
+   * @param <T>      the type of the result
+   * @param <E>      the type of the checked exception the callback may throw
+   * @return the result of the callback
+   * @throws E if the callback fails
+   */
+  public <T, E extends Exception> T readOnly(TransactionCallback<T, E> callback) throws E {
+
+    Optional<EntityManager> boundEntityManager = getBoundEntityManager(entityManagerFactory);
+    if (boundEntityManager.isPresent()) {
+      return callback.doInTransaction(boundEntityManager.get());
+    }
+
+    EntityManager em = entityManagerFactory.createEntityManager();
+    Session session = em.unwrap(Session.class);
+    session.setDefaultReadOnly(true);
+    session.setHibernateFlushMode(FlushMode.MANUAL);
+    EntityTransaction transaction = em.getTransaction();
+
+    try {
+      transaction.begin();
+      T result;
+      setConnectionReadOnly(session, true);
+      try {
+        result = callback.doInTransaction(em);
+      } finally {
+        setConnectionReadOnly(session, false);
+      }
+      transaction.commit();
+
+      return result;
+    } catch (Exception e) {
+      rollback(transaction);
+      throw e;
+    } finally {
+      em.close();
+    }
+  }
+
+  private List<Runnable> takeAfterCommitActions() {
+
+    Map<EntityManagerFactory, List<Runnable>> actions = AFTER_COMMIT_ACTIONS.get();
+    List<Runnable> taken = actions.remove(entityManagerFactory);
+    if (actions.isEmpty()) {
+      AFTER_COMMIT_ACTIONS.remove();
+    }
+    return taken == null ? List.of() : taken;
+  }
+
+  private static void runAfterCommit(Runnable action) {
+
+    try {
+      action.run();
+    } catch (RuntimeException e) {
+      LOGGER.error("After-commit action failed", e);
+    }
+  }
+
+  /**
+   * Changes the read-only flag of the connection of the session. The flag is only a hint,
+   * so drivers refusing it are logged and ignored.
+   *
+   * @param session  the session whose connection is flagged
+   * @param readOnly the new value of the flag
+   */
+  private void setConnectionReadOnly(Session session, boolean readOnly) {
+
+    try {
+      session.doWork(connection -> connection.setReadOnly(readOnly));
+    } catch (Exception e) {
+      LOGGER.debug("The read-only flag of the connection could not be changed", e);
+    }
+  }
+
+  /**
+   * Rolls back the transaction if it is still active. Rollback failures are logged,
+   * so that the exception which caused the rollback is the one propagated to the caller.
+   *
+   * @param transaction the transaction to roll back
+   */
+  private void rollback(EntityTransaction transaction) {
+
+    try {
+      if (transaction.isActive()) {
+        transaction.rollback();
+      }
+    } catch (Exception e) {
+      LOGGER.error("Transaction rollback failed", e);
+    }
+  }
+}
@@ -0,0 +1,397 @@
+package bg.tuvarna.sit.wms.util;
+
+import bg.tuvarna.sit.wms.dto.WarehouseDTO;
+import bg.tuvarna.sit.wms.dto.WarehouseSearchQuery;
+import bg.tuvarna.sit.wms.dto.WarehouseSearchResult;
+import bg.tuvarna.sit.wms.enums.ClimateCondition;
+import bg.tuvarna.sit.wms.enums.WarehouseStatus;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * An in-memory inverted index of the warehouses for faceted search.
+ * <p>
+ * Every warehouse is stored in a dense document slot, and every value of the climate condition, status,
+ * city, country and storage type facets has a bitmap of the slots of its warehouses. A search combines
+ * the bitmaps of the selected values with bitwise operations, so filtering and counting the facets take
+ * time proportional to the number of slots divided by the word size, instead of a scan of the warehouses.
+ * The sizes are kept in a sorted map, so a size range only visits the warehouses within it.
+ * </p>
+ * <p>
+ * Warehouses are added, replaced, changed and removed one at a time, and the slots of removed warehouses
+ * are reused. The index keeps its own copies of the warehouses and returns copies from searches, so changes
+ * to them never reach the bitmaps. The index is thread-safe: searches run concurrently and block only while it
+ * is changed.
+ * </p>
+ */
+public class WarehouseSearchIndex {
+
+  private static final Comparator<WarehouseDTO> BY_ID = Comparator.comparing(WarehouseDTO::getId);
+
+  private final ReadWriteLock lock = new ReentrantReadWriteLock();
+  private final List<WarehouseDTO> documents = new ArrayList<>();
+  private final Map<Long, Integer> slotsByWarehouse = new HashMap<>();
+  private final Deque<Integer> freeSlots = new ArrayDeque<>();
+  private final BitSet live = new BitSet();
+
+  private final Facet<ClimateCondition> climateConditions =
+      new Facet<>(WarehouseDTO::getClimateCondition, () -> new EnumMap<>(ClimateCondition.class));
+  private final Facet<WarehouseStatus> statuses =
+      new Facet<>(WarehouseDTO::getStatus, () -> new EnumMap<>(WarehouseStatus.class));
+  private final Facet<String> cities = new Facet<>(WarehouseDTO::getCityName, TreeMap::new);
+  private final Facet<String> countries = new Facet<>(WarehouseDTO::getCountryName, TreeMap::new);
+  private final Facet<String> storageTypes = new Facet<>(WarehouseDTO::getStorageType, TreeMap::new);
+  private final List<Facet<?>> facets = List.of(climateConditions, statuses, cities, countries, storageTypes);
+  private final NavigableMap<Double, Set<Integer>> slotsBySize = new TreeMap<>();
+
+  /**
+   * Adds the given warehouses, replacing those which are already indexed.
+   *
+   * @param warehouses the warehouses
+   */
+  public void putAll(Collection<WarehouseDTO> warehouses) {
+
+    lock.writeLock().lock();
+    try {
+      warehouses.forEach(this::doPut);
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  /**
+   * Adds a warehouse, or replaces it if it is already indexed.
+   *
+   * @param warehouse the warehouse
+   */
+  public void put(WarehouseDTO warehouse) {
+
+    lock.writeLock().lock();
+    try {
+      doPut(warehouse);
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  /**
+   * Moves an indexed warehouse to another status.
+   *
+   * @param warehouseId the ID of the warehouse
+   * @param status      the new status of the warehouse
+   * @return true if the warehouse is indexed, false otherwise
+   */
+  public boolean updateStatus(Long warehouseId, WarehouseStatus status) {
+
+    lock.writeLock().lock();
+    try {
+      Integer slot = slotsByWarehouse.get(warehouseId);
+      if (slot == null) {
+        return false;
+      }
+      WarehouseDTO current = documents.get(slot);
+      if (current.getStatus() != status) {
+        WarehouseDTO changed = copy(current);
+        changed.setStatus(status);
+        changed.setVersion(current.getVersion() + 1);
+        doPut(changed);
+      }
+      return true;
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  /**
+   * Removes a warehouse from the index.
+   *
+   * @param warehouseId the ID of the warehouse
+   */
+  public void remove(Long warehouseId) {
+
+    lock.writeLock().lock();
+    try {
+      Integer slot = slotsByWarehouse.remove(warehouseId);
+      if (slot != null) {
+        unindex(slot);
+        documents.set(slot, null);
+        live.clear(slot);
+        freeSlots.push(slot);
+      }
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  public void clear() {
+
+    lock.writeLock().lock();
+    try {
+      documents.clear();
+      slotsByWarehouse.clear();
+      freeSlots.clear();
+      live.clear();
+      facets.forEach(Facet::clear);
+      slotsBySize.clear();
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  public int size() {
+
+    lock.readLock().lock();
+    try {
+      return slotsByWarehouse.size();
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  /**
+   * Finds the warehouses matching the query and counts the values of every facet.
+   *
+   * @param query the filters of the search
+   * @return copies of the first {@link WarehouseSearchQuery#getLimit()} matching warehouses by ID, the number
+   *     of all matches and the facet counts
+   */
+  public WarehouseSearchResult search(WarehouseSearchQuery query) {
+
+    lock.readLock().lock();
+    try {
+      BitSet sizeFilter = sizeFilter(query.getMinSize(), query.getMaxSize());
+      BitSet climateFilter = climateConditions.union(query.getClimateConditions());
+      BitSet statusFilter = statuses.union(query.getStatuses());
+      BitSet cityFilter = cities.union(query.getCityNames());
+      BitSet countryFilter = countries.union(query.getCountryNames());
+      BitSet storageTypeFilter = storageTypes.union(query.getStorageTypes());
+
+      BitSet matches = intersect(sizeFilter, climateFilter, statusFilter, cityFilter, countryFilter,
+          storageTypeFilter);
+
+      return new WarehouseSearchResult(firstById(matches, query.getLimit()), matches.cardinality(),
+          climateConditions.counts(intersect(sizeFilter, statusFilter, cityFilter, countryFilter, storageTypeFilter)),
+          statuses.counts(intersect(sizeFilter, climateFilter, cityFilter, countryFilter, storageTypeFilter)),
+          cities.counts(intersect(sizeFilter, climateFilter, statusFilter, countryFilter, storageTypeFilter)),
+          countries.counts(intersect(sizeFilter, climateFilter, statusFilter, cityFilter, storageTypeFilter)),
+          storageTypes.counts(intersect(sizeFilter, climateFilter, statusFilter, cityFilter, countryFilter)));
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  /**
+   * Selects the matching warehouses with the lowest IDs. The slots are reused, so they are not in ID order, and
+   * the warehouses with the lowest IDs are kept in a heap of at most {@code limit} entries while the matches
+   * are visited, which takes O(m log limit) time for m matches. Only the selected warehouses are sorted and
+   * copied, so the callers can not change the documents of the index.
+   */
+  private List<WarehouseDTO> firstById(BitSet matches, int limit) {
+
+    PriorityQueue<WarehouseDTO> lowest = new PriorityQueue<>(BY_ID.reversed());
+    if (limit > 0) {
+      for (int slot = matches.nextSetBit(0); slot >= 0; slot = matches.nextSetBit(slot + 1)) {
+        WarehouseDTO document = documents.get(slot);
+        if (lowest.size() < limit) {
+          lowest.add(document);
+        } else if (document.getId() < lowest.peek().getId()) {
+          lowest.poll();
+          lowest.add(document);
+        }
+      }
+    }
+
+    List<WarehouseDTO> warehouses = new ArrayList<>(lowest.size());
+    lowest.forEach(document -> warehouses.add(copy(document)));
+    warehouses.sort(BY_ID);
+    return warehouses;
+  }
+
+  private void doPut(WarehouseDTO warehouse) {
+
+    WarehouseDTO document = copy(warehouse);
+    Integer slot = slotsByWarehouse.get(document.getId());
+    if (slot != null) {
+      unindex(slot);
+    } else {
+      slot = freeSlots.isEmpty() ? documents.size() : freeSlots.pop();
+      if (slot == documents.size()) {
+        documents.add(null);
+      }
+      slotsByWarehouse.put(document.getId(), slot);
+    }
+
+    documents.set(slot, document);
+    live.set(slot);
+    for (Facet<?> facet : facets) {
+      facet.add(document, slot);
+    }
+    if (document.getSize() != null) {
+      slotsBySize.computeIfAbsent(document.getSize(), size -> new HashSet<>()).add(slot);
+    }
+  }
+
+  private void unindex(int slot) {
+
+    WarehouseDTO document = documents.get(slot);
+    for (Facet<?> facet : facets) {
+      facet.remove(document, slot);
+    }
+    Set<Integer> sameSize = document.getSize() == null ? null : slotsBySize.get(document.getSize());
+    if (sameSize != null) {
+      sameSize.remove(slot);
+      if (sameSize.isEmpty()) {
+        slotsBySize.remove(document.getSize());
+      }
+    }
+  }
+
+  /**
+   * Returns the slots of the warehouses within the size range.
+   *
+   * @return the slots, or null if the range is unbounded
+   */
+  private BitSet sizeFilter(Double minSize, Double maxSize) {
+
+    if (minSize == null && maxSize == null) {
+      return null;
+    }
+    NavigableMap<Double, Set<Integer>> range = slotsBySize;
+    if (minSize != null) {
+      range = range.tailMap(minSize, true);
+    }
+    if (maxSize != null) {
+      range = range.headMap(maxSize, true);
+    }
+
+    BitSet slots = new BitSet(documents.size());
+    range.values().forEach(sameSize -> sameSize.forEach(slots::set));
+    return slots;
+  }
+
+  /**
+   * Intersects the live slots with the given filters, skipping the filters which are null.
+   */
+  private BitSet intersect(BitSet... filters) {
+
+    BitSet result = (BitSet) live.clone();
+    for (BitSet filter : filters) {
+      if (filter != null) {
+        result.and(filter);
+      }
+    }
+    return result;
+  }
+
+  private static WarehouseDTO copy(WarehouseDTO warehouse) {
+
+    WarehouseDTO copy = new WarehouseDTO(warehouse.getId(), warehouse.getName(), warehouse.getStreet(),
+        warehouse.getCityName(), warehouse.getCountryName(), warehouse.getZipCode(), warehouse.getStorageType(),
+        warehouse.getStorageTypeDescription(), warehouse.getSize(), warehouse.getStatus(),
+        warehouse.getClimateCondition(), warehouse.getVersion());
+    copy.setOwner(warehouse.getOwner());
+    return copy;
+  }
+
+  /**
+   * The bitmaps of the values of one facet.
+   *
+   * @param <K> the type of the facet values
+   */
+  private static final class Facet<K> {
+
+    private final Function<WarehouseDTO, K> valueOf;
+    private final Map<K, BitSet> bitmaps;
+
+    /**
+     * Creates a facet whose bitmaps are kept in the map of the given factory, which also decides the order of
+     * the facet counts.
+     */
+    private Facet(Function<WarehouseDTO, K> valueOf, Supplier<Map<K, BitSet>> bitmapsFactory) {
+
+      this.valueOf = valueOf;
+      this.bitmaps = bitmapsFactory.get();
+    }
+
+    private void add(WarehouseDTO document, int slot) {
+
+      K value = valueOf.apply(document);
+      if (value != null) {
+        bitmaps.computeIfAbsent(value, key -> new BitSet()).set(slot);
+      }
+    }
+
+    private void remove(WarehouseDTO document, int slot) {
+
+      K value = valueOf.apply(document);
+      BitSet bitmap = value == null ? null : bitmaps.get(value);
+      if (bitmap != null) {
+        bitmap.clear(slot);
+        if (bitmap.isEmpty()) {
+          bitmaps.remove(value);
+        }
+      }
+    }
+
+    private void clear() {
+      bitmaps.clear();
+    }
+
+    /**
+     * Returns the slots of the warehouses with any of the given values.
+     *
+     * @return the slots, or null if no values are given and the facet does not filter
+     */
+    private BitSet union(Collection<K> values) {
+
+      if (values == null || values.isEmpty()) {
+        return null;
+      }
+      BitSet union = new BitSet();
+      for (K value : values) {
+        BitSet bitmap = bitmaps.get(value);
+        if (bitmap != null) {
+          union.or(bitmap);
+        }
+      }
+      return union;
+    }
+
+    /**
+     * Counts the slots of each value among the given slots, leaving out the values without any.
+     */
+    private Map<K, Integer> counts(BitSet slots) {
+
+      Map<K, Integer> counts = new LinkedHashMap<>();
+      BitSet scratch = new BitSet();
+      bitmaps.forEach((value, bitmap) -> {
+        scratch.clear();
+        scratch.or(bitmap);
+        scratch.and(slots);
+        int count = scratch.cardinality();
+        if (count > 0) {
+          counts.put(value, count);
+        }
+      });
+      return counts;
+    }
+  }
+}
@@ -3,6 +3,8 @@ package bg.tuvarna.sit.wms.dao;
 import bg.tuvarna.sit.wms.entities.City;
 import bg.tuvarna.sit.wms.entities.Country;
 import bg.tuvarna.sit.wms.exceptions.CityDAOException;
+import bg.tuvarna.sit.wms.util.CacheRegions;
+import org.hibernate.annotations.QueryHints;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.InjectMocks;
@@ -92,7 +94,7 @@ class CityDAOTest {
     expectedCity.setName("City1");
     country.setName("Country1");
     expectedCity.setCountry(country);
-    when(entityManager.createQuery(anyString(), eq(City.class))).thenReturn(query);
+    when(entityManager.createNamedQuery(anyString(), eq(City.class))).thenReturn(query);
     when(query.setParameter("name", expectedCity.getName())).thenReturn(query);
     when(query.setParameter("country", expectedCity.getCountry())).thenReturn(query);
     when(query.getSingleResult()).thenReturn(expectedCity);
@@ -103,6 +105,8 @@ class CityDAOTest {
     assertEquals(expectedCity.getName(), result.get().getName());
     assertEquals(expectedCity.getCountry().getName(), result.get().getCountry().getName());
 
+    verify(query).setHint(QueryHints.CACHEABLE, true);
+    verify(query).setHint(QueryHints.CACHE_REGION, CacheRegions.CITY_BY_NAME_AND_COUNTRY_QUERY);
     verify(transaction).begin();
     verify(transaction).commit();
     verify(entityManager).close();
@@ -114,7 +118,7 @@ class CityDAOTest {
     String nonExistentCityName = "Non Existent City";
     Country country = new Country();
     country.setName("Country1");
-    when(entityManager.createQuery(anyString(), eq(City.class))).thenReturn(query);
+    when(entityManager.createNamedQuery(anyString(), eq(City.class))).thenReturn(query);
     when(query.setParameter("name", nonExistentCityName)).thenReturn(query);
     when(query.setParameter("country", country)).thenReturn(query);
     when(query.getSingleResult()).thenThrow(new NoResultException());
@@ -134,7 +138,7 @@ class CityDAOTest {
     String cityName = "City1";
     Country country = new Country();
     country.setName("Country1");
-    when(entityManager.createQuery(anyString(), eq(City.class))).thenReturn(query);
+    when(entityManager.createNamedQuery(anyString(), eq(City.class))).thenReturn(query);
     when(query.setParameter("name", cityName)).thenReturn(query);
     when(query.setParameter("country", country)).thenReturn(query);
     when(query.getSingleResult()).thenThrow(new RuntimeException("Exception during retrieval"));
@@ -2,6 +2,8 @@ package bg.tuvarna.sit.wms.dao;
 
 import bg.tuvarna.sit.wms.entities.Country;
 import bg.tuvarna.sit.wms.exceptions.CountryDAOException;
+import bg.tuvarna.sit.wms.util.CacheRegions;
+import org.hibernate.annotations.QueryHints;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.InjectMocks;
@@ -89,7 +91,7 @@ class CountryDAOTest {
     Country expectedCountry = new Country();
     expectedCountry.setName(countryName);
 
-    when(entityManager.createQuery(anyString(), eq(Country.class))).thenReturn(query);
+    when(entityManager.createNamedQuery(anyString(), eq(Country.class))).thenReturn(query);
     when(query.setParameter("name", countryName)).thenReturn(query);
     when(query.getSingleResult()).thenReturn(expectedCountry);
 
@@ -99,6 +101,8 @@ class CountryDAOTest {
     assertEquals(expectedCountry, result.get());
 
     verify(transaction).begin();
+    verify(query).setHint(QueryHints.CACHEABLE, true);
+    verify(query).setHint(QueryHints.CACHE_REGION, CacheRegions.COUNTRY_BY_NAME_QUERY);
     verify(query).setParameter("name", countryName);
     verify(query).getSingleResult();
     verify(transaction).commit();
@@ -109,7 +113,7 @@ class CountryDAOTest {
 
     String nonExistentCountryName = "Non Existent Country";
 
-    when(entityManager.createQuery(anyString(), eq(Country.class))).thenReturn(query);
+    when(entityManager.createNamedQuery(anyString(), eq(Country.class))).thenReturn(query);
     when(query.setParameter("name", nonExistentCountryName)).thenReturn(query);
     when(query.getSingleResult()).thenThrow(new NoResultException());
 
@@ -129,7 +133,7 @@ class CountryDAOTest {
 
     String countryName = "Country1";
 
-    when(entityManager.createQuery(anyString(), eq(Country.class))).thenReturn(query);
+    when(entityManager.createNamedQuery(anyString(), eq(Country.class))).thenReturn(query);
     when(query.setParameter("name", countryName)).thenReturn(query);
     when(query.getSingleResult()).thenThrow(new RuntimeException("Exception during retrieval"));
 
@@ -0,0 +1,96 @@
+package bg.tuvarna.sit.wms.dao;
+
+import bg.tuvarna.sit.wms.dto.NotificationDTO;
+import bg.tuvarna.sit.wms.dto.NotificationImportDto;
+import bg.tuvarna.sit.wms.exceptions.NotificationPersistenceException;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.Persistence;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class NotificationDAOTest {
+
+  private EntityManagerFactory entityManagerFactory;
+  private NotificationDAO notificationDAO;
+  private Statistics statistics;
+  private Long userId;
+
+  @BeforeEach
+  void setUp() {
+
+    entityManagerFactory = Persistence.createEntityManagerFactory("wms-test");
+    notificationDAO = new NotificationDAO(entityManagerFactory);
+    statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+    userId = persistOwner();
+    statistics.clear();
+  }
+
+  @AfterEach
+  void tearDown() {
+
+    entityManagerFactory.close();
+  }
+
+  @Test
+  void saveAll_shouldPersistUnreadNotificationsWithoutLoadingUser() throws NotificationPersistenceException {
+
+    notificationDAO.saveAll(notifications(3));
+
+    assertEquals(0, statistics.getEntityLoadCount());
+    assertEquals(3, statistics.getEntityInsertCount());
+    assertEquals(3, notificationDAO.countUnreadByUser(userId));
+  }
+
+  @Test
+  void getUnreadByUser_shouldReturnNewestFirstWithoutLoadingEntities() throws NotificationPersistenceException {
+
+    notificationDAO.saveAll(notifications(3));
+    statistics.clear();
+
+    List<NotificationDTO> unread = notificationDAO.getUnreadByUser(userId, 2);
+
+    assertEquals(2, unread.size());
+    assertEquals("Notification 2", unread.get(0).getMessage());
+    assertEquals("Notification 1", unread.get(1).getMessage());
+    assertEquals(0, statistics.getEntityLoadCount());
+  }
+
+  @Test
+  void markAsRead_shouldOnlyChangeGivenUnreadNotifications() throws NotificationPersistenceException {
+
+    notificationDAO.saveAll(notifications(3));
+    List<NotificationDTO> unread = notificationDAO.getUnreadByUser(userId, 10);
+
+    assertEquals(1, notificationDAO.markAsRead(userId, List.of(unread.get(0).getId())));
+    assertEquals(0, notificationDAO.markAsRead(userId, List.of(unread.get(0).getId())));
+    assertEquals(2, notificationDAO.countUnreadByUser(userId));
+
+    assertEquals(2, notificationDAO.markAllAsRead(userId));
+    assertEquals(0, notificationDAO.countUnreadByUser(userId));
+  }
+
+  private List<NotificationImportDto> notifications(int count) {
+
+    LocalDateTime now = LocalDateTime.now();
+    List<NotificationImportDto> notifications = new ArrayList<>();
+    for (int i = 0; i < count; i++) {
+      notifications.add(new NotificationImportDto(userId, "Notification " + i, now.plusMinutes(i)));
+    }
+    return notifications;
+  }
+
+  private Long persistOwner() {
+
+    TestData testData = new TestData(entityManagerFactory);
+    return testData.inTransaction(em -> testData.persistOwner(em).getId());
+  }
+}
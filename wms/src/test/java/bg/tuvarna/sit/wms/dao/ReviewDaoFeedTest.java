@@ -0,0 +1,85 @@
+package bg.tuvarna.sit.wms.dao;
+
+import bg.tuvarna.sit.wms.dto.ViewReviewDto;
+import bg.tuvarna.sit.wms.entities.Review;
+import bg.tuvarna.sit.wms.entities.User;
+import bg.tuvarna.sit.wms.exceptions.ReviewPersistenceException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.Persistence;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ReviewDaoFeedTest {
+
+  private EntityManagerFactory entityManagerFactory;
+  private ReviewDao reviewDao;
+  private Long agentId;
+  private Long ownerId;
+
+  @BeforeEach
+  void setUp() {
+
+    entityManagerFactory = Persistence.createEntityManagerFactory("wms-test");
+    reviewDao = new ReviewDao(entityManagerFactory);
+    TestData testData = new TestData(entityManagerFactory);
+    ownerId = testData.inTransaction(em -> testData.persistOwner(em).getId());
+    agentId = testData.inTransaction(em -> testData.persistAgent(em).getId());
+  }
+
+  @AfterEach
+  void tearDown() {
+
+    entityManagerFactory.close();
+  }
+
+  @Test
+  void persistReview_shouldTakeTheNextIdOfTheSequence() throws ReviewPersistenceException {
+
+    Review first = review(5);
+    Review second = review(4);
+
+    reviewDao.persistReview(first, agentId);
+    reviewDao.persistReview(second, agentId);
+
+    assertEquals(first.getId() + 1, second.getId());
+  }
+
+  @Test
+  void getReviewsForCurrentUserAfter_shouldReturnEveryReviewOnceByItsId() throws ReviewPersistenceException {
+
+    reviewDao.persistReview(review(5), agentId);
+    reviewDao.persistReview(review(3), agentId);
+    List<ViewReviewDto> firstPoll = reviewDao.getReviewsForCurrentUserAfter(agentId, 0, 500);
+    long lastSeenId = firstPoll.get(firstPoll.size() - 1).getId();
+
+    Review late = review(1);
+    reviewDao.persistReview(late, agentId);
+    List<ViewReviewDto> secondPoll = reviewDao.getReviewsForCurrentUserAfter(agentId, lastSeenId, 500);
+
+    assertEquals(2, firstPoll.size());
+    assertEquals(1, secondPoll.size());
+    assertEquals(late.getId(), secondPoll.get(0).getId());
+    assertTrue(reviewDao.getReviewsForCurrentUserAfter(agentId, late.getId(), 500).isEmpty());
+  }
+
+  private Review review(int assessment) {
+
+    EntityManager em = entityManagerFactory.createEntityManager();
+    try {
+      Review review = new Review();
+      review.setAssessment(assessment);
+      review.setSender(em.getReference(User.class, ownerId));
+      review.setReceiver(em.getReference(User.class, agentId));
+      return review;
+    } finally {
+      em.close();
+    }
+  }
+}
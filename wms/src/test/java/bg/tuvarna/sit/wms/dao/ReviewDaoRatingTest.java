@@ -0,0 +1,174 @@
+package bg.tuvarna.sit.wms.dao;
+
+import bg.tuvarna.sit.wms.dto.AgentRatingDTO;
+import bg.tuvarna.sit.wms.dto.ReviewImportDto;
+import bg.tuvarna.sit.wms.entities.Agent;
+import bg.tuvarna.sit.wms.entities.Review;
+import bg.tuvarna.sit.wms.entities.User;
+import bg.tuvarna.sit.wms.exceptions.ReviewPersistenceException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.Persistence;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ReviewDaoRatingTest {
+
+  private static final int THREADS = 8;
+
+  private EntityManagerFactory entityManagerFactory;
+  private ReviewDao reviewDao;
+  private Long agentId;
+  private Long ownerId;
+
+  @BeforeEach
+  void setUp() {
+
+    entityManagerFactory = Persistence.createEntityManagerFactory("wms-test");
+    reviewDao = new ReviewDao(entityManagerFactory);
+    TestData testData = new TestData(entityManagerFactory);
+    ownerId = testData.inTransaction(em -> testData.persistOwner(em).getId());
+    agentId = testData.inTransaction(em -> testData.persistAgent(em).getId());
+  }
+
+  @AfterEach
+  void tearDown() {
+
+    entityManagerFactory.close();
+  }
+
+  @Test
+  void persistReview_shouldUpdateTheAgentRating() throws ReviewPersistenceException {
+
+    reviewDao.persistReview(review(5), agentId);
+    reviewDao.persistReview(review(4), agentId);
+    reviewDao.persistReview(review(4), agentId);
+
+    AgentRatingDTO rating = reviewDao.getAgentRating(agentId).orElseThrow();
+    assertEquals(3, rating.getReviewCount());
+    assertEquals(13, rating.getAssessmentSum());
+    assertArrayEquals(new long[] {0, 0, 0, 2, 1}, rating.getHistogram());
+    assertEquals(13 / 3.0, rating.getAverage(), 1e-9);
+  }
+
+  @Test
+  void persistReview_concurrentFirstReviews_shouldAllBeCounted() {
+
+    assertTimeoutPreemptively(Duration.ofSeconds(60), () -> {
+      ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+      CountDownLatch start = new CountDownLatch(1);
+      List<Future<?>> futures = new ArrayList<>();
+
+      try {
+        for (int i = 0; i < THREADS; i++) {
+          Review review = review(5);
+          futures.add(executor.submit(() -> {
+            start.await();
+            reviewDao.persistReview(review, agentId);
+            return null;
+          }));
+        }
+
+        start.countDown();
+        for (Future<?> future : futures) {
+          future.get();
+        }
+      } finally {
+        executor.shutdownNow();
+        executor.awaitTermination(5, TimeUnit.SECONDS);
+      }
+    });
+
+    AgentRatingDTO rating = reviewDao.getAgentRating(agentId).orElseThrow();
+    assertEquals(THREADS, rating.getReviewCount());
+    assertEquals(5L * THREADS, rating.getAssessmentSum());
+  }
+
+  @Test
+  void deleteAllReviewsForAgent_shouldRemoveTheAgentRating() throws ReviewPersistenceException {
+
+    reviewDao.persistReview(review(3), agentId);
+    Agent agent = new Agent();
+    agent.setId(agentId);
+
+    reviewDao.deleteAllReviewsForAgent(agent);
+
+    assertTrue(reviewDao.getAgentRating(agentId).isEmpty());
+    assertTrue(reviewDao.getAgentRatings().isEmpty());
+  }
+
+  @Test
+  void replaceReviews_shouldReplaceTheAgentRating() throws ReviewPersistenceException {
+
+    reviewDao.persistReview(review(1), agentId);
+
+    reviewDao.replaceReviews(List.of(agentId), List.of(
+        new ReviewImportDto(agentId, ownerId, 5, "Excellent service"),
+        new ReviewImportDto(agentId, ownerId, 3, "Average service")));
+
+    List<AgentRatingDTO> ratings = reviewDao.getAgentRatings();
+    assertEquals(1, ratings.size());
+    assertEquals(2, ratings.get(0).getReviewCount());
+    assertEquals(1, ratings.get(0).getCount(5));
+    assertEquals(0, ratings.get(0).getCount(1));
+  }
+
+  @Test
+  void rebuildAgentRatings_shouldCountTheExistingReviews() throws ReviewPersistenceException {
+
+    reviewDao.persistReview(review(2), agentId);
+    reviewDao.persistReview(review(5), agentId);
+    deleteAllRatings();
+    assertFalse(reviewDao.hasAllAgentRatings());
+
+    assertEquals(1, reviewDao.rebuildAgentRatings());
+
+    assertTrue(reviewDao.hasAllAgentRatings());
+    AgentRatingDTO rating = reviewDao.getAgentRating(agentId).orElseThrow();
+    assertEquals(2, rating.getReviewCount());
+    assertEquals(7, rating.getAssessmentSum());
+    assertArrayEquals(new long[] {0, 1, 0, 0, 1}, rating.getHistogram());
+  }
+
+  private Review review(int assessment) {
+
+    EntityManager em = entityManagerFactory.createEntityManager();
+    try {
+      Review review = new Review();
+      review.setAssessment(assessment);
+      review.setSender(em.getReference(User.class, ownerId));
+      review.setReceiver(em.getReference(User.class, agentId));
+      return review;
+    } finally {
+      em.close();
+    }
+  }
+
+  private void deleteAllRatings() {
+
+    EntityManager em = entityManagerFactory.createEntityManager();
+    try {
+      em.getTransaction().begin();
+      em.createQuery("DELETE FROM AgentRating").executeUpdate();
+      em.getTransaction().commit();
+    } finally {
+      em.close();
+    }
+  }
+}
@@ -2,11 +2,14 @@ package bg.tuvarna.sit.wms.dao;
 
 import bg.tuvarna.sit.wms.dao.ReviewDao;
 
+import bg.tuvarna.sit.wms.dto.ReviewImportDto;
 import bg.tuvarna.sit.wms.dto.ViewReviewDto;
 import bg.tuvarna.sit.wms.entities.Agent;
+import bg.tuvarna.sit.wms.entities.AgentRating;
 import bg.tuvarna.sit.wms.entities.Review;
 import bg.tuvarna.sit.wms.entities.User;
 import bg.tuvarna.sit.wms.exceptions.ReviewPersistenceException;
+import bg.tuvarna.sit.wms.util.QueryNames;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashSet;
@@ -15,11 +18,13 @@ import java.util.Set;
 import javax.persistence.EntityManager;
 import javax.persistence.EntityManagerFactory;
 import javax.persistence.EntityTransaction;
+import javax.persistence.LockModeType;
 import javax.persistence.PersistenceException;
 import javax.persistence.Query;
 import javax.persistence.TypedQuery;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.Assertions;
+import org.hibernate.Session;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import static org.mockito.ArgumentMatchers.eq;
@@ -29,6 +34,7 @@ import static org.mockito.Mockito.any;
 import static org.mockito.Mockito.anyString;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import org.mockito.MockitoAnnotations;
@@ -44,6 +50,9 @@ public class ReviewDaoTest {
   @Mock
   private EntityTransaction transaction;
 
+  @Mock
+  private Session session;
+
   @Mock
   private TypedQuery<Review> typedQuery;
 
@@ -55,7 +64,8 @@ public class ReviewDaoTest {
     MockitoAnnotations.openMocks(this);
     when(entityManagerFactory.createEntityManager()).thenReturn(entityManager);
     when(entityManager.getTransaction()).thenReturn(transaction);
-    when(entityManager.createQuery(anyString(), eq(Review.class))).thenReturn(typedQuery);
+    when(entityManager.unwrap(Session.class)).thenReturn(session);
+    when(entityManager.createNamedQuery(anyString(), eq(Review.class))).thenReturn(typedQuery);
   }
 
   @Test
@@ -65,17 +75,18 @@ public class ReviewDaoTest {
     when(agent.getId()).thenReturn(1L);
 
     Query queryMock = mock(Query.class);
-    when(entityManager.createQuery(anyString())).thenReturn(queryMock);
+    when(entityManager.createNamedQuery(anyString())).thenReturn(queryMock);
     when(queryMock.setParameter(anyString(), any())).thenReturn(queryMock);
 
     // When
     reviewDao.deleteAllReviewsForAgent(agent);
 
     // Then
-    verify(entityManager).createQuery("DELETE FROM Review r WHERE r.receiver.id = :agentId");
-    verify(queryMock).setParameter("agentId", agent.getId());
+    verify(entityManager).createNamedQuery(QueryNames.REVIEW_DELETE_BY_RECEIVER);
+    verify(entityManager).createNamedQuery(QueryNames.AGENT_RATING_DELETE_BY_AGENT);
+    verify(queryMock, times(2)).setParameter("agentId", agent.getId());
     verify(transaction).begin();
-    verify(queryMock).executeUpdate();
+    verify(queryMock, times(2)).executeUpdate();
     verify(transaction).commit();
     verify(entityManager).close();
   }
@@ -87,7 +98,7 @@ public class ReviewDaoTest {
     when(agent.getId()).thenReturn(1L);
 
     PersistenceException simulatedException = new PersistenceException("Error");
-    when(entityManager.createQuery(anyString())).thenThrow(simulatedException);
+    when(entityManager.createNamedQuery(anyString())).thenThrow(simulatedException);
     when(transaction.isActive()).thenReturn(true);
 
     // When
@@ -105,11 +116,12 @@ public class ReviewDaoTest {
   public void persistReview_ShouldPersistReview() throws ReviewPersistenceException {
     // Given
     Review review = new Review();
+    review.setAssessment(5);
     Agent agent = new Agent();
     Long agentId = 1L;
     agent.setId(agentId);
     agent.setReceivedReviews(new HashSet<>());
-    when(entityManager.find(Agent.class, agentId)).thenReturn(agent);
+    when(entityManager.find(Agent.class, agentId, LockModeType.PESSIMISTIC_WRITE)).thenReturn(agent);
 
     // When
     reviewDao.persistReview(review, agentId);
@@ -118,6 +130,7 @@ public class ReviewDaoTest {
     verify(transaction).begin();
     verify(entityManager).persist(review);
     verify(entityManager).merge(agent);
+    verify(entityManager).persist(any(AgentRating.class));
     verify(transaction).commit();
     verify(entityManager).close();
   }
@@ -128,7 +141,7 @@ public class ReviewDaoTest {
     Review review = new Review();
     Long agentId = 1L;
     PersistenceException simulatedException = new PersistenceException("Error");
-    when(entityManager.find(Agent.class, agentId)).thenThrow(simulatedException);
+    when(entityManager.find(Agent.class, agentId, LockModeType.PESSIMISTIC_WRITE)).thenThrow(simulatedException);
     when(transaction.isActive()).thenReturn(true);
 
     // When
@@ -149,7 +162,7 @@ public class ReviewDaoTest {
     List<Review> reviews = Arrays.asList(
             createReview(agent, new User(), 5, "test"),
             createReview(agent, new User(), 1, "test"));
-    when(entityManager.createQuery(anyString(), eq(Review.class))).thenReturn(typedQuery);
+    when(entityManager.createNamedQuery(anyString(), eq(Review.class))).thenReturn(typedQuery);
     when(typedQuery.getResultList()).thenReturn(reviews);
 
     // When
@@ -164,7 +177,7 @@ public class ReviewDaoTest {
   public void getReviewsForCurrentUser_ShouldReturnEmptyListWhenAgentNotFound() {
     // Given
     Long currentUserId = 1L;
-    when(entityManager.createQuery(anyString(), eq(Review.class))).thenReturn(typedQuery);
+    when(entityManager.createNamedQuery(anyString(), eq(Review.class))).thenReturn(typedQuery);
     when(typedQuery.getResultList()).thenReturn(new ArrayList<>());
 
     // When
@@ -175,6 +188,30 @@ public class ReviewDaoTest {
     Assertions.assertTrue(result.isEmpty());
   }
 
+  @Test
+  @SuppressWarnings("unchecked")
+  public void getReviewsForCurrentUserAfter_ShouldQueryOnlyNewerReviews() {
+    // Given
+    TypedQuery<ViewReviewDto> dtoQuery = mock(TypedQuery.class);
+    when(entityManager.createNamedQuery(QueryNames.REVIEW_FIND_DTOS_BY_RECEIVER_AFTER, ViewReviewDto.class))
+            .thenReturn(dtoQuery);
+    when(dtoQuery.setParameter(anyString(), any())).thenReturn(dtoQuery);
+    when(dtoQuery.setMaxResults(50)).thenReturn(dtoQuery);
+    List<ViewReviewDto> reviews = List.of(new ViewReviewDto(43L, 5, "test", "John", "Doe"));
+    when(dtoQuery.getResultList()).thenReturn(reviews);
+
+    // When
+    List<ViewReviewDto> result = reviewDao.getReviewsForCurrentUserAfter(1L, 42L, 50);
+
+    // Then
+    verify(dtoQuery).setParameter("receiverId", 1L);
+    verify(dtoQuery).setParameter("lastSeenId", 42L);
+    verify(dtoQuery).setMaxResults(50);
+    verify(entityManager).close();
+    Assertions.assertEquals(reviews, result);
+    Assertions.assertEquals("John Doe", result.get(0).getSenderName());
+  }
+
   // Cleanup after tests
   @AfterEach
   public void tearDown() {
@@ -192,4 +229,49 @@ public class ReviewDaoTest {
 
     return review;
   }
+
+  @Test
+  public void replaceReviews_ShouldLockAgentsThenBulkDeleteAndPersist() throws ReviewPersistenceException {
+    // Given
+    Query queryMock = mock(Query.class);
+    when(entityManager.createNamedQuery(anyString())).thenReturn(queryMock);
+    when(queryMock.setParameter(anyString(), any())).thenReturn(queryMock);
+    when(queryMock.setLockMode(any())).thenReturn(queryMock);
+    when(entityManager.getReference(eq(User.class), any())).thenAnswer(invocation -> new User());
+    List<ReviewImportDto> reviews = List.of(
+        new ReviewImportDto(1L, 3L, 5, "Excellent service"),
+        new ReviewImportDto(2L, 3L, 4, "Good service"));
+
+    // When
+    reviewDao.replaceReviews(List.of(1L, 2L), reviews);
+
+    // Then
+    verify(entityManager).createNamedQuery(QueryNames.AGENT_FIND_BY_IDS);
+    verify(queryMock).setLockMode(LockModeType.PESSIMISTIC_WRITE);
+    verify(entityManager).createNamedQuery(QueryNames.REVIEW_DELETE_BY_RECEIVERS);
+    verify(entityManager).createNamedQuery(QueryNames.AGENT_RATING_DELETE_BY_AGENTS);
+    verify(queryMock, times(2)).executeUpdate();
+    verify(entityManager, times(2)).persist(any(Review.class));
+    verify(entityManager, times(2)).persist(any(AgentRating.class));
+    verify(entityManager, never()).find(eq(Agent.class), any());
+    verify(entityManager, never()).merge(any());
+    verify(transaction).commit();
+    verify(entityManager).close();
+  }
+
+  @Test
+  public void replaceReviews_ShouldRollbackIfPersistenceFails() {
+    // Given
+    when(entityManager.createNamedQuery(anyString())).thenThrow(new PersistenceException("Error"));
+    when(transaction.isActive()).thenReturn(true);
+
+    // When
+    Assertions.assertThrows(ReviewPersistenceException.class, () ->
+        reviewDao.replaceReviews(List.of(1L), List.of(new ReviewImportDto(1L, 3L, 5, "Excellent service"))));
+
+    // Then
+    verify(entityManager, never()).persist(any());
+    verify(transaction).rollback();
+    verify(entityManager).close();
+  }
 }
@@ -0,0 +1,153 @@
+package bg.tuvarna.sit.wms.dao;
+
+import bg.tuvarna.sit.wms.entities.Address;
+import bg.tuvarna.sit.wms.entities.Agent;
+import bg.tuvarna.sit.wms.entities.City;
+import bg.tuvarna.sit.wms.entities.Country;
+import bg.tuvarna.sit.wms.entities.Owner;
+import bg.tuvarna.sit.wms.entities.RequestDetails;
+import bg.tuvarna.sit.wms.entities.StorageType;
+import bg.tuvarna.sit.wms.entities.User;
+import bg.tuvarna.sit.wms.entities.Warehouse;
+import bg.tuvarna.sit.wms.entities.WarehouseRentalRequest;
+import bg.tuvarna.sit.wms.enums.ClimateCondition;
+import bg.tuvarna.sit.wms.enums.RequestStatus;
+import bg.tuvarna.sit.wms.enums.Role;
+import bg.tuvarna.sit.wms.enums.WarehouseStatus;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.function.Function;
+
+/**
+ * Stores the users, cities and warehouses which the tests against the {@code wms-test} persistence unit start from.
+ * Every user gets its own phone and email, so a test may store as many as it needs.
+ * Public, so the service tests which run against the database can start from the same data.
+ */
+public final class TestData {
+
+  public static final String COUNTRY_NAME = "Bulgaria";
+  public static final String CITY_NAME = "Varna";
+  public static final String STORAGE_TYPE_NAME = "Pallet Racking";
+  public static final double WAREHOUSE_SIZE = 100.0;
+
+  private final EntityManagerFactory entityManagerFactory;
+  private int userCount;
+
+  public TestData(EntityManagerFactory entityManagerFactory) {
+
+    this.entityManagerFactory = entityManagerFactory;
+  }
+
+  /**
+   * Runs the work in a transaction of a new entity manager and commits it.
+   */
+  public <T> T inTransaction(Function<EntityManager, T> work) {
+
+    EntityManager em = entityManagerFactory.createEntityManager();
+    try {
+      em.getTransaction().begin();
+      T result = work.apply(em);
+      em.getTransaction().commit();
+      return result;
+    } finally {
+      if (em.getTransaction().isActive()) {
+        em.getTransaction().rollback();
+      }
+      em.close();
+    }
+  }
+
+  public Owner persistOwner(EntityManager em) {
+
+    return persistUser(em, new Owner(), Role.OWNER);
+  }
+
+  public Agent persistAgent(EntityManager em) {
+
+    return persistUser(em, new Agent(), Role.AGENT);
+  }
+
+  /**
+   * Stores the city {@value #CITY_NAME} in the country {@value #COUNTRY_NAME}.
+   */
+  public City persistCity(EntityManager em) {
+
+    Country country = new Country();
+    country.setName(COUNTRY_NAME);
+    em.persist(country);
+
+    City city = new City();
+    city.setName(CITY_NAME);
+    city.setCountry(country);
+    em.persist(city);
+    return city;
+  }
+
+  /**
+   * Creates an available warehouse named after its index, which is not stored yet.
+   */
+  public static Warehouse newWarehouse(Owner owner, City city, int index) {
+
+    Address address = new Address();
+    address.setStreet("Street " + index);
+    address.setZipCode("9000");
+    address.setCity(city);
+
+    StorageType storageType = new StorageType();
+    storageType.setTypeName(STORAGE_TYPE_NAME);
+    storageType.setDescription("Heavy-duty shelving for palletized goods");
+
+    Warehouse warehouse = new Warehouse();
+    warehouse.setName("Warehouse " + index);
+    warehouse.setOwner(owner);
+    warehouse.setSize(WAREHOUSE_SIZE);
+    warehouse.setAddress(address);
+    warehouse.setStorageType(storageType);
+    warehouse.setStatus(WarehouseStatus.AVAILABLE);
+    warehouse.setClimateCondition(ClimateCondition.AMBIENT);
+    return warehouse;
+  }
+
+  /**
+   * Creates the details of a one-year rental of the warehouse, which are not stored yet.
+   */
+  public static RequestDetails newRequestDetails(Warehouse warehouse) {
+
+    RequestDetails requestDetails = new RequestDetails();
+    requestDetails.setWarehouse(warehouse);
+    requestDetails.setPricePerMonth(BigDecimal.valueOf(500));
+    requestDetails.setStartDate(LocalDate.of(2024, 1, 1));
+    requestDetails.setEndDate(LocalDate.of(2024, 12, 31));
+    return requestDetails;
+  }
+
+  /**
+   * Stores a pending request of the agent with the given details.
+   */
+  public static WarehouseRentalRequest persistPendingRequest(EntityManager em, Agent agent,
+                                                             RequestDetails requestDetails) {
+
+    WarehouseRentalRequest request = new WarehouseRentalRequest();
+    request.setAgent(agent);
+    request.setRequestDetails(requestDetails);
+    request.setStatus(RequestStatus.PENDING);
+    em.persist(request);
+    return request;
+  }
+
+  private <T extends User> T persistUser(EntityManager em, T user, Role role) {
+
+    int number = ++userCount;
+    user.setFirstName("Ivan");
+    user.setLastName("Ivanov");
+    user.setPhone(String.format("0888%06d", number));
+    user.setEmail("user" + number + "@example.com");
+    user.setPassword("password");
+    user.setRole(role);
+    em.persist(user);
+    return user;
+  }
+}
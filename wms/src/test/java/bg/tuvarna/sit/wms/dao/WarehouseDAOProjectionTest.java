@@ -0,0 +1,118 @@
+package bg.tuvarna.sit.wms.dao;
+
+import bg.tuvarna.sit.wms.dto.WarehouseDTO;
+import bg.tuvarna.sit.wms.entities.City;
+import bg.tuvarna.sit.wms.entities.Owner;
+import bg.tuvarna.sit.wms.entities.Warehouse;
+import bg.tuvarna.sit.wms.enums.ClimateCondition;
+import bg.tuvarna.sit.wms.enums.WarehouseStatus;
+import bg.tuvarna.sit.wms.exceptions.WarehouseDAOException;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.Persistence;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class WarehouseDAOProjectionTest {
+
+  private static final int WAREHOUSE_COUNT = 20;
+
+  private EntityManagerFactory entityManagerFactory;
+  private WarehouseDAO warehouseDAO;
+  private Statistics statistics;
+  private TestData testData;
+  private Owner owner;
+
+  @BeforeEach
+  void setUp() {
+
+    entityManagerFactory = Persistence.createEntityManagerFactory("wms-test");
+    warehouseDAO = new WarehouseDAO(entityManagerFactory);
+    statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+    testData = new TestData(entityManagerFactory);
+    owner = persistOwnerWithWarehouses();
+    statistics.clear();
+  }
+
+  @AfterEach
+  void tearDown() {
+
+    entityManagerFactory.close();
+  }
+
+  @Test
+  void getWarehouseDTOsByOwner_shouldUseSingleStatementWithoutLoadingEntities() throws WarehouseDAOException {
+
+    List<WarehouseDTO> warehouses = warehouseDAO.getWarehouseDTOsByOwner(owner);
+
+    assertEquals(WAREHOUSE_COUNT, warehouses.size());
+    assertEquals(1, statistics.getPrepareStatementCount());
+    assertEquals(0, statistics.getEntityLoadCount());
+
+    WarehouseDTO warehouse = warehouses.get(0);
+    assertTrue(warehouse.getName().startsWith("Warehouse "));
+    assertTrue(warehouse.getStreet().startsWith("Street "));
+    assertEquals(TestData.CITY_NAME, warehouse.getCityName());
+    assertEquals(TestData.COUNTRY_NAME, warehouse.getCountryName());
+    assertEquals(TestData.STORAGE_TYPE_NAME, warehouse.getStorageType());
+    assertEquals(ClimateCondition.AMBIENT, warehouse.getClimateCondition());
+    assertNull(warehouse.getOwner());
+  }
+
+  @Test
+  void getAvailableWarehouseDTOsByOwner_shouldReturnOnlyAvailableWarehouses() throws WarehouseDAOException {
+
+    List<WarehouseDTO> warehouses = warehouseDAO.getAvailableWarehouseDTOsByOwner(owner);
+
+    assertEquals(WAREHOUSE_COUNT / 2, warehouses.size());
+    assertTrue(warehouses.stream().allMatch(warehouse -> warehouse.getStatus() == WarehouseStatus.AVAILABLE));
+    assertEquals(1, statistics.getPrepareStatementCount());
+  }
+
+  @Test
+  void getAllWarehousesByOwner_entityPath_shouldNeedMoreStatementsThanProjection() throws WarehouseDAOException {
+
+    List<Warehouse> warehouses = warehouseDAO.getAllWarehousesByOwner(owner);
+
+    assertEquals(WAREHOUSE_COUNT, warehouses.size());
+    assertTrue(statistics.getPrepareStatementCount() > WAREHOUSE_COUNT,
+        "Expected the entity path to load the associations of every warehouse, but only "
+            + statistics.getPrepareStatementCount() + " statements were prepared");
+    assertTrue(statistics.getEntityLoadCount() > WAREHOUSE_COUNT);
+  }
+
+  @Test
+  void getAllWarehousesByOwner_shouldLoadReadOnlyWithoutFlushing() throws WarehouseDAOException {
+
+    List<Warehouse> warehouses = warehouseDAO.getAllWarehousesByOwner(owner);
+
+    assertEquals(WAREHOUSE_COUNT, warehouses.size());
+    assertEquals(1, statistics.getTransactionCount());
+    assertEquals(0, statistics.getFlushCount());
+    assertEquals(0, statistics.getEntityUpdateCount());
+  }
+
+  private Owner persistOwnerWithWarehouses() {
+
+    return testData.inTransaction(em -> {
+      Owner newOwner = testData.persistOwner(em);
+      City city = testData.persistCity(em);
+
+      for (int i = 0; i < WAREHOUSE_COUNT; i++) {
+        Warehouse warehouse = TestData.newWarehouse(newOwner, city, i);
+        warehouse.setSize(TestData.WAREHOUSE_SIZE + i);
+        warehouse.setStatus(i % 2 == 0 ? WarehouseStatus.AVAILABLE : WarehouseStatus.RENTED);
+        em.persist(warehouse);
+      }
+      return newOwner;
+    });
+  }
+}
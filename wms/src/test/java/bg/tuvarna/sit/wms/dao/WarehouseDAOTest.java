@@ -3,8 +3,12 @@ package bg.tuvarna.sit.wms.dao;
 import bg.tuvarna.sit.wms.entities.Owner;
 import bg.tuvarna.sit.wms.entities.Warehouse;
 import bg.tuvarna.sit.wms.exceptions.WarehouseDAOException;
+import bg.tuvarna.sit.wms.util.QueryNames;
+import org.hibernate.Session;
+import org.hibernate.annotations.QueryHints;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
@@ -13,6 +17,7 @@ import javax.persistence.EntityManager;
 import javax.persistence.EntityManagerFactory;
 import javax.persistence.EntityTransaction;
 import javax.persistence.NoResultException;
+import javax.persistence.Query;
 import javax.persistence.TypedQuery;
 
 import java.util.Arrays;
@@ -24,14 +29,19 @@ import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
+import bg.tuvarna.sit.wms.dto.WarehouseDTO;
+import bg.tuvarna.sit.wms.dto.WarehousePageRequest;
 import bg.tuvarna.sit.wms.dto.WarehouseRentalAgreementDto;
 import bg.tuvarna.sit.wms.enums.ClimateCondition;
+import bg.tuvarna.sit.wms.enums.WarehouseSortKey;
 import bg.tuvarna.sit.wms.enums.WarehouseStatus;
 import java.math.BigDecimal;
 import java.util.Date;
@@ -47,9 +57,15 @@ class WarehouseDAOTest {
   @Mock
   private EntityTransaction transaction;
 
+  @Mock
+  private Session session;
+
   @Mock
   private TypedQuery<Warehouse> query;
 
+  @Mock
+  private TypedQuery<WarehouseDTO> dtoQuery;
+
   @InjectMocks
   private WarehouseDAO warehouseDAO;
   @Mock
@@ -62,7 +78,8 @@ class WarehouseDAOTest {
     MockitoAnnotations.openMocks(this);
     when(entityManagerFactory.createEntityManager()).thenReturn(entityManager);
     when(entityManager.getTransaction()).thenReturn(transaction);
-    when(entityManager.createQuery(anyString(), eq(WarehouseRentalAgreementDto.class))).thenReturn(typedQuery);
+    when(entityManager.unwrap(Session.class)).thenReturn(session);
+    when(entityManager.createNamedQuery(anyString(), eq(WarehouseRentalAgreementDto.class))).thenReturn(typedQuery);
     when(entityManager.isOpen()).thenReturn(true);
     when(transaction.isActive()).thenReturn(true);
   }
@@ -119,6 +136,31 @@ class WarehouseDAOTest {
     verify(entityManager).close();
   }
 
+  @Test
+  void transitionStatus_shouldRunSingleConditionalUpdate() throws WarehouseDAOException {
+
+    Query updateQuery = mock(Query.class);
+    when(entityManager.createNamedQuery(anyString())).thenReturn(updateQuery);
+    when(updateQuery.executeUpdate()).thenReturn(1);
+
+    assertTrue(warehouseDAO.transitionStatus(1L, WarehouseStatus.AVAILABLE, WarehouseStatus.PENDING_RENTAL));
+
+    verify(updateQuery).setParameter("from", WarehouseStatus.AVAILABLE);
+    verify(updateQuery).setParameter("to", WarehouseStatus.PENDING_RENTAL);
+    verify(entityManager, never()).find(any(), any());
+    verify(transaction).commit();
+  }
+
+  @Test
+  void transitionStatus_noMatchingRow_shouldReturnFalse() throws WarehouseDAOException {
+
+    Query updateQuery = mock(Query.class);
+    when(entityManager.createNamedQuery(anyString())).thenReturn(updateQuery);
+    when(updateQuery.executeUpdate()).thenReturn(0);
+
+    assertFalse(warehouseDAO.transitionStatus(1L, WarehouseStatus.AVAILABLE, WarehouseStatus.PENDING_RENTAL));
+  }
+
   @Test
   void softDelete() {
 
@@ -222,7 +264,7 @@ class WarehouseDAOTest {
     Warehouse warehouse2 = new Warehouse();
     warehouse2.setOwner(owner);
     List<Warehouse> expectedWarehouses = Arrays.asList(warehouse1, warehouse2);
-    when(entityManager.createQuery(anyString(), eq(Warehouse.class))).thenReturn(query);
+    when(entityManager.createNamedQuery(anyString(), eq(Warehouse.class))).thenReturn(query);
     when(query.setParameter("owner", owner)).thenReturn(query);
     when(query.getResultList()).thenReturn(expectedWarehouses);
 
@@ -233,7 +275,9 @@ class WarehouseDAOTest {
 
     verify(transaction).begin();
     verify(query).setParameter("owner", owner);
+    verify(query).setHint(QueryHints.READ_ONLY, true);
     verify(query).getResultList();
+    verify(session).setDefaultReadOnly(true);
     verify(transaction).commit();
     verify(entityManager).close();
   }
@@ -242,7 +286,7 @@ class WarehouseDAOTest {
   void getWarehousesByOwner_shouldRollbackAndThrowWarehouseDAOException() {
 
     Owner owner = new Owner();
-    when(entityManager.createQuery(anyString(), eq(Warehouse.class))).thenReturn(query);
+    when(entityManager.createNamedQuery(anyString(), eq(Warehouse.class))).thenReturn(query);
     when(query.setParameter("owner", owner)).thenReturn(query);
     when(query.getResultList()).thenThrow(new RuntimeException("Error during retrieval"));
 
@@ -253,6 +297,90 @@ class WarehouseDAOTest {
     verify(entityManager).close();
   }
 
+  @Test
+  void getWarehouseDTOPageByOwner_firstPage_shouldSortAndLimitWithoutCursor() throws WarehouseDAOException {
+
+    Owner owner = new Owner();
+    when(entityManager.createQuery(anyString(), eq(WarehouseDTO.class))).thenReturn(dtoQuery);
+    when(dtoQuery.getResultList()).thenReturn(List.of());
+
+    warehouseDAO.getWarehouseDTOPageByOwner(owner, WarehousePageRequest.first(WarehouseSortKey.CITY, false, 20));
+
+    ArgumentCaptor<String> jpql = ArgumentCaptor.forClass(String.class);
+    verify(entityManager).createQuery(jpql.capture(), eq(WarehouseDTO.class));
+    assertTrue(jpql.getValue().endsWith("ORDER BY c.name DESC, w.id DESC"));
+    assertFalse(jpql.getValue().contains(":lastId"));
+    verify(dtoQuery).setParameter("owner", owner);
+    verify(dtoQuery).setMaxResults(21);
+    verify(dtoQuery, never()).setParameter(eq("lastId"), any());
+  }
+
+  @Test
+  void getWarehouseDTOPageByOwner_nextPage_shouldSeekAfterCursor() throws WarehouseDAOException {
+
+    Owner owner = new Owner();
+    WarehouseDTO lastWarehouse = new WarehouseDTO();
+    lastWarehouse.setId(7L);
+    lastWarehouse.setName("Warehouse 7");
+    WarehousePageRequest pageRequest = WarehousePageRequest.first(WarehouseSortKey.NAME, true, 20)
+        .after(lastWarehouse, 20);
+    when(entityManager.createQuery(anyString(), eq(WarehouseDTO.class))).thenReturn(dtoQuery);
+    when(dtoQuery.getResultList()).thenReturn(List.of());
+
+    warehouseDAO.getWarehouseDTOPageByOwner(owner, pageRequest);
+
+    ArgumentCaptor<String> jpql = ArgumentCaptor.forClass(String.class);
+    verify(entityManager).createQuery(jpql.capture(), eq(WarehouseDTO.class));
+    assertTrue(jpql.getValue().contains(
+        "AND (w.name > :lastSortValue OR (w.name = :lastSortValue AND w.id > :lastId))"));
+    verify(dtoQuery).setParameter("lastSortValue", "Warehouse 7");
+    verify(dtoQuery).setParameter("lastId", 7L);
+    verify(transaction, never()).begin();
+    verify(entityManager).close();
+  }
+
+  @Test
+  void getWarehouseDTOsByOwner_shouldProjectIntoDTOsWithoutTransaction() throws WarehouseDAOException {
+
+    Owner owner = new Owner();
+    List<WarehouseDTO> expectedWarehouses = List.of(new WarehouseDTO(), new WarehouseDTO());
+    when(entityManager.createNamedQuery(anyString(), eq(WarehouseDTO.class))).thenReturn(dtoQuery);
+    when(dtoQuery.getResultList()).thenReturn(expectedWarehouses);
+
+    List<WarehouseDTO> result = warehouseDAO.getWarehouseDTOsByOwner(owner);
+
+    assertEquals(expectedWarehouses, result);
+    verify(entityManager).createNamedQuery(QueryNames.WAREHOUSE_FIND_DTOS_BY_OWNER, WarehouseDTO.class);
+    verify(dtoQuery).setParameter("owner", owner);
+    verify(transaction, never()).begin();
+    verify(entityManager).close();
+  }
+
+  @Test
+  void getAvailableWarehouseDTOsByOwner_shouldFilterByAvailableStatus() throws WarehouseDAOException {
+
+    Owner owner = new Owner();
+    when(entityManager.createNamedQuery(anyString(), eq(WarehouseDTO.class))).thenReturn(dtoQuery);
+    when(dtoQuery.getResultList()).thenReturn(List.of());
+
+    warehouseDAO.getAvailableWarehouseDTOsByOwner(owner);
+
+    verify(entityManager).createNamedQuery(QueryNames.WAREHOUSE_FIND_AVAILABLE_DTOS_BY_OWNER, WarehouseDTO.class);
+    verify(dtoQuery).setParameter("owner", owner);
+    verify(dtoQuery).setParameter("available", WarehouseStatus.AVAILABLE);
+  }
+
+  @Test
+  void getWarehouseDTOsByOwner_whenQueryFails_shouldThrowWarehouseDAOException() {
+
+    Owner owner = new Owner();
+    when(entityManager.createNamedQuery(anyString(), eq(WarehouseDTO.class))).thenReturn(dtoQuery);
+    when(dtoQuery.getResultList()).thenThrow(new RuntimeException("Error during retrieval"));
+
+    assertThrows(WarehouseDAOException.class, () -> warehouseDAO.getWarehouseDTOsByOwner(owner));
+    verify(entityManager).close();
+  }
+
   @Test
   void getWarehouseByNameAndOwner_shouldReturnWarehouseOptional() {
 
@@ -261,7 +389,7 @@ class WarehouseDAOTest {
     Warehouse expectedWarehouse = new Warehouse();
     expectedWarehouse.setName(warehouseName);
     expectedWarehouse.setOwner(owner);
-    when(entityManager.createQuery(anyString(), eq(Warehouse.class))).thenReturn(query);
+    when(entityManager.createNamedQuery(anyString(), eq(Warehouse.class))).thenReturn(query);
     when(query.setParameter("name", warehouseName)).thenReturn(query);
     when(query.setParameter("owner", owner)).thenReturn(query);
     when(query.getSingleResult()).thenReturn(expectedWarehouse);
@@ -284,7 +412,7 @@ class WarehouseDAOTest {
 
     Owner owner = new Owner();
     String warehouseName = "Non Existent Warehouse";
-    when(entityManager.createQuery(anyString(), eq(Warehouse.class))).thenReturn(query);
+    when(entityManager.createNamedQuery(anyString(), eq(Warehouse.class))).thenReturn(query);
     when(query.setParameter("name", warehouseName)).thenReturn(query);
     when(query.setParameter("owner", owner)).thenReturn(query);
     when(query.getSingleResult()).thenThrow(new NoResultException());
@@ -318,7 +446,7 @@ class WarehouseDAOTest {
 
     // Assertions
     verify(entityManagerFactory).createEntityManager();
-    verify(entityManager).createQuery(anyString(), eq(WarehouseRentalAgreementDto.class));
+    verify(entityManager).createNamedQuery(anyString(), eq(WarehouseRentalAgreementDto.class));
     verify(typedQuery).setParameter("ownerId", ownerId);
     verify(typedQuery).getResultList();
     verify(entityManager).close();
@@ -0,0 +1,171 @@
+package bg.tuvarna.sit.wms.dao;
+
+import bg.tuvarna.sit.wms.entities.Warehouse;
+import bg.tuvarna.sit.wms.enums.WarehouseStatus;
+import bg.tuvarna.sit.wms.exceptions.WarehouseDAOException;
+import bg.tuvarna.sit.wms.util.OptimisticLocking;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.Persistence;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class WarehouseOptimisticLockingTest {
+
+  private static final int THREADS = 8;
+  private static final int UPDATES_PER_THREAD = 25;
+  private static final double INITIAL_SIZE = 100.0;
+
+  private EntityManagerFactory entityManagerFactory;
+  private WarehouseDAO warehouseDAO;
+  private TestData testData;
+  private Long warehouseId;
+
+  @BeforeEach
+  void setUp() {
+
+    entityManagerFactory = Persistence.createEntityManagerFactory("wms-test");
+    warehouseDAO = new WarehouseDAO(entityManagerFactory);
+    testData = new TestData(entityManagerFactory);
+    warehouseId = persistWarehouse();
+  }
+
+  @AfterEach
+  void tearDown() {
+
+    entityManagerFactory.close();
+  }
+
+  @Test
+  void update_withStaleVersion_shouldBeRejected() throws WarehouseDAOException {
+
+    Warehouse first = warehouseDAO.getById(warehouseId).orElseThrow();
+    Warehouse second = warehouseDAO.getById(warehouseId).orElseThrow();
+
+    first.setStatus(WarehouseStatus.RENTED);
+    warehouseDAO.update(first);
+    second.setStatus(WarehouseStatus.PENDING_RENTAL);
+
+    WarehouseDAOException exception = assertThrows(WarehouseDAOException.class, () -> warehouseDAO.update(second));
+
+    assertTrue(OptimisticLocking.isConflict(exception));
+    Warehouse stored = warehouseDAO.getById(warehouseId).orElseThrow();
+    assertEquals(WarehouseStatus.RENTED, stored.getStatus());
+    assertEquals(1, stored.getVersion());
+  }
+
+  @Test
+  void concurrentUpdates_withRetryOnConflict_shouldNotLoseUpdates() {
+
+    assertTimeoutPreemptively(Duration.ofSeconds(60), () -> {
+      ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+      CountDownLatch start = new CountDownLatch(1);
+      List<Future<?>> futures = new ArrayList<>();
+
+      try {
+        for (int i = 0; i < THREADS; i++) {
+          futures.add(executor.submit(() -> {
+            start.await();
+            for (int update = 0; update < UPDATES_PER_THREAD; update++) {
+              OptimisticLocking.retryOnConflict(Integer.MAX_VALUE, () -> {
+                Warehouse warehouse = warehouseDAO.getById(warehouseId).orElseThrow();
+                warehouse.setSize(warehouse.getSize() + 1);
+                warehouseDAO.update(warehouse);
+                return null;
+              });
+            }
+            return null;
+          }));
+        }
+
+        start.countDown();
+        for (Future<?> future : futures) {
+          future.get();
+        }
+      } finally {
+        executor.shutdownNow();
+        executor.awaitTermination(5, TimeUnit.SECONDS);
+      }
+    });
+
+    Warehouse stored = warehouseDAO.getById(warehouseId).orElseThrow();
+    assertEquals(INITIAL_SIZE + THREADS * UPDATES_PER_THREAD, stored.getSize());
+    assertEquals(THREADS * UPDATES_PER_THREAD, stored.getVersion());
+  }
+
+  @Test
+  void concurrentTransitions_fromSameStatus_shouldLetExactlyOneSucceed() {
+
+    AtomicInteger successes = new AtomicInteger();
+
+    assertTimeoutPreemptively(Duration.ofSeconds(60), () -> {
+      ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+      CountDownLatch start = new CountDownLatch(1);
+      List<Future<?>> futures = new ArrayList<>();
+
+      try {
+        for (int i = 0; i < THREADS; i++) {
+          futures.add(executor.submit(() -> {
+            start.await();
+            if (warehouseDAO.transitionStatus(warehouseId, WarehouseStatus.AVAILABLE, WarehouseStatus.PENDING_RENTAL)) {
+              successes.incrementAndGet();
+            }
+            return null;
+          }));
+        }
+
+        start.countDown();
+        for (Future<?> future : futures) {
+          future.get();
+        }
+      } finally {
+        executor.shutdownNow();
+        executor.awaitTermination(5, TimeUnit.SECONDS);
+      }
+    });
+
+    Warehouse stored = warehouseDAO.getById(warehouseId).orElseThrow();
+    assertEquals(1, successes.get());
+    assertEquals(WarehouseStatus.PENDING_RENTAL, stored.getStatus());
+    assertEquals(1, stored.getVersion());
+  }
+
+  @Test
+  void transitionStatus_shouldMakeLoadedCopiesStale() throws WarehouseDAOException {
+
+    Warehouse loaded = warehouseDAO.getById(warehouseId).orElseThrow();
+
+    assertTrue(warehouseDAO.transitionStatus(warehouseId, WarehouseStatus.AVAILABLE, WarehouseStatus.PENDING_RENTAL));
+    assertFalse(warehouseDAO.transitionStatus(warehouseId, WarehouseStatus.AVAILABLE, WarehouseStatus.PENDING_RENTAL));
+
+    loaded.setSize(loaded.getSize() + 1);
+    WarehouseDAOException exception = assertThrows(WarehouseDAOException.class, () -> warehouseDAO.update(loaded));
+    assertTrue(OptimisticLocking.isConflict(exception));
+  }
+
+  private Long persistWarehouse() {
+
+    return testData.inTransaction(em -> {
+      Warehouse warehouse = TestData.newWarehouse(testData.persistOwner(em), testData.persistCity(em), 1);
+      warehouse.setSize(INITIAL_SIZE);
+      em.persist(warehouse);
+      return warehouse.getId();
+    });
+  }
+}
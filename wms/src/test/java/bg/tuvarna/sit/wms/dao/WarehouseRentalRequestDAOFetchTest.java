@@ -0,0 +1,211 @@
+package bg.tuvarna.sit.wms.dao;
+
+import bg.tuvarna.sit.wms.entities.Agent;
+import bg.tuvarna.sit.wms.entities.City;
+import bg.tuvarna.sit.wms.entities.Owner;
+import bg.tuvarna.sit.wms.entities.RequestDetails;
+import bg.tuvarna.sit.wms.entities.Warehouse;
+import bg.tuvarna.sit.wms.entities.WarehouseRentalRequest;
+import bg.tuvarna.sit.wms.enums.RequestStatus;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.Persistence;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class WarehouseRentalRequestDAOFetchTest {
+
+  private EntityManagerFactory entityManagerFactory;
+  private WarehouseRentalRequestDAO warehouseRentalRequestDAO;
+  private Statistics statistics;
+  private TestData testData;
+
+  @BeforeEach
+  void setUp() {
+
+    entityManagerFactory = Persistence.createEntityManagerFactory("wms-test");
+    warehouseRentalRequestDAO = new WarehouseRentalRequestDAO(entityManagerFactory);
+    statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+    testData = new TestData(entityManagerFactory);
+  }
+
+  @AfterEach
+  void tearDown() {
+
+    entityManagerFactory.close();
+  }
+
+  @Test
+  void getAllByStatusAndAgent_shouldUseSingleStatementRegardlessOfInboxSize() {
+
+    Agent smallInboxAgent = persistAgentWithInbox(1);
+    Agent largeInboxAgent = persistAgentWithInbox(10);
+
+    statistics.clear();
+    List<WarehouseRentalRequest> smallInbox =
+        warehouseRentalRequestDAO.getAllByStatusAndAgent(RequestStatus.PENDING, smallInboxAgent);
+    long smallInboxStatements = statistics.getPrepareStatementCount();
+
+    statistics.clear();
+    List<WarehouseRentalRequest> largeInbox =
+        warehouseRentalRequestDAO.getAllByStatusAndAgent(RequestStatus.PENDING, largeInboxAgent);
+    long largeInboxStatements = statistics.getPrepareStatementCount();
+
+    assertEquals(1, smallInbox.size());
+    assertEquals(10, largeInbox.size());
+    assertEquals(1, smallInboxStatements);
+    assertEquals(smallInboxStatements, largeInboxStatements);
+  }
+
+  @Test
+  void getAllByStatusAndAgent_shouldInitializeWarehouseGraph() {
+
+    Agent agent = persistAgentWithInbox(3);
+
+    List<WarehouseRentalRequest> inbox = warehouseRentalRequestDAO.getAllByStatusAndAgent(RequestStatus.PENDING, agent);
+
+    assertEquals(3, inbox.size());
+    Warehouse warehouse = inbox.get(0).getRequestDetails().getWarehouse();
+    assertEquals(TestData.CITY_NAME, warehouse.getAddress().getCity().getName());
+    assertEquals(TestData.COUNTRY_NAME, warehouse.getAddress().getCity().getCountry().getName());
+    assertEquals(TestData.STORAGE_TYPE_NAME, warehouse.getStorageType().getTypeName());
+    assertEquals(agent.getEmail(), inbox.get(0).getAgent().getEmail());
+  }
+
+  @Test
+  void getAllByStatusAndAgent_shouldSkipOtherStatusesAndInvalidRequests() {
+
+    Agent agent = persistAgentWithInbox(2);
+    testData.inTransaction(em -> {
+      List<WarehouseRentalRequest> requests = em.createQuery(
+              "SELECT r FROM WarehouseRentalRequest r WHERE r.agent.id = :agentId ORDER BY r.id",
+              WarehouseRentalRequest.class)
+          .setParameter("agentId", agent.getId())
+          .getResultList();
+      requests.get(0).setStatus(RequestStatus.ACCEPTED);
+      requests.get(1).setInvalid(true);
+      return null;
+    });
+
+    assertEquals(0, warehouseRentalRequestDAO.getAllByStatusAndAgent(RequestStatus.PENDING, agent).size());
+    assertEquals(1, warehouseRentalRequestDAO.getAllByStatusAndAgent(RequestStatus.ACCEPTED, agent).size());
+  }
+
+  @Test
+  void invalidateOtherPendingRequests_shouldUseSingleStatementForAllCompetingRequests() throws Exception {
+
+    List<WarehouseRentalRequest> requests = persistCompetingRequests(25);
+    WarehouseRentalRequest accepted = requests.get(0);
+
+    statistics.clear();
+    int invalidated = warehouseRentalRequestDAO.invalidateOtherPendingRequests(
+        accepted.getRequestDetails().getWarehouse().getId(), accepted.getId());
+
+    assertEquals(24, invalidated);
+    assertEquals(1, statistics.getPrepareStatementCount());
+    assertTrue(warehouseRentalRequestDAO.getById(accepted.getId()).isPresent());
+    assertTrue(warehouseRentalRequestDAO.getById(requests.get(1).getId()).isEmpty());
+  }
+
+  @Test
+  void transitionStatus_shouldOnlyMoveRequestsStillInExpectedStatus() throws Exception {
+
+    List<WarehouseRentalRequest> requests = persistCompetingRequests(2);
+    Long acceptedId = requests.get(0).getId();
+    Long declinedId = requests.get(1).getId();
+
+    assertTrue(warehouseRentalRequestDAO.transitionStatus(acceptedId, RequestStatus.PENDING, RequestStatus.ACCEPTED));
+    assertFalse(warehouseRentalRequestDAO.transitionStatus(acceptedId, RequestStatus.PENDING, RequestStatus.ACCEPTED));
+    assertTrue(warehouseRentalRequestDAO.transitionStatus(declinedId, RequestStatus.PENDING, RequestStatus.DECLINED));
+
+    WarehouseRentalRequest accepted = warehouseRentalRequestDAO.getById(acceptedId).orElseThrow();
+    assertEquals(RequestStatus.ACCEPTED, accepted.getStatus());
+    assertEquals(1, accepted.getVersion());
+    assertTrue(warehouseRentalRequestDAO.getById(declinedId).isEmpty());
+  }
+
+  @Test
+  void acceptFlow_afterCompetingAcceptance_shouldFindOwnRequestInvalidated() throws Exception {
+
+    List<WarehouseRentalRequest> requests = persistCompetingRequests(3);
+    Long warehouseId = requests.get(0).getRequestDetails().getWarehouse().getId();
+    Long firstId = requests.get(0).getId();
+    Long secondId = requests.get(1).getId();
+
+    assertTrue(warehouseRentalRequestDAO.transitionStatus(firstId, RequestStatus.PENDING, RequestStatus.ACCEPTED));
+    assertEquals(2, warehouseRentalRequestDAO.invalidateOtherPendingRequests(warehouseId, firstId));
+
+    assertFalse(warehouseRentalRequestDAO.transitionStatus(secondId, RequestStatus.PENDING, RequestStatus.ACCEPTED));
+    assertEquals(RequestStatus.ACCEPTED, warehouseRentalRequestDAO.getById(firstId).orElseThrow().getStatus());
+  }
+
+  @Test
+  void saveRequestsForAgents_shouldBatchInsertsInSingleTransaction() throws Exception {
+
+    int agentCount = 120;
+    List<Long> agentIds = new ArrayList<>();
+
+    RequestDetails requestDetails = testData.inTransaction(em -> {
+      Warehouse warehouse = TestData.newWarehouse(testData.persistOwner(em), testData.persistCity(em), 0);
+      em.persist(warehouse);
+
+      for (int i = 0; i < agentCount; i++) {
+        agentIds.add(testData.persistAgent(em).getId());
+      }
+      return TestData.newRequestDetails(warehouse);
+    });
+
+    statistics.clear();
+    warehouseRentalRequestDAO.saveRequestsForAgents(requestDetails, agentIds);
+
+    assertEquals(agentCount + 1, statistics.getEntityInsertCount());
+    assertEquals(1, statistics.getTransactionCount());
+    assertTrue(statistics.getPrepareStatementCount() < agentCount / 10,
+        "Expected batched inserts, but " + statistics.getPrepareStatementCount() + " statements were prepared");
+  }
+
+  private List<WarehouseRentalRequest> persistCompetingRequests(int agentCount) {
+
+    return testData.inTransaction(em -> {
+      Warehouse warehouse = TestData.newWarehouse(testData.persistOwner(em), testData.persistCity(em), 0);
+      em.persist(warehouse);
+
+      RequestDetails requestDetails = TestData.newRequestDetails(warehouse);
+      em.persist(requestDetails);
+
+      List<WarehouseRentalRequest> requests = new ArrayList<>();
+      for (int i = 0; i < agentCount; i++) {
+        requests.add(TestData.persistPendingRequest(em, testData.persistAgent(em), requestDetails));
+      }
+      return requests;
+    });
+  }
+
+  private Agent persistAgentWithInbox(int requestCount) {
+
+    return testData.inTransaction(em -> {
+      Owner owner = testData.persistOwner(em);
+      Agent agent = testData.persistAgent(em);
+      City city = testData.persistCity(em);
+
+      for (int i = 0; i < requestCount; i++) {
+        Warehouse warehouse = TestData.newWarehouse(owner, city, i);
+        em.persist(warehouse);
+
+        RequestDetails requestDetails = TestData.newRequestDetails(warehouse);
+        em.persist(requestDetails);
+        TestData.persistPendingRequest(em, agent, requestDetails);
+      }
+      return agent;
+    });
+  }
+}
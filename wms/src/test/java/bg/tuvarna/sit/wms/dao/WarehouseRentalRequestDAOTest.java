@@ -7,6 +7,8 @@ import bg.tuvarna.sit.wms.entities.Warehouse;
 import bg.tuvarna.sit.wms.entities.WarehouseRentalRequest;
 import bg.tuvarna.sit.wms.enums.RequestStatus;
 import bg.tuvarna.sit.wms.exceptions.RentalRequestDAOException;
+import bg.tuvarna.sit.wms.util.QueryNames;
+import org.hibernate.Session;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.InjectMocks;
@@ -16,12 +18,15 @@ import org.mockito.MockitoAnnotations;
 import javax.persistence.EntityManager;
 import javax.persistence.EntityManagerFactory;
 import javax.persistence.EntityTransaction;
+import javax.persistence.Query;
 import javax.persistence.TypedQuery;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
 
 import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
@@ -45,6 +50,9 @@ class WarehouseRentalRequestDAOTest {
   @Mock
   private EntityTransaction transaction;
 
+  @Mock
+  private Session session;
+
   @Mock
   private TypedQuery<WarehouseRentalRequest> query;
 
@@ -58,6 +66,7 @@ class WarehouseRentalRequestDAOTest {
     entityManager = mock(EntityManager.class);
     when(entityManagerFactory.createEntityManager()).thenReturn(entityManager);
     when(entityManager.getTransaction()).thenReturn(transaction);
+    when(entityManager.unwrap(Session.class)).thenReturn(session);
     when(entityManager.isOpen()).thenReturn(true);
     when(transaction.isActive()).thenReturn(true);
   }
@@ -96,38 +105,109 @@ class WarehouseRentalRequestDAOTest {
     verify(transaction, times(1)).rollback();
   }
 
+  @Test
+  void saveRequestsForAgents_shouldPersistDetailsOnceAndRequestsInOneTransaction() throws RentalRequestDAOException {
+    RequestDetails requestDetails = createMockRequestDetails();
+    requestDetails.setId(null);
+    List<Long> agentIds = new ArrayList<>();
+    for (long id = 1; id <= 120; id++) {
+      agentIds.add(id);
+    }
+
+    warehouseRentalRequestDAO.saveRequestsForAgents(requestDetails, agentIds);
+
+    verify(transaction, times(1)).begin();
+    verify(entityManager, times(1)).persist(requestDetails);
+    verify(entityManager, times(120)).persist(any(WarehouseRentalRequest.class));
+    verify(entityManager, times(2)).flush();
+    verify(transaction, times(1)).commit();
+  }
+
+  @Test
+  void saveRequestsForAgents_shouldRollbackAndThrowException() {
+    doThrow(new RuntimeException("Simulated exception")).when(entityManager).persist(any(WarehouseRentalRequest.class));
+
+    assertThrows(RentalRequestDAOException.class,
+        () -> warehouseRentalRequestDAO.saveRequestsForAgents(createMockRequestDetails(), List.of(1L, 2L)));
+
+    verify(transaction, times(1)).rollback();
+  }
+
   @Test
   void changeStatus_shouldChangeRentalRequestStatus() {
     WarehouseRentalRequest warehouseRentalRequest = createMockWarehouseRentalRequest();
+    Query updateQuery = mock(Query.class);
 
     when(entityManager.getTransaction()).thenReturn(transaction);
     when(transaction.isActive()).thenReturn(true);
-    when(entityManager.find(eq(WarehouseRentalRequest.class), any())).thenReturn(warehouseRentalRequest);
+    when(entityManager.createNamedQuery(anyString())).thenReturn(updateQuery);
+    when(updateQuery.executeUpdate()).thenReturn(1);
 
     assertDoesNotThrow(() -> {
       warehouseRentalRequestDAO.changeStatus(warehouseRentalRequest, RequestStatus.ACCEPTED);
     });
 
-    verify(transaction, times(2)).begin();
-    verify(entityManager, times(1)).find(eq(WarehouseRentalRequest.class), any());
-    verify(transaction, times(2)).commit();
+    verify(entityManagerFactory, times(1)).createEntityManager();
+    verify(transaction, times(1)).begin();
+    verify(entityManager, never()).find(eq(WarehouseRentalRequest.class), any());
+    verify(updateQuery).setParameter("from", RequestStatus.PENDING);
+    verify(updateQuery).setParameter("to", RequestStatus.ACCEPTED);
+    verify(transaction, times(1)).commit();
   }
 
   @Test
-  void changeStatus_entityNotFound_shouldThrowException() throws RentalRequestDAOException {
+  void changeStatus_entityNotFound_shouldThrowException() {
     WarehouseRentalRequest warehouseRentalRequest = createMockWarehouseRentalRequest();
+    Query updateQuery = mock(Query.class);
 
     when(entityManager.getTransaction()).thenReturn(transaction);
     when(transaction.isActive()).thenReturn(true);
-    when(entityManager.find(eq(WarehouseRentalRequest.class), any())).thenReturn(null);
+    when(entityManager.createNamedQuery(anyString())).thenReturn(updateQuery);
+    when(updateQuery.executeUpdate()).thenReturn(0);
 
     assertThrows(RentalRequestDAOException.class, () -> {
       warehouseRentalRequestDAO.changeStatus(warehouseRentalRequest, RequestStatus.ACCEPTED);
     });
 
-    verify(transaction, times(2)).begin();
-    verify(entityManager, times(1)).find(eq(WarehouseRentalRequest.class), any());
-    verify(transaction, times(1)).rollback();
+    verify(transaction, times(1)).begin();
+    verify(updateQuery, times(1)).executeUpdate();
+  }
+
+  @Test
+  void transitionStatus_shouldCompareAndSetStatus() throws RentalRequestDAOException {
+    Query updateQuery = mock(Query.class);
+
+    when(entityManager.createNamedQuery(anyString())).thenReturn(updateQuery);
+    when(updateQuery.executeUpdate()).thenReturn(1);
+
+    assertTrue(warehouseRentalRequestDAO.transitionStatus(1L, RequestStatus.PENDING, RequestStatus.DECLINED));
+
+    verify(entityManager).createNamedQuery(QueryNames.REQUEST_TRANSITION_STATUS);
+    verify(updateQuery).setParameter("id", 1L);
+    verify(updateQuery).setParameter("invalid", true);
+    verify(entityManager, never()).find(any(), any());
+    verify(transaction, times(1)).commit();
+  }
+
+  @Test
+  void transitionStatus_noLongerInExpectedStatus_shouldReturnFalse() throws RentalRequestDAOException {
+    Query updateQuery = mock(Query.class);
+
+    when(entityManager.createNamedQuery(anyString())).thenReturn(updateQuery);
+    when(updateQuery.executeUpdate()).thenReturn(0);
+
+    assertFalse(warehouseRentalRequestDAO.transitionStatus(1L, RequestStatus.PENDING, RequestStatus.ACCEPTED));
+    verify(updateQuery).setParameter("invalid", false);
+  }
+
+  @Test
+  void transitionStatus_notAllowedTransition_shouldThrowWithoutQuerying() {
+    assertThrows(IllegalArgumentException.class,
+        () -> warehouseRentalRequestDAO.transitionStatus(1L, RequestStatus.DECLINED, RequestStatus.ACCEPTED));
+    assertThrows(IllegalArgumentException.class,
+        () -> warehouseRentalRequestDAO.transitionStatus(1L, RequestStatus.ACCEPTED, RequestStatus.PENDING));
+
+    verify(entityManager, never()).createNamedQuery(anyString());
   }
 
   @Test
@@ -163,6 +243,37 @@ class WarehouseRentalRequestDAOTest {
     verify(transaction, times(1)).rollback();
   }
 
+  @Test
+  void invalidateOtherPendingRequests_shouldRunSingleBulkUpdate() throws RentalRequestDAOException {
+    Query updateQuery = mock(Query.class);
+
+    when(entityManager.createNamedQuery(anyString())).thenReturn(updateQuery);
+    when(updateQuery.executeUpdate()).thenReturn(3);
+
+    int result = warehouseRentalRequestDAO.invalidateOtherPendingRequests(7L, 1L);
+
+    assertEquals(3, result);
+    verify(updateQuery).setParameter("warehouseId", 7L);
+    verify(updateQuery).setParameter("acceptedRequestId", 1L);
+    verify(updateQuery).setParameter("pending", RequestStatus.PENDING);
+    verify(updateQuery, times(1)).executeUpdate();
+    verify(entityManager, never()).merge(any());
+    verify(transaction, times(1)).commit();
+  }
+
+  @Test
+  void invalidateOtherPendingRequests_shouldRollbackAndThrowException() {
+    Query updateQuery = mock(Query.class);
+
+    when(entityManager.createNamedQuery(anyString())).thenReturn(updateQuery);
+    when(updateQuery.executeUpdate()).thenThrow(new RuntimeException("Simulated exception"));
+
+    assertThrows(RentalRequestDAOException.class,
+        () -> warehouseRentalRequestDAO.invalidateOtherPendingRequests(7L, 1L));
+
+    verify(transaction, times(1)).rollback();
+  }
+
   @Test
   void getById_shouldRetrieveRequest() {
     long requestId = 1L;
@@ -182,7 +293,7 @@ class WarehouseRentalRequestDAOTest {
     Warehouse warehouse = createMockWarehouse();
     List<WarehouseRentalRequest> mockRequests = createMockWarehouseRentalRequests(5);
 
-    when(entityManager.createQuery(anyString(), eq(WarehouseRentalRequest.class))).thenReturn(query);
+    when(entityManager.createNamedQuery(anyString(), eq(WarehouseRentalRequest.class))).thenReturn(query);
     when(query.setParameter(anyString(), any())).thenReturn(query);
     when(query.getResultList()).thenReturn(mockRequests);
 
@@ -190,7 +301,8 @@ class WarehouseRentalRequestDAOTest {
 
     assertEquals(mockRequests, result);
 
-    verify(entityManager, times(1)).createQuery(anyString(), eq(WarehouseRentalRequest.class));
+    verify(entityManager, times(1))
+        .createNamedQuery(QueryNames.REQUEST_FIND_VALID_BY_WAREHOUSE, WarehouseRentalRequest.class);
     verify(query, times(1)).setParameter(anyString(), any());
     verify(query, times(1)).getResultList();
   }
@@ -201,7 +313,7 @@ class WarehouseRentalRequestDAOTest {
     Agent agent = createMockAgent();
     List<WarehouseRentalRequest> mockRequests = createMockWarehouseRentalRequests(5);
 
-    when(entityManager.createQuery(anyString(), eq(WarehouseRentalRequest.class))).thenReturn(query);
+    when(entityManager.createNamedQuery(anyString(), eq(WarehouseRentalRequest.class))).thenReturn(query);
     when(query.setParameter(anyString(), any())).thenReturn(query);
     when(query.getResultList()).thenReturn(mockRequests);
 
@@ -209,7 +321,8 @@ class WarehouseRentalRequestDAOTest {
 
     assertEquals(mockRequests, result);
 
-    verify(entityManager, times(1)).createQuery(anyString(), eq(WarehouseRentalRequest.class));
+    verify(entityManager, times(1))
+        .createNamedQuery(QueryNames.REQUEST_FIND_BY_STATUS_AND_AGENT, WarehouseRentalRequest.class);
     verify(query, times(2)).setParameter(anyString(), any());
     verify(query, times(1)).getResultList();
   }
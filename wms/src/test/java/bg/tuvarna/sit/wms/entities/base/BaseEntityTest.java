@@ -0,0 +1,104 @@
+package bg.tuvarna.sit.wms.entities.base;
+
+import bg.tuvarna.sit.wms.entities.Country;
+import bg.tuvarna.sit.wms.util.IdSequences;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.Persistence;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class BaseEntityTest {
+
+  private static final int COUNTRY_COUNT = 2 * BaseEntity.ID_BLOCK_SIZE;
+
+  private EntityManagerFactory entityManagerFactory;
+
+  @BeforeEach
+  void setUp() {
+
+    entityManagerFactory = Persistence.createEntityManagerFactory("wms-test");
+  }
+
+  @AfterEach
+  void tearDown() {
+
+    entityManagerFactory.close();
+  }
+
+  @Test
+  void persist_shouldAssignIdsFromPooledBlocks() {
+
+    List<Country> countries = persistCountries();
+
+    for (int i = 0; i < countries.size(); i++) {
+      Long id = countries.get(i).getId();
+      assertNotNull(id);
+      assertTrue(id >= BaseEntity.ID_INITIAL_VALUE);
+      assertEquals(countries.get(0).getId() + i, id);
+    }
+  }
+
+  @Test
+  void persist_shouldBatchInserts() {
+
+    Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+    statistics.clear();
+
+    persistCountries();
+
+    assertEquals(COUNTRY_COUNT, statistics.getEntityInsertCount());
+    assertTrue(statistics.getPrepareStatementCount() < COUNTRY_COUNT / 10,
+        "Expected batched inserts, but " + statistics.getPrepareStatementCount() + " statements were prepared");
+  }
+
+  @Test
+  void alignWithExistingIds_shouldContinueAfterTheHighestStoredId() {
+
+    long storedId = 5_000;
+    EntityManager em = entityManagerFactory.createEntityManager();
+    try {
+      em.getTransaction().begin();
+      em.createNativeQuery("INSERT INTO countries (id, name) VALUES (:id, 'Stored')")
+          .setParameter("id", storedId)
+          .executeUpdate();
+      em.getTransaction().commit();
+    } finally {
+      em.close();
+    }
+
+    IdSequences.alignWithExistingIds(entityManagerFactory);
+    List<Country> countries = persistCountries();
+
+    assertEquals(storedId + 1, countries.get(0).getId());
+  }
+
+  private List<Country> persistCountries() {
+
+    List<Country> countries = new ArrayList<>();
+    EntityManager em = entityManagerFactory.createEntityManager();
+    try {
+      em.getTransaction().begin();
+      for (int i = 0; i < COUNTRY_COUNT; i++) {
+        Country country = new Country();
+        country.setName("Country " + i);
+        em.persist(country);
+        countries.add(country);
+      }
+      em.getTransaction().commit();
+    } finally {
+      em.close();
+    }
+    return countries;
+  }
+}
@@ -7,20 +7,24 @@ import bg.tuvarna.sit.wms.exceptions.CityCreationException;
 import bg.tuvarna.sit.wms.exceptions.CityDAOException;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import org.mockito.MockitoAnnotations;
 
+import java.util.List;
 import java.util.Optional;
 
 public class CityServiceTest {
@@ -87,4 +91,87 @@ public class CityServiceTest {
 
     assertThrows(CityCreationException.class, () -> cityService.getOrCreateCity(cityName, country));
   }
+
+  @Test
+  void getOrCreateCity_calledTwice_shouldQueryDatabaseOnce() throws CityDAOException, CityCreationException {
+
+    Country country = new Country();
+    country.setId(1L);
+    country.setName("Bulgaria");
+    City existingCity = new City();
+    existingCity.setName("Varna");
+    existingCity.setCountry(country);
+    when(cityDAO.getByNameAndCountry(anyString(), any(Country.class))).thenReturn(Optional.of(existingCity));
+
+    City first = cityService.getOrCreateCity("Varna", country);
+    City second = cityService.getOrCreateCity("varna", country);
+
+    assertSame(first, second);
+    verify(cityDAO, times(1)).getByNameAndCountry(anyString(), any(Country.class));
+  }
+
+  @Test
+  void getOrCreateCity_nameWithSpaces_shouldLookUpAndSaveTrimmedName() throws CityDAOException, CityCreationException {
+
+    Country country = new Country();
+    country.setId(1L);
+    when(cityDAO.getByNameAndCountry(anyString(), any(Country.class))).thenReturn(Optional.empty());
+
+    City city = cityService.getOrCreateCity(" Varna  ", country);
+
+    assertEquals("Varna", city.getName());
+    verify(cityDAO).getByNameAndCountry("Varna", country);
+    verify(cityDAO).save(city);
+  }
+
+  @Test
+  void getOrCreateCity_insideTransaction_shouldCacheCityOnlyAfterCommit() throws CityDAOException, CityCreationException {
+
+    Country country = new Country();
+    country.setId(1L);
+    when(cityDAO.isInTransaction()).thenReturn(true);
+    when(cityDAO.getByNameAndCountry(anyString(), any(Country.class))).thenReturn(Optional.empty());
+
+    City created = cityService.getOrCreateCity("Varna", country);
+    ArgumentCaptor<Runnable> afterCommit = ArgumentCaptor.forClass(Runnable.class);
+    verify(cityDAO).afterCommit(afterCommit.capture());
+    afterCommit.getValue().run();
+
+    assertSame(created, cityService.getOrCreateCity("varna", country));
+    verify(cityDAO, times(1)).save(any(City.class));
+  }
+
+  @Test
+  void getOrCreateCity_sameNameInDifferentCountries_shouldBeCachedSeparately() throws CityDAOException, CityCreationException {
+
+    Country firstCountry = new Country();
+    firstCountry.setId(1L);
+    Country secondCountry = new Country();
+    secondCountry.setId(2L);
+    when(cityDAO.getByNameAndCountry(anyString(), any(Country.class))).thenReturn(Optional.empty());
+
+    City first = cityService.getOrCreateCity("Springfield", firstCountry);
+    City second = cityService.getOrCreateCity("Springfield", secondCountry);
+
+    assertEquals(firstCountry, first.getCountry());
+    assertEquals(secondCountry, second.getCountry());
+    verify(cityDAO, times(2)).save(any(City.class));
+  }
+
+  @Test
+  void warmUpCache_shouldServeCitiesWithoutDatabaseLookup() throws CityDAOException, CityCreationException {
+
+    Country country = new Country();
+    country.setId(1L);
+    City city = new City();
+    city.setName("Varna");
+    city.setCountry(country);
+    when(cityDAO.getAll()).thenReturn(List.of(city));
+
+    cityService.warmUpCache();
+    City result = cityService.getOrCreateCity("Varna", country);
+
+    assertSame(city, result);
+    verify(cityDAO, never()).getByNameAndCountry(anyString(), any(Country.class));
+  }
 }
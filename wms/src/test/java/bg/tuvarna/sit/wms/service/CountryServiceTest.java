@@ -6,16 +6,25 @@ import bg.tuvarna.sit.wms.exceptions.CountryCreationException;
 import bg.tuvarna.sit.wms.exceptions.CountryDAOException;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
@@ -70,4 +79,112 @@ public class CountryServiceTest {
 
     assertThrows(CountryCreationException.class, () -> countryService.getOrCreateCountry(countryName));
   }
-}
\ No newline at end of file
+
+  @Test
+  void getOrCreateCountry_calledTwice_shouldQueryDatabaseOnce() throws CountryDAOException, CountryCreationException {
+
+    Country existingCountry = new Country();
+    existingCountry.setName("Bulgaria");
+    when(countryDAO.getByName(anyString())).thenReturn(Optional.of(existingCountry));
+
+    Country first = countryService.getOrCreateCountry("Bulgaria");
+    Country second = countryService.getOrCreateCountry(" bulgaria ");
+
+    assertSame(first, second);
+    verify(countryDAO, times(1)).getByName(anyString());
+  }
+
+  @Test
+  void getOrCreateCountry_nameWithSpaces_shouldLookUpAndSaveTrimmedName() throws Exception {
+
+    when(countryDAO.getByName(anyString())).thenReturn(Optional.empty());
+
+    Country country = countryService.getOrCreateCountry("  Bulgaria ");
+
+    assertEquals("Bulgaria", country.getName());
+    verify(countryDAO).getByName("Bulgaria");
+    verify(countryDAO).save(country);
+  }
+
+  @Test
+  void getOrCreateCountry_insideTransaction_shouldCacheCountryOnlyAfterCommit() throws Exception {
+
+    Country existingCountry = new Country();
+    existingCountry.setName("Bulgaria");
+    when(countryDAO.isInTransaction()).thenReturn(true);
+    when(countryDAO.getByName(anyString())).thenReturn(Optional.of(existingCountry));
+
+    countryService.getOrCreateCountry("Bulgaria");
+    countryService.getOrCreateCountry("Bulgaria");
+    verify(countryDAO, times(2)).getByName("Bulgaria");
+
+    ArgumentCaptor<Runnable> afterCommit = ArgumentCaptor.forClass(Runnable.class);
+    verify(countryDAO, times(2)).afterCommit(afterCommit.capture());
+    afterCommit.getValue().run();
+
+    assertSame(existingCountry, countryService.getOrCreateCountry("bulgaria"));
+    verify(countryDAO, times(2)).getByName(anyString());
+  }
+
+  @Test
+  void getOrCreateCountry_concurrentMisses_shouldCreateCountryOnce() throws Exception {
+
+    int threads = 8;
+    CountDownLatch start = new CountDownLatch(1);
+    when(countryDAO.getByName(anyString())).thenAnswer(invocation -> {
+      Thread.sleep(50);
+      return Optional.empty();
+    });
+
+    ExecutorService executor = Executors.newFixedThreadPool(threads);
+    try {
+      List<Future<Country>> results = new ArrayList<>();
+      for (int i = 0; i < threads; i++) {
+        results.add(executor.submit(() -> {
+          start.await();
+          return countryService.getOrCreateCountry("New country");
+        }));
+      }
+      start.countDown();
+
+      Country expected = results.get(0).get(5, TimeUnit.SECONDS);
+      for (Future<Country> result : results) {
+        assertSame(expected, result.get(5, TimeUnit.SECONDS));
+      }
+    } finally {
+      executor.shutdownNow();
+    }
+
+    verify(countryDAO, times(1)).getByName("New country");
+    verify(countryDAO, times(1)).save(any(Country.class));
+  }
+
+  @Test
+  void getOrCreateCountry_afterFailedSave_shouldRetry() throws CountryDAOException, CountryCreationException {
+
+    String countryName = "Country";
+    doThrow(new CountryDAOException("Creating country failed"))
+        .doNothing()
+        .when(countryDAO).save(any(Country.class));
+
+    assertThrows(CountryCreationException.class, () -> countryService.getOrCreateCountry(countryName));
+    Country country = countryService.getOrCreateCountry(countryName);
+
+    assertEquals(countryName, country.getName());
+    verify(countryDAO, times(2)).save(any(Country.class));
+  }
+
+  @Test
+  void warmUpCache_shouldServeCountriesWithoutDatabaseLookup() throws CountryDAOException, CountryCreationException {
+
+    Country country = new Country();
+    country.setName("Bulgaria");
+    when(countryDAO.getAll()).thenReturn(List.of(country));
+
+    countryService.warmUpCache();
+    Country result = countryService.getOrCreateCountry("BULGARIA");
+
+    assertSame(country, result);
+    verify(countryDAO, never()).getByName(anyString());
+  }
+}
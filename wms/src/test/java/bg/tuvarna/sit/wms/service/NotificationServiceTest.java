@@ -0,0 +1,145 @@
+package bg.tuvarna.sit.wms.service;
+
+import bg.tuvarna.sit.wms.dao.NotificationDAO;
+import bg.tuvarna.sit.wms.dto.NotificationDTO;
+import bg.tuvarna.sit.wms.dto.NotificationImportDto;
+import bg.tuvarna.sit.wms.exceptions.NotificationPersistenceException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class NotificationServiceTest {
+
+  @Mock
+  private NotificationDAO notificationDAO;
+
+  @Mock
+  private ScheduledExecutorService scheduler;
+
+  private NotificationService notificationService;
+
+  @BeforeEach
+  void setUp() {
+    MockitoAnnotations.openMocks(this);
+    notificationService = new NotificationService(notificationDAO, Runnable::run, scheduler);
+  }
+
+  @Test
+  void publish_shouldQueueAndScheduleSingleFlush() throws Exception {
+
+    notificationService.publish(1L, "First");
+    notificationService.publish(2L, "Second");
+
+    verify(scheduler, times(1)).schedule(any(Runnable.class), eq(NotificationService.FLUSH_DELAY_MS),
+        eq(TimeUnit.MILLISECONDS));
+    verify(notificationDAO, never()).saveAll(any());
+  }
+
+  @Test
+  void flush_shouldWriteQueuedNotificationsInBatches() throws Exception {
+
+    for (int i = 0; i < NotificationService.BATCH_SIZE + 1; i++) {
+      notificationService.publish(1L, "Notification " + i);
+    }
+
+    notificationService.flush();
+
+    ArgumentCaptor<List<NotificationImportDto>> batches = ArgumentCaptor.forClass(List.class);
+    verify(notificationDAO, times(2)).saveAll(batches.capture());
+    assertEquals(NotificationService.BATCH_SIZE, batches.getAllValues().get(0).size());
+    assertEquals(1, batches.getAllValues().get(1).size());
+  }
+
+  @Test
+  void publish_shouldShortenLongMessages() throws Exception {
+
+    notificationService.publish(1L, "x".repeat(NotificationService.MAX_MESSAGE_LENGTH + 10));
+    notificationService.flush();
+
+    ArgumentCaptor<List<NotificationImportDto>> batch = ArgumentCaptor.forClass(List.class);
+    verify(notificationDAO).saveAll(batch.capture());
+    assertEquals(NotificationService.MAX_MESSAGE_LENGTH, batch.getValue().get(0).getMessage().length());
+  }
+
+  @Test
+  void unreadCount_shouldBeLoadedOnceAndUpdatedIncrementally() throws Exception {
+
+    List<Long> changes = new ArrayList<>();
+    notificationService.addUnreadCountListener((userId, unreadCount) -> changes.add(unreadCount));
+    when(notificationDAO.countUnreadByUser(1L)).thenReturn(2L);
+    when(notificationDAO.markAsRead(eq(1L), any())).thenReturn(1);
+
+    assertEquals(2, notificationService.getUnreadCount(1L));
+    notificationService.publish(1L, "New");
+    notificationService.publish(1L, "Newer");
+    notificationService.flush();
+    assertEquals(4, notificationService.getUnreadCount(1L));
+    notificationService.markAsRead(1L, List.of(5L));
+    assertEquals(3, notificationService.getUnreadCount(1L));
+    notificationService.markAllAsRead(1L);
+
+    assertEquals(0, notificationService.getUnreadCount(1L));
+    assertEquals(List.of(4L, 3L, 0L), changes);
+    verify(notificationDAO, times(1)).countUnreadByUser(1L);
+  }
+
+  @Test
+  void refreshUnreadCount_shouldPickUpChangesOfOtherClients() {
+
+    List<Long> changes = new ArrayList<>();
+    notificationService.addUnreadCountListener((userId, unreadCount) -> changes.add(unreadCount));
+    when(notificationDAO.countUnreadByUser(1L)).thenReturn(2L, 5L);
+
+    assertEquals(2, notificationService.getUnreadCount(1L));
+    assertEquals(5, notificationService.refreshUnreadCount(1L));
+
+    assertEquals(5, notificationService.getUnreadCount(1L));
+    assertEquals(List.of(5L), changes);
+    verify(notificationDAO, times(2)).countUnreadByUser(1L);
+  }
+
+  @Test
+  void flush_whenBatchFails_shouldNotChangeUnreadCount() throws Exception {
+
+    when(notificationDAO.countUnreadByUser(1L)).thenReturn(0L);
+    doThrow(new NotificationPersistenceException("Simulated exception")).when(notificationDAO).saveAll(any());
+
+    notificationService.getUnreadCount(1L);
+    notificationService.publish(1L, "Lost");
+    notificationService.flush();
+
+    assertEquals(0, notificationService.getUnreadCount(1L));
+  }
+
+  @Test
+  void getUnreadNotifications_shouldResynchronizeUnreadCount() {
+
+    when(notificationDAO.countUnreadByUser(1L)).thenReturn(7L);
+    when(notificationDAO.getUnreadByUser(anyLong(), anyInt()))
+        .thenReturn(List.of(new NotificationDTO(1L, "Only one", LocalDateTime.now())));
+
+    notificationService.getUnreadCount(1L);
+    notificationService.getUnreadNotifications(1L);
+
+    assertEquals(1, notificationService.getUnreadCount(1L));
+  }
+}
@@ -0,0 +1,134 @@
+package bg.tuvarna.sit.wms.service;
+
+import bg.tuvarna.sit.wms.dao.TestData;
+import bg.tuvarna.sit.wms.dao.UserDao;
+import bg.tuvarna.sit.wms.dao.WarehouseRentalRequestDAO;
+import bg.tuvarna.sit.wms.dto.RentalRequestDTO;
+import bg.tuvarna.sit.wms.dto.WarehouseDTO;
+import bg.tuvarna.sit.wms.entities.RequestDetails;
+import bg.tuvarna.sit.wms.entities.Warehouse;
+import bg.tuvarna.sit.wms.entities.WarehouseRentalRequest;
+import bg.tuvarna.sit.wms.enums.RequestStatus;
+import bg.tuvarna.sit.wms.exceptions.RequestConflictException;
+import bg.tuvarna.sit.wms.util.TransactionTemplate;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.Persistence;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+import static org.mockito.Mockito.mock;
+
+class RentalRequestServiceConcurrencyTest {
+
+  private static final int ROUNDS = 10;
+
+  private EntityManagerFactory entityManagerFactory;
+  private WarehouseRentalRequestDAO warehouseRentalRequestDAO;
+  private RentalRequestService rentalRequestService;
+  private TestData testData;
+
+  @BeforeEach
+  void setUp() {
+
+    entityManagerFactory = Persistence.createEntityManagerFactory("wms-test");
+    warehouseRentalRequestDAO = new WarehouseRentalRequestDAO(entityManagerFactory);
+    rentalRequestService = new RentalRequestService(warehouseRentalRequestDAO, mock(WarehouseService.class),
+        new UserDao(entityManagerFactory), new TransactionTemplate(entityManagerFactory), Runnable::run);
+    testData = new TestData(entityManagerFactory);
+  }
+
+  @AfterEach
+  void tearDown() {
+
+    entityManagerFactory.close();
+  }
+
+  @Test
+  void concurrentAccepts_ofOneWarehouse_shouldLetExactlyOneSucceed() {
+
+    assertTimeoutPreemptively(Duration.ofSeconds(60), () -> {
+      ExecutorService executor = Executors.newFixedThreadPool(2);
+      try {
+        for (int round = 0; round < ROUNDS; round++) {
+          List<RentalRequestDTO> requests = persistCompetingRequests(round);
+          CountDownLatch start = new CountDownLatch(1);
+          List<Future<?>> futures = new ArrayList<>();
+          for (RentalRequestDTO request : requests) {
+            futures.add(executor.submit(() -> {
+              start.await();
+              rentalRequestService.acceptRentalRequest(request);
+              return null;
+            }));
+          }
+
+          start.countDown();
+          int successes = 0;
+          List<Throwable> failures = new ArrayList<>();
+          for (Future<?> future : futures) {
+            try {
+              future.get();
+              successes++;
+            } catch (ExecutionException e) {
+              failures.add(e.getCause());
+            }
+          }
+
+          assertEquals(1, successes);
+          assertEquals(1, failures.size());
+          assertInstanceOf(RequestConflictException.class, failures.get(0));
+          assertEquals(1, countAccepted(requests));
+        }
+      } finally {
+        executor.shutdownNow();
+        executor.awaitTermination(5, TimeUnit.SECONDS);
+      }
+    });
+  }
+
+  private List<RentalRequestDTO> persistCompetingRequests(int index) {
+
+    return testData.inTransaction(em -> {
+      Warehouse warehouse = TestData.newWarehouse(testData.persistOwner(em), testData.persistCity(em), index);
+      em.persist(warehouse);
+
+      RequestDetails requestDetails = TestData.newRequestDetails(warehouse);
+      em.persist(requestDetails);
+
+      WarehouseDTO warehouseDTO = new WarehouseDTO();
+      warehouseDTO.setId(warehouse.getId());
+
+      List<RentalRequestDTO> requests = new ArrayList<>();
+      for (int i = 0; i < 2; i++) {
+        WarehouseRentalRequest request =
+            TestData.persistPendingRequest(em, testData.persistAgent(em), requestDetails);
+        RentalRequestDTO dto = new RentalRequestDTO();
+        dto.setId(request.getId());
+        dto.setWarehouseDTO(warehouseDTO);
+        requests.add(dto);
+      }
+      return requests;
+    });
+  }
+
+  private long countAccepted(List<RentalRequestDTO> requests) {
+
+    return requests.stream()
+        .map(request -> warehouseRentalRequestDAO.getById(request.getId()))
+        .filter(request -> request.isPresent() && request.get().getStatus() == RequestStatus.ACCEPTED)
+        .count();
+  }
+}
@@ -1,5 +1,7 @@
 package bg.tuvarna.sit.wms.service;
 
+import bg.tuvarna.sit.wms.contracts.NotificationPublisher;
+import bg.tuvarna.sit.wms.contracts.TransactionWork;
 import bg.tuvarna.sit.wms.dao.UserDao;
 import bg.tuvarna.sit.wms.dao.WarehouseRentalRequestDAO;
 import bg.tuvarna.sit.wms.dto.AgentDTO;
@@ -7,16 +9,22 @@ import bg.tuvarna.sit.wms.dto.RentalRequestDTO;
 import bg.tuvarna.sit.wms.dto.RequestDetailsDTO;
 import bg.tuvarna.sit.wms.dto.WarehouseDTO;
 import bg.tuvarna.sit.wms.entities.Agent;
+import bg.tuvarna.sit.wms.entities.Owner;
 import bg.tuvarna.sit.wms.entities.RequestDetails;
 import bg.tuvarna.sit.wms.entities.Warehouse;
 import bg.tuvarna.sit.wms.entities.WarehouseRentalRequest;
 import bg.tuvarna.sit.wms.enums.RequestStatus;
 import bg.tuvarna.sit.wms.enums.WarehouseStatus;
 import bg.tuvarna.sit.wms.exceptions.RentalRequestDAOException;
+import bg.tuvarna.sit.wms.exceptions.RequestConflictException;
 import bg.tuvarna.sit.wms.exceptions.RequestCreationException;
 import bg.tuvarna.sit.wms.exceptions.WarehouseServiceException;
+import bg.tuvarna.sit.wms.util.AsyncTasks;
+import bg.tuvarna.sit.wms.util.TransactionTemplate;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
@@ -24,15 +32,28 @@ import org.mockito.MockitoAnnotations;
 import java.math.BigDecimal;
 import java.time.LocalDate;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
-import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import javax.persistence.OptimisticLockException;
+import javax.persistence.PessimisticLockException;
+import javax.persistence.RollbackException;
 
 import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
 import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.doNothing;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 class RentalRequestServiceTest {
@@ -46,12 +67,22 @@ class RentalRequestServiceTest {
   @Mock
   private UserDao userDao;
 
+  @Mock
+  private TransactionTemplate transactionTemplate;
+
+  @Mock
+  private NotificationPublisher notificationPublisher;
+
   @InjectMocks
   private RentalRequestService rentalRequestService;
 
   @BeforeEach
-  void setUp() {
+  void setUp() throws Exception {
     MockitoAnnotations.openMocks(this);
+    doAnswer(invocation -> {
+      invocation.<TransactionWork<?>>getArgument(0).doInTransaction(null);
+      return null;
+    }).when(transactionTemplate).runInTransaction(any());
   }
 
   @Test
@@ -67,6 +98,42 @@ class RentalRequestServiceTest {
     assertDoesNotThrow(() -> rentalRequestService.createRentalRequests(agentDTOs, requestDetailsDTO));
   }
 
+  @Test
+  void createRentalRequests_shouldFanOutToAllAgentsWithSingleDaoCall() throws Exception {
+
+    List<AgentDTO> agentDTOs = new ArrayList<>();
+    for (long id = 1; id <= 200; id++) {
+      AgentDTO agentDTO = createMockAgentDTO();
+      agentDTO.setId(id);
+      agentDTOs.add(agentDTO);
+    }
+    RequestDetailsDTO requestDetailsDTO = createMockRequestDetailsDTO();
+    when(warehouseService.mapDTOToEntity(any())).thenReturn(createMockWarehouse());
+
+    rentalRequestService.createRentalRequests(agentDTOs, requestDetailsDTO);
+
+    ArgumentCaptor<Collection<Long>> agentIds = ArgumentCaptor.forClass(Collection.class);
+    verify(transactionTemplate).runInTransaction(any());
+    verify(warehouseRentalRequestDAO).saveRequestsForAgents(any(RequestDetails.class), agentIds.capture());
+    verify(warehouseRentalRequestDAO, never()).save(any());
+    verify(warehouseService).changeWarehouseStatus(requestDetailsDTO.getWarehouseDTO(), WarehouseStatus.PENDING_RENTAL);
+    assertEquals(200, agentIds.getValue().size());
+    verify(notificationPublisher, times(200)).publish(any(), any());
+  }
+
+  @Test
+  void createRentalRequests_saveFails_shouldNotChangeWarehouseStatus() throws Exception {
+
+    RequestDetailsDTO requestDetailsDTO = createMockRequestDetailsDTO();
+    when(warehouseService.mapDTOToEntity(any())).thenReturn(createMockWarehouse());
+    doThrow(new RentalRequestDAOException("Simulated exception"))
+        .when(warehouseRentalRequestDAO).saveRequestsForAgents(any(), any());
+
+    assertThrows(RequestCreationException.class,
+        () -> rentalRequestService.createRentalRequests(List.of(createMockAgentDTO()), requestDetailsDTO));
+    verify(warehouseService, never()).changeWarehouseStatus(any(), any());
+  }
+
   @Test
   void createRentalRequests_invalidWarehouseStatus_shouldThrowRequestCreationException() {
 
@@ -82,39 +149,206 @@ class RentalRequestServiceTest {
   }
 
   @Test
-  void acceptRentalRequest_shouldAcceptRequest() {
+  void acceptRentalRequest_shouldAcceptRequest() throws Exception {
 
     RentalRequestDTO rentalRequestDTO = createMockRentalRequestDTO();
 
-    when(warehouseRentalRequestDAO.getAllByWarehouse(any())).thenReturn(List.of(createMockWarehouseRentalRequest()));
-    when(warehouseRentalRequestDAO.getById(any())).thenReturn(Optional.of(createMockWarehouseRentalRequest()));
+    when(warehouseRentalRequestDAO.transitionStatus(1L, RequestStatus.PENDING, RequestStatus.ACCEPTED)).thenReturn(true);
 
     assertDoesNotThrow(() -> rentalRequestService.acceptRentalRequest(rentalRequestDTO));
   }
 
   @Test
-  void acceptRentalRequest_entityNotFound_shouldThrowRequestCreationException() {
+  void acceptRentalRequest_shouldLockWarehouseThenCompareAndSetStatusThenInvalidateCompetingRequests()
+      throws Exception {
 
     RentalRequestDTO rentalRequestDTO = createMockRentalRequestDTO();
+    rentalRequestDTO.getWarehouseDTO().setId(7L);
+    when(warehouseRentalRequestDAO.transitionStatus(1L, RequestStatus.PENDING, RequestStatus.ACCEPTED)).thenReturn(true);
+
+    rentalRequestService.acceptRentalRequest(rentalRequestDTO);
+
+    verify(transactionTemplate).runInTransaction(any());
+    InOrder order = inOrder(warehouseRentalRequestDAO);
+    order.verify(warehouseRentalRequestDAO).lockWarehouse(7L);
+    order.verify(warehouseRentalRequestDAO).transitionStatus(1L, RequestStatus.PENDING, RequestStatus.ACCEPTED);
+    order.verify(warehouseRentalRequestDAO).invalidateOtherPendingRequests(7L, 1L);
+    verify(warehouseRentalRequestDAO, never()).getById(any());
+    verify(warehouseRentalRequestDAO, never()).getAllByWarehouse(any());
+    verify(warehouseRentalRequestDAO, never()).invalidateRequest(any());
+  }
 
-    when(warehouseRentalRequestDAO.getAllByWarehouse(any())).thenReturn(List.of());
-    when(warehouseRentalRequestDAO.getById(any())).thenReturn(Optional.empty());
+  @Test
+  void acceptRentalRequest_shouldNotifyOwnerAfterCommit() throws Exception {
+
+    RentalRequestDTO rentalRequestDTO = createMockRentalRequestDTO();
+    Owner owner = new Owner();
+    owner.setId(9L);
+    rentalRequestDTO.getWarehouseDTO().setOwner(owner);
+    rentalRequestDTO.getWarehouseDTO().setName("North");
+    when(warehouseRentalRequestDAO.transitionStatus(1L, RequestStatus.PENDING, RequestStatus.ACCEPTED)).thenReturn(true);
+
+    rentalRequestService.acceptRentalRequest(rentalRequestDTO);
+
+    verify(notificationPublisher).publish(9L, "John Doe accepted the rental request for warehouse North");
+  }
+
+  @Test
+  void acceptRentalRequest_requestNoLongerPending_shouldThrowRequestConflictException() throws Exception {
+
+    RentalRequestDTO rentalRequestDTO = createMockRentalRequestDTO();
+
+    when(warehouseRentalRequestDAO.transitionStatus(1L, RequestStatus.PENDING, RequestStatus.ACCEPTED)).thenReturn(false);
+
+    RequestConflictException exception =
+        assertThrows(RequestConflictException.class, () -> rentalRequestService.acceptRentalRequest(rentalRequestDTO));
+    assertEquals("Request was taken by another agent", exception.getMessage());
+    verify(warehouseRentalRequestDAO, never()).invalidateOtherPendingRequests(any(), any());
+    verify(notificationPublisher, never()).publish(any(), any());
+  }
+
+  @Test
+  void acceptRentalRequest_invalidationFails_shouldThrowRequestCreationException() throws Exception {
+
+    RentalRequestDTO rentalRequestDTO = createMockRentalRequestDTO();
+
+    when(warehouseRentalRequestDAO.transitionStatus(1L, RequestStatus.PENDING, RequestStatus.ACCEPTED)).thenReturn(true);
+    when(warehouseRentalRequestDAO.invalidateOtherPendingRequests(any(), any()))
+        .thenThrow(new RentalRequestDAOException("Simulated exception"));
+
+    RequestCreationException exception =
+        assertThrows(RequestCreationException.class, () -> rentalRequestService.acceptRentalRequest(rentalRequestDTO));
+    assertFalse(exception instanceof RequestConflictException);
+    verify(notificationPublisher, never()).publish(any(), any());
+  }
+
+  @Test
+  void acceptRentalRequest_lockNotAcquired_shouldRetryAndReportConflict() throws Exception {
+
+    RentalRequestDTO rentalRequestDTO = createMockRentalRequestDTO();
+    doThrow(new RentalRequestDAOException("Simulated exception", new PessimisticLockException()))
+        .when(warehouseRentalRequestDAO).lockWarehouse(any());
+
+    assertThrows(RequestConflictException.class, () -> rentalRequestService.acceptRentalRequest(rentalRequestDTO));
+    verify(transactionTemplate, times(3)).runInTransaction(any());
+    verify(warehouseRentalRequestDAO, never()).transitionStatus(any(), any(), any());
+  }
+
+  @Test
+  void acceptRentalRequest_conflictOnCommit_shouldRetryTransaction() throws Exception {
 
-    assertThrows(RequestCreationException.class, () -> rentalRequestService.acceptRentalRequest(rentalRequestDTO));
+    RentalRequestDTO rentalRequestDTO = createMockRentalRequestDTO();
+    when(warehouseRentalRequestDAO.transitionStatus(1L, RequestStatus.PENDING, RequestStatus.ACCEPTED)).thenReturn(true);
+    doThrow(new RollbackException(new OptimisticLockException()))
+        .doAnswer(invocation -> {
+          invocation.<TransactionWork<?>>getArgument(0).doInTransaction(null);
+          return null;
+        })
+        .when(transactionTemplate).runInTransaction(any());
+
+    rentalRequestService.acceptRentalRequest(rentalRequestDTO);
+
+    verify(transactionTemplate, times(2)).runInTransaction(any());
+    verify(warehouseRentalRequestDAO).transitionStatus(any(), any(), any());
   }
 
   @Test
-  void declineRentalRequest_shouldDeclineRequest() {
+  void acceptRentalRequest_persistentConflict_shouldThrowRequestConflictException() throws Exception {
 
     RentalRequestDTO rentalRequestDTO = createMockRentalRequestDTO();
+    doThrow(new RollbackException(new OptimisticLockException())).when(transactionTemplate).runInTransaction(any());
+
+    assertThrows(RequestConflictException.class, () -> rentalRequestService.acceptRentalRequest(rentalRequestDTO));
+    verify(transactionTemplate, times(3)).runInTransaction(any());
+  }
 
-    when(warehouseRentalRequestDAO.getById(any())).thenReturn(Optional.of(createMockWarehouseRentalRequest()));
+  @Test
+  void acceptRentalRequest_conflictInsideOuterTransaction_shouldNotRetry() throws Exception {
+
+    RentalRequestDTO rentalRequestDTO = createMockRentalRequestDTO();
+    when(transactionTemplate.isInTransaction()).thenReturn(true);
+    doThrow(new RollbackException(new OptimisticLockException())).when(transactionTemplate).runInTransaction(any());
+
+    assertThrows(RequestConflictException.class, () -> rentalRequestService.acceptRentalRequest(rentalRequestDTO));
+    verify(transactionTemplate, times(1)).runInTransaction(any());
+  }
+
+  @Test
+  void declineRentalRequest_shouldDeclineRequest() throws Exception {
+
+    RentalRequestDTO rentalRequestDTO = createMockRentalRequestDTO();
+
+    when(warehouseRentalRequestDAO.transitionStatus(1L, RequestStatus.PENDING, RequestStatus.DECLINED)).thenReturn(true);
     when(warehouseRentalRequestDAO.getAllByWarehouse(any())).thenReturn(List.of());
     when(warehouseService.mapDTOToEntity(any())).thenReturn(createMockWarehouse());
 
     assertDoesNotThrow(() -> rentalRequestService.declineRentalRequest(rentalRequestDTO));
   }
 
+  @Test
+  void declineRentalRequest_shouldRunInSingleTransaction() throws Exception {
+
+    RentalRequestDTO rentalRequestDTO = createMockRentalRequestDTO();
+
+    when(warehouseRentalRequestDAO.transitionStatus(1L, RequestStatus.PENDING, RequestStatus.DECLINED)).thenReturn(true);
+    when(warehouseRentalRequestDAO.getAllByWarehouse(any())).thenReturn(List.of());
+    when(warehouseService.mapDTOToEntity(any())).thenReturn(createMockWarehouse());
+
+    rentalRequestService.declineRentalRequest(rentalRequestDTO);
+
+    verify(transactionTemplate).runInTransaction(any());
+    verify(warehouseRentalRequestDAO, never()).getById(any());
+    verify(warehouseRentalRequestDAO, never()).invalidateRequest(any());
+    verify(warehouseService).changeWarehouseStatus(rentalRequestDTO.getWarehouseDTO(), WarehouseStatus.AVAILABLE);
+  }
+
+  @Test
+  void declineRentalRequest_requestNoLongerPending_shouldNotTouchWarehouse() throws Exception {
+
+    RentalRequestDTO rentalRequestDTO = createMockRentalRequestDTO();
+
+    when(warehouseRentalRequestDAO.transitionStatus(1L, RequestStatus.PENDING, RequestStatus.DECLINED)).thenReturn(false);
+
+    assertThrows(RequestConflictException.class, () -> rentalRequestService.declineRentalRequest(rentalRequestDTO));
+    verify(warehouseRentalRequestDAO, never()).getAllByWarehouse(any());
+    verify(warehouseService, never()).changeWarehouseStatus(any(), any());
+  }
+
+  @Test
+  void declineRentalRequestAsync_requestNoLongerPending_shouldFailWithRequestConflictException() throws Exception {
+
+    RentalRequestService asyncService = new RentalRequestService(warehouseRentalRequestDAO, warehouseService,
+        userDao, transactionTemplate, Runnable::run);
+    RentalRequestDTO rentalRequestDTO = createMockRentalRequestDTO();
+
+    when(warehouseRentalRequestDAO.transitionStatus(1L, RequestStatus.PENDING, RequestStatus.DECLINED)).thenReturn(false);
+
+    CompletableFuture<Void> result = asyncService.declineRentalRequestAsync(rentalRequestDTO);
+
+    assertTrue(result.isCompletedExceptionally());
+    CompletionException exception = assertThrows(CompletionException.class, result::join);
+    assertInstanceOf(RequestConflictException.class, AsyncTasks.unwrap(exception));
+  }
+
+  @Test
+  void getIncomingRentalRequestsByAgentAsync_shouldRunOnGivenExecutor() {
+
+    List<Runnable> submitted = new ArrayList<>();
+    RentalRequestService asyncService = new RentalRequestService(warehouseRentalRequestDAO, warehouseService,
+        userDao, transactionTemplate, submitted::add);
+
+    when(warehouseRentalRequestDAO.getAllByStatusAndAgent(any(), any())).thenReturn(List.of(createMockWarehouseRentalRequest()));
+
+    CompletableFuture<List<RentalRequestDTO>> result = asyncService.getIncomingRentalRequestsByAgentAsync(createMockAgent());
+
+    assertFalse(result.isDone());
+    verify(warehouseRentalRequestDAO, never()).getAllByStatusAndAgent(any(), any());
+
+    submitted.forEach(Runnable::run);
+
+    assertEquals(1, result.join().size());
+  }
+
   @Test
   void getIncomingRentalRequestsByAgent_shouldRetrieveRequests() {
 
@@ -3,21 +3,29 @@ package bg.tuvarna.sit.wms.service;
 import bg.tuvarna.sit.wms.dao.ReviewDao;
 import bg.tuvarna.sit.wms.dao.UserDao;
 import bg.tuvarna.sit.wms.dto.AddReviewDto;
+import bg.tuvarna.sit.wms.dto.ReviewImportDto;
 import bg.tuvarna.sit.wms.dto.ViewReviewDto;
 import bg.tuvarna.sit.wms.entities.Agent;
 import bg.tuvarna.sit.wms.entities.Review;
 import bg.tuvarna.sit.wms.entities.User;
 import bg.tuvarna.sit.wms.exceptions.ReviewPersistenceException;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 import javax.persistence.EntityNotFoundException;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.ArgumentCaptor;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyLong;
 import static org.mockito.ArgumentMatchers.eq;
@@ -26,6 +34,7 @@ import org.mockito.Mock;
 import static org.mockito.Mockito.doThrow;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import org.mockito.MockitoAnnotations;
@@ -38,6 +47,9 @@ public class ReviewServiceTest {
   @Mock
   private ReviewDao reviewDao;
 
+  @Mock
+  private AgentRatingService agentRatingService;
+
   @InjectMocks
   private ReviewService reviewService;
 
@@ -63,6 +75,7 @@ public class ReviewServiceTest {
     // Then
     verify(userDao).findAgentById(agentId);
     verify(reviewDao).persistReview(any(Review.class), eq(agentId));
+    verify(agentRatingService).refreshAgent(agentId);
   }
 
   @Test
@@ -102,6 +115,7 @@ public class ReviewServiceTest {
     // Then
     verify(userDao).findAgentById(agentId);
     verify(reviewDao).persistReview(any(Review.class), eq(agentId));
+    verify(agentRatingService, never()).refreshAgent(any());
   }
 
   @Test
@@ -135,6 +149,20 @@ public class ReviewServiceTest {
     verify(reviewDao).getReviewsForCurrentUser(currentUserId);
   }
 
+  @Test
+  void getNewReviewsForCurrentUser_ShouldPassLastSeenIdAndBatchSize() {
+    // Given
+    List<ViewReviewDto> newReviews = List.of(new ViewReviewDto(8L, 4, "test", "John", "Doe"));
+    when(reviewDao.getReviewsForCurrentUserAfter(1L, 7L, ReviewService.REVIEW_FEED_BATCH_SIZE)).thenReturn(newReviews);
+
+    // When
+    List<ViewReviewDto> actualReviews = reviewService.getNewReviewsForCurrentUser(1L, 7L);
+
+    // Then
+    assertEquals(newReviews, actualReviews);
+    verify(reviewDao, never()).getReviewsForCurrentUser(any());
+  }
+
   private Review createReview(Agent agent, User sender, Integer assessment, String description) {
 
     Review review = new Review();
@@ -145,4 +173,32 @@ public class ReviewServiceTest {
 
     return review;
   }
-}
\ No newline at end of file
+
+  @Test
+  @SuppressWarnings("unchecked")
+  void loadReviewsFromCSV_ShouldReplaceReviewsOfAllAgentsAtOnce(@TempDir Path tempDir) throws Exception {
+
+    Path csvFile = tempDir.resolve("reviews.csv");
+    Files.writeString(csvFile, "agentEmail,ownerEmail,assessment,description\n"
+            + "agent@wms.com,owner@wms.com,5,Excellent service\n"
+            + "agent@wms.com,other@wms.com,4,Good, but slow\n"
+            + "unknown@wms.com,owner@wms.com,5,Unknown agent\n"
+            + "agent@wms.com,owner@wms.com,9,Invalid assessment\n");
+    when(userDao.findIdsByEmails(any())).thenReturn(
+            Map.of("agent@wms.com", 1L, "owner@wms.com", 2L, "other@wms.com", 3L));
+
+    reviewService.loadReviewsFromCSV(csvFile.toString());
+
+    ArgumentCaptor<Collection<Long>> agentIds = ArgumentCaptor.forClass(Collection.class);
+    ArgumentCaptor<List<ReviewImportDto>> reviews = ArgumentCaptor.forClass(List.class);
+    verify(reviewDao, times(1)).replaceReviews(agentIds.capture(), reviews.capture());
+    assertEquals(Set.of(1L), Set.copyOf(agentIds.getValue()));
+    assertEquals(2, reviews.getValue().size());
+    assertEquals("Good, but slow", reviews.getValue().get(1).getDescription());
+    verify(userDao, times(1)).findIdsByEmails(any());
+    verify(userDao, never()).findByEmail(any());
+    verify(reviewDao, never()).deleteAllReviewsForAgent(any());
+    verify(agentRatingService).reload();
+  }
+}
+
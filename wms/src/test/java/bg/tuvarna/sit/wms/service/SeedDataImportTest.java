@@ -0,0 +1,88 @@
+package bg.tuvarna.sit.wms.service;
+
+import bg.tuvarna.sit.wms.dao.CityDAO;
+import bg.tuvarna.sit.wms.dao.CountryDAO;
+import bg.tuvarna.sit.wms.dao.ReviewDao;
+import bg.tuvarna.sit.wms.dao.UserDao;
+import bg.tuvarna.sit.wms.dao.WarehouseDAO;
+import bg.tuvarna.sit.wms.dto.AgentRatingDTO;
+import bg.tuvarna.sit.wms.dto.WarehouseImportReport;
+import bg.tuvarna.sit.wms.entities.Owner;
+import bg.tuvarna.sit.wms.util.IdSequences;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.Persistence;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class SeedDataImportTest {
+
+  private static final Executor DIRECT_EXECUTOR = Runnable::run;
+
+  private EntityManagerFactory entityManagerFactory;
+  private UserDao userDao;
+  private ReviewDao reviewDao;
+  private UserService userService;
+  private ReviewService reviewService;
+  private AgentRatingService agentRatingService;
+  private WarehouseService warehouseService;
+
+  @BeforeEach
+  void setUp() {
+
+    entityManagerFactory = Persistence.createEntityManagerFactory("wms-test");
+    IdSequences.alignWithExistingIds(entityManagerFactory);
+
+    userDao = new UserDao(entityManagerFactory);
+    reviewDao = new ReviewDao(entityManagerFactory);
+    userService = new UserService(userDao, new PasswordHashingService(), DIRECT_EXECUTOR);
+    agentRatingService = new AgentRatingService(reviewDao, DIRECT_EXECUTOR);
+    reviewService = new ReviewService(userDao, reviewDao, DIRECT_EXECUTOR, agentRatingService);
+    warehouseService = new WarehouseService(new WarehouseDAO(entityManagerFactory),
+        new CountryService(new CountryDAO(entityManagerFactory)), new CityService(new CityDAO(entityManagerFactory)),
+        userService, DIRECT_EXECUTOR);
+  }
+
+  @AfterEach
+  void tearDown() {
+
+    entityManagerFactory.close();
+  }
+
+  @Test
+  void seedFiles_shouldBeImportedCompletelyInStartupOrder() throws Exception {
+
+    userService.loadUsersFromCSV("users.csv");
+    reviewService.loadReviewsFromCSV("reviews.csv");
+    agentRatingService.rebuildRatingsIfIncomplete();
+    WarehouseImportReport report;
+    try (BufferedReader reader = Files.newBufferedReader(Path.of("warehouses.csv"))) {
+      report = warehouseService.loadWarehousesFromCSV(reader);
+    }
+
+    assertEquals(countRows("users.csv"), userDao.getAllEmails().size());
+    assertEquals(countRows("reviews.csv"), reviewDao.getAgentRatings().stream()
+        .mapToLong(AgentRatingDTO::getReviewCount).sum());
+    assertEquals(countRows("warehouses.csv"), report.getRowsImported());
+    assertEquals(0, report.getRowsRejected());
+
+    Owner owner = userService.findOwnersByEmails(List.of("owner@wms.com")).get("owner@wms.com");
+    assertEquals(countRows("warehouses.csv"), warehouseService.getAllWarehouseDTOsByOwner(owner).size());
+  }
+
+  private static long countRows(String seedFile) throws IOException {
+
+    try (var lines = Files.lines(Path.of(seedFile))) {
+      return lines.skip(1).filter(line -> !line.isBlank()).count();
+    }
+  }
+}
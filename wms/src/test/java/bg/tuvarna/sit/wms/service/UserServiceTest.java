@@ -5,17 +5,27 @@ import bg.tuvarna.sit.wms.dto.UserRegistrationDto;
 import bg.tuvarna.sit.wms.entities.User;
 import bg.tuvarna.sit.wms.exceptions.RegistrationException;
 import bg.tuvarna.sit.wms.exceptions.UserPersistenceException;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.security.NoSuchAlgorithmException;
 import java.security.spec.InvalidKeySpecException;
+import java.util.List;
+import java.util.Set;
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.ArgumentCaptor;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
 import static org.mockito.ArgumentMatchers.anyString;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
@@ -135,4 +145,43 @@ class UserServiceTest {
 
     assertThrows(RegistrationException.class, () -> userService.registerUser(registrationDto));
   }
-}
\ No newline at end of file
+
+  @Test
+  @SuppressWarnings("unchecked")
+  void loadUsersFromCSV_ShouldSaveOnlyNewUsersInOneBatch(@TempDir Path tempDir) throws Exception {
+
+    Path csvFile = writeUsersCsv(tempDir,
+            "Existing,User,0878000001,existing@wms.com,password,OWNER",
+            "New,Owner,0878000002,owner@wms.com,password,OWNER",
+            "Duplicate,Owner,0878000003,owner@wms.com,password,OWNER",
+            "New,Agent,0878000004,agent@wms.com,password,AGENT");
+    when(userDao.getAllEmails()).thenReturn(Set.of("existing@wms.com"));
+    when(passwordHashingService.generateStrongPasswordHash(anyString())).thenReturn("hash");
+
+    userService.loadUsersFromCSV(csvFile.toString());
+
+    ArgumentCaptor<List<User>> savedUsers = ArgumentCaptor.forClass(List.class);
+    verify(userDao, times(1)).saveUsers(savedUsers.capture());
+    assertEquals(List.of("owner@wms.com", "agent@wms.com"),
+            savedUsers.getValue().stream().map(User::getEmail).toList());
+    verify(passwordHashingService, times(2)).generateStrongPasswordHash(anyString());
+    verify(userDao, never()).findByEmail(anyString());
+  }
+
+  @Test
+  void loadUsersFromCSV_WhenHashingFails_ShouldThrowAndSaveNothing(@TempDir Path tempDir) throws Exception {
+
+    Path csvFile = writeUsersCsv(tempDir, "New,Owner,0878000002,owner@wms.com,password,OWNER");
+    when(passwordHashingService.generateStrongPasswordHash(anyString())).thenThrow(InvalidKeySpecException.class);
+
+    assertThrows(InvalidKeySpecException.class, () -> userService.loadUsersFromCSV(csvFile.toString()));
+    verify(userDao, never()).saveUsers(anyList());
+  }
+
+  private Path writeUsersCsv(Path directory, String... rows) throws IOException {
+
+    Path csvFile = directory.resolve("users.csv");
+    Files.writeString(csvFile, "firstName,lastName,phone,email,password,role\n" + String.join("\n", rows) + "\n");
+    return csvFile;
+  }
+}
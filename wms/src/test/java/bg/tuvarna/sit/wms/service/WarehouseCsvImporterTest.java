@@ -0,0 +1,137 @@
+package bg.tuvarna.sit.wms.service;
+
+import bg.tuvarna.sit.wms.dao.WarehouseDAO;
+import bg.tuvarna.sit.wms.dto.WarehouseImportReport;
+import bg.tuvarna.sit.wms.entities.Owner;
+import bg.tuvarna.sit.wms.exceptions.WarehouseDAOException;
+import bg.tuvarna.sit.wms.exceptions.WarehousePersistenceException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import java.io.BufferedReader;
+import java.io.StringReader;
+import java.time.Duration;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class WarehouseCsvImporterTest {
+
+  private static final String HEADER = "name,size,ownerEmail,street,zipCode,city,country,status,climate,type,description\n";
+
+  private static final String OWNER_EMAIL = "owner@wms.com";
+
+  @Mock
+  private WarehouseDAO warehouseDAO;
+  @Mock
+  private CountryService countryService;
+  @Mock
+  private CityService cityService;
+  @Mock
+  private UserService userService;
+
+  private WarehouseCsvImporter importer;
+
+  @BeforeEach
+  void setUp() {
+
+    MockitoAnnotations.openMocks(this);
+    when(userService.findOwnersByEmails(anyCollection())).thenReturn(Map.of(OWNER_EMAIL, new Owner()));
+    importer = new WarehouseCsvImporter(warehouseDAO, countryService, cityService, userService,
+        new WarehouseCsvImporter.ImportSettings(2, 2, 4));
+  }
+
+  @Test
+  void importWarehouses_shouldSaveRowsInBatches() throws Exception {
+
+    WarehouseImportReport report = importer.importWarehouses(reader(row("A"), row("B"), row("C"), row("D"),
+        row("E")));
+
+    verify(warehouseDAO, times(3)).saveAll(anyList());
+    assertEquals(5, report.getRowsRead());
+    assertEquals(5, report.getRowsImported());
+    assertEquals(0, report.getRowsSkipped());
+    assertEquals(0, report.getRowsRejected());
+  }
+
+  @Test
+  void importWarehouses_shouldSkipExistingAndDuplicateNames() throws Exception {
+
+    when(warehouseDAO.findExistingNames(anyCollection())).thenAnswer(invocation -> {
+      Collection<String> names = invocation.getArgument(0);
+      return names.stream().filter("B"::equals).collect(Collectors.toSet());
+    });
+
+    WarehouseImportReport report = importer.importWarehouses(reader(row("A"), row("B"), row("A")));
+
+    assertEquals(1, report.getRowsImported());
+    assertEquals(2, report.getRowsSkipped());
+  }
+
+  @Test
+  void importWarehouses_shouldRejectInvalidRowsAndUnknownOwners() throws Exception {
+
+    String invalidRow = "Broken,not-a-number," + OWNER_EMAIL
+        + ",Center Street,8600,City,Bulgaria,AVAILABLE,AMBIENT,Type,Description\n";
+
+    WarehouseImportReport report = importer.importWarehouses(reader(invalidRow, row("A", "unknown@wms.com"),
+        row("B")));
+
+    assertEquals(3, report.getRowsRead());
+    assertEquals(1, report.getRowsImported());
+    assertEquals(2, report.getRowsRejected());
+  }
+
+  @Test
+  void importWarehouses_whenSaveFails_shouldStopPipelineAndThrow() throws Exception {
+
+    doThrow(new WarehouseDAOException("Simulated exception")).when(warehouseDAO).saveAll(anyList());
+    String[] rows = new String[100];
+    for (int i = 0; i < rows.length; i++) {
+      rows[i] = row("Warehouse " + i);
+    }
+
+    assertTimeoutPreemptively(Duration.ofSeconds(5), () ->
+        assertThrows(WarehousePersistenceException.class, () -> importer.importWarehouses(reader(rows))));
+  }
+
+  @Test
+  void importWarehouses_shouldLoadEachOwnerOnce() throws Exception {
+
+    when(warehouseDAO.findExistingNames(anyCollection())).thenReturn(Set.of());
+
+    importer.importWarehouses(reader(row("A"), row("B"), row("C"), row("D")));
+
+    verify(userService, times(1)).findOwnersByEmails(anyCollection());
+    verify(warehouseDAO, times(2)).saveAll(anyList());
+  }
+
+  private static String row(String name) {
+
+    return row(name, OWNER_EMAIL);
+  }
+
+  private static String row(String name, String ownerEmail) {
+
+    return name + ",120.5," + ownerEmail + ",Center Street,8600,City,Bulgaria,AVAILABLE,AMBIENT,Type,Description\n";
+  }
+
+  private static BufferedReader reader(String... rows) {
+
+    return new BufferedReader(new StringReader(HEADER + String.join("", List.of(rows))));
+  }
+}
@@ -2,6 +2,9 @@ package bg.tuvarna.sit.wms.service;
 
 import bg.tuvarna.sit.wms.dao.WarehouseDAO;
 import bg.tuvarna.sit.wms.dto.WarehouseDTO;
+import bg.tuvarna.sit.wms.dto.WarehouseImportReport;
+import bg.tuvarna.sit.wms.dto.WarehousePage;
+import bg.tuvarna.sit.wms.dto.WarehousePageRequest;
 import bg.tuvarna.sit.wms.dto.WarehouseRentalAgreementDto;
 import bg.tuvarna.sit.wms.entities.Address;
 import bg.tuvarna.sit.wms.entities.City;
@@ -10,9 +13,11 @@ import bg.tuvarna.sit.wms.entities.Owner;
 import bg.tuvarna.sit.wms.entities.StorageType;
 import bg.tuvarna.sit.wms.entities.Warehouse;
 import bg.tuvarna.sit.wms.enums.ClimateCondition;
+import bg.tuvarna.sit.wms.enums.WarehouseSortKey;
 import bg.tuvarna.sit.wms.enums.WarehouseStatus;
 import bg.tuvarna.sit.wms.exceptions.CityCreationException;
 import bg.tuvarna.sit.wms.exceptions.CountryCreationException;
+import bg.tuvarna.sit.wms.exceptions.WarehouseConflictException;
 import bg.tuvarna.sit.wms.exceptions.WarehouseDAOException;
 import bg.tuvarna.sit.wms.exceptions.WarehousePersistenceException;
 import bg.tuvarna.sit.wms.exceptions.WarehouseServiceException;
@@ -29,10 +34,16 @@ import org.mockito.Mock;
 
 import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
 import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyList;
 import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
@@ -40,7 +51,9 @@ import org.mockito.MockitoAnnotations;
 
 import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import javax.persistence.OptimisticLockException;
 
 
 public class WarehouseServiceTest {
@@ -53,6 +66,8 @@ public class WarehouseServiceTest {
   WarehouseDAO warehouseDAO;
   @Mock
   private UserService userService;
+  @Mock
+  private WarehouseSearchService searchService;
   @InjectMocks
   WarehouseService warehouseService;
 
@@ -61,6 +76,10 @@ public class WarehouseServiceTest {
   @BeforeEach
   void setUp() {
     MockitoAnnotations.openMocks(this);
+    doAnswer(invocation -> {
+      invocation.<Runnable>getArgument(0).run();
+      return null;
+    }).when(warehouseDAO).afterCommit(any());
   }
 
   @Test
@@ -171,27 +190,151 @@ public class WarehouseServiceTest {
     assertThrows(WarehouseServiceException.class, () -> warehouseService.updateWarehouse(warehouseDTO));
   }
 
+  @Test
+  void updateWarehouse_staleVersion_shouldThrowWarehouseConflictException() throws CountryCreationException, CityCreationException, WarehouseDAOException {
+
+    WarehouseDTO warehouseDTO = createWarehouseDTO();
+    when(countryService.getOrCreateCountry(anyString())).thenReturn(new Country());
+    when(cityService.getOrCreateCity(anyString(), any(Country.class))).thenReturn(new City());
+    doThrow(new WarehouseDAOException("Error updating warehouse entity", new OptimisticLockException()))
+            .when(warehouseDAO).update(any(Warehouse.class));
+
+    assertThrows(WarehouseConflictException.class, () -> warehouseService.updateWarehouse(warehouseDTO));
+    verify(warehouseDAO, times(1)).update(any(Warehouse.class));
+  }
+
+  @Test
+  void changeWarehouseStatus_shouldCompareAndSetFromCurrentStatus() throws WarehouseDAOException, WarehouseServiceException {
+
+    WarehouseDTO warehouseDTO = createWarehouseDTO();
+    warehouseDTO.setStatus(WarehouseStatus.PENDING_RENTAL);
+    when(warehouseDAO.transitionStatus(warehouseDTO.getId(), WarehouseStatus.PENDING_RENTAL, WarehouseStatus.RENTED))
+            .thenReturn(true);
+
+    warehouseService.changeWarehouseStatus(warehouseDTO, WarehouseStatus.RENTED);
+
+    verify(warehouseDAO, times(1)).transitionStatus(warehouseDTO.getId(), WarehouseStatus.PENDING_RENTAL, WarehouseStatus.RENTED);
+    verify(warehouseDAO, never()).getById(any());
+    verify(warehouseDAO, never()).update(any(Warehouse.class));
+    verify(searchService).changeStatus(warehouseDTO.getId(), WarehouseStatus.RENTED);
+  }
+
+  @Test
+  void changeWarehouseStatus_statusChangedConcurrently_shouldThrowWarehouseConflictException() throws WarehouseDAOException {
+
+    WarehouseDTO warehouseDTO = createWarehouseDTO();
+    warehouseDTO.setStatus(WarehouseStatus.AVAILABLE);
+    when(warehouseDAO.transitionStatus(any(), any(), any())).thenReturn(false);
+
+    assertThrows(WarehouseConflictException.class,
+            () -> warehouseService.changeWarehouseStatus(warehouseDTO, WarehouseStatus.PENDING_RENTAL));
+    verify(warehouseDAO, times(1)).transitionStatus(any(), any(), any());
+  }
+
+  @Test
+  void changeWarehouseStatus_notAllowedTransition_shouldThrowWithoutUpdating() throws WarehouseDAOException {
+
+    WarehouseDTO warehouseDTO = createWarehouseDTO();
+    warehouseDTO.setStatus(WarehouseStatus.AVAILABLE);
+
+    WarehouseServiceException exception = assertThrows(WarehouseServiceException.class,
+            () -> warehouseService.changeWarehouseStatus(warehouseDTO, WarehouseStatus.RENTED));
+    assertFalse(exception instanceof WarehouseConflictException);
+    verify(warehouseDAO, never()).transitionStatus(any(), any(), any());
+  }
+
+  @Test
+  void changeWarehouseStatus_daoFailure_shouldThrowWarehouseServiceException() throws WarehouseDAOException {
+
+    WarehouseDTO warehouseDTO = createWarehouseDTO();
+    warehouseDTO.setStatus(WarehouseStatus.RENTED);
+    when(warehouseDAO.transitionStatus(any(), any(), any()))
+            .thenThrow(new WarehouseDAOException("Error changing warehouse status to AVAILABLE"));
+
+    WarehouseServiceException exception = assertThrows(WarehouseServiceException.class,
+            () -> warehouseService.changeWarehouseStatus(warehouseDTO, WarehouseStatus.AVAILABLE));
+    assertFalse(exception instanceof WarehouseConflictException);
+  }
+
   @Test
   void getWarehouseDTOsByOwner_shouldReturnList() throws WarehouseDAOException, WarehouseServiceException {
 
     Owner owner = new Owner();
-    when(warehouseDAO.getAllWarehousesByOwner(owner)).thenReturn(Collections.singletonList(createWarehouse()));
+    WarehouseDTO projectedWarehouse = createWarehouseDTO();
+    projectedWarehouse.setOwner(null);
+    when(warehouseDAO.getWarehouseDTOsByOwner(owner)).thenReturn(Collections.singletonList(projectedWarehouse));
 
     List<WarehouseDTO> warehouseDTOsResult = warehouseService.getAllWarehouseDTOsByOwner(owner);
 
     assertNotNull(warehouseDTOsResult);
     assertFalse(warehouseDTOsResult.isEmpty());
+    assertSame(owner, warehouseDTOsResult.get(0).getOwner());
+    verify(warehouseDAO, never()).getAllWarehousesByOwner(any());
   }
 
   @Test
   void getWarehouseDTOsByOwner_warehouseThrowsException_shouldThrowWarehouseServiceException() throws WarehouseDAOException {
 
     Owner owner = new Owner();
-    when(warehouseDAO.getAllWarehousesByOwner(owner)).thenThrow(new WarehouseDAOException("Retrieving warehouses failed"));
+    when(warehouseDAO.getWarehouseDTOsByOwner(owner)).thenThrow(new WarehouseDAOException("Retrieving warehouses failed"));
 
     assertThrows(WarehouseServiceException.class, () -> warehouseService.getAllWarehouseDTOsByOwner(owner));
   }
 
+  @Test
+  void getAvailableWarehouseDTOsByOwner_shouldReturnProjectedDTOsWithOwner() throws WarehouseDAOException, WarehouseServiceException {
+
+    Owner owner = new Owner();
+    when(warehouseDAO.getAvailableWarehouseDTOsByOwner(owner)).thenReturn(List.of(createWarehouseDTO()));
+
+    List<WarehouseDTO> warehouseDTOsResult = warehouseService.getAvailableWarehouseDTOsByOwner(owner);
+
+    assertEquals(1, warehouseDTOsResult.size());
+    assertSame(owner, warehouseDTOsResult.get(0).getOwner());
+  }
+
+  @Test
+  void getAvailableWarehouseDTOsByOwner_warehouseThrowsException_shouldThrowWarehouseServiceException() throws WarehouseDAOException {
+
+    Owner owner = new Owner();
+    when(warehouseDAO.getAvailableWarehouseDTOsByOwner(owner)).thenThrow(new WarehouseDAOException("Retrieving warehouses failed"));
+
+    assertThrows(WarehouseServiceException.class, () -> warehouseService.getAvailableWarehouseDTOsByOwner(owner));
+  }
+
+  @Test
+  void getWarehouseDTOPageByOwner_withExtraRow_shouldTrimPageAndReportNextPage() throws WarehouseDAOException, WarehouseServiceException {
+
+    Owner owner = new Owner();
+    WarehousePageRequest pageRequest = WarehousePageRequest.first(WarehouseSortKey.NAME, true, 2);
+    WarehouseDTO last = createWarehouseDTO();
+    last.setId(2L);
+    when(warehouseDAO.getWarehouseDTOPageByOwner(owner, pageRequest))
+            .thenReturn(List.of(createWarehouseDTO(), last, createWarehouseDTO()));
+
+    WarehousePage page = warehouseService.getWarehouseDTOPageByOwner(owner, pageRequest);
+
+    assertEquals(2, page.getItems().size());
+    assertTrue(page.isNextPageAvailable());
+    WarehousePageRequest nextPageRequest = page.nextPageRequest(2);
+    assertEquals(2L, nextPageRequest.getLastId());
+    assertEquals("Test warehouse", nextPageRequest.getLastSortValue());
+  }
+
+  @Test
+  void getWarehouseDTOPageByOwner_lastPage_shouldReportNoNextPage() throws WarehouseDAOException, WarehouseServiceException {
+
+    Owner owner = new Owner();
+    WarehousePageRequest pageRequest = WarehousePageRequest.first(WarehouseSortKey.SIZE, false, 2);
+    when(warehouseDAO.getWarehouseDTOPageByOwner(owner, pageRequest)).thenReturn(List.of(createWarehouseDTO()));
+
+    WarehousePage page = warehouseService.getWarehouseDTOPageByOwner(owner, pageRequest);
+
+    assertEquals(1, page.getItems().size());
+    assertFalse(page.isNextPageAvailable());
+    assertThrows(IllegalStateException.class, () -> page.nextPageRequest(2));
+  }
+
   @Test
   void deleteWarehouse_correctWarehouseDTO_shouldDeleteWarehouse() throws WarehouseDAOException, WarehouseServiceException {
 
@@ -201,6 +344,7 @@ public class WarehouseServiceTest {
     warehouseService.deleteWarehouse(warehouseDTO);
 
     verify(warehouseDAO, times(1)).softDelete(any(Warehouse.class));
+    verify(searchService).removeWarehouse(any());
   }
 
   @Test
@@ -287,14 +431,16 @@ public class WarehouseServiceTest {
           CountryCreationException {
 
     String csvData = "name,address,size,status,storageType,climateCondition\n" +
-            "Trans Logistics,120.39,3,Center Street,8600,City,Bulgaria,AVAILABLE,HUMIDITY_CONTROLLED,E-Commerce,Used for e-commerce\n";
+            "Trans Logistics,120.39,owner@wms.com,Center Street,8600,City,Bulgaria,AVAILABLE,HUMIDITY_CONTROLLED,E-Commerce,Used for e-commerce\n";
 
     bufferedReader = new BufferedReader(new StringReader(csvData));
 
-    when(warehouseDAO.findByName(anyString())).thenReturn(Optional.empty());
-    warehouseService.loadWarehousesFromCSV(bufferedReader);
+    when(userService.findOwnersByEmails(anyCollection())).thenReturn(Map.of("owner@wms.com", new Owner()));
+    WarehouseImportReport report = warehouseService.loadWarehousesFromCSV(bufferedReader);
 
-    verify(warehouseDAO, times(1)).save(any(Warehouse.class));
+    verify(warehouseDAO, times(1)).saveAll(anyList());
+    assertEquals(1, report.getRowsImported());
+    verify(searchService).reload();
   }
 
   private WarehouseDTO createWarehouseDTO() {
@@ -0,0 +1,77 @@
+package bg.tuvarna.sit.wms.util;
+
+import bg.tuvarna.sit.wms.dto.AgentDTO;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class AgentSearchIndexTest {
+
+  private final AgentDTO ivan = agent(1L, "Ivan Petrov", "ivan@wms.com", "0888111222");
+  private final AgentDTO maria = agent(2L, "Maria Ivanova", "maria@wms.com", "0899333444");
+  private final AgentDTO georgi = agent(3L, "Georgi Dimitrov", "georgi@example.com", "0877555666");
+  private final AgentSearchIndex index = new AgentSearchIndex(List.of(ivan, maria, georgi));
+
+  @Test
+  void search_shouldMatchAnyPartOfNameEmailOrPhoneIgnoringCase() {
+
+    assertEquals(List.of(ivan, maria), index.search("IVAN"));
+    assertEquals(List.of(georgi), index.search("example.com"));
+    assertEquals(List.of(maria), index.search("9333"));
+    assertEquals(List.of(ivan), index.search("n pet"));
+  }
+
+  @Test
+  void search_shouldVerifyCandidatesAgainstTheWholeQuery() {
+
+    assertTrue(index.search("ivan@example").isEmpty());
+    assertTrue(index.search("unknown").isEmpty());
+  }
+
+  @Test
+  void search_withShortQuery_shouldScanAllAgents() {
+
+    assertEquals(List.of(ivan, maria), index.search("va"));
+    assertEquals(List.of(maria), index.search("99"));
+  }
+
+  @Test
+  void search_withBlankQuery_shouldReturnAllAgentsInIndexOrder() {
+
+    List<AgentDTO> all = index.search("  ");
+
+    assertEquals(List.of(ivan, maria, georgi), all);
+    assertSame(all, index.search(null));
+  }
+
+  @Test
+  void search_shouldKeepIndexOrderForManyAgents() {
+
+    List<AgentDTO> agents = new ArrayList<>();
+    for (long i = 0; i < 1000; i++) {
+      agents.add(agent(i, "Agent " + i, "agent" + i + "@wms.com", "0888" + i));
+    }
+    AgentSearchIndex large = new AgentSearchIndex(agents);
+
+    List<AgentDTO> matches = large.search("agent99");
+
+    assertEquals(List.of(agents.get(99), agents.get(990), agents.get(991), agents.get(992), agents.get(993),
+        agents.get(994), agents.get(995), agents.get(996), agents.get(997), agents.get(998), agents.get(999)),
+        matches);
+  }
+
+  private static AgentDTO agent(Long id, String fullName, String email, String phone) {
+
+    AgentDTO agent = new AgentDTO();
+    agent.setId(id);
+    agent.setFullName(fullName);
+    agent.setEmail(email);
+    agent.setPhone(phone);
+    return agent;
+  }
+}
@@ -0,0 +1,79 @@
+package bg.tuvarna.sit.wms.util;
+
+import bg.tuvarna.sit.wms.exceptions.WarehouseServiceException;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class AsyncTasksTest {
+
+  @Test
+  void supply_shouldRunTaskOffCallingThread() throws Exception {
+
+    ExecutorService executor = AsyncTasks.newBoundedExecutor("test", 1, 1);
+    try {
+      Thread caller = Thread.currentThread();
+
+      Thread worker = AsyncTasks.supply(Thread::currentThread, executor).get(5, TimeUnit.SECONDS);
+
+      assertNotEquals(caller, worker);
+      assertTrue(worker.isDaemon());
+      assertTrue(worker.getName().startsWith("test-"));
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  @Test
+  void supply_whenTaskThrowsCheckedException_shouldFailWithThatException() {
+
+    WarehouseServiceException exception = new WarehouseServiceException("Simulated exception");
+
+    CompletableFuture<Object> result = AsyncTasks.supply(() -> {
+      throw exception;
+    }, Runnable::run);
+
+    CompletionException thrown = assertThrows(CompletionException.class, result::join);
+    assertSame(exception, AsyncTasks.unwrap(thrown));
+  }
+
+  @Test
+  void run_whenExecutorIsFull_shouldFailInsteadOfThrowing() throws Exception {
+
+    ExecutorService executor = AsyncTasks.newBoundedExecutor("test", 1, 1);
+    CountDownLatch release = new CountDownLatch(1);
+    try {
+      AsyncTasks.run(release::await, executor);
+      AsyncTasks.run(release::await, executor);
+
+      CompletableFuture<Void> rejected = AsyncTasks.run(() -> { }, executor);
+
+      assertTrue(rejected.isCompletedExceptionally());
+      CompletionException thrown = assertThrows(CompletionException.class, rejected::join);
+      assertInstanceOf(RejectedExecutionException.class, AsyncTasks.unwrap(thrown));
+    } finally {
+      release.countDown();
+      executor.shutdown();
+    }
+  }
+
+  @Test
+  void unwrap_shouldReturnNonWrapperExceptionsUnchanged() {
+
+    IllegalStateException exception = new IllegalStateException();
+
+    assertEquals(exception, AsyncTasks.unwrap(exception));
+  }
+}
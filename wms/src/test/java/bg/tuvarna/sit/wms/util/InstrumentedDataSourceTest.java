@@ -0,0 +1,134 @@
+package bg.tuvarna.sit.wms.util;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.distribution.CountAtBucket;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class InstrumentedDataSourceTest {
+
+  private SimpleMeterRegistry meterRegistry;
+  private List<SqlExecution> executions;
+  private DataSource dataSource;
+
+  @BeforeEach
+  void setUp() throws SQLException {
+
+    JdbcDataSource h2 = new JdbcDataSource();
+    h2.setURL("jdbc:h2:mem:instrumented_" + System.nanoTime() + ";DB_CLOSE_DELAY=-1");
+    try (Connection connection = h2.getConnection(); Statement statement = connection.createStatement()) {
+      statement.execute("CREATE TABLE cities (id INT PRIMARY KEY, name VARCHAR(50))");
+      statement.execute("INSERT INTO cities VALUES (1, 'Varna'), (2, 'Sofia'), (3, 'Burgas')");
+    }
+
+    meterRegistry = new SimpleMeterRegistry();
+    executions = new ArrayList<>();
+    dataSource = InstrumentedDataSource.wrap(h2, List.of(new SqlMetrics(meterRegistry), executions::add));
+  }
+
+  @Test
+  void query_shouldBeReportedWithItsTagAndRowsRead() throws SQLException {
+
+    try (Connection connection = dataSource.getConnection();
+         PreparedStatement statement = connection.prepareStatement("/* CityDAO.getAll */ select * from cities");
+         ResultSet resultSet = statement.executeQuery()) {
+      while (resultSet.next()) {
+        assertNotNull(resultSet.getString("name"));
+      }
+    }
+
+    assertEquals(1, executions.size());
+    SqlExecution execution = executions.get(0);
+    assertEquals("CityDAO.getAll", execution.tag());
+    assertEquals("select", execution.type());
+    assertEquals(3, execution.rows());
+    assertFalse(execution.failed());
+
+    Timer timer = meterRegistry.get(SqlMetrics.STATEMENTS).tag("dao", "CityDAO.getAll").timer();
+    assertEquals(1, timer.count());
+    DistributionSummary rows = meterRegistry.get(SqlMetrics.ROWS).tag("dao", "CityDAO.getAll").summary();
+    assertEquals(3, rows.totalAmount());
+  }
+
+  @Test
+  void query_shouldBeCountedInTheLatencyBuckets() throws SQLException {
+
+    try (Connection connection = dataSource.getConnection();
+         PreparedStatement statement = connection.prepareStatement("/* CityDAO.getAll */ select * from cities")) {
+      statement.executeQuery().close();
+    }
+
+    Timer timer = meterRegistry.get(SqlMetrics.STATEMENTS).tag("dao", "CityDAO.getAll").timer();
+    CountAtBucket[] buckets = timer.takeSnapshot().histogramCounts();
+    List<Double> boundaries = Arrays.stream(buckets).map(bucket -> bucket.bucket(TimeUnit.MILLISECONDS)).toList();
+
+    assertTrue(boundaries.containsAll(List.of(1.0, 5.0, 10.0, 50.0, 100.0, 500.0, 1000.0)));
+    assertEquals(1, buckets[buckets.length - 1].count());
+  }
+
+  @Test
+  void update_shouldBeReportedWithChangedRows() throws SQLException {
+
+    try (Connection connection = dataSource.getConnection();
+         PreparedStatement statement = connection.prepareStatement(
+             "/* CityDAO.rename */ update cities set name = ? where id > ?")) {
+      statement.setString(1, "Ruse");
+      statement.setInt(2, 1);
+      statement.executeUpdate();
+    }
+
+    assertEquals(1, executions.size());
+    assertEquals("update", executions.get(0).type());
+    assertEquals(2, executions.get(0).rows());
+    assertEquals(List.of("Ruse", 1), executions.get(0).parameters());
+  }
+
+  @Test
+  void failedStatement_shouldBeReportedAsFailed() throws SQLException {
+
+    try (Connection connection = dataSource.getConnection(); Statement statement = connection.createStatement()) {
+      assertThrows(SQLException.class, () -> statement.executeQuery("select * from missing_table"));
+    }
+
+    assertEquals(1, executions.size());
+    assertTrue(executions.get(0).failed());
+    assertEquals(SqlStatementInspector.UNTAGGED, executions.get(0).tag());
+    assertEquals(1, meterRegistry.get(SqlMetrics.STATEMENTS).tag("outcome", "error").timer().count());
+  }
+
+  @Test
+  void typeOf_shouldSkipTheTag() {
+
+    assertEquals("delete", InstrumentedDataSource.typeOf("/* ReviewDAO.delete */ delete from reviews"));
+    assertEquals("insert", InstrumentedDataSource.typeOf("insert into cities values (4, 'Ruse')"));
+    assertEquals("other", InstrumentedDataSource.typeOf(null));
+  }
+
+  @Test
+  void inspect_outsideOfDao_shouldLeaveStatementUnchanged() {
+
+    String sql = "select * from cities";
+
+    assertEquals(sql, new SqlStatementInspector().inspect(sql));
+  }
+}
@@ -0,0 +1,74 @@
+package bg.tuvarna.sit.wms.util;
+
+import bg.tuvarna.sit.wms.exceptions.WarehouseDAOException;
+import org.hibernate.StaleObjectStateException;
+import org.junit.jupiter.api.Test;
+
+import javax.persistence.OptimisticLockException;
+import javax.persistence.RollbackException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class OptimisticLockingTest {
+
+  @Test
+  void isConflict_shouldDetectOptimisticLockFailuresInCauseChain() {
+
+    assertTrue(OptimisticLocking.isConflict(new OptimisticLockException()));
+    assertTrue(OptimisticLocking.isConflict(new RollbackException(new OptimisticLockException())));
+    assertTrue(OptimisticLocking.isConflict(
+        new WarehouseDAOException("Error updating warehouse entity", new StaleObjectStateException("Warehouse", 1L))));
+    assertFalse(OptimisticLocking.isConflict(new WarehouseDAOException("Error updating warehouse entity")));
+    assertFalse(OptimisticLocking.isConflict(null));
+  }
+
+  @Test
+  void retryOnConflict_shouldRetryUntilAttemptSucceeds() throws WarehouseDAOException {
+
+    AtomicInteger attempts = new AtomicInteger();
+
+    String result = OptimisticLocking.retryOnConflict(3, () -> {
+      if (attempts.incrementAndGet() < 3) {
+        throw new WarehouseDAOException("Conflict", new OptimisticLockException());
+      }
+      return "updated";
+    });
+
+    assertEquals("updated", result);
+    assertEquals(3, attempts.get());
+  }
+
+  @Test
+  void retryOnConflict_shouldRethrowLastConflict() {
+
+    AtomicInteger attempts = new AtomicInteger();
+    WarehouseDAOException conflict = new WarehouseDAOException("Conflict", new OptimisticLockException());
+
+    WarehouseDAOException thrown = assertThrows(WarehouseDAOException.class,
+        () -> OptimisticLocking.retryOnConflict(2, () -> {
+          attempts.incrementAndGet();
+          throw conflict;
+        }));
+
+    assertSame(conflict, thrown);
+    assertEquals(2, attempts.get());
+  }
+
+  @Test
+  void retryOnConflict_shouldNotRetryOtherFailures() {
+
+    AtomicInteger attempts = new AtomicInteger();
+
+    assertThrows(WarehouseDAOException.class, () -> OptimisticLocking.retryOnConflict(5, () -> {
+      attempts.incrementAndGet();
+      throw new WarehouseDAOException("Database unavailable");
+    }));
+
+    assertEquals(1, attempts.get());
+  }
+}
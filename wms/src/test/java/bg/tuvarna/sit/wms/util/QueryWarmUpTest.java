@@ -0,0 +1,51 @@
+package bg.tuvarna.sit.wms.util;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.Persistence;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class QueryWarmUpTest {
+
+  private EntityManagerFactory entityManagerFactory;
+
+  @BeforeEach
+  void setUp() {
+
+    entityManagerFactory = Persistence.createEntityManagerFactory("wms-test");
+  }
+
+  @AfterEach
+  void tearDown() {
+
+    entityManagerFactory.close();
+  }
+
+  @Test
+  void namedQueries_shouldAllBeRegisteredAtBootstrap() {
+
+    List<String> names = new ArrayList<>(QueryNames.SELECT_QUERIES);
+    names.addAll(QueryNames.UPDATE_QUERIES);
+
+    EntityManager entityManager = entityManagerFactory.createEntityManager();
+    try {
+      names.forEach(name -> assertDoesNotThrow(() -> entityManager.createNamedQuery(name), name));
+    } finally {
+      entityManager.close();
+    }
+  }
+
+  @Test
+  void warmUp_shouldExecuteEverySelectQuery() {
+
+    assertEquals(QueryNames.SELECT_QUERIES.size(), QueryWarmUp.warmUp(entityManagerFactory));
+  }
+}
@@ -0,0 +1,75 @@
+package bg.tuvarna.sit.wms.util;
+
+import bg.tuvarna.sit.wms.dto.AgentRatingDTO;
+import bg.tuvarna.sit.wms.entities.AgentRating;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RatingLeaderboardTest {
+
+  private final RatingLeaderboard leaderboard = new RatingLeaderboard();
+
+  @Test
+  void top_shouldRankByAverageThenReviewCountThenAgentId() {
+
+    leaderboard.update(rating(1L, 4, 4));
+    leaderboard.update(rating(2L, 5));
+    leaderboard.update(rating(3L, 4, 4, 4));
+    leaderboard.update(rating(4L, 4, 4));
+
+    assertEquals(List.of(2L, 3L, 1L, 4L), agentIds(leaderboard.top(10)));
+    assertEquals(List.of(2L, 3L), agentIds(leaderboard.top(2)));
+  }
+
+  @Test
+  void update_shouldReplaceThePreviousRatingOfTheAgent() {
+
+    leaderboard.update(rating(1L, 5));
+    leaderboard.update(rating(2L, 4));
+    leaderboard.update(rating(1L, 5, 1));
+
+    assertEquals(2, leaderboard.size());
+    assertEquals(List.of(2L, 1L), agentIds(leaderboard.top(10)));
+    assertEquals(2, leaderboard.get(1L).orElseThrow().getReviewCount());
+  }
+
+  @Test
+  void update_withoutReviews_shouldRemoveTheAgent() {
+
+    leaderboard.update(rating(1L, 5));
+    leaderboard.update(rating(1L));
+
+    assertEquals(0, leaderboard.size());
+    assertTrue(leaderboard.top(10).isEmpty());
+  }
+
+  @Test
+  void sort_shouldPutAgentsWithoutRatingLast() {
+
+    leaderboard.update(rating(1L, 3));
+    leaderboard.update(rating(2L, 5));
+
+    List<Long> sorted = leaderboard.sort(List.of(7L, 1L, 6L, 2L), Function.identity());
+
+    assertEquals(List.of(2L, 1L, 7L, 6L), sorted);
+  }
+
+  private static AgentRatingDTO rating(Long agentId, int... assessments) {
+
+    AgentRating rating = new AgentRating(agentId);
+    for (int assessment : assessments) {
+      rating.add(assessment);
+    }
+    return new AgentRatingDTO(rating);
+  }
+
+  private static List<Long> agentIds(List<AgentRatingDTO> ratings) {
+
+    return ratings.stream().map(AgentRatingDTO::getAgentId).toList();
+  }
+}
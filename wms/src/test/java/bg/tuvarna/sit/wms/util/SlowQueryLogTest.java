@@ -0,0 +1,82 @@
+package bg.tuvarna.sit.wms.util;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SlowQueryLogTest {
+
+  @Test
+  void onExecution_shouldCountOnlyStatementsAboveThreshold() {
+
+    SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    SlowQueryLog slowQueryLog = new SlowQueryLog(100, 0, meterRegistry);
+
+    slowQueryLog.onExecution(execution("/* WarehouseDAO.getAll */ select * from warehouses", 50));
+    slowQueryLog.onExecution(execution("/* WarehouseDAO.getAll */ select * from warehouses", 150));
+
+    assertEquals(1, meterRegistry.get(SlowQueryLog.SLOW_STATEMENTS)
+        .tag("dao", "WarehouseDAO.getAll").counter().count());
+  }
+
+  @Test
+  void onExecution_whenFast_shouldNotRegisterCounter() {
+
+    SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    new SlowQueryLog(100, 1, meterRegistry).onExecution(execution("select 1", 10));
+
+    assertNull(meterRegistry.find(SlowQueryLog.SLOW_STATEMENTS).counter());
+  }
+
+  @Test
+  void isSampled_shouldFollowSampleRate() {
+
+    SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    assertTrue(new SlowQueryLog(100, 1, meterRegistry).isSampled());
+    assertFalse(new SlowQueryLog(100, 0, meterRegistry).isSampled());
+  }
+
+  @Test
+  void redact_shouldHidePasswordOfInsertedUser() {
+
+    String sql = "/* UserDAO.save */ insert into users (email, first_name, password, phone) values (?, ?, ?, ?)";
+
+    List<String> parameters = SlowQueryLog.redact(sql, List.of("ivan@mail.bg", "Ivan", "hash", "0888"));
+
+    assertEquals(List.of("'ivan@mail.bg'", "'Ivan'", SlowQueryLog.REDACTED, "'0888'"), parameters);
+  }
+
+  @Test
+  void redact_shouldHidePasswordOfUpdatedUser() {
+
+    String sql = "update users set email=?, password=?, version=? where id=? and version=?";
+
+    List<String> parameters = SlowQueryLog.redact(sql, Arrays.asList("ivan@mail.bg", "hash", 2, 5L, null));
+
+    assertEquals(List.of("'ivan@mail.bg'", SlowQueryLog.REDACTED, "2", "5", "null"), parameters);
+  }
+
+  @Test
+  void redact_shouldKeepParametersOfOtherTables() {
+
+    String sql = "select w.id from warehouses w where w.password=?";
+
+    assertEquals(List.of("'open'"), SlowQueryLog.redact(sql, List.of("open")));
+  }
+
+  private static SqlExecution execution(String sql, long elapsedMillis) {
+
+    return new SqlExecution(sql, List.of(), SqlStatementInspector.tagOf(sql), InstrumentedDataSource.typeOf(sql),
+        TimeUnit.MILLISECONDS.toNanos(elapsedMillis), 0, false);
+  }
+}
@@ -0,0 +1,257 @@
+package bg.tuvarna.sit.wms.util;
+
+import bg.tuvarna.sit.wms.dao.WarehouseRentalRequestDAO;
+import bg.tuvarna.sit.wms.entities.RequestDetails;
+import bg.tuvarna.sit.wms.entities.Warehouse;
+import bg.tuvarna.sit.wms.entities.WarehouseRentalRequest;
+import bg.tuvarna.sit.wms.enums.RequestStatus;
+import bg.tuvarna.sit.wms.exceptions.RentalRequestDAOException;
+import org.hibernate.FlushMode;
+import org.hibernate.Session;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.EntityTransaction;
+import javax.persistence.Query;
+import javax.persistence.TypedQuery;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class TransactionTemplateTest {
+
+  @Mock
+  private EntityManagerFactory entityManagerFactory;
+
+  @Mock
+  private EntityManager entityManager;
+
+  @Mock
+  private EntityTransaction transaction;
+
+  @Mock
+  private Session session;
+
+  @Mock
+  private TypedQuery<WarehouseRentalRequest> query;
+
+  @Mock
+  private Query updateQuery;
+
+  private TransactionTemplate transactionTemplate;
+
+  @BeforeEach
+  void setUp() {
+
+    MockitoAnnotations.openMocks(this);
+    when(entityManagerFactory.createEntityManager()).thenReturn(entityManager);
+    when(entityManager.getTransaction()).thenReturn(transaction);
+    when(entityManager.unwrap(Session.class)).thenReturn(session);
+    when(transaction.isActive()).thenReturn(true);
+    transactionTemplate = new TransactionTemplate(entityManagerFactory);
+  }
+
+  @Test
+  void inTransaction_shouldCommitAndReturnResult() {
+
+    String result = transactionTemplate.inTransaction(em -> "result");
+
+    assertEquals("result", result);
+    verify(transaction).begin();
+    verify(transaction).commit();
+    verify(transaction, never()).rollback();
+    verify(entityManager).close();
+    assertFalse(TransactionTemplate.getBoundEntityManager(entityManagerFactory).isPresent());
+  }
+
+  @Test
+  void inTransaction_whenCallbackFails_shouldRollbackAndRethrow() {
+
+    RentalRequestDAOException exception = new RentalRequestDAOException("Simulated exception");
+
+    RentalRequestDAOException thrown = assertThrows(RentalRequestDAOException.class,
+        () -> transactionTemplate.runInTransaction(em -> {
+          throw exception;
+        }));
+
+    assertSame(exception, thrown);
+    verify(transaction).begin();
+    verify(transaction, never()).commit();
+    verify(transaction).rollback();
+    verify(entityManager).close();
+    assertFalse(TransactionTemplate.getBoundEntityManager(entityManagerFactory).isPresent());
+  }
+
+  @Test
+  void inTransaction_nestedCalls_shouldJoinOuterTransaction() {
+
+    transactionTemplate.runInTransaction(outer -> {
+      assertSame(outer, TransactionTemplate.getBoundEntityManager(entityManagerFactory).orElseThrow());
+      transactionTemplate.runInTransaction(inner -> assertSame(outer, inner));
+    });
+
+    verify(entityManagerFactory, times(1)).createEntityManager();
+    verify(transaction, times(1)).begin();
+    verify(transaction, times(1)).commit();
+    verify(entityManager, times(1)).close();
+  }
+
+  @Test
+  void withEntityManager_outsideTransaction_shouldNotBeginTransaction() {
+
+    transactionTemplate.withEntityManager(em -> em.find(Warehouse.class, 1L));
+
+    verify(entityManager).find(Warehouse.class, 1L);
+    verify(transaction, never()).begin();
+    verify(entityManager).close();
+  }
+
+  @Test
+  void readOnly_outsideTransaction_shouldUseReadOnlySessionWithoutFlushing() {
+
+    String result = transactionTemplate.readOnly(em -> {
+      assertFalse(TransactionTemplate.getBoundEntityManager(entityManagerFactory).isPresent());
+      return "result";
+    });
+
+    assertEquals("result", result);
+    verify(session).setDefaultReadOnly(true);
+    verify(session).setHibernateFlushMode(FlushMode.MANUAL);
+    verify(session, times(2)).doWork(any());
+    verify(transaction).begin();
+    verify(transaction).commit();
+    verify(entityManager).close();
+  }
+
+  @Test
+  void readOnly_insideTransaction_shouldJoinWithoutChangingSession() {
+
+    transactionTemplate.runInTransaction(outer ->
+        transactionTemplate.readOnly(inner -> {
+          assertSame(outer, inner);
+          return null;
+        }));
+
+    verify(entityManagerFactory, times(1)).createEntityManager();
+    verify(session, never()).setDefaultReadOnly(true);
+    verify(transaction, times(1)).begin();
+  }
+
+  @Test
+  void declineFlow_shouldUseOneEntityManagerAndOneCommit() throws RentalRequestDAOException {
+
+    WarehouseRentalRequestDAO dao = new WarehouseRentalRequestDAO(entityManagerFactory);
+    WarehouseRentalRequest request = createWarehouseRentalRequest();
+    mockDeclineFlowQueries(request);
+
+    transactionTemplate.runInTransaction(em -> runDeclineFlow(dao, request));
+
+    verify(entityManagerFactory, times(1)).createEntityManager();
+    verify(transaction, times(1)).begin();
+    verify(transaction, times(1)).commit();
+    verify(entityManager, times(1)).close();
+  }
+
+  @Test
+  void declineFlow_withoutTransactionTemplate_shouldUseOneEntityManagerPerDaoCall() throws RentalRequestDAOException {
+
+    WarehouseRentalRequestDAO dao = new WarehouseRentalRequestDAO(entityManagerFactory);
+    WarehouseRentalRequest request = createWarehouseRentalRequest();
+    mockDeclineFlowQueries(request);
+
+    runDeclineFlow(dao, request);
+
+    verify(entityManagerFactory, times(4)).createEntityManager();
+    verify(transaction, times(4)).begin();
+    verify(transaction, times(4)).commit();
+  }
+
+  private void runDeclineFlow(WarehouseRentalRequestDAO dao, WarehouseRentalRequest request)
+      throws RentalRequestDAOException {
+
+    Optional<WarehouseRentalRequest> requestOptional = dao.getById(request.getId());
+    assertTrue(requestOptional.isPresent());
+    dao.changeStatus(requestOptional.get(), RequestStatus.DECLINED);
+    dao.invalidateRequest(requestOptional.get());
+    dao.getAllByWarehouse(request.getRequestDetails().getWarehouse());
+  }
+
+  private void mockDeclineFlowQueries(WarehouseRentalRequest request) {
+
+    when(entityManager.find(eq(WarehouseRentalRequest.class), any())).thenReturn(request);
+    when(entityManager.createNamedQuery(anyString(), eq(WarehouseRentalRequest.class))).thenReturn(query);
+    when(query.setParameter(anyString(), any())).thenReturn(query);
+    when(query.getResultList()).thenReturn(List.of());
+    when(entityManager.createNamedQuery(anyString())).thenReturn(updateQuery);
+    when(updateQuery.executeUpdate()).thenReturn(1);
+  }
+
+  private WarehouseRentalRequest createWarehouseRentalRequest() {
+
+    Warehouse warehouse = new Warehouse();
+    warehouse.setId(1L);
+    RequestDetails requestDetails = new RequestDetails();
+    requestDetails.setId(1L);
+    requestDetails.setWarehouse(warehouse);
+    WarehouseRentalRequest request = new WarehouseRentalRequest();
+    request.setId(1L);
+    request.setRequestDetails(requestDetails);
+    request.setStatus(RequestStatus.PENDING);
+    return request;
+  }
+
+  @Test
+  void afterCommit_shouldRunOnlyOnceTheOutermostTransactionCommitted() {
+
+    List<String> events = new ArrayList<>();
+
+    transactionTemplate.runInTransaction(em -> {
+      transactionTemplate.runInTransaction(nested -> transactionTemplate.afterCommit(() -> events.add("action")));
+      events.add("work");
+    });
+
+    assertEquals(List.of("work", "action"), events);
+  }
+
+  @Test
+  void afterCommit_shouldDiscardActionsOfRolledBackTransaction() {
+
+    List<String> events = new ArrayList<>();
+
+    assertThrows(IllegalStateException.class, () -> transactionTemplate.runInTransaction(em -> {
+      transactionTemplate.afterCommit(() -> events.add("action"));
+      throw new IllegalStateException("Failure");
+    }));
+    transactionTemplate.runInTransaction(em -> events.add("work"));
+
+    assertEquals(List.of("work"), events);
+    verify(transaction).rollback();
+  }
+
+  @Test
+  void afterCommit_outsideOfTransaction_shouldRunRightAway() {
+
+    List<String> events = new ArrayList<>();
+
+    transactionTemplate.afterCommit(() -> events.add("action"));
+
+    assertEquals(List.of("action"), events);
+  }
+}
@@ -0,0 +1,189 @@
+package bg.tuvarna.sit.wms.util;
+
+import bg.tuvarna.sit.wms.dto.WarehouseDTO;
+import bg.tuvarna.sit.wms.dto.WarehouseSearchQuery;
+import bg.tuvarna.sit.wms.dto.WarehouseSearchResult;
+import bg.tuvarna.sit.wms.enums.ClimateCondition;
+import bg.tuvarna.sit.wms.enums.WarehouseStatus;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class WarehouseSearchIndexTest {
+
+  private final WarehouseSearchIndex index = new WarehouseSearchIndex();
+
+  @BeforeEach
+  void setUp() {
+
+    index.putAll(List.of(
+        warehouse(1L, "Varna", "Bulgaria", 100.0, WarehouseStatus.AVAILABLE, ClimateCondition.AMBIENT),
+        warehouse(2L, "Varna", "Bulgaria", 250.0, WarehouseStatus.RENTED, ClimateCondition.REFRIGERATED),
+        warehouse(3L, "Sofia", "Bulgaria", 400.0, WarehouseStatus.AVAILABLE, ClimateCondition.REFRIGERATED),
+        warehouse(4L, "Bucharest", "Romania", 250.0, WarehouseStatus.AVAILABLE, ClimateCondition.AMBIENT)));
+  }
+
+  @Test
+  void search_withoutFilters_shouldReturnAllWarehousesAndCounts() {
+
+    WarehouseSearchResult result = index.search(new WarehouseSearchQuery());
+
+    assertEquals(List.of(1L, 2L, 3L, 4L), ids(result));
+    assertEquals(4, result.getTotalCount());
+    assertEquals(Map.of("Bulgaria", 3, "Romania", 1), result.getCountryCounts());
+    assertEquals(Map.of(WarehouseStatus.AVAILABLE, 3, WarehouseStatus.RENTED, 1), result.getStatusCounts());
+  }
+
+  @Test
+  void search_shouldIntersectFacetsAndUniteValuesOfOneFacet() {
+
+    WarehouseSearchQuery query = new WarehouseSearchQuery();
+    query.getCityNames().addAll(List.of("Varna", "Sofia"));
+    query.getStatuses().add(WarehouseStatus.AVAILABLE);
+
+    WarehouseSearchResult result = index.search(query);
+
+    assertEquals(List.of(1L, 3L), ids(result));
+    assertEquals(2, result.getTotalCount());
+  }
+
+  @Test
+  void search_shouldCountEachFacetWithoutItsOwnFilter() {
+
+    WarehouseSearchQuery query = new WarehouseSearchQuery();
+    query.getCityNames().add("Varna");
+    query.getStatuses().add(WarehouseStatus.AVAILABLE);
+
+    WarehouseSearchResult result = index.search(query);
+
+    assertEquals(List.of(1L), ids(result));
+    assertEquals(Map.of(WarehouseStatus.AVAILABLE, 1, WarehouseStatus.RENTED, 1), result.getStatusCounts());
+    assertEquals(Map.of("Bucharest", 1, "Sofia", 1, "Varna", 1), result.getCityCounts());
+    assertEquals(Map.of(ClimateCondition.AMBIENT, 1), result.getClimateConditionCounts());
+  }
+
+  @Test
+  void search_shouldFilterByInclusiveSizeRange() {
+
+    WarehouseSearchQuery query = new WarehouseSearchQuery();
+    query.setMinSize(250.0);
+    query.setMaxSize(400.0);
+
+    assertEquals(List.of(2L, 3L, 4L), ids(index.search(query)));
+
+    query.setMinSize(null);
+    query.setMaxSize(249.0);
+
+    assertEquals(List.of(1L), ids(index.search(query)));
+  }
+
+  @Test
+  void search_shouldLimitTheWarehousesButCountAllMatches() {
+
+    List<WarehouseDTO> warehouses = new ArrayList<>();
+    for (long id = 100; id > 4; id--) {
+      warehouses.add(warehouse(id, "Burgas", "Bulgaria", 50.0, WarehouseStatus.AVAILABLE, ClimateCondition.AMBIENT));
+    }
+    index.putAll(warehouses);
+    WarehouseSearchQuery query = new WarehouseSearchQuery();
+    query.getCityNames().add("Burgas");
+    query.setLimit(3);
+
+    WarehouseSearchResult result = index.search(query);
+
+    assertEquals(List.of(5L, 6L, 7L), ids(result));
+    assertEquals(96, result.getTotalCount());
+  }
+
+  @Test
+  void search_shouldSelectTheLowestIdsFromReusedSlots() {
+
+    index.remove(1L);
+    index.remove(2L);
+    index.put(warehouse(9L, "Varna", "Bulgaria", 100.0, WarehouseStatus.AVAILABLE, ClimateCondition.AMBIENT));
+    index.put(warehouse(8L, "Varna", "Bulgaria", 100.0, WarehouseStatus.AVAILABLE, ClimateCondition.AMBIENT));
+    WarehouseSearchQuery query = new WarehouseSearchQuery();
+    query.setLimit(3);
+
+    assertEquals(List.of(3L, 4L, 8L), ids(index.search(query)));
+  }
+
+  @Test
+  void search_changingAReturnedWarehouse_shouldNotChangeTheIndex() {
+
+    WarehouseDTO returned = index.search(new WarehouseSearchQuery()).getWarehouses().get(0);
+    returned.setStatus(WarehouseStatus.RENTED);
+    returned.setCityName("Ruse");
+    returned.setSize(999.0);
+    index.remove(1L);
+    index.put(warehouse(5L, "Sofia", "Bulgaria", 400.0, WarehouseStatus.RENTED, ClimateCondition.AMBIENT));
+
+    WarehouseSearchQuery query = new WarehouseSearchQuery();
+    query.getStatuses().add(WarehouseStatus.AVAILABLE);
+    WarehouseSearchResult result = index.search(query);
+
+    assertEquals(List.of(3L, 4L), ids(result));
+    assertEquals(Map.of(WarehouseStatus.AVAILABLE, 2, WarehouseStatus.RENTED, 2), result.getStatusCounts());
+    assertEquals(Map.of("Bucharest", 1, "Sofia", 1), result.getCityCounts());
+  }
+
+  @Test
+  void updateStatus_shouldMoveTheWarehouseToTheNewStatus() {
+
+    assertTrue(index.updateStatus(1L, WarehouseStatus.PENDING_RENTAL));
+    assertFalse(index.updateStatus(99L, WarehouseStatus.RENTED));
+
+    WarehouseSearchQuery query = new WarehouseSearchQuery();
+    query.getStatuses().add(WarehouseStatus.PENDING_RENTAL);
+    WarehouseSearchResult result = index.search(query);
+
+    assertEquals(List.of(1L), ids(result));
+    assertEquals(1, result.getWarehouses().get(0).getVersion());
+    assertEquals(Map.of(WarehouseStatus.AVAILABLE, 2, WarehouseStatus.PENDING_RENTAL, 1, WarehouseStatus.RENTED, 1),
+        result.getStatusCounts());
+  }
+
+  @Test
+  void remove_shouldDropTheWarehouseAndReuseItsSlot() {
+
+    index.remove(4L);
+    index.put(warehouse(5L, "Ruse", "Bulgaria", 80.0, WarehouseStatus.AVAILABLE, ClimateCondition.AMBIENT));
+
+    WarehouseSearchResult result = index.search(new WarehouseSearchQuery());
+
+    assertEquals(4, index.size());
+    assertEquals(List.of(1L, 2L, 3L, 5L), ids(result));
+    assertEquals(Map.of("Bulgaria", 4), result.getCountryCounts());
+  }
+
+  @Test
+  void put_shouldReplaceAnIndexedWarehouse() {
+
+    index.put(warehouse(2L, "Sofia", "Bulgaria", 250.0, WarehouseStatus.RENTED, ClimateCondition.REFRIGERATED));
+
+    WarehouseSearchQuery query = new WarehouseSearchQuery();
+    query.getCityNames().add("Sofia");
+
+    assertEquals(4, index.size());
+    assertEquals(List.of(2L, 3L), ids(index.search(query)));
+  }
+
+  private static WarehouseDTO warehouse(Long id, String city, String country, Double size, WarehouseStatus status,
+                                        ClimateCondition climateCondition) {
+
+    return new WarehouseDTO(id, "Warehouse " + id, "Street " + id, city, country, "9000", "Pallet racks",
+        "Pallet racks", size, status, climateCondition, 0);
+  }
+
+  private static List<Long> ids(WarehouseSearchResult result) {
+
+    return result.getWarehouses().stream().map(WarehouseDTO::getId).toList();
+  }
+}